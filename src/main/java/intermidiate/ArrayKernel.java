@@ -0,0 +1,117 @@
+package intermidiate;
+
+// Telo petlje craft (gold i#lo: i < hi: i#i + 1:) { a[i]#izraz: ... } koje vector_loop
+// izvrsava odjednom nad celim opsegom (optimizer.LoopVectorizer). Svaki pristup nizu je
+// na indeksu i (za visedimenzionalni chest: na poslednjem indeksu, ispred su nepromenljivi
+// indeksi), pa su iteracije nezavisne i mogu da se racunaju u blokovima, vektorski.
+//
+// Izrazi su postfiksni kod: ARRAY <pristup>, SCALAR <skalar>, CONST <konstanta>, pa
+// ADD, SUB, MUL, DIV (DIV samo za diamond). Svi operandi su tipa type.
+public final class ArrayKernel {
+
+    public static final int ARRAY = 0;
+    public static final int SCALAR = 1;
+    public static final int CONST = 2;
+    public static final int ADD = 3;
+    public static final int SUB = 4;
+    public static final int MUL = 5;
+    public static final int DIV = 6;
+
+    // pristup nizu u lokalu slot; prefix su spoljni indeksi, svaki kao postfiksni kod
+    // nad SCALAR/CONST/ADD/SUB/MUL u gold aritmetici
+    public static final class Access {
+        public final int slot;
+        public final int[][] prefix;
+
+        public Access(int slot, int[][] prefix) {
+            this.slot = slot;
+            this.prefix = prefix;
+        }
+    }
+
+    // niz[i]#izraz, target je indeks u accesses
+    public static final class Assign {
+        public final int target;
+        public final int[] code;
+
+        public Assign(int target, int[] code) {
+            this.target = target;
+            this.code = code;
+        }
+    }
+
+    public final int type;            // Opcode.TYPE_INT ili Opcode.TYPE_DOUBLE
+    public final boolean inclusive;   // i <= hi umesto i < hi
+    public final Access[] accesses;
+    public final int[] scalars;       // slotovi lokala koje cita SCALAR
+    public final long[] constants;    // CONST, diamond kao bitovi
+    public final Assign[] body;
+    public final int depth;           // najdublji stek izraza
+
+    public ArrayKernel(int type, boolean inclusive, Access[] accesses, int[] scalars,
+                       long[] constants, Assign[] body) {
+        this.type = type;
+        this.inclusive = inclusive;
+        this.accesses = accesses;
+        this.scalars = scalars;
+        this.constants = constants;
+        this.body = body;
+        int max = 1;
+        for (Assign a : body) max = Math.max(max, depth(a.code));
+        this.depth = max;
+    }
+
+    private static int depth(int[] code) {
+        int d = 0, max = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            if (code[pc] <= CONST) {
+                d++;
+                pc++;
+            } else {
+                d--;
+            }
+            max = Math.max(max, d);
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{").append(Opcode.typeName(type));
+        for (Assign a : body) {
+            sb.append(": ").append(access(a.target)).append(" = ").append(expr(a.code, type == Opcode.TYPE_DOUBLE));
+        }
+        return sb.append("}").toString();
+    }
+
+    private String access(int k) {
+        StringBuilder sb = new StringBuilder("l").append(accesses[k].slot);
+        for (int[] p : accesses[k].prefix) sb.append('[').append(expr(p, false)).append(']');
+        return sb.append("[i]").toString();
+    }
+
+    private String expr(int[] code, boolean real) {
+        java.util.ArrayDeque<String> stack = new java.util.ArrayDeque<>();
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case ARRAY -> stack.push(access(code[++pc]));
+                case SCALAR -> stack.push("l" + scalars[code[++pc]]);
+                case CONST -> {
+                    long c = constants[code[++pc]];
+                    stack.push(real ? String.valueOf(Double.longBitsToDouble(c)) : String.valueOf(c));
+                }
+                default -> {
+                    String b = stack.pop(), a = stack.pop();
+                    String op = switch (code[pc]) {
+                        case ADD -> " + ";
+                        case SUB -> " - ";
+                        case MUL -> " * ";
+                        default -> " / ";
+                    };
+                    stack.push("(" + a + op + b + ")");
+                }
+            }
+        }
+        return stack.pop();
+    }
+}
@@ -0,0 +1,41 @@
+package intermidiate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Niz instrukcija bez grananja unutra; poslednja je jmp, branch ili ret.
+public final class BasicBlock {
+
+    public final int id;
+    public final List<Instr> instrs = new ArrayList<>();
+    public final List<BasicBlock> preds = new ArrayList<>();
+    public final List<BasicBlock> succs = new ArrayList<>();
+
+    BasicBlock(int id) {
+        this.id = id;
+    }
+
+    public Instr terminator() {
+        if (instrs.isEmpty()) return null;
+        Instr last = instrs.get(instrs.size() - 1);
+        return last.isTerminator() ? last : null;
+    }
+
+    public boolean isTerminated() {
+        return terminator() != null;
+    }
+
+    // dodaje zavrsnu instrukciju i ivice ka njenim odredistima
+    void terminate(Instr t) {
+        instrs.add(t);
+        for (BasicBlock target : t.targets) {
+            succs.add(target);
+            target.preds.add(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "B" + id;
+    }
+}
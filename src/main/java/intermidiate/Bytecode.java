@@ -0,0 +1,67 @@
+package intermidiate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class Bytecode {
+
+    public final int[] code;
+    public final Object[] constants;              // literali
+    public final Map<String, Integer> functions;  // ime funkcije -> adresa
+    public final int globalCount;
+
+    public Bytecode(int[] code, Object[] constants, Map<String, Integer> functions, int globalCount) {
+        this.code = code;
+        this.constants = constants;
+        this.functions = functions;
+        this.globalCount = globalCount;
+    }
+
+    /* ================= DISASEMBLER ================= */
+
+    public List<String> disassemble() {
+        Map<Integer, String> entries = new HashMap<>();
+        functions.forEach((name, pc) -> entries.put(pc, name));
+
+        List<String> lines = new ArrayList<>();
+        int pc = 0;
+        while (pc < code.length) {
+            String func = entries.get(pc);
+            if (func != null) lines.add(func + ":");
+
+            lines.add(String.format("%5d  %s", pc, instruction(pc, entries)));
+            pc += 1 + Opcode.operands(code[pc]);
+        }
+        return lines;
+    }
+
+    private String instruction(int pc, Map<Integer, String> entries) {
+        int op = code[pc];
+        String name = Opcode.name(op);
+        return switch (op) {
+            case Opcode.PUSH -> name + " " + formatConstant(constants[code[pc + 1]]);
+            case Opcode.CALL, Opcode.TAILCALL -> name + " " + entries.getOrDefault(code[pc + 1], String.valueOf(code[pc + 1])) + " " + code[pc + 2];
+            case Opcode.CAST -> name + " " + Opcode.typeName(code[pc + 1]) + " " + Opcode.typeName(code[pc + 2]);
+            case Opcode.NEW_ARRAY, Opcode.MAKE_ARRAY, Opcode.LOAD_ARRAY, Opcode.STORE_ARRAY,
+                 Opcode.LOAD_ARRAY_UNCHECKED, Opcode.STORE_ARRAY_UNCHECKED ->
+                    name + " " + code[pc + 1] + " " + Opcode.typeName(code[pc + 2]);
+            case Opcode.VECTOR_LOOP, Opcode.PARALLEL_LOOP -> name + " " + code[pc + 1] + " " + constants[code[pc + 2]];
+            case Opcode.HALT, Opcode.COLLECT, Opcode.DROP -> name + " " + Opcode.typeName(code[pc + 1]);
+            case Opcode.LOAD_ARRAY_LOCAL, Opcode.LOAD_ARRAY_LOCAL_UNCHECKED -> name + " " + code[pc + 1] + " " + code[pc + 2] + " " + Opcode.typeName(code[pc + 3]);
+            default -> {
+                StringBuilder sb = new StringBuilder(name);
+                for (int i = 1; i <= Opcode.operands(op); i++) sb.append(' ').append(code[pc + i]);
+                yield sb.toString();
+            }
+        };
+    }
+
+    static String formatConstant(Object c) {
+        if (c instanceof String s) return "\"" + s + "\"";
+        if (c instanceof Character ch) return "'" + ch + "'";
+        if (c instanceof Long l) return l + "L";
+        return String.valueOf(c);
+    }
+}
@@ -0,0 +1,124 @@
+package intermidiate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Graf toka kontrole jedne funkcije. Registri 0..params-1 su parametri,
+// do locals-1 lokalne promenljive (slotovi iz Resolver-a), a iznad toga privremeni
+// i registri slotova koje je Resolver ponovo dao promenljivoj drugog tipa (CfgBuilder).
+public final class Cfg {
+
+    public final String name;
+    public final int params;
+    public final int locals;
+    public final int[] paramTypes;
+    public final List<BasicBlock> blocks = new ArrayList<>();
+    private int registers;
+    private int nextBlockId = 0;
+
+    public Cfg(String name, int params, int locals) {
+        this.name = name;
+        this.params = params;
+        this.locals = locals;
+        this.paramTypes = new int[params];
+        this.registers = locals;
+    }
+
+    public BasicBlock entry() {
+        return blocks.get(0);
+    }
+
+    public BasicBlock newBlock() {
+        BasicBlock b = new BasicBlock(nextBlockId++);
+        blocks.add(b);
+        return b;
+    }
+
+    public int newRegister() {
+        return registers++;
+    }
+
+    public int registerCount() {
+        return registers;
+    }
+
+    // uklanja blokove do kojih se ne moze doci iz ulaznog (npr. kod posle loot-a)
+    public void removeUnreachable() {
+        Set<BasicBlock> reachable = new HashSet<>();
+        Deque<BasicBlock> work = new ArrayDeque<>();
+        work.push(entry());
+        while (!work.isEmpty()) {
+            BasicBlock b = work.pop();
+            if (reachable.add(b)) b.succs.forEach(work::push);
+        }
+        for (BasicBlock b : blocks) {
+            if (reachable.contains(b)) continue;
+            for (BasicBlock s : new ArrayList<>(b.succs)) removeEdge(b, s);
+        }
+        blocks.removeIf(b -> !reachable.contains(b));
+    }
+
+    // uklanja ivicu from -> to zajedno sa odgovarajucim argumentom phi instrukcija u to
+    public void removeEdge(BasicBlock from, BasicBlock to) {
+        int k = to.preds.indexOf(from);
+        if (k < 0) return;
+        to.preds.remove(k);
+        from.succs.remove(to);
+        for (Instr i : to.instrs) {
+            if (i.op != Instr.PHI) break;
+            Operand[] args = new Operand[i.args.length - 1];
+            for (int j = 0, n = 0; j < i.args.length; j++) if (j != k) args[n++] = i.args[j];
+            i.args = args;
+        }
+    }
+
+    // svaki operand koji cita registar reg postaje value
+    public void replaceUses(int reg, Operand value) {
+        for (BasicBlock b : blocks) {
+            for (Instr i : b.instrs) {
+                for (int j = 0; j < i.args.length; j++) {
+                    if (i.args[j].reg == reg) i.args[j] = value;
+                }
+            }
+        }
+    }
+
+    // blokovi u obrnutom postorderu: svaki blok posle svih svojih prethodnika, osim po povratnim ivicama
+    public List<BasicBlock> reversePostorder() {
+        List<BasicBlock> order = new ArrayList<>();
+        postorder(entry(), new HashSet<>(), order);
+        Collections.reverse(order);
+        return order;
+    }
+
+    private static void postorder(BasicBlock b, Set<BasicBlock> visited, List<BasicBlock> out) {
+        if (!visited.add(b)) return;
+        for (BasicBlock s : b.succs) postorder(s, visited, out);
+        out.add(b);
+    }
+
+    public int instructionCount() {
+        int n = 0;
+        for (BasicBlock b : blocks) n += b.instrs.size();
+        return n;
+    }
+
+    public List<String> dump() {
+        List<String> lines = new ArrayList<>();
+        StringBuilder header = new StringBuilder(name).append("(");
+        for (int i = 0; i < params; i++) header.append(i > 0 ? ", r" : "r").append(i);
+        lines.add(header.append("):").toString());
+        for (BasicBlock b : blocks) {
+            StringBuilder sb = new StringBuilder("  ").append(b).append(':');
+            if (!b.preds.isEmpty()) sb.append("    ; preds ").append(b.preds);
+            lines.add(sb.toString());
+            for (Instr i : b.instrs) lines.add("    " + i);
+        }
+        return lines;
+    }
+}
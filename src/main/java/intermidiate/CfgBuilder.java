@@ -0,0 +1,591 @@
+package intermidiate;
+
+import lexer.token.Token;
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Gradi CFG za svaku funkciju u jednom prolazu kroz stablo: naredbe se dodaju u
+// tekuci blok, a grananja i petlje otvaraju nove blokove i odmah ih povezuju.
+// Ocekuje stablo na kome je pokrenut semantic.Resolver (slotovi su registri).
+// Svaka instrukcija sa rezultatom nosi tip iz inferredType, a implicitne konverzije
+// (gold u diamond pri dodeli, povratku i poredjenju) postaju eksplicitni cast.
+public final class CfgBuilder implements Expr.Visitor<Operand>, Stmt.Visitor<Void> {
+
+    // top-level naredbe i inicijalizacija globalnih, pa poziv main-a
+    public static final String TOP = "$top";
+
+    private Cfg cfg;
+    private BasicBlock current;
+    private Ast.Type returnType;
+    private Ast.FuncDef function;
+    private BasicBlock start;   // cilj loot f(...) u funkciji f; null ako takvog loot-a nema
+
+    // deklarisani tip svakog slota/globalne; slot koji se ponovo koristi dobija tip nove deklaracije
+    private final Map<Integer, Ast.Type> localTypes = new HashMap<>();
+    private final Map<Integer, Ast.Type> globalTypes = new HashMap<>();
+
+    // Resolver daje slot zatvorenog bloka kasnijim lokalnim, pa slot moze da nosi vise tipova;
+    // svaki par (slot, tip) dobija svoj registar (prvi je sam slot, ostali iznad locals), da bi
+    // phi u Ssa i izbor opkoda u RegisterCodeGenerator videli jedan tip po registru
+    private final Map<Integer, Integer> slotRegisters = new HashMap<>();
+    private final Map<List<Integer>, Integer> typedRegisters = new HashMap<>();
+
+    public List<Cfg> build(Ast.Program program) {
+        List<Cfg> result = new ArrayList<>();
+
+        cfg = new Cfg(TOP, 0, 0);
+        current = cfg.newBlock();
+        returnType = null;
+        slotRegisters.clear();
+        typedRegisters.clear();
+        function = null;
+        start = null;
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.TopStmt topStmt) {
+                topStmt.stmt.accept(this);
+            } else if (item instanceof Ast.TopVarDecl topVar) {
+                topVar.decl.accept(this);
+            }
+        }
+        int r = cfg.newRegister();
+        emit(new Instr(Opcode.CALL, r, new Operand[0], 0, "main").typed(Opcode.TYPE_INT));
+        current.terminate(Instr.of(Opcode.RET, -1, Operand.reg(r)));
+        cfg.removeUnreachable();
+        result.add(cfg);
+
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.FuncDef func) result.add(build(func));
+        }
+        return result;
+    }
+
+    public Cfg build(Ast.FuncDef func) {
+        cfg = new Cfg(func.name.lexeme, func.params.size(), func.frameSize);
+        current = cfg.newBlock();
+        returnType = func.returnType;
+        localTypes.clear();
+        slotRegisters.clear();
+        typedRegisters.clear();
+        for (int i = 0; i < func.params.size(); i++) {
+            Ast.Type t = func.params.get(i).type;
+            localTypes.put(i, t);
+            cfg.paramTypes[i] = valueType(t);
+            declareLocal(i, t);
+        }
+
+        // ulaz ostaje bez prethodnika, a parametri dobijaju phi u bloku posle njega
+        function = func;
+        start = null;
+        if (hasSelfTailCall(func.body, func.name.lexeme)) {
+            start = cfg.newBlock();
+            current.terminate(Instr.jump(start));
+            current = start;
+        }
+
+        for (Stmt stmt : func.body) stmt.accept(this);
+        if (!current.isTerminated()) current.terminate(Instr.of(Opcode.RET, -1, Operand.constant(0)));
+
+        cfg.removeUnreachable();
+        return cfg;
+    }
+
+    /* ================= EMITOVANJE ================= */
+
+    private void emit(Instr i) {
+        current.instrs.add(i);
+    }
+
+    private Operand emitValue(int op, int type, Operand... args) {
+        int r = cfg.newRegister();
+        emit(Instr.of(op, r, args).typed(type));
+        return Operand.reg(r);
+    }
+
+    // gold -> emerald/diamond i emerald -> diamond; ostali parovi su vec istog tipa
+    private Operand coerce(Operand v, Ast.Type from, Ast.Type to) {
+        if (from == null || to == null || Ast.sameType(from, to) || !Ast.isNumeric(from) || !Ast.isNumeric(to)) return v;
+        if (v.isConst()) {
+            Object c = ConstantEvaluator.evaluate(Opcode.CAST, typeCode(to), new Object[] { v.value });
+            if (c != null) return Operand.constant(c);
+        }
+        int r = cfg.newRegister();
+        emit(new Instr(Opcode.CAST, r, new Operand[] { v }, typeCode(to), null).typed(typeCode(to)));
+        return Operand.reg(r);
+    }
+
+    private int declareLocal(int slot, Ast.Type type) {
+        boolean fresh = !slotRegisters.containsKey(slot);
+        int r = typedRegisters.computeIfAbsent(List.of(slot, valueType(type)), k -> fresh ? slot : cfg.newRegister());
+        slotRegisters.put(slot, r);
+        return r;
+    }
+
+    private int register(Ast.Binding b) {
+        return slotRegisters.getOrDefault(b.index, b.index);
+    }
+
+    private boolean isVariable(int reg) {
+        return reg < cfg.locals || typedRegisters.containsValue(reg);
+    }
+
+    private Ast.Type declaredType(Ast.Binding b) {
+        return (b.global ? globalTypes : localTypes).get(b.index);
+    }
+
+    // tip elementa posle indeksiranja sa count indeksa
+    private static Ast.Type elementType(Ast.Type array, int count) {
+        Ast.Type t = array;
+        for (int i = 0; i < count && t != null; i++) t = t.inner;
+        return t;
+    }
+
+    private void jumpTo(BasicBlock target) {
+        if (!current.isTerminated()) current.terminate(Instr.jump(target));
+    }
+
+    private void branch(Expr cond, BasicBlock ifTrue, BasicBlock ifFalse) {
+        Operand c = cond.accept(this);
+        current.terminate(Instr.branch(c, ifTrue, ifFalse));
+    }
+
+    // posle loot-a se nastavlja u bloku do kog se ne moze doci; removeUnreachable ga brise
+    private void startUnreachable() {
+        current = cfg.newBlock();
+    }
+
+    private static boolean isSelfCall(Expr e, String name) {
+        return e instanceof Expr.Call c && c.callee.lexeme.equals(name);
+    }
+
+    private static boolean hasSelfTailCall(List<Stmt> stmts, String name) {
+        for (Stmt s : stmts) {
+            if (s instanceof Stmt.Return r && isSelfCall(r.expr, name)) return true;
+            if (s instanceof Stmt.BeginIf b) {
+                if (hasSelfTailCall(b.ifArm.block, name)) return true;
+                for (Stmt.BeginIf.Arm arm : b.orIfArms) if (hasSelfTailCall(arm.block, name)) return true;
+                if (b.elseBlock != null && hasSelfTailCall(b.elseBlock, name)) return true;
+            }
+            if (s instanceof Stmt.BeginFor f && hasSelfTailCall(f.body, name)) return true;
+            if (s instanceof Stmt.WhileStmt w && hasSelfTailCall(w.body, name)) return true;
+            if (s instanceof Stmt.DoWhileStmt d && hasSelfTailCall(d.body, name)) return true;
+        }
+        return false;
+    }
+
+    private void statements(List<Stmt> stmts) {
+        for (Stmt s : stmts) s.accept(this);
+    }
+
+    private void store(Ast.Binding b, Operand value) {
+        if (b.global) {
+            emit(new Instr(Opcode.STORE_GLOBAL, -1, new Operand[] { value }, b.index, null));
+            return;
+        }
+        // rezultat poslednje instrukcije se upisuje pravo u registar promenljive
+        if (value.isReg() && !isVariable(value.reg) && !current.instrs.isEmpty()) {
+            Instr last = current.instrs.get(current.instrs.size() - 1);
+            if (last.dst == value.reg && last.op != Instr.PHI) {
+                last.dst = register(b);
+                return;
+            }
+        }
+        Ast.Type t = declaredType(b);
+        emit(Instr.of(Instr.MOVE, register(b), value).typed(valueType(t)));
+    }
+
+    private Operand load(Ast.Binding b) {
+        if (!b.global) return Operand.reg(register(b));
+        int r = cfg.newRegister();
+        Ast.Type t = globalTypes.get(b.index);
+        emit(new Instr(Opcode.LOAD_GLOBAL, r, new Operand[0], b.index, null).typed(valueType(t)));
+        return Operand.reg(r);
+    }
+
+    private Operand[] arrayAccess(Ast.Binding array, List<Expr> indices, Expr value) {
+        Operand[] args = new Operand[1 + indices.size() + (value != null ? 1 : 0)];
+        args[0] = load(array);
+        for (int i = 0; i < indices.size(); i++) args[1 + i] = indices.get(i).accept(this);
+        if (value != null) {
+            Ast.Type element = elementType(declaredType(array), indices.size());
+            args[args.length - 1] = coerce(value.accept(this), value.inferredType, element);
+        }
+        return args;
+    }
+
+    // ================== STMT VISITOR ==================
+
+    @Override
+    public Void visitVarDecl(Stmt.VarDecl s) {
+        for (int i = 0; i < s.names.size(); i++) {
+            Ast.Binding b = s.bindings[i];
+            (b.global ? globalTypes : localTypes).put(b.index, s.type);
+            Expr value = s.values.size() > i ? s.values.get(i) : null;
+            Operand v;
+            if (value != null) {
+                v = value.accept(this);
+                if (!(value instanceof Expr.Cast) && value.inferredType != null && !Ast.sameType(s.type, value.inferredType)) {
+                    int r = cfg.newRegister();
+                    emit(new Instr(Opcode.CAST, r, new Operand[] { v }, typeCode(s.type), null).typed(typeCode(s.type)));
+                    v = Operand.reg(r);
+                }
+            } else if (!s.dims.isEmpty()) {
+                Operand[] dims = new Operand[s.dims.size()];
+                for (int d = 0; d < dims.length; d++) dims[d] = s.dims.get(d).accept(this);
+                int r = cfg.newRegister();
+                emit(new Instr(Opcode.NEW_ARRAY, r, dims, typeCode(elementType(s.type, s.dims.size())), null).typed(Opcode.TYPE_ARRAY));
+                v = Operand.reg(r);
+            } else {
+                v = Operand.constant(defaultValue(s.type));
+            }
+            if (!b.global) declareLocal(b.index, s.type);
+            store(b, v);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return s) {
+        if (start != null && isSelfCall(s.expr, function.name.lexeme)) {
+            // argumenti se prvo racunaju u privremene registre, jer mogu da citaju parametre
+            Expr.Call call = (Expr.Call) s.expr;
+            Operand[] args = new Operand[call.args.size()];
+            for (int i = 0; i < args.length; i++) {
+                Ast.Type t = function.params.get(i).type;
+                Operand v = coerce(call.args.get(i).accept(this), call.args.get(i).inferredType, t);
+                args[i] = v.isReg() ? emitValue(Instr.MOVE, valueType(t), v) : v;
+            }
+            for (int i = 0; i < args.length; i++) {
+                emit(Instr.of(Instr.MOVE, i, args[i]).typed(valueType(function.params.get(i).type)));
+            }
+            current.terminate(Instr.jump(start));
+            startUnreachable();
+            return null;
+        }
+        Operand v = s.expr != null ? coerce(s.expr.accept(this), s.expr.inferredType, returnType) : Operand.constant(0);
+        current.terminate(Instr.of(Opcode.RET, -1, v));
+        startUnreachable();
+        return null;
+    }
+
+    @Override
+    public Void visitAssign(Stmt.Assign s) {
+        if (s.lvalue.indices.isEmpty()) {
+            store(s.lvalue.binding, coerce(s.left.accept(this), s.left.inferredType, declaredType(s.lvalue.binding)));
+        } else {
+            emit(Instr.of(Opcode.STORE_ARRAY, -1, arrayAccess(s.lvalue.binding, s.lvalue.indices, s.left)));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitArrayAssign(Stmt.ArrayAssign s) {
+        emit(Instr.of(Opcode.STORE_ARRAY, -1, arrayAccess(s.target.binding, s.target.indices, s.value)));
+        return null;
+    }
+
+    @Override
+    public Void visitCallStmt(Stmt.CallStmt s) {
+        call(s.call, false);
+        return null;
+    }
+
+    @Override
+    public Void visitExprStmt(Stmt.ExprStmt s) {
+        s.expr.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitIncDec(Stmt.IncDec s) {
+        int op = s.op.type == TokenType.INC ? Opcode.ADD : Opcode.SUB;
+        if (s.target.indices.isEmpty()) {
+            store(s.target.binding, emitValue(op, Opcode.TYPE_INT, load(s.target.binding), Operand.constant(1)));
+        } else {
+            Operand[] access = arrayAccess(s.target.binding, s.target.indices, null);
+            Operand old = emitValue(Opcode.LOAD_ARRAY, Opcode.TYPE_INT, access);
+            Operand[] store = Arrays.copyOf(access, access.length + 1);
+            store[access.length] = emitValue(op, Opcode.TYPE_INT, old, Operand.constant(1));
+            emit(Instr.of(Opcode.STORE_ARRAY, -1, store));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBeginIf(Stmt.BeginIf s) {
+        if (s.ifArm.cond instanceof Expr.BooleanLiteral b && b.value) {
+            statements(s.ifArm.block);
+            return null;
+        }
+
+        BasicBlock end = cfg.newBlock();
+        List<Stmt.BeginIf.Arm> arms = new ArrayList<>();
+        arms.add(s.ifArm);
+        arms.addAll(s.orIfArms);
+
+        for (int i = 0; i < arms.size(); i++) {
+            boolean last = i == arms.size() - 1;
+            BasicBlock then = cfg.newBlock();
+            BasicBlock next = last && s.elseBlock == null ? end : cfg.newBlock();
+            branch(arms.get(i).cond, then, next);
+
+            current = then;
+            statements(arms.get(i).block);
+            jumpTo(end);
+            current = next;
+        }
+
+        if (s.elseBlock != null) {
+            statements(s.elseBlock);
+            jumpTo(end);
+        }
+        current = end;
+        return null;
+    }
+
+    @Override
+    public Void visitBeginFor(Stmt.BeginFor s) {
+        s.init.accept(this);
+        loop(s.cond, s.body, s.update);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.WhileStmt s) {
+        loop(s.cond, s.body, null);
+        return null;
+    }
+
+    private void loop(Expr cond, List<Stmt> body, Stmt update) {
+        BasicBlock header = cfg.newBlock();
+        BasicBlock bodyBlock = cfg.newBlock();
+        BasicBlock exit = cfg.newBlock();
+
+        jumpTo(header);
+        current = header;
+        branch(cond, bodyBlock, exit);
+
+        current = bodyBlock;
+        statements(body);
+        if (update != null) update.accept(this);
+        jumpTo(header);
+
+        current = exit;
+    }
+
+    @Override
+    public Void visitDoWhileStmt(Stmt.DoWhileStmt s) {
+        BasicBlock bodyBlock = cfg.newBlock();
+        BasicBlock exit = cfg.newBlock();
+
+        jumpTo(bodyBlock);
+        current = bodyBlock;
+        statements(s.body);
+        branch(s.cond, bodyBlock, exit);
+
+        current = exit;
+        return null;
+    }
+
+    // ================== EXPR VISITOR ==================
+
+    @Override
+    public Operand visitIntLiteral(Expr.IntLiteral e) {
+        return Operand.constant(e.value);
+    }
+
+    @Override
+    public Operand visitDoubleLiteral(Expr.DoubleLiteral e) {
+        return Operand.constant(e.value);
+    }
+
+    @Override
+    public Operand visitLongLiteral(Expr.LongLiteral e) {
+        return Operand.constant(e.value);
+    }
+
+    @Override
+    public Operand visitCharLiteral(Expr.CharLiteral e) {
+        return Operand.constant(e.value);
+    }
+
+    @Override
+    public Operand visitStringLiteral(Expr.StringLiteral e) {
+        return Operand.constant(e.value);
+    }
+
+    @Override
+    public Operand visitBooleanLiteral(Expr.BooleanLiteral e) {
+        return Operand.constant(e.value);
+    }
+
+    @Override
+    public Operand visitArrayLiteral(Expr.ArrayLiteral e) {
+        Operand[] elements = new Operand[e.elements.size()];
+        for (int i = 0; i < elements.length; i++) elements[i] = e.elements.get(i).accept(this);
+        return emitValue(Opcode.MAKE_ARRAY, Opcode.TYPE_ARRAY, elements);
+    }
+
+    @Override
+    public Operand visitIdent(Expr.Ident e) {
+        return load(e.binding);
+    }
+
+    @Override
+    public Operand visitIndex(Expr.Index e) {
+        return emitValue(Opcode.LOAD_ARRAY, typeOf(e), arrayAccess(e.binding, e.indices, null));
+    }
+
+    @Override
+    public Operand visitGrouping(Expr.Grouping e) {
+        return e.inner.accept(this);
+    }
+
+    @Override
+    public Operand visitCall(Expr.Call e) {
+        return call(e, true);
+    }
+
+    private Operand call(Expr.Call e, boolean needsValue) {
+        Operand[] args = new Operand[e.args.size()];
+        for (int i = 0; i < args.length; i++) args[i] = e.args.get(i).accept(this);
+
+        if (isBuiltin(e.callee)) {
+            emit(Instr.of(e.callee.type == TokenType.PRINT ? Opcode.COLLECT : Opcode.DROP, -1, args));
+            return Operand.constant(0);
+        }
+        int r = needsValue ? cfg.newRegister() : -1;
+        emit(new Instr(Opcode.CALL, r, args, 0, e.callee.lexeme).typed(needsValue ? typeOf(e) : -1));
+        return needsValue ? Operand.reg(r) : null;
+    }
+
+    @Override
+    public Operand visitBinary(Expr.Binary e) {
+        Operand l = e.left.accept(this);
+        Operand r = e.right.accept(this);
+        Ast.Type lt = e.left.inferredType;
+        Ast.Type rt = e.right.inferredType;
+        if (lt != null && rt != null && Ast.isNumeric(lt) && Ast.isNumeric(rt) && !Ast.sameType(lt, rt)) {
+            // poredjenje razlicitih numerickih tipova: uzi operand se siri
+            Ast.Type wider = rank(lt) >= rank(rt) ? lt : rt;
+            l = coerce(l, lt, wider);
+            r = coerce(r, rt, wider);
+        }
+        return emitValue(switch (e.op.type) {
+            case ADD -> Opcode.ADD;
+            case SUBTRACT -> Opcode.SUB;
+            case MULTIPLY -> Opcode.MUL;
+            case DIVIDE -> Opcode.DIV;
+            case PERCENT -> Opcode.MOD;
+            case CARET -> Opcode.POW;
+            case LT -> Opcode.LT;
+            case LE -> Opcode.LE;
+            case GT -> Opcode.GT;
+            case GE -> Opcode.GE;
+            case EQ -> Opcode.EQ;
+            case NEQ -> Opcode.NEQ;
+            case AND -> Opcode.AND;
+            case OR -> Opcode.OR;
+            case BIT_LSHIFT -> Opcode.SHL;
+            case BIT_RSHIFT -> Opcode.SHR;
+            case BIT_AND -> Opcode.BAND;
+            case BIT_OR -> Opcode.BOR;
+            default -> throw new IllegalStateException("Unknown binary op: " + e.op.type);
+        }, typeOf(e), l, r);
+    }
+
+    @Override
+    public Operand visitUnary(Expr.Unary e) {
+        Operand v = e.right.accept(this);
+        return emitValue(switch (e.op.type) {
+            case SUBTRACT -> Opcode.NEG;
+            case NOT -> Opcode.NOT;
+            default -> throw new IllegalStateException("Unknown unary op: " + e.op.type);
+        }, typeOf(e), v);
+    }
+
+    @Override
+    public Operand visitTernary(Expr.Ternary e) {
+        int result = cfg.newRegister();
+        BasicBlock thenBlock = cfg.newBlock();
+        BasicBlock elseBlock = cfg.newBlock();
+        BasicBlock end = cfg.newBlock();
+        branch(e.cond, thenBlock, elseBlock);
+
+        current = thenBlock;
+        emit(Instr.of(Instr.MOVE, result, e.thenExpr.accept(this)).typed(typeOf(e)));
+        jumpTo(end);
+
+        current = elseBlock;
+        emit(Instr.of(Instr.MOVE, result, e.elseExpr.accept(this)).typed(typeOf(e)));
+        jumpTo(end);
+
+        current = end;
+        return Operand.reg(result);
+    }
+
+    @Override
+    public Operand visitCast(Expr.Cast e) {
+        Operand v = e.expr.accept(this);
+        int r = cfg.newRegister();
+        emit(new Instr(Opcode.CAST, r, new Operand[] { v }, typeCode(e.type), null).typed(typeCode(e.type)));
+        return Operand.reg(r);
+    }
+
+    // ================== HELPERS ==================
+
+    private static int typeOf(Expr e) {
+        return valueType(e.inferredType);
+    }
+
+    // tip registra za vrednost datog tipa; -1 ako vrednosti nema (void) ili je tip nepoznat
+    private static int valueType(Ast.Type t) {
+        if (t == null) return -1;
+        return switch (t.kind) {
+            case VOID, ANY -> -1;
+            default -> typeCode(t);
+        };
+    }
+
+    private static int rank(Ast.Type t) {
+        return switch (t.kind) {
+            case INT -> 0;
+            case LONG -> 1;
+            default -> 2;
+        };
+    }
+
+    static int typeCode(Ast.Type type) {
+        return switch (type.kind) {
+            case INT -> Opcode.TYPE_INT;
+            case LONG -> Opcode.TYPE_LONG;
+            case DOUBLE -> Opcode.TYPE_DOUBLE;
+            case CHAR -> Opcode.TYPE_CHAR;
+            case BOOLEAN -> Opcode.TYPE_BOOL;
+            case STRING -> Opcode.TYPE_STRING;
+            case ARRAY -> Opcode.TYPE_ARRAY;
+            default -> throw new IllegalStateException("Unsupported type: " + type.kind);
+        };
+    }
+
+    private static Object defaultValue(Ast.Type type) {
+        return switch (type.kind) {
+            case DOUBLE -> 0.0;
+            case LONG -> 0L;
+            case BOOLEAN -> false;
+            case STRING -> "";
+            default -> 0;
+        };
+    }
+
+    private static boolean isBuiltin(Token callee) {
+        return callee.type == TokenType.PRINT || callee.type == TokenType.SCAN;
+    }
+}
@@ -0,0 +1,458 @@
+package intermidiate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// minimalni pisac .class fajlova za JvmCodeGenerator
+// verzija 49 se verifikuje zakljucivanjem tipova, pa StackMapTable nije potreban
+public final class ClassFile {
+
+    private static final int MAJOR_VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_SUPER = 0x0020;
+
+    // JVM opkodovi koje generator koristi
+    public static final int ACONST_NULL = 0x01;
+    public static final int ICONST_0 = 0x03;
+    public static final int LCONST_0 = 0x09;
+    public static final int DCONST_0 = 0x0e;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int ILOAD = 0x15;
+    public static final int LLOAD = 0x16;
+    public static final int DLOAD = 0x18;
+    public static final int ALOAD = 0x19;
+    public static final int IALOAD = 0x2e;
+    public static final int LALOAD = 0x2f;
+    public static final int DALOAD = 0x31;
+    public static final int AALOAD = 0x32;
+    public static final int BALOAD = 0x33;
+    public static final int CALOAD = 0x34;
+    public static final int ISTORE = 0x36;
+    public static final int LSTORE = 0x37;
+    public static final int DSTORE = 0x39;
+    public static final int ASTORE = 0x3a;
+    public static final int IASTORE = 0x4f;
+    public static final int LASTORE = 0x50;
+    public static final int DASTORE = 0x52;
+    public static final int AASTORE = 0x53;
+    public static final int BASTORE = 0x54;
+    public static final int CASTORE = 0x55;
+    public static final int POP = 0x57;
+    public static final int POP2 = 0x58;
+    public static final int DUP = 0x59;
+    public static final int DUP2 = 0x5c;
+    public static final int IADD = 0x60;
+    public static final int LADD = 0x61;
+    public static final int DADD = 0x63;
+    public static final int ISUB = 0x64;
+    public static final int LSUB = 0x65;
+    public static final int DSUB = 0x67;
+    public static final int IMUL = 0x68;
+    public static final int LMUL = 0x69;
+    public static final int DMUL = 0x6b;
+    public static final int IDIV = 0x6c;
+    public static final int LDIV = 0x6d;
+    public static final int DDIV = 0x6f;
+    public static final int IREM = 0x70;
+    public static final int LREM = 0x71;
+    public static final int DREM = 0x73;
+    public static final int INEG = 0x74;
+    public static final int LNEG = 0x75;
+    public static final int DNEG = 0x77;
+    public static final int ISHL = 0x78;
+    public static final int ISHR = 0x7a;
+    public static final int IAND = 0x7e;
+    public static final int IOR = 0x80;
+    public static final int IXOR = 0x82;
+    public static final int IINC = 0x84;
+    public static final int I2L = 0x85;
+    public static final int I2D = 0x87;
+    public static final int L2I = 0x88;
+    public static final int L2D = 0x8a;
+    public static final int D2I = 0x8e;
+    public static final int D2L = 0x8f;
+    public static final int I2C = 0x92;
+    public static final int LCMP = 0x94;
+    public static final int DCMPL = 0x97;
+    public static final int DCMPG = 0x98;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IFLT = 0x9b;
+    public static final int IFGE = 0x9c;
+    public static final int IFGT = 0x9d;
+    public static final int IFLE = 0x9e;
+    public static final int IF_ICMPEQ = 0x9f;
+    public static final int IF_ICMPNE = 0xa0;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int LRETURN = 0xad;
+    public static final int DRETURN = 0xaf;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int GETSTATIC = 0xb2;
+    public static final int PUTSTATIC = 0xb3;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int NEWARRAY = 0xbc;
+    public static final int ANEWARRAY = 0xbd;
+    public static final int MULTIANEWARRAY = 0xc5;
+
+    private static final int WIDE = 0xc4;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+
+    private final String name;
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<Code> methods = new ArrayList<>();
+
+    public ClassFile(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /* ================= CONSTANT POOL ================= */
+
+    private int utf8(String s) {
+        return entry("U" + s, 1, out -> {
+            out.writeByte(1);
+            out.writeUTF(s);
+        });
+    }
+
+    private int classRef(String internalName) {
+        int n = utf8(internalName);
+        return entry("C" + internalName, 1, out -> {
+            out.writeByte(7);
+            out.writeShort(n);
+        });
+    }
+
+    private int nameAndType(String name, String desc) {
+        int n = utf8(name);
+        int d = utf8(desc);
+        return entry("N" + name + ":" + desc, 1, out -> {
+            out.writeByte(12);
+            out.writeShort(n);
+            out.writeShort(d);
+        });
+    }
+
+    private int memberRef(int tag, String owner, String name, String desc) {
+        int c = classRef(owner);
+        int nt = nameAndType(name, desc);
+        return entry("M" + tag + owner + "." + name + ":" + desc, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(c);
+            out.writeShort(nt);
+        });
+    }
+
+    private int constant(Object value) {
+        if (value instanceof Integer i) {
+            return entry("I" + i, 1, out -> {
+                out.writeByte(3);
+                out.writeInt(i);
+            });
+        }
+        if (value instanceof Long l) {
+            return entry("J" + l, 2, out -> {
+                out.writeByte(5);
+                out.writeLong(l);
+            });
+        }
+        if (value instanceof Double d) {
+            return entry("D" + Double.doubleToRawLongBits(d), 2, out -> {
+                out.writeByte(6);
+                out.writeDouble(d);
+            });
+        }
+        String s = (String) value;
+        int u = utf8(s);
+        return entry("S" + s, 1, out -> {
+            out.writeByte(8);
+            out.writeShort(u);
+        });
+    }
+
+    private interface PoolWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int entry(String key, int slots, PoolWriter writer) {
+        Integer existing = poolIndex.get(key);
+        if (existing != null) return existing;
+        try {
+            writer.write(pool);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        int index = poolCount;
+        poolCount += slots;
+        if (poolCount > 0xffff) throw new IllegalStateException("Constant pool too large");
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    /* ================= CLANOVI ================= */
+
+    public void addStaticField(String fieldName, String desc) {
+        int n = utf8(fieldName);
+        int d = utf8(desc);
+        fields.add(new byte[] {
+                0, ACC_PUBLIC | ACC_STATIC,
+                (byte) (n >> 8), (byte) n,
+                (byte) (d >> 8), (byte) d,
+                0, 0
+        });
+    }
+
+    public Code addStaticMethod(String methodName, String desc, int argSlots) {
+        Code code = new Code(methodName, desc, argSlots);
+        methods.add(code);
+        return code;
+    }
+
+    public byte[] toBytes() {
+        try {
+            int thisClass = classRef(name);
+            int superClass = classRef("java/lang/Object");
+            int codeAttr = utf8("Code");
+            List<int[]> methodHeaders = new ArrayList<>();
+            for (Code m : methods) methodHeaders.add(new int[] { utf8(m.name), utf8(m.desc) });
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+
+            out.writeShort(fields.size());
+            for (byte[] f : fields) out.write(f);
+
+            out.writeShort(methods.size());
+            for (int i = 0; i < methods.size(); i++) {
+                Code m = methods.get(i);
+                byte[] body = m.finish();
+                out.writeShort(ACC_PUBLIC | ACC_STATIC);
+                out.writeShort(methodHeaders.get(i)[0]);
+                out.writeShort(methodHeaders.get(i)[1]);
+                out.writeShort(1);
+                out.writeShort(codeAttr);
+                out.writeInt(12 + body.length);
+                out.writeShort(m.maxStack);
+                out.writeShort(m.maxLocals);
+                out.writeInt(body.length);
+                out.write(body);
+                out.writeShort(0);
+                out.writeShort(0);
+            }
+
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* ================= KOD METODE ================= */
+
+    public static final class Label {
+        private int position = -1;
+        private final List<Integer> fixups = new ArrayList<>(); // adrese instrukcija skoka
+    }
+
+    public final class Code {
+        private final String name;
+        private final String desc;
+        private byte[] buf = new byte[128];
+        private int size = 0;
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+        private final List<Label> labels = new ArrayList<>();
+
+        private Code(String name, String desc, int argSlots) {
+            this.name = name;
+            this.desc = desc;
+            this.maxLocals = argSlots;
+        }
+
+        private void u1(int b) {
+            if (size == buf.length) buf = Arrays.copyOf(buf, size * 2);
+            buf[size++] = (byte) b;
+        }
+
+        private void u2(int v) {
+            u1(v >> 8);
+            u1(v);
+        }
+
+        // svaka instrukcija prijavljuje promenu dubine steka (long/double zauzimaju 2)
+        private void adjust(int delta) {
+            stack += delta;
+            if (stack > maxStack) maxStack = stack;
+        }
+
+        public int stackDepth() {
+            return stack;
+        }
+
+        // posle bezuslovnog skoka dubina na sledecoj labeli se zadaje rucno
+        public void setStackDepth(int depth) {
+            stack = depth;
+        }
+
+        public void useLocals(int slots) {
+            if (slots > maxLocals) maxLocals = slots;
+        }
+
+        public void op(int opcode, int delta) {
+            u1(opcode);
+            adjust(delta);
+        }
+
+        public void opByte(int opcode, int operand, int delta) {
+            u1(opcode);
+            u1(operand);
+            adjust(delta);
+        }
+
+        public void pushInt(int v) {
+            if (v >= -1 && v <= 5) op(ICONST_0 + v, 1);
+            else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) opByte(BIPUSH, v, 1);
+            else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(v);
+                adjust(1);
+            } else ldc(v);
+        }
+
+        public void ldc(Object value) {
+            int index = constant(value);
+            if (value instanceof Long || value instanceof Double) {
+                u1(LDC2_W);
+                u2(index);
+                adjust(2);
+            } else if (index < 256) {
+                opByte(LDC, index, 1);
+            } else {
+                u1(LDC_W);
+                u2(index);
+                adjust(1);
+            }
+        }
+
+        public void local(int opcode, int slot, int delta) {
+            if (slot > 255) {
+                u1(WIDE);
+                u1(opcode);
+                u2(slot);
+            } else {
+                u1(opcode);
+                u1(slot);
+            }
+            adjust(delta);
+        }
+
+        public void iinc(int slot, int amount) {
+            if (slot > 255 || amount < Byte.MIN_VALUE || amount > Byte.MAX_VALUE) {
+                u1(WIDE);
+                u1(IINC);
+                u2(slot);
+                u2(amount);
+            } else {
+                u1(IINC);
+                u1(slot);
+                u1(amount);
+            }
+        }
+
+        public void field(int opcode, String owner, String fieldName, String fieldDesc, int delta) {
+            u1(opcode);
+            u2(memberRef(9, owner, fieldName, fieldDesc));
+            adjust(delta);
+        }
+
+        public void invokeStatic(String owner, String methodName, String methodDesc, int delta) {
+            u1(INVOKESTATIC);
+            u2(memberRef(10, owner, methodName, methodDesc));
+            adjust(delta);
+        }
+
+        public void newArray(int atype) {
+            opByte(NEWARRAY, atype, 0);
+        }
+
+        public void newObjectArray(String elementClass) {
+            u1(ANEWARRAY);
+            u2(classRef(elementClass));
+        }
+
+        public void multiNewArray(String arrayDesc, int dims) {
+            u1(MULTIANEWARRAY);
+            u2(classRef(arrayDesc));
+            u1(dims);
+            adjust(1 - dims);
+        }
+
+        public Label newLabel() {
+            Label l = new Label();
+            labels.add(l);
+            return l;
+        }
+
+        public void placeLabel(Label l) {
+            l.position = size;
+        }
+
+        public void jump(int opcode, Label target, int delta) {
+            target.fixups.add(size);
+            u1(opcode);
+            u2(0);
+            adjust(delta);
+        }
+
+        private byte[] finish() {
+            for (Label l : labels) {
+                for (int at : l.fixups) {
+                    if (l.position < 0) throw new IllegalStateException("Unplaced label in " + name);
+                    int offset = l.position - at;
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+                        throw new IllegalStateException("Method too large for JVM backend: " + name);
+                    buf[at + 1] = (byte) (offset >> 8);
+                    buf[at + 2] = (byte) offset;
+                }
+            }
+            if (size > 0xffff) throw new IllegalStateException("Method too large for JVM backend: " + name);
+            return Arrays.copyOf(buf, size);
+        }
+    }
+}
@@ -4,137 +4,236 @@ import parser.Ast;
 import parser.Expr;
 import parser.Stmt;
 import lexer.token.Token;
+import lexer.token.TokenType;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public final class CodeGenerator implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
-    private final List<String> instructions = new ArrayList<>();
+    private int[] code = new int[256];
+    private int size = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    // labela je indeks u labelPositions, skokovi se krpe na kraju
+    private int[] labelPositions = new int[32];
     private int labelCounter = 0;
-    private final Map<String, Integer> labelPositions = new HashMap<>();
-    private final List<String> unresolvedLabels = new ArrayList<>();
+    private int[] patchSites = new int[64];
+    private int patchCount = 0;
+
+    private final Map<String, Integer> functionLabels = new HashMap<>();
+    private final Map<String, Integer> functions = new LinkedHashMap<>();
+    private final Map<String, Integer> frameSizes = new HashMap<>();
+
+    // deklarisani tipovi za implicitna sirenja (gold -> diamond) pri dodeli i loot-u
+    private Ast.Type returnType;
+    private String currentFunction;
+    private int tailCalls = 0;
+    private final Map<Integer, Ast.Type> localTypes = new HashMap<>();
+    private final Map<Integer, Ast.Type> globalTypes = new HashMap<>();
+
+    // ocekuje stablo na kome je vec pokrenut semantic.Resolver
+    public Bytecode generate(Ast.Program program) {
+        int resultType = Opcode.TYPE_INT;
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.FuncDef func) {
+                frameSizes.put(func.name.lexeme, func.frameSize);
+                if (func.name.lexeme.equals("main") && valueType(func.returnType)) resultType = typeCode(func.returnType);
+            }
+        }
+
 
-    public List<String> generate(Ast.Program program) {
+        // globalne promenljive i top-level naredbe se izvrsavaju pre main-a
         for (Ast.TopItem item : program.items) {
             if (item instanceof Ast.TopStmt topStmt) {
                 topStmt.stmt.accept(this);
             } else if (item instanceof Ast.TopVarDecl topVar) {
                 topVar.decl.accept(this);
-            } else if (item instanceof Ast.FuncDef func) {
-                addInstruction("label " + func.name.lexeme);
-                for (Stmt stmt : func.body) {
-                    stmt.accept(this);
-                }
             }
         }
-        return resolveLabels();
+        emitCall("main");
+        emit(Opcode.HALT, resultType);
+
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.FuncDef func) {
+                generateFunc(func);
+            }
+        }
+        resolveLabels();
+        return new Bytecode(Arrays.copyOf(code, size), constants.toArray(), functions, program.globalCount);
     }
 
-    private void addInstruction(String instr) {
-        if (instr.startsWith("label ")) {
-            String labelName = instr.substring(6);
-            labelPositions.put(labelName, instructions.size());
+    private void generateFunc(Ast.FuncDef func) {
+        functions.put(func.name.lexeme, size);
+        placeLabel(functionLabel(func.name.lexeme));
+        currentFunction = func.name.lexeme;
+        returnType = func.returnType;
+        localTypes.clear();
+        for (int i = 0; i < func.params.size(); i++) localTypes.put(i, func.params.get(i).type);
+
+        // argumenti su na steku redom, poslednji je na vrhu; parametri su slotovi 0..n-1
+        for (int i = func.params.size() - 1; i >= 0; i--) {
+            emit(Opcode.STORE_LOCAL, i);
         }
-        instructions.add(instr);
-    }
-
-    private List<String> resolveLabels() {
-        List<String> resolved = new ArrayList<>();
-
-        for (String instr : instructions) {
-            if (instr.startsWith("label ")) {
-                String labelName = instr.substring(6);
-                resolved.add("label " + labelName);
-            } else if (instr.startsWith("jmp ")) {
-                String target = instr.substring(4);
-                if (labelPositions.containsKey(target)) {
-                    resolved.add("jmp " + labelPositions.get(target));
-                } else {
-                    resolved.add(instr);
-                }
-            } else if (instr.startsWith("jmp_if_false ")) {
-                String target = instr.substring(13);
-                if (labelPositions.containsKey(target)) {
-                    resolved.add("jmp_if_false " + labelPositions.get(target));
-                } else {
-                    resolved.add(instr);
-                }
-            } else if (instr.startsWith("jmp_if_true ")) {
-                String target = instr.substring(12);
-                if (labelPositions.containsKey(target)) {
-                    resolved.add("jmp_if_true " + labelPositions.get(target));
-                } else {
-                    resolved.add(instr);
-                }
-            } else if (instr.startsWith("call ")) {
-                String target = instr.substring(5);
-                if (labelPositions.containsKey(target)) {
-                    resolved.add("call " + labelPositions.get(target));
-                } else {
-                    resolved.add(instr);
-                }
-            } else {
-                resolved.add(instr);
+
+        for (Stmt stmt : func.body) {
+            stmt.accept(this);
+        }
+
+        if (func.body.isEmpty() || !(func.body.get(func.body.size() - 1) instanceof Stmt.Return)) {
+            emit(Opcode.PUSH, constant(0));
+            emit(Opcode.RET);
+        }
+    }
+
+    /* ================= EMITOVANJE ================= */
+
+    private void emit(int op) {
+        ensureCapacity(1);
+        code[size++] = op;
+    }
+
+    private void emit(int op, int a) {
+        ensureCapacity(2);
+        code[size++] = op;
+        code[size++] = a;
+    }
+
+    private void emit(int op, int a, int b) {
+        ensureCapacity(3);
+        code[size++] = op;
+        code[size++] = a;
+        code[size++] = b;
+    }
+
+    private void ensureCapacity(int n) {
+        if (size + n > code.length) code = Arrays.copyOf(code, Math.max(code.length * 2, size + n));
+    }
+
+    private void emitJump(int op, int label) {
+        emit(op, label);
+        patchSite(size - 1);
+    }
+
+    private void patchSite(int site) {
+        if (patchCount == patchSites.length) patchSites = Arrays.copyOf(patchSites, patchCount * 2);
+        patchSites[patchCount++] = site;
+    }
+
+    private int newLabel() {
+        if (labelCounter == labelPositions.length) labelPositions = Arrays.copyOf(labelPositions, labelCounter * 2);
+        labelPositions[labelCounter] = -1;
+        return labelCounter++;
+    }
+
+    private void placeLabel(int label) {
+        labelPositions[label] = size;
+    }
+
+    private int functionLabel(String name) {
+        return functionLabels.computeIfAbsent(name, n -> newLabel());
+    }
+
+    private void resolveLabels() {
+        for (int i = 0; i < patchCount; i++) {
+            int site = patchSites[i];
+            int target = labelPositions[code[site]];
+            if (target < 0) {
+                String func = functionLabels.entrySet().stream()
+                        .filter(en -> en.getValue() == code[site])
+                        .map(Map.Entry::getKey)
+                        .findFirst().orElse("L" + code[site]);
+                throw new IllegalStateException("Unresolved label: " + func);
             }
+            code[site] = target;
         }
+    }
 
-        return resolved;
+    private int constant(Object value) {
+        return constantIndex.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return constants.size() - 1;
+        });
+    }
+
+    private void emitLoad(Ast.Binding b) {
+        emit(b.global ? Opcode.LOAD_GLOBAL : Opcode.LOAD_LOCAL, b.index);
     }
 
-    private String newLabel() {
-        return "L" + (labelCounter++);
+    private void emitStore(Ast.Binding b) {
+        emit(b.global ? Opcode.STORE_GLOBAL : Opcode.STORE_LOCAL, b.index);
     }
 
     @Override
     public Void visitVarDecl(Stmt.VarDecl s) {
         for (int i = 0; i < s.names.size(); i++) {
             Expr value = s.values.size() > i ? s.values.get(i) : null;
+            (s.bindings[i].global ? globalTypes : localTypes).put(s.bindings[i].index, s.type);
 
             if (value != null) {
                 value.accept(this);
 
                 if (!(value instanceof Expr.Cast)) {
                     if (value.inferredType != null && !Ast.sameType(s.type, value.inferredType)) {
-                        String targetType = switch (s.type.kind) {
-                            case INT -> "int";
-                            case LONG -> "long";
-                            case DOUBLE -> "double";
-                            case CHAR -> "char";
-                            case BOOLEAN -> "bool";
-                            case STRING -> "string";
-                            default -> throw new IllegalStateException("Unsupported var type: " + s.type.kind);
-                        };
-                        addInstruction("cast " + targetType);
+                        emit(Opcode.CAST, typeCode(value.inferredType), typeCode(s.type));
                     }
                 }
+            } else if (!s.dims.isEmpty()) {
+                s.dims.forEach(dim -> dim.accept(this));
+                emit(Opcode.NEW_ARRAY, s.dims.size(), typeCode(elementType(s.type, s.dims.size())));
             } else {
-                addInstruction("push 0");
+                emit(Opcode.PUSH, constant(defaultValue(s.type)));
             }
 
-            addInstruction("pop " + s.names.get(i).lexeme);
+            emitStore(s.bindings[i]);
         }
         return null;
     }
 
+    public int getTailCallCount() {
+        return tailCalls;
+    }
+
     @Override
     public Void visitReturn(Stmt.Return s) {
+        if (s.expr instanceof Expr.Call call && call.callee.lexeme.equals(currentFunction)) {
+            // loot f(...) u funkciji f: argumenti idu na stek kao za call, ali bez novog okvira
+            for (Expr arg : call.args) arg.accept(this);
+            emit(Opcode.TAILCALL, functionLabel(currentFunction), frameSizes.getOrDefault(currentFunction, 0));
+            patchSite(size - 2);
+            tailCalls++;
+            return null;
+        }
         if (s.expr != null) {
             s.expr.accept(this);
+            emitWidening(s.expr.inferredType, returnType);
         } else {
-            addInstruction("push 0");
+            emit(Opcode.PUSH, constant(0));
         }
-        addInstruction("ret");
+        emit(Opcode.RET);
         return null;
     }
 
     @Override
     public Void visitAssign(Stmt.Assign s) {
-        s.left.accept(this);
-        s.lvalue.indices.forEach(idx -> idx.accept(this));
-        addInstruction("pop " + s.lvalue.name.lexeme);
+        Ast.Type target = elementType(declaredType(s.lvalue.binding), s.lvalue.indices.size());
+        if (s.lvalue.indices.isEmpty()) {
+            s.left.accept(this);
+            emitWidening(s.left.inferredType, target);
+            emitStore(s.lvalue.binding);
+        } else {
+            emitLoad(s.lvalue.binding);
+            s.lvalue.indices.forEach(idx -> idx.accept(this));
+            s.left.accept(this);
+            emitWidening(s.left.inferredType, target);
+            emit(Opcode.STORE_ARRAY, s.lvalue.indices.size(), typeCode(target));
+        }
         return null;
     }
 
@@ -143,38 +242,44 @@ public final class CodeGenerator implements Expr.Visitor<Void>, Stmt.Visitor<Voi
         for (Expr arg : s.call.args) {
             arg.accept(this);
         }
-        addInstruction("call " + s.call.callee.lexeme);
+        emitCall(s.call);
+        if (!isBuiltin(s.call.callee)) {
+            // povratna vrednost se ne koristi
+            emit(Opcode.POP);
+        }
         return null;
     }
 
     @Override
     public Void visitBeginIf(Stmt.BeginIf s) {
-        String endLabel = newLabel();
+        if (s.ifArm.cond instanceof Expr.BooleanLiteral b && b.value) {
+            // grana koja se uvek izvrsava (ostaje kao dig samo zbog opsega promenljivih)
+            for (Stmt stmt : s.ifArm.block) stmt.accept(this);
+            return null;
+        }
+
+        int endLabel = newLabel();
 
         // prvi ifArm
-        String nextLabel = s.orIfArms.isEmpty() && s.elseBlock == null ? endLabel : newLabel();
+        int nextLabel = s.orIfArms.isEmpty() && s.elseBlock == null ? endLabel : newLabel();
         s.ifArm.cond.accept(this);
-        addInstruction("jmp_if_false " + nextLabel);
+        emitJump(Opcode.JMP_IF_FALSE, nextLabel);
 
         for (Stmt stmt : s.ifArm.block) stmt.accept(this);
-        if (!nextLabel.equals(endLabel)) {
-            addInstruction("jmp " + endLabel);
-        }
-        if (!nextLabel.equals(endLabel)) {
-            addInstruction("label " + nextLabel);
+        if (nextLabel != endLabel) {
+            emitJump(Opcode.JMP, endLabel);
+            placeLabel(nextLabel);
         }
 
         for (Stmt.BeginIf.Arm arm : s.orIfArms) {
-            String armNext = (s.elseBlock == null && arm == s.orIfArms.get(s.orIfArms.size() - 1)) ? endLabel : newLabel();
+            int armNext = (s.elseBlock == null && arm == s.orIfArms.get(s.orIfArms.size() - 1)) ? endLabel : newLabel();
             arm.cond.accept(this);
-            addInstruction("jmp_if_false " + armNext);
+            emitJump(Opcode.JMP_IF_FALSE, armNext);
 
             for (Stmt stmt : arm.block) stmt.accept(this);
-            if (!armNext.equals(endLabel)) {
-                addInstruction("jmp " + endLabel);
-            }
-            if (!armNext.equals(endLabel)) {
-                addInstruction("label " + armNext);
+            if (armNext != endLabel) {
+                emitJump(Opcode.JMP, endLabel);
+                placeLabel(armNext);
             }
         }
 
@@ -182,67 +287,112 @@ public final class CodeGenerator implements Expr.Visitor<Void>, Stmt.Visitor<Voi
             for (Stmt stmt : s.elseBlock) stmt.accept(this);
         }
 
-        addInstruction("label " + endLabel);
+        placeLabel(endLabel);
         return null;
     }
 
     @Override
     public Void visitBeginFor(Stmt.BeginFor s) {
+        int startLabel = newLabel();
+        int endLabel = newLabel();
+
+        if (s.vectorizable) {
+            // lo i hi pa kernel; kad kernel ne moze da se izvrsi, ide obicna petlja ispod
+            s.init.values.get(0).accept(this);
+            bound(s).right.accept(this);
+            emit(Opcode.VECTOR_LOOP, endLabel, constant(KernelBuilder.build(s)));
+            patchSite(size - 2);
+        }
         s.init.accept(this);
 
-        String startLabel = newLabel();
-        String endLabel = newLabel();
+        if (s.parallel != null) {
+            // hi se racuna jednom, u slot limit; radnik dobija svoj deo opsega u brojacu i
+            // limit-u i izvrsava petlju od startLabel do end_parallel
+            bound(s).right.accept(this);
+            emit(Opcode.STORE_LOCAL, s.parallel.limit);
+            ParallelLoop loop = new ParallelLoop(s.init.bindings[0].index, s.parallel.limit, bound(s).op.type == TokenType.LE,
+                    frameSizes.getOrDefault(currentFunction, 0), s.parallel.written, s.parallel.read);
+            emit(Opcode.PARALLEL_LOOP, endLabel, constant(loop));
+            patchSite(size - 2);
+        }
 
-        addInstruction("label " + startLabel);
+        placeLabel(startLabel);
 
-        s.cond.accept(this);
-        addInstruction("jmp_if_false " + endLabel);
+        if (s.parallel != null) {
+            emitLoad(s.init.bindings[0]);
+            emit(Opcode.LOAD_LOCAL, s.parallel.limit);
+            emit(bound(s).op.type == TokenType.LE ? Opcode.ILE : Opcode.ILT);
+        } else {
+            s.cond.accept(this);
+        }
+        emitJump(Opcode.JMP_IF_FALSE, endLabel);
 
         for (Stmt stmt : s.body) stmt.accept(this);
 
         if (s.update != null) s.update.accept(this);
 
-        addInstruction("jmp " + startLabel);
-        addInstruction("label " + endLabel);
+        emitJump(Opcode.JMP, startLabel);
+        placeLabel(endLabel);
+        if (s.parallel != null) emit(Opcode.END_PARALLEL);
 
         return null;
     }
 
+    // uslov i < hi ili i <= hi petlje koju je oznacio LoopVectorizer ili LoopParallelizer
+    private static Expr.Binary bound(Stmt.BeginFor s) {
+        Expr cond = s.cond;
+        while (cond instanceof Expr.Grouping g) cond = g.inner;
+        return (Expr.Binary) cond;
+    }
+
     @Override
     public Void visitIncDec(Stmt.IncDec s) {
-        addInstruction("push " + s.target.name.lexeme);
-        addInstruction(s.op.type.name().toLowerCase());
-        addInstruction("pop " + s.target.name.lexeme);
+        int op = s.op.type == TokenType.INC ? Opcode.INC : Opcode.DEC;
+        if (s.target.indices.isEmpty()) {
+            emitLoad(s.target.binding);
+            emit(op);
+            emitStore(s.target.binding);
+        } else {
+            // a[i]++: niz i indeksi se postavljaju dva puta, za store i za load
+            int count = s.target.indices.size();
+            emitLoad(s.target.binding);
+            s.target.indices.forEach(idx -> idx.accept(this));
+            emitLoad(s.target.binding);
+            s.target.indices.forEach(idx -> idx.accept(this));
+            emit(Opcode.LOAD_ARRAY, count, Opcode.TYPE_INT);
+            emit(op);
+            emit(Opcode.STORE_ARRAY, count, Opcode.TYPE_INT);
+        }
         return null;
     }
 
     @Override
     public Void visitWhileStmt(Stmt.WhileStmt s) {
-        String startLabel = newLabel();
-        String endLabel = newLabel();
+        int startLabel = newLabel();
+        int endLabel = newLabel();
 
-        addInstruction("label " + startLabel);
+        placeLabel(startLabel);
 
         s.cond.accept(this);
-        addInstruction("jmp_if_false " + endLabel);
+        emitJump(Opcode.JMP_IF_FALSE, endLabel);
 
         for (Stmt stmt : s.body) stmt.accept(this);
 
-        addInstruction("jmp " + startLabel);
-        addInstruction("label " + endLabel);
+        emitJump(Opcode.JMP, startLabel);
+        placeLabel(endLabel);
 
         return null;
     }
 
     @Override
     public Void visitDoWhileStmt(Stmt.DoWhileStmt s) {
-        String startLabel = newLabel();
-        addInstruction("label " + startLabel);
+        int startLabel = newLabel();
+        placeLabel(startLabel);
 
         for (Stmt stmt : s.body) stmt.accept(this);
 
         s.cond.accept(this);
-        addInstruction("jmp_if_true " + startLabel);
+        emitJump(Opcode.JMP_IF_TRUE, startLabel);
 
         return null;
     }
@@ -250,14 +400,18 @@ public final class CodeGenerator implements Expr.Visitor<Void>, Stmt.Visitor<Voi
     @Override
     public Void visitExprStmt(Stmt.ExprStmt s) {
         s.expr.accept(this);
+        emit(Opcode.POP);
         return null;
     }
 
     @Override
     public Void visitArrayAssign(Stmt.ArrayAssign s) {
+        emitLoad(s.target.binding);
         s.target.indices.forEach(idx -> idx.accept(this));
         s.value.accept(this);
-        addInstruction("store_array " + s.target.name.lexeme);
+        Ast.Type element = elementType(declaredType(s.target.binding), s.target.indices.size());
+        emitWidening(s.value.inferredType, element);
+        emit(s.inBounds ? Opcode.STORE_ARRAY_UNCHECKED : Opcode.STORE_ARRAY, s.target.indices.size(), typeCode(element));
         return null;
     }
 
@@ -266,55 +420,56 @@ public final class CodeGenerator implements Expr.Visitor<Void>, Stmt.Visitor<Voi
     @Override
     public Void visitArrayLiteral(Expr.ArrayLiteral e) {
         for (Expr el : e.elements) el.accept(this);
-        addInstruction("make_array " + e.elements.size());
+        emit(Opcode.MAKE_ARRAY, e.elements.size(), typeCode(e.inferredType.inner));
         return null;
     }
 
     @Override
     public Void visitIntLiteral(Expr.IntLiteral e) {
-        addInstruction("push " + e.value);
+        emit(Opcode.PUSH, constant(e.value));
         return null;
     }
 
     @Override
     public Void visitDoubleLiteral(Expr.DoubleLiteral e) {
-        addInstruction("push " + e.value);
+        emit(Opcode.PUSH, constant(e.value));
         return null;
     }
 
     @Override
     public Void visitLongLiteral(Expr.LongLiteral e) {
-        addInstruction("push " + e.value);
+        emit(Opcode.PUSH, constant(e.value));
         return null;
     }
 
     @Override
     public Void visitCharLiteral(Expr.CharLiteral e) {
-        addInstruction("push '" + e.value + "'");
+        emit(Opcode.PUSH, constant(e.value));
         return null;
     }
 
     @Override
     public Void visitStringLiteral(Expr.StringLiteral e) {
-        addInstruction("push \"" + e.value + "\"");
+        emit(Opcode.PUSH, constant(e.value));
         return null;
     }
 
     @Override
     public Void visitBooleanLiteral(Expr.BooleanLiteral e) {
-        addInstruction("push " + e.value);
+        emit(Opcode.PUSH, constant(e.value));
         return null;
     }
 
     public Void visitIdent(Expr.Ident e) {
-        addInstruction("push " + e.name.lexeme);
+        emitLoad(e.binding);
         return null;
     }
 
     @Override
     public Void visitIndex(Expr.Index e) {
+        emitLoad(e.binding);
         e.indices.forEach(idx -> idx.accept(this));
-        addInstruction("load_array " + e.name.lexeme);
+        emit(e.inBounds ? Opcode.LOAD_ARRAY_UNCHECKED : Opcode.LOAD_ARRAY, e.indices.size(), typeCode(e.inferredType));
         return null;
     }
 
@@ -327,40 +482,48 @@ public final class CodeGenerator implements Expr.Visitor<Void>, Stmt.Visitor<Voi
     @Override
     public Void visitCall(Expr.Call e) {
         for (Expr arg : e.args) arg.accept(this);
-        addInstruction("call " + e.callee.lexeme);
+        emitCall(e);
         return null;
     }
 
     @Override
     public Void visitBinary(Expr.Binary e) {
+        // razliciti numericki tipovi (samo kod poredjenja): uzi operand se siri
+        Ast.Type operands = wider(e.left.inferredType, e.right.inferredType);
         e.left.accept(this);
+        emitWidening(e.left.inferredType, operands);
         e.right.accept(this);
-        addInstruction(switch (e.op.type) {
-            case ADD -> "add";
-            case SUBTRACT -> "sub";
-            case MULTIPLY-> "mul";
-            case DIVIDE -> "div";
-            case PERCENT -> "mod";
-            case CARET -> "pow";
-            case LT -> "lt";
-            case LE -> "le";
-            case GT -> "gt";
-            case GE -> "ge";
-            case EQ -> "eq";
-            case NEQ -> "neq";
-            case AND -> "and";
-            case OR -> "or";
+        emitWidening(e.right.inferredType, operands);
+        emit(typed(switch (e.op.type) {
+            case ADD -> Opcode.ADD;
+            case SUBTRACT -> Opcode.SUB;
+            case MULTIPLY-> Opcode.MUL;
+            case DIVIDE -> Opcode.DIV;
+            case PERCENT -> Opcode.MOD;
+            case CARET -> Opcode.POW;
+            case LT -> Opcode.LT;
+            case LE -> Opcode.LE;
+            case GT -> Opcode.GT;
+            case GE -> Opcode.GE;
+            case EQ -> Opcode.EQ;
+            case NEQ -> Opcode.NEQ;
+            case AND -> Opcode.AND;
+            case OR -> Opcode.OR;
+            case BIT_LSHIFT -> Opcode.SHL;
+            case BIT_RSHIFT -> Opcode.SHR;
+            case BIT_AND -> Opcode.BAND;
+            case BIT_OR -> Opcode.BOR;
             default -> throw new IllegalStateException("Unknown binary op: " + e.op.type);
-        });
+        }, operands));
         return null;
     }
 
     @Override
     public Void visitUnary(Expr.Unary e) {
         e.right.accept(this);
-        addInstruction(switch (e.op.type) {
-            case SUBTRACT -> "neg";
-            case NOT -> "not";
+        emit(switch (e.op.type) {
+            case SUBTRACT -> typed(Opcode.NEG, e.right.inferredType);
+            case NOT -> Opcode.NOT;
             default -> throw new IllegalStateException("Unknown unary op: " + e.op.type);
         });
         return null;
@@ -368,33 +531,117 @@ public final class CodeGenerator implements Expr.Visitor<Void>, Stmt.Visitor<Voi
 
     @Override
     public Void visitTernary(Expr.Ternary e) {
-        String elseLabel = newLabel();
-        String endLabel = newLabel();
+        int elseLabel = newLabel();
+        int endLabel = newLabel();
         e.cond.accept(this);
-        addInstruction("jmp_if_false " + elseLabel);
+        emitJump(Opcode.JMP_IF_FALSE, elseLabel);
         e.thenExpr.accept(this);
-        addInstruction("jmp " + endLabel);
-        addInstruction("label " + elseLabel);
+        emitJump(Opcode.JMP, endLabel);
+        placeLabel(elseLabel);
         e.elseExpr.accept(this);
-        addInstruction("label " + endLabel);
+        placeLabel(endLabel);
         return null;
     }
 
     @Override
     public Void visitCast(Expr.Cast e) {
         e.expr.accept(this);
+        emit(Opcode.CAST, typeCode(e.expr.inferredType), typeCode(e.type));
+        return null;
+    }
+
+    // ================== HELPERS ==================
+
+    // tipizirana varijanta opkoda za operande tipa t; bez tipa ostaje genericki opkod.
+    // Varijante su u Opcode poredjane u blokove gold, emerald, diamond.
+    private static int typed(int op, Ast.Type t) {
+        if (t != null && (t.kind == Ast.Type.Kind.CHAR || t.kind == Ast.Type.Kind.BOOLEAN) && (op == Opcode.EQ || op == Opcode.NEQ))
+            return Opcode.IEQ + (op - Opcode.EQ);
+        if (t == null || !Ast.isNumeric(t)) {
+            if (op >= Opcode.ADD && op <= Opcode.GE || op == Opcode.NEG)
+                throw new IllegalStateException("Missing numeric operand type for " + Opcode.name(op));
+            return op;
+        }
+        int block = rank(t);
+        if (op >= Opcode.ADD && op <= Opcode.MOD) return Opcode.IADD + block * 5 + (op - Opcode.ADD);
+        if (op >= Opcode.LT && op <= Opcode.NEQ) return Opcode.ILT + block * 6 + (op - Opcode.LT);
+        if (op == Opcode.NEG) return Opcode.INEG + block;
+        return op;
+    }
 
-        String targetType = switch (e.type.kind) {
-            case INT -> "int";
-            case LONG -> "long";
-            case DOUBLE -> "double";
-            case CHAR -> "char";
-            case BOOLEAN -> "bool";
-            case STRING -> "string";
-            default -> throw new IllegalStateException("Unsupported cast type: " + e.type.kind);
+    // gold -> emerald/diamond i emerald -> diamond; ostali parovi su vec istog tipa
+    private void emitWidening(Ast.Type from, Ast.Type to) {
+        if (from == null || to == null || Ast.sameType(from, to) || !Ast.isNumeric(from) || !Ast.isNumeric(to)) return;
+        emit(Opcode.CAST, typeCode(from), typeCode(to));
+    }
+
+    private static Ast.Type wider(Ast.Type a, Ast.Type b) {
+        if (a == null || b == null || !Ast.isNumeric(a) || !Ast.isNumeric(b)) return a;
+        return rank(a) >= rank(b) ? a : b;
+    }
+
+    private static int rank(Ast.Type t) {
+        return switch (t.kind) {
+            case INT -> 0;
+            case LONG -> 1;
+            default -> 2;
         };
+    }
 
-        addInstruction("cast " + targetType);
-        return null;
+    private Ast.Type declaredType(Ast.Binding b) {
+        return (b.global ? globalTypes : localTypes).get(b.index);
+    }
+
+    // tip elementa posle indeksiranja sa count indeksa
+    private static Ast.Type elementType(Ast.Type array, int count) {
+        Ast.Type t = array;
+        for (int i = 0; i < count && t != null; i++) t = t.inner;
+        return t;
+    }
+
+    private void emitCall(Expr.Call call) {
+        Token callee = call.callee;
+        if (isBuiltin(callee)) {
+            // ispis mora da zna tip jer vrednost na steku nije upakovana
+            emit(callee.type == TokenType.PRINT ? Opcode.COLLECT : Opcode.DROP, typeCode(call.args.get(0).inferredType));
+        } else {
+            emitCall(callee.lexeme);
+        }
+    }
+
+    private void emitCall(String func) {
+        emit(Opcode.CALL, functionLabel(func), frameSizes.getOrDefault(func, 0));
+        patchSite(size - 2);
+    }
+
+    private static int typeCode(Ast.Type type) {
+        return switch (type.kind) {
+            case INT -> Opcode.TYPE_INT;
+            case LONG -> Opcode.TYPE_LONG;
+            case DOUBLE -> Opcode.TYPE_DOUBLE;
+            case CHAR -> Opcode.TYPE_CHAR;
+            case BOOLEAN -> Opcode.TYPE_BOOL;
+            case STRING -> Opcode.TYPE_STRING;
+            case ARRAY -> Opcode.TYPE_ARRAY;
+            default -> throw new IllegalStateException("Unsupported type: " + type.kind);
+        };
+    }
+
+    private static Object defaultValue(Ast.Type type) {
+        return switch (type.kind) {
+            case DOUBLE -> 0.0;
+            case LONG -> 0L;
+            case BOOLEAN -> false;
+            case STRING -> "";
+            default -> 0;
+        };
+    }
+
+    private static boolean valueType(Ast.Type t) {
+        return t != null && t.kind != Ast.Type.Kind.VOID && t.kind != Ast.Type.Kind.ANY;
+    }
+
+    private static boolean isBuiltin(Token callee) {
+        return callee.type == TokenType.PRINT || callee.type == TokenType.SCAN;
     }
-}
\ No newline at end of file
+}
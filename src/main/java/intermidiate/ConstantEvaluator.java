@@ -0,0 +1,121 @@
+package intermidiate;
+
+// Izracunava IR instrukciju nad konstantama sa istom semantikom kao VM
+// (int, pa double, pa long; deljenje nulom se ne racuna). Vraca null ako
+// rezultat nije poznat u vreme prevodjenja.
+final class ConstantEvaluator {
+
+    private ConstantEvaluator() {}
+
+    static Object evaluate(int op, int aux, Object[] v) {
+        return switch (op) {
+            case Instr.MOVE -> v[0];
+            case Opcode.ADD, Opcode.SUB, Opcode.MUL, Opcode.DIV, Opcode.MOD, Opcode.POW -> arithmetic(op, v[0], v[1]);
+            case Opcode.LT, Opcode.LE, Opcode.GT, Opcode.GE -> compare(op, v[0], v[1]);
+            case Opcode.EQ, Opcode.NEQ -> equality(v[0], v[1]) == (op == Opcode.EQ);
+            case Opcode.AND -> v[0] instanceof Boolean a && v[1] instanceof Boolean b ? a && b : null;
+            case Opcode.OR -> v[0] instanceof Boolean a && v[1] instanceof Boolean b ? a || b : null;
+            case Opcode.NOT -> v[0] instanceof Boolean a ? !a : null;
+            case Opcode.NEG -> {
+                if (v[0] instanceof Integer x) yield -x;
+                if (v[0] instanceof Long x) yield -x;
+                if (v[0] instanceof Double x) yield -x;
+                yield null;
+            }
+            case Opcode.SHL, Opcode.SHR, Opcode.BAND, Opcode.BOR -> {
+                if (!(v[0] instanceof Integer a) || !(v[1] instanceof Integer b)) yield null;
+                yield switch (op) {
+                    case Opcode.SHL -> a << b;
+                    case Opcode.SHR -> a >> b;
+                    case Opcode.BAND -> a & b;
+                    default -> a | b;
+                };
+            }
+            case Opcode.CAST -> cast(v[0], aux);
+            default -> null;
+        };
+    }
+
+    private static Object arithmetic(int op, Object a, Object b) {
+        if (a instanceof Integer x && b instanceof Integer y) {
+            return switch (op) {
+                case Opcode.ADD -> x + y;
+                case Opcode.SUB -> x - y;
+                case Opcode.MUL -> x * y;
+                case Opcode.DIV -> y == 0 ? null : x / y;
+                case Opcode.MOD -> y == 0 ? null : x % y;
+                default -> (int) Math.pow(x, y);
+            };
+        }
+        if (!(a instanceof Number x) || !(b instanceof Number y)) return null;
+        if (a instanceof Double || b instanceof Double) {
+            double p = x.doubleValue();
+            double q = y.doubleValue();
+            return switch (op) {
+                case Opcode.ADD -> p + q;
+                case Opcode.SUB -> p - q;
+                case Opcode.MUL -> p * q;
+                case Opcode.DIV -> p / q;
+                case Opcode.MOD -> p % q;
+                default -> Math.pow(p, q);
+            };
+        }
+        long p = x.longValue();
+        long q = y.longValue();
+        return switch (op) {
+            case Opcode.ADD -> p + q;
+            case Opcode.SUB -> p - q;
+            case Opcode.MUL -> p * q;
+            case Opcode.DIV -> q == 0 ? null : p / q;
+            case Opcode.MOD -> q == 0 ? null : p % q;
+            default -> (long) Math.pow(p, q);
+        };
+    }
+
+    private static Object compare(int op, Object a, Object b) {
+        if (!(a instanceof Number x) || !(b instanceof Number y)) return null;
+        if (a instanceof Double || b instanceof Double) {
+            // IEEE poredjenje kao u VM-ovima: -0.0 == 0.0, NaN je netacan za sve
+            double p = x.doubleValue();
+            double q = y.doubleValue();
+            return switch (op) {
+                case Opcode.LT -> p < q;
+                case Opcode.LE -> p <= q;
+                case Opcode.GT -> p > q;
+                default -> p >= q;
+            };
+        }
+        int c;
+        if (a instanceof Integer && b instanceof Integer) c = Integer.compare(x.intValue(), y.intValue());
+        else c = Long.compare(x.longValue(), y.longValue());
+        return switch (op) {
+            case Opcode.LT -> c < 0;
+            case Opcode.LE -> c <= 0;
+            case Opcode.GT -> c > 0;
+            default -> c >= 0;
+        };
+    }
+
+    private static boolean equality(Object a, Object b) {
+        if (a instanceof Number x && b instanceof Number y) {
+            if (a instanceof Double || b instanceof Double) return x.doubleValue() == y.doubleValue();
+            return x.longValue() == y.longValue();
+        }
+        return a.equals(b);
+    }
+
+    private static Object cast(Object v, int type) {
+        if (type == Opcode.TYPE_BOOL) return v instanceof Boolean ? v : null;
+        if (v instanceof Character c && (type == Opcode.TYPE_INT || type == Opcode.TYPE_CHAR)) {
+            return type == Opcode.TYPE_INT ? (Object) (int) c : c;
+        }
+        if (!(v instanceof Number n)) return null;
+        return switch (type) {
+            case Opcode.TYPE_INT -> (int) n.doubleValue();
+            case Opcode.TYPE_LONG -> n.longValue();
+            case Opcode.TYPE_DOUBLE -> n.doubleValue();
+            case Opcode.TYPE_CHAR -> (char) n.intValue();
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package intermidiate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Stablo dominacije i granice dominacije (Cooper, Harvey, Kennedy: "A Simple, Fast
+// Dominance Algorithm"). Racuna se nad blokovima dostiznim iz ulaza.
+public final class Dominators {
+
+    private final Map<BasicBlock, BasicBlock> idom = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> children = new HashMap<>();
+    private final Map<BasicBlock, Set<BasicBlock>> frontier = new HashMap<>();
+    private final Map<BasicBlock, Integer> order = new HashMap<>();
+    private final List<BasicBlock> rpo;
+
+    public Dominators(Cfg cfg) {
+        rpo = cfg.reversePostorder();
+        for (int i = 0; i < rpo.size(); i++) order.put(rpo.get(i), i);
+
+        BasicBlock entry = cfg.entry();
+        idom.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock b : rpo) {
+                if (b == entry) continue;
+                BasicBlock newIdom = null;
+                for (BasicBlock p : b.preds) {
+                    if (!idom.containsKey(p)) continue;
+                    newIdom = newIdom == null ? p : intersect(p, newIdom);
+                }
+                if (newIdom != null && idom.get(b) != newIdom) {
+                    idom.put(b, newIdom);
+                    changed = true;
+                }
+            }
+        }
+
+        for (BasicBlock b : rpo) {
+            children.put(b, new ArrayList<>());
+            frontier.put(b, new HashSet<>());
+        }
+        for (BasicBlock b : rpo) {
+            if (b != entry) children.get(idom.get(b)).add(b);
+        }
+
+        for (BasicBlock b : rpo) {
+            if (b.preds.size() < 2) continue;
+            for (BasicBlock p : b.preds) {
+                if (!idom.containsKey(p)) continue;
+                BasicBlock runner = p;
+                while (runner != idom.get(b)) {
+                    frontier.get(runner).add(b);
+                    runner = idom.get(runner);
+                }
+            }
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a != b) {
+            while (order.get(a) > order.get(b)) a = idom.get(a);
+            while (order.get(b) > order.get(a)) b = idom.get(b);
+        }
+        return a;
+    }
+
+    public BasicBlock idom(BasicBlock b) {
+        return idom.get(b);
+    }
+
+    public List<BasicBlock> children(BasicBlock b) {
+        return children.get(b);
+    }
+
+    public Set<BasicBlock> frontier(BasicBlock b) {
+        return frontier.get(b);
+    }
+
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        BasicBlock runner = b;
+        while (true) {
+            if (runner == a) return true;
+            BasicBlock up = idom.get(runner);
+            if (up == runner || up == null) return false;
+            runner = up;
+        }
+    }
+
+    public List<BasicBlock> reversePostorder() {
+        return rpo;
+    }
+}
@@ -0,0 +1,108 @@
+package intermidiate;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Globalno numerisanje vrednosti obilaskom stabla dominacije (dominator-based value
+// numbering, Briggs, Cooper, Simpson). Izraz izracunat u dominatoru se ne racuna ponovo.
+// Citanja niza i globalnih promenljivih se vode posebno: tabela se nasledjuje samo u
+// blok sa jednim prethodnikom, upis u niz ponistava sva citanja nizova, a poziv sve.
+final class Gvn {
+
+    private record Key(int op, int aux, List<Operand> args) {}
+
+    private final Cfg cfg;
+    private final Dominators dom;
+    private final Map<Integer, Operand> replacement = new HashMap<>();
+    private int eliminated = 0;
+
+    Gvn(Cfg cfg) {
+        this.cfg = cfg;
+        this.dom = new Dominators(cfg);
+    }
+
+    // vraca broj suvisnih instrukcija pretvorenih u kopiju
+    int run() {
+        visit(cfg.entry(), new HashMap<>(), new HashMap<>());
+        return eliminated;
+    }
+
+    private void visit(BasicBlock b, Map<Key, Operand> parentScope, Map<Key, Operand> memory) {
+        Map<Key, Operand> scope = new HashMap<>(parentScope);
+
+        for (int k = 0; k < b.instrs.size(); k++) {
+            Instr i = b.instrs.get(k);
+            if (i.op != Instr.PHI) {
+                for (int j = 0; j < i.args.length; j++) i.args[j] = resolve(i.args[j]);
+            }
+
+            if (i.op == Opcode.CALL) {
+                memory.clear();
+                continue;
+            }
+            if (i.op == Opcode.STORE_ARRAY) {
+                memory.keySet().removeIf(key -> key.op == Opcode.LOAD_ARRAY);
+                Operand[] access = Arrays.copyOf(i.args, i.args.length - 1);
+                memory.put(new Key(Opcode.LOAD_ARRAY, 0, List.of(access)), i.args[i.args.length - 1]);
+                continue;
+            }
+            if (i.op == Opcode.STORE_GLOBAL) {
+                memory.put(new Key(Opcode.LOAD_GLOBAL, i.aux, List.of()), i.args[0]);
+                continue;
+            }
+            if (i.dst < 0) continue;
+
+            Map<Key, Operand> table;
+            Key key;
+            if (i.op == Opcode.LOAD_ARRAY || i.op == Opcode.LOAD_GLOBAL) {
+                table = memory;
+                key = new Key(i.op, i.aux, List.of(i.args));
+            } else if (i.op == Instr.PHI) {
+                // phi su jednake samo u istom bloku
+                table = scope;
+                key = new Key(i.op, b.id, List.of(i.args));
+            } else if (i.isPure() && i.op != Instr.MOVE || i.op == Opcode.DIV || i.op == Opcode.MOD) {
+                table = scope;
+                key = new Key(i.op, i.aux, commutative(i.op) ? sorted(i.args) : List.of(i.args));
+            } else {
+                continue;
+            }
+
+            Operand existing = table.get(key);
+            if (existing != null) {
+                replacement.put(i.dst, existing);
+                b.instrs.set(k, Instr.of(Instr.MOVE, i.dst, existing).typed(i.type));
+                eliminated++;
+            } else {
+                table.put(key, Operand.reg(i.dst));
+            }
+        }
+
+        for (BasicBlock child : dom.children(b)) {
+            Map<Key, Operand> childMemory = child.preds.size() == 1 ? new HashMap<>(memory) : new HashMap<>();
+            visit(child, scope, childMemory);
+        }
+    }
+
+    private Operand resolve(Operand o) {
+        while (o.isReg() && replacement.containsKey(o.reg)) o = replacement.get(o.reg);
+        return o;
+    }
+
+    private static boolean commutative(int op) {
+        return switch (op) {
+            case Opcode.ADD, Opcode.MUL, Opcode.EQ, Opcode.NEQ, Opcode.AND, Opcode.OR,
+                 Opcode.BAND, Opcode.BOR -> true;
+            default -> false;
+        };
+    }
+
+    private static List<Operand> sorted(Operand[] args) {
+        Operand[] copy = args.clone();
+        Arrays.sort(copy, Comparator.comparing(Operand::toString));
+        return List.of(copy);
+    }
+}
@@ -0,0 +1,90 @@
+package intermidiate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Troadresna instrukcija: dst = op args. Aritmetika, poredjenja, nizovi, globalne
+// promenljive i pozivi koriste brojeve iz Opcode, a MOVE, BRANCH i PHI postoje samo u IR-u.
+public final class Instr {
+
+    public static final int MOVE = 100;    // dst = args[0]
+    public static final int BRANCH = 101;  // args[0] ? targets[0] : targets[1]
+    public static final int PHI = 102;     // dst = args[i] ako se doslo iz block.preds[i]
+
+    public final int op;
+    public int dst;                 // -1 ako nema rezultata
+    public Operand[] args;
+    public final int aux;           // tip za cast/new_array, indeks za load_global/store_global
+    public final String callee;     // samo za call
+    public BasicBlock[] targets;    // samo za jmp/branch
+    public int type = -1;           // Opcode.TYPE_* rezultata (iz inferredType), -1 ako nema rezultata
+
+    public Instr(int op, int dst, Operand[] args, int aux, String callee) {
+        this.op = op;
+        this.dst = dst;
+        this.args = args;
+        this.aux = aux;
+        this.callee = callee;
+        this.targets = new BasicBlock[0];
+    }
+
+    public static Instr of(int op, int dst, Operand... args) {
+        return new Instr(op, dst, args, 0, null);
+    }
+
+    public Instr typed(int type) {
+        this.type = type;
+        return this;
+    }
+
+    public static Instr jump(BasicBlock target) {
+        Instr i = of(Opcode.JMP, -1);
+        i.targets = new BasicBlock[] { target };
+        return i;
+    }
+
+    public static Instr branch(Operand cond, BasicBlock ifTrue, BasicBlock ifFalse) {
+        Instr i = of(BRANCH, -1, cond);
+        i.targets = new BasicBlock[] { ifTrue, ifFalse };
+        return i;
+    }
+
+    public boolean isTerminator() {
+        return op == Opcode.JMP || op == BRANCH || op == Opcode.RET;
+    }
+
+    // bez poziva, ispisa i upisa u memoriju; rezultat zavisi samo od argumenata
+    public boolean isPure() {
+        return switch (op) {
+            case MOVE, PHI, Opcode.ADD, Opcode.SUB, Opcode.MUL, Opcode.POW,
+                 Opcode.LT, Opcode.LE, Opcode.GT, Opcode.GE, Opcode.EQ, Opcode.NEQ,
+                 Opcode.AND, Opcode.OR, Opcode.NEG, Opcode.NOT, Opcode.CAST,
+                 Opcode.SHL, Opcode.SHR, Opcode.BAND, Opcode.BOR -> true;
+            default -> false;
+        };
+    }
+
+    public List<Integer> uses() {
+        List<Integer> regs = new ArrayList<>();
+        for (Operand a : args) if (a.isReg()) regs.add(a.reg);
+        return regs;
+    }
+
+    @Override
+    public String toString() {
+        String lhs = dst >= 0 ? "r" + dst + " = " : "";
+        String list = Arrays.stream(args).map(Operand::toString).collect(Collectors.joining(", "));
+        return lhs + switch (op) {
+            case MOVE -> args[0].toString();
+            case BRANCH -> "branch " + args[0] + ", B" + targets[0].id + ", B" + targets[1].id;
+            case Opcode.JMP -> "jmp B" + targets[0].id;
+            case PHI -> "phi " + list;
+            case Opcode.CAST, Opcode.NEW_ARRAY -> Opcode.name(op) + " " + Opcode.typeName(aux) + " " + list;
+            case Opcode.LOAD_GLOBAL, Opcode.STORE_GLOBAL -> Opcode.name(op) + " g" + aux + (list.isEmpty() ? "" : ", " + list);
+            case Opcode.CALL -> "call " + callee + "(" + list + ")";
+            default -> Opcode.name(op) + (list.isEmpty() ? "" : " " + list);
+        };
+    }
+}
@@ -0,0 +1,799 @@
+package intermidiate;
+
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+import lexer.token.Token;
+import lexer.token.TokenType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static intermidiate.ClassFile.*;
+
+// prevodi tipizirano AST u JVM klasu: svaka funkcija je staticka metoda, globalne promenljive su staticka polja
+public final class JvmCodeGenerator implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    public static final String CLASS_NAME = "MinecraftProgram";
+    public static final String ENTRY = "$entry";
+    private static final String RUNTIME = "vm/JvmRuntime";
+
+    private static final int T_BOOLEAN = 4;
+    private static final int T_CHAR = 5;
+    private static final int T_DOUBLE = 7;
+    private static final int T_INT = 10;
+    private static final int T_LONG = 11;
+
+    private ClassFile classFile;
+    private ClassFile.Code code;
+
+    private final Map<String, Ast.Type> globals = new HashMap<>();
+    private final Map<String, Ast.FuncDef> functions = new HashMap<>();
+
+    private final Deque<Map<String, Local>> scopes = new ArrayDeque<>();
+    private int nextSlot = 0;
+    private Ast.Type returnType = null;
+    private Ast.FuncDef currentFunction = null;
+    private ClassFile.Label functionStart = null;
+    private final List<Local> params = new ArrayList<>();
+
+    private static final class Local {
+        final int slot;
+        final Ast.Type type;
+
+        Local(int slot, Ast.Type type) {
+            this.slot = slot;
+            this.type = type;
+        }
+    }
+
+    public byte[] generate(Ast.Program program) {
+        classFile = new ClassFile(CLASS_NAME);
+
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.TopVarDecl topVar) {
+                for (Token name : topVar.decl.names) {
+                    globals.put(name.lexeme, topVar.decl.type);
+                    classFile.addStaticField(name.lexeme, descriptor(topVar.decl.type));
+                }
+            } else if (item instanceof Ast.FuncDef func) {
+                functions.put(func.name.lexeme, func);
+            }
+        }
+
+        // globalne promenljive i top-level naredbe se izvrsavaju pre main-a
+        beginMethod(ENTRY, "()I", 0);
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.TopStmt topStmt) {
+                topStmt.stmt.accept(this);
+            } else if (item instanceof Ast.TopVarDecl topVar) {
+                for (int i = 0; i < topVar.decl.names.size(); i++) {
+                    emitInitialValue(topVar.decl, i);
+                    store(topVar.decl.names.get(i).lexeme);
+                }
+            }
+        }
+        code.invokeStatic(CLASS_NAME, "main", "()I", 1);
+        code.op(IRETURN, -1);
+
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.FuncDef func) {
+                generateFunc(func);
+            }
+        }
+        return classFile.toBytes();
+    }
+
+    private void beginMethod(String name, String desc, int argSlots) {
+        code = classFile.addStaticMethod(name, desc, argSlots);
+        scopes.clear();
+        scopes.push(new HashMap<>());
+        nextSlot = 0;
+    }
+
+    private void generateFunc(Ast.FuncDef func) {
+        int argSlots = 0;
+        for (Ast.Param p : func.params) argSlots += slots(p.type);
+
+        beginMethod(func.name.lexeme, methodDescriptor(func), argSlots);
+        returnType = func.returnType;
+        currentFunction = func;
+        params.clear();
+        for (Ast.Param p : func.params) params.add(declareLocal(p.name.lexeme, p.type));
+        functionStart = code.newLabel();
+        code.placeLabel(functionStart);
+
+        for (Stmt stmt : func.body) {
+            stmt.accept(this);
+        }
+
+        if (func.body.isEmpty() || !(func.body.get(func.body.size() - 1) instanceof Stmt.Return)) {
+            pushDefault(func.returnType);
+            code.op(returnOp(func.returnType), -slots(func.returnType));
+        }
+        returnType = null;
+        currentFunction = null;
+    }
+
+    /* ================= PROMENLJIVE ================= */
+
+    private Local declareLocal(String name, Ast.Type type) {
+        Local local = new Local(nextSlot, type);
+        nextSlot += slots(type);
+        code.useLocals(nextSlot);
+        scopes.peek().put(name, local);
+        return local;
+    }
+
+    private Local lookupLocal(String name) {
+        for (Map<String, Local> scope : scopes) {
+            Local l = scope.get(name);
+            if (l != null) return l;
+        }
+        return null;
+    }
+
+    private Ast.Type typeOf(String name) {
+        Local l = lookupLocal(name);
+        if (l != null) return l.type;
+        Ast.Type t = globals.get(name);
+        if (t == null) throw new IllegalStateException("Unknown variable in JVM backend: " + name);
+        return t;
+    }
+
+    private void load(String name) {
+        Local l = lookupLocal(name);
+        if (l != null) {
+            code.local(loadOp(l.type), l.slot, slots(l.type));
+        } else {
+            Ast.Type t = typeOf(name);
+            code.field(GETSTATIC, CLASS_NAME, name, descriptor(t), slots(t));
+        }
+    }
+
+    private void store(String name) {
+        Local l = lookupLocal(name);
+        if (l != null) {
+            code.local(storeOp(l.type), l.slot, -slots(l.type));
+        } else {
+            Ast.Type t = typeOf(name);
+            code.field(PUTSTATIC, CLASS_NAME, name, descriptor(t), -slots(t));
+        }
+    }
+
+    private void pushScope() {
+        scopes.push(new HashMap<>());
+    }
+
+    private void popScope() {
+        scopes.pop();
+    }
+
+    private void block(Iterable<Stmt> stmts) {
+        pushScope();
+        for (Stmt s : stmts) s.accept(this);
+        popScope();
+    }
+
+    /* ================= NAREDBE ================= */
+
+    @Override
+    public Void visitVarDecl(Stmt.VarDecl s) {
+        for (int i = 0; i < s.names.size(); i++) {
+            emitInitialValue(s, i);
+            Local local = declareLocal(s.names.get(i).lexeme, s.type);
+            code.local(storeOp(s.type), local.slot, -slots(s.type));
+        }
+        return null;
+    }
+
+    private void emitInitialValue(Stmt.VarDecl s, int i) {
+        Expr value = s.values.size() > i ? s.values.get(i) : null;
+        if (value != null) {
+            value.accept(this);
+            convert(value.inferredType, s.type);
+        } else if (!s.dims.isEmpty()) {
+            if (s.dims.size() > 1)
+                throw new IllegalStateException("JVM backend does not support multi-dimensional arrays");
+            s.dims.get(0).accept(this);
+            newArray(s.type.inner);
+        } else {
+            pushDefault(s.type);
+        }
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return s) {
+        if (currentFunction != null && s.expr instanceof Expr.Call call
+                && call.callee.lexeme.equals(currentFunction.name.lexeme)) {
+            // loot f(...) u funkciji f: argumenti se upisuju u parametre i skace se na pocetak
+            for (int i = 0; i < call.args.size(); i++) {
+                call.args.get(i).accept(this);
+                convert(call.args.get(i).inferredType, params.get(i).type);
+            }
+            for (int i = params.size() - 1; i >= 0; i--) {
+                Local p = params.get(i);
+                code.local(storeOp(p.type), p.slot, -slots(p.type));
+            }
+            code.jump(GOTO, functionStart, 0);
+            return null;
+        }
+        s.expr.accept(this);
+        convert(s.expr.inferredType, returnType);
+        code.op(returnOp(returnType), -slots(returnType));
+        return null;
+    }
+
+    @Override
+    public Void visitAssign(Stmt.Assign s) {
+        s.left.accept(this);
+        convert(s.left.inferredType, typeOf(s.lvalue.name.lexeme));
+        store(s.lvalue.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitCallStmt(Stmt.CallStmt s) {
+        Token callee = s.call.callee;
+        if (callee.type == TokenType.PRINT || callee.type == TokenType.SCAN) {
+            String method = callee.type == TokenType.PRINT ? "collect" : "drop";
+            for (Expr arg : s.call.args) {
+                arg.accept(this);
+                code.invokeStatic(RUNTIME, method, "(" + printDescriptor(arg.inferredType) + ")V", -slots(arg.inferredType));
+            }
+            return null;
+        }
+        s.call.accept(this);
+        discard(s.call.inferredType);
+        return null;
+    }
+
+    @Override
+    public Void visitBeginIf(Stmt.BeginIf s) {
+        ClassFile.Label end = code.newLabel();
+
+        ClassFile.Label next = code.newLabel();
+        branchIfFalse(s.ifArm.cond, next);
+        block(s.ifArm.block);
+        code.jump(GOTO, end, 0);
+        code.placeLabel(next);
+
+        for (Stmt.BeginIf.Arm arm : s.orIfArms) {
+            ClassFile.Label armNext = code.newLabel();
+            branchIfFalse(arm.cond, armNext);
+            block(arm.block);
+            code.jump(GOTO, end, 0);
+            code.placeLabel(armNext);
+        }
+
+        if (s.elseBlock != null) block(s.elseBlock);
+
+        code.placeLabel(end);
+        return null;
+    }
+
+    @Override
+    public Void visitBeginFor(Stmt.BeginFor s) {
+        pushScope();
+        s.init.accept(this);
+
+        ClassFile.Label start = code.newLabel();
+        ClassFile.Label end = code.newLabel();
+
+        code.placeLabel(start);
+        branchIfFalse(s.cond, end);
+
+        for (Stmt stmt : s.body) stmt.accept(this);
+        if (s.update != null) s.update.accept(this);
+
+        code.jump(GOTO, start, 0);
+        code.placeLabel(end);
+        popScope();
+        return null;
+    }
+
+    @Override
+    public Void visitIncDec(Stmt.IncDec s) {
+        int delta = s.op.type == TokenType.INC ? 1 : -1;
+        String name = s.target.name.lexeme;
+        Local l = lookupLocal(name);
+
+        if (!s.target.indices.isEmpty()) {
+            if (s.target.indices.size() > 1)
+                throw new IllegalStateException("JVM backend does not support multi-dimensional arrays");
+            load(name);
+            s.target.indices.get(0).accept(this);
+            code.op(DUP2, 2);
+            code.op(IALOAD, -1);
+            code.pushInt(delta);
+            code.op(IADD, -1);
+            code.op(IASTORE, -3);
+        } else if (l != null) {
+            code.iinc(l.slot, delta);
+        } else {
+            load(name);
+            code.pushInt(delta);
+            code.op(IADD, -1);
+            store(name);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.WhileStmt s) {
+        ClassFile.Label start = code.newLabel();
+        ClassFile.Label end = code.newLabel();
+
+        code.placeLabel(start);
+        branchIfFalse(s.cond, end);
+        block(s.body);
+        code.jump(GOTO, start, 0);
+        code.placeLabel(end);
+        return null;
+    }
+
+    @Override
+    public Void visitDoWhileStmt(Stmt.DoWhileStmt s) {
+        ClassFile.Label start = code.newLabel();
+        code.placeLabel(start);
+        block(s.body);
+        branchIfTrue(s.cond, start);
+        return null;
+    }
+
+    @Override
+    public Void visitExprStmt(Stmt.ExprStmt s) {
+        s.expr.accept(this);
+        discard(s.expr.inferredType);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayAssign(Stmt.ArrayAssign s) {
+        if (s.target.indices.size() > 1)
+            throw new IllegalStateException("JVM backend does not support multi-dimensional arrays");
+        Ast.Type element = typeOf(s.target.name.lexeme).inner;
+
+        load(s.target.name.lexeme);
+        s.target.indices.get(0).accept(this);
+        s.value.accept(this);
+        convert(s.value.inferredType, element);
+        code.op(arrayStoreOp(element), -2 - slots(element));
+        return null;
+    }
+
+    // ================== EXPR VISITOR ==================
+
+    @Override
+    public Void visitArrayLiteral(Expr.ArrayLiteral e) {
+        Ast.Type element = e.inferredType.inner;
+        code.pushInt(e.elements.size());
+        newArray(element);
+        for (int i = 0; i < e.elements.size(); i++) {
+            code.op(DUP, 1);
+            code.pushInt(i);
+            e.elements.get(i).accept(this);
+            convert(e.elements.get(i).inferredType, element);
+            code.op(arrayStoreOp(element), -2 - slots(element));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIntLiteral(Expr.IntLiteral e) {
+        code.pushInt(e.value);
+        return null;
+    }
+
+    @Override
+    public Void visitDoubleLiteral(Expr.DoubleLiteral e) {
+        if (e.value == 0.0 && Double.doubleToRawLongBits(e.value) == 0) code.op(DCONST_0, 2);
+        else code.ldc(e.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLongLiteral(Expr.LongLiteral e) {
+        if (e.value == 0L) code.op(LCONST_0, 2);
+        else code.ldc(e.value);
+        return null;
+    }
+
+    @Override
+    public Void visitCharLiteral(Expr.CharLiteral e) {
+        code.pushInt(e.value);
+        return null;
+    }
+
+    @Override
+    public Void visitStringLiteral(Expr.StringLiteral e) {
+        code.ldc(e.value);
+        return null;
+    }
+
+    @Override
+    public Void visitBooleanLiteral(Expr.BooleanLiteral e) {
+        code.pushInt(e.value ? 1 : 0);
+        return null;
+    }
+
+    @Override
+    public Void visitIdent(Expr.Ident e) {
+        load(e.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitIndex(Expr.Index e) {
+        if (e.indices.size() > 1)
+            throw new IllegalStateException("JVM backend does not support multi-dimensional arrays");
+        load(e.name.lexeme);
+        e.indices.get(0).accept(this);
+        code.op(arrayLoadOp(e.inferredType), slots(e.inferredType) - 2);
+        return null;
+    }
+
+    @Override
+    public Void visitGrouping(Expr.Grouping e) {
+        e.inner.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitCall(Expr.Call e) {
+        Ast.FuncDef f = functions.get(e.callee.lexeme);
+        if (f == null) throw new IllegalStateException("Unknown function in JVM backend: " + e.callee.lexeme);
+
+        int argSlots = 0;
+        for (int i = 0; i < e.args.size(); i++) {
+            e.args.get(i).accept(this);
+            convert(e.args.get(i).inferredType, f.params.get(i).type);
+            argSlots += slots(f.params.get(i).type);
+        }
+        code.invokeStatic(CLASS_NAME, f.name.lexeme, methodDescriptor(f), slots(f.returnType) - argSlots);
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Expr.Binary e) {
+        switch (e.op.type) {
+            case ADD, SUBTRACT, MULTIPLY, DIVIDE, PERCENT -> {
+                Ast.Type t = e.inferredType;
+                e.left.accept(this);
+                e.right.accept(this);
+                int base = switch (e.op.type) {
+                    case ADD -> IADD;
+                    case SUBTRACT -> ISUB;
+                    case MULTIPLY -> IMUL;
+                    case DIVIDE -> IDIV;
+                    default -> IREM;
+                };
+                // IADD/LADD/DADD (i ostali) su susedni opkodovi: int, long, float, double
+                int offset = switch (t.kind) {
+                    case INT -> 0;
+                    case LONG -> 1;
+                    case DOUBLE -> 3;
+                    default -> throw new IllegalStateException("Arithmetic on " + t.kind + " in JVM backend");
+                };
+                code.op(base + offset, -slots(t));
+            }
+            case BIT_AND, BIT_OR, BIT_LSHIFT, BIT_RSHIFT -> {
+                e.left.accept(this);
+                e.right.accept(this);
+                code.op(switch (e.op.type) {
+                    case BIT_AND -> IAND;
+                    case BIT_OR -> IOR;
+                    case BIT_LSHIFT -> ISHL;
+                    default -> ISHR;
+                }, -1);
+            }
+            case AND, OR -> {
+                // oba operanda se uvek racunaju, kao i na steku VM-a
+                e.left.accept(this);
+                e.right.accept(this);
+                code.op(e.op.type == TokenType.AND ? IAND : IOR, -1);
+            }
+            case LT, LE, GT, GE, EQ, NEQ -> materialize(e);
+            default -> throw new IllegalStateException("Unknown binary op: " + e.op.type);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(Expr.Unary e) {
+        e.right.accept(this);
+        switch (e.op.type) {
+            case SUBTRACT -> code.op(switch (e.inferredType.kind) {
+                case INT -> INEG;
+                case LONG -> LNEG;
+                case DOUBLE -> DNEG;
+                default -> throw new IllegalStateException("Unary minus on " + e.inferredType.kind);
+            }, 0);
+            case NOT -> {
+                code.pushInt(1);
+                code.op(IXOR, -1);
+            }
+            default -> throw new IllegalStateException("Unknown unary op: " + e.op.type);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitTernary(Expr.Ternary e) {
+        ClassFile.Label elseLabel = code.newLabel();
+        ClassFile.Label end = code.newLabel();
+        branchIfFalse(e.cond, elseLabel);
+        int depth = code.stackDepth();
+        e.thenExpr.accept(this);
+        code.jump(GOTO, end, 0);
+        code.placeLabel(elseLabel);
+        code.setStackDepth(depth);
+        e.elseExpr.accept(this);
+        code.placeLabel(end);
+        return null;
+    }
+
+    @Override
+    public Void visitCast(Expr.Cast e) {
+        e.expr.accept(this);
+        convert(e.expr.inferredType, e.type);
+        return null;
+    }
+
+    /* ================= USLOVI ================= */
+
+    private void materialize(Expr cond) {
+        ClassFile.Label falseLabel = code.newLabel();
+        ClassFile.Label end = code.newLabel();
+        int depth = code.stackDepth();
+        branchIfFalse(cond, falseLabel);
+        code.pushInt(1);
+        code.jump(GOTO, end, 0);
+        code.placeLabel(falseLabel);
+        code.setStackDepth(depth);
+        code.pushInt(0);
+        code.placeLabel(end);
+    }
+
+    private void branchIfFalse(Expr cond, ClassFile.Label target) {
+        branch(cond, target, false);
+    }
+
+    private void branchIfTrue(Expr cond, ClassFile.Label target) {
+        branch(cond, target, true);
+    }
+
+    // skace na target kada je vrednost uslova jednaka "when"
+    private void branch(Expr cond, ClassFile.Label target, boolean when) {
+        if (cond instanceof Expr.Grouping g) {
+            branch(g.inner, target, when);
+            return;
+        }
+        if (cond instanceof Expr.BooleanLiteral b) {
+            if (b.value == when) code.jump(GOTO, target, 0);
+            return;
+        }
+        if (cond instanceof Expr.Unary u && u.op.type == TokenType.NOT) {
+            branch(u.right, target, !when);
+            return;
+        }
+        if (cond instanceof Expr.Binary b && isComparison(b.op.type)) {
+            compareAndBranch(b, target, when);
+            return;
+        }
+        cond.accept(this);
+        code.jump(when ? IFNE : IFEQ, target, -1);
+    }
+
+    private void compareAndBranch(Expr.Binary b, ClassFile.Label target, boolean when) {
+        Ast.Type lt = b.left.inferredType;
+        Ast.Type rt = b.right.inferredType;
+        TokenType op = when ? b.op.type : negate(b.op.type);
+
+        if (!isPrimitive(lt) || !isPrimitive(rt)) {
+            b.left.accept(this);
+            b.right.accept(this);
+            code.invokeStatic("java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z", -1);
+            code.jump(op == TokenType.EQ ? IFNE : IFEQ, target, -1);
+            return;
+        }
+
+        Ast.Type common = commonType(lt, rt);
+        b.left.accept(this);
+        convert(lt, common);
+        b.right.accept(this);
+        convert(rt, common);
+
+        int icmp = switch (op) {
+            case EQ -> IF_ICMPEQ;
+            case NEQ -> IF_ICMPNE;
+            case LT -> IF_ICMPLT;
+            case GE -> IF_ICMPGE;
+            case GT -> IF_ICMPGT;
+            default -> IF_ICMPLE;
+        };
+
+        switch (common.kind) {
+            case LONG -> {
+                code.op(LCMP, -3);
+                code.jump(icmp - (IF_ICMPEQ - IFEQ), target, -1);
+            }
+            case DOUBLE -> {
+                // NaN mora da da netacan rezultat za <, <=, >, >=; instrukcija se bira po
+                // originalnom operatoru, pa negirani skok za NaN uvek ide na false granu
+                TokenType orig = b.op.type;
+                code.op(orig == TokenType.LT || orig == TokenType.LE ? DCMPG : DCMPL, -3);
+                code.jump(icmp - (IF_ICMPEQ - IFEQ), target, -1);
+            }
+            default -> code.jump(icmp, target, -2);
+        }
+    }
+
+    private static boolean isComparison(TokenType t) {
+        return t == TokenType.LT || t == TokenType.LE || t == TokenType.GT
+                || t == TokenType.GE || t == TokenType.EQ || t == TokenType.NEQ;
+    }
+
+    private static TokenType negate(TokenType t) {
+        return switch (t) {
+            case LT -> TokenType.GE;
+            case LE -> TokenType.GT;
+            case GT -> TokenType.LE;
+            case GE -> TokenType.LT;
+            case EQ -> TokenType.NEQ;
+            default -> TokenType.EQ;
+        };
+    }
+
+    /* ================= TIPOVI ================= */
+
+    private static boolean isPrimitive(Ast.Type t) {
+        return t.kind != Ast.Type.Kind.STRING && t.kind != Ast.Type.Kind.ARRAY;
+    }
+
+    private static Ast.Type commonType(Ast.Type a, Ast.Type b) {
+        if (a.kind == Ast.Type.Kind.DOUBLE || b.kind == Ast.Type.Kind.DOUBLE) return b.kind == Ast.Type.Kind.DOUBLE ? b : a;
+        if (a.kind == Ast.Type.Kind.LONG || b.kind == Ast.Type.Kind.LONG) return b.kind == Ast.Type.Kind.LONG ? b : a;
+        return a;
+    }
+
+    private void convert(Ast.Type from, Ast.Type to) {
+        if (from == null || to == null || from.kind == to.kind) return;
+        switch (from.kind) {
+            case INT, CHAR, BOOLEAN -> {
+                if (to.kind == Ast.Type.Kind.DOUBLE) code.op(I2D, 1);
+                else if (to.kind == Ast.Type.Kind.LONG) code.op(I2L, 1);
+                else if (to.kind == Ast.Type.Kind.CHAR) code.op(I2C, 0);
+            }
+            case LONG -> {
+                if (to.kind == Ast.Type.Kind.DOUBLE) code.op(L2D, 0);
+                else if (to.kind == Ast.Type.Kind.INT) code.op(L2I, -1);
+            }
+            case DOUBLE -> {
+                if (to.kind == Ast.Type.Kind.INT) code.op(D2I, -1);
+                else if (to.kind == Ast.Type.Kind.LONG) code.op(D2L, 0);
+            }
+            default -> {}
+        }
+    }
+
+    private void pushDefault(Ast.Type t) {
+        switch (t.kind) {
+            case LONG -> code.op(LCONST_0, 2);
+            case DOUBLE -> code.op(DCONST_0, 2);
+            case STRING -> code.ldc("");
+            case ARRAY -> code.op(ACONST_NULL, 1);
+            default -> code.pushInt(0);
+        }
+    }
+
+    private void newArray(Ast.Type element) {
+        switch (element.kind) {
+            case INT -> code.newArray(T_INT);
+            case LONG -> code.newArray(T_LONG);
+            case DOUBLE -> code.newArray(T_DOUBLE);
+            case CHAR -> code.newArray(T_CHAR);
+            case BOOLEAN -> code.newArray(T_BOOLEAN);
+            case STRING -> code.newObjectArray("java/lang/String");
+            default -> throw new IllegalStateException("Unsupported array element type: " + element.kind);
+        }
+    }
+
+    private void discard(Ast.Type t) {
+        if (t == null || t.kind == Ast.Type.Kind.VOID) return;
+        if (slots(t) == 2) code.op(POP2, -2);
+        else code.op(POP, -1);
+    }
+
+    private static int slots(Ast.Type t) {
+        return switch (t.kind) {
+            case LONG, DOUBLE -> 2;
+            case VOID -> 0;
+            default -> 1;
+        };
+    }
+
+    private static String descriptor(Ast.Type t) {
+        return switch (t.kind) {
+            case INT -> "I";
+            case LONG -> "J";
+            case DOUBLE -> "D";
+            case CHAR -> "C";
+            case BOOLEAN -> "Z";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+            case ARRAY -> {
+                if (t.inner == null) throw new IllegalStateException("JVM backend needs the element type of array");
+                yield "[" + descriptor(t.inner);
+            }
+            default -> throw new IllegalStateException("Unsupported type in JVM backend: " + t.kind);
+        };
+    }
+
+    private static String printDescriptor(Ast.Type t) {
+        return switch (t.kind) {
+            case INT, LONG, DOUBLE, CHAR, BOOLEAN -> descriptor(t);
+            default -> "Ljava/lang/Object;";
+        };
+    }
+
+    private static String methodDescriptor(Ast.FuncDef f) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Ast.Param p : f.params) sb.append(descriptor(p.type));
+        return sb.append(')').append(descriptor(f.returnType)).toString();
+    }
+
+    private static int loadOp(Ast.Type t) {
+        return switch (t.kind) {
+            case LONG -> LLOAD;
+            case DOUBLE -> DLOAD;
+            case STRING, ARRAY -> ALOAD;
+            default -> ILOAD;
+        };
+    }
+
+    private static int storeOp(Ast.Type t) {
+        return switch (t.kind) {
+            case LONG -> LSTORE;
+            case DOUBLE -> DSTORE;
+            case STRING, ARRAY -> ASTORE;
+            default -> ISTORE;
+        };
+    }
+
+    private static int returnOp(Ast.Type t) {
+        return switch (t.kind) {
+            case LONG -> LRETURN;
+            case DOUBLE -> DRETURN;
+            case STRING, ARRAY -> ARETURN;
+            case VOID -> RETURN;
+            default -> IRETURN;
+        };
+    }
+
+    private static int arrayLoadOp(Ast.Type element) {
+        return switch (element.kind) {
+            case INT -> IALOAD;
+            case LONG -> LALOAD;
+            case DOUBLE -> DALOAD;
+            case CHAR -> CALOAD;
+            case BOOLEAN -> BALOAD;
+            default -> AALOAD;
+        };
+    }
+
+    private static int arrayStoreOp(Ast.Type element) {
+        return switch (element.kind) {
+            case INT -> IASTORE;
+            case LONG -> LASTORE;
+            case DOUBLE -> DASTORE;
+            case CHAR -> CASTORE;
+            case BOOLEAN -> BASTORE;
+            default -> AASTORE;
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package intermidiate;
+
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// ArrayKernel za petlju koju je optimizer.LoopVectorizer oznacio kao vectorizable
+final class KernelBuilder {
+
+    private final Ast.Binding counter;
+    private final List<ArrayKernel.Access> accesses = new ArrayList<>();
+    private final List<Integer> scalars = new ArrayList<>();
+    private final List<Long> constants = new ArrayList<>();
+
+    private KernelBuilder(Ast.Binding counter) {
+        this.counter = counter;
+    }
+
+    static ArrayKernel build(Stmt.BeginFor loop) {
+        KernelBuilder b = new KernelBuilder(loop.init.bindings[0]);
+        boolean inclusive = ((Expr.Binary) strip(loop.cond)).op.type == TokenType.LE;
+
+        Stmt.ArrayAssign first = (Stmt.ArrayAssign) loop.body.get(0);
+        boolean real = first.value.inferredType.kind == Ast.Type.Kind.DOUBLE;
+        ArrayKernel.Assign[] body = new ArrayKernel.Assign[loop.body.size()];
+        for (int k = 0; k < body.length; k++) {
+            Stmt.ArrayAssign a = (Stmt.ArrayAssign) loop.body.get(k);
+            int target = b.access(a.target.binding, a.target.indices);
+            List<Integer> code = new ArrayList<>();
+            b.expr(a.value, code);
+            body[k] = new ArrayKernel.Assign(target, ints(code));
+        }
+
+        long[] constants = new long[b.constants.size()];
+        for (int k = 0; k < constants.length; k++) constants[k] = b.constants.get(k);
+        return new ArrayKernel(real ? Opcode.TYPE_DOUBLE : Opcode.TYPE_INT, inclusive,
+                b.accesses.toArray(new ArrayKernel.Access[0]), ints(b.scalars), constants, body);
+    }
+
+    private int access(Ast.Binding array, List<Expr> indices) {
+        int[][] prefix = new int[indices.size() - 1][];
+        for (int d = 0; d < prefix.length; d++) {
+            List<Integer> code = new ArrayList<>();
+            expr(indices.get(d), code);
+            prefix[d] = ints(code);
+        }
+        accesses.add(new ArrayKernel.Access(array.index, prefix));
+        return accesses.size() - 1;
+    }
+
+    private void expr(Expr e, List<Integer> code) {
+        e = strip(e);
+        if (e instanceof Expr.IntLiteral lit) {
+            code.add(ArrayKernel.CONST);
+            code.add(constant(lit.value));
+        } else if (e instanceof Expr.DoubleLiteral lit) {
+            code.add(ArrayKernel.CONST);
+            code.add(constant(Double.doubleToRawLongBits(lit.value)));
+        } else if (e instanceof Expr.Ident id && id.binding.index != counter.index) {
+            code.add(ArrayKernel.SCALAR);
+            code.add(scalar(id.binding.index));
+        } else if (e instanceof Expr.Index x) {
+            code.add(ArrayKernel.ARRAY);
+            code.add(access(x.binding, x.indices));
+        } else if (e instanceof Expr.Binary bin) {
+            expr(bin.left, code);
+            expr(bin.right, code);
+            code.add(switch (bin.op.type) {
+                case ADD -> ArrayKernel.ADD;
+                case SUBTRACT -> ArrayKernel.SUB;
+                case MULTIPLY -> ArrayKernel.MUL;
+                case DIVIDE -> ArrayKernel.DIV;
+                default -> throw new IllegalStateException("Operator " + bin.op.lexeme + " in vector kernel");
+            });
+        } else {
+            throw new IllegalStateException("Expression " + e.getClass().getSimpleName() + " in vector kernel");
+        }
+    }
+
+    private int scalar(int slot) {
+        int k = scalars.indexOf(slot);
+        if (k >= 0) return k;
+        scalars.add(slot);
+        return scalars.size() - 1;
+    }
+
+    private int constant(long value) {
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    private static int[] ints(List<Integer> list) {
+        int[] out = new int[list.size()];
+        for (int k = 0; k < out.length; k++) out[k] = list.get(k);
+        return out;
+    }
+
+    private static Expr strip(Expr e) {
+        while (e instanceof Expr.Grouping g) e = g.inner;
+        return e;
+    }
+}
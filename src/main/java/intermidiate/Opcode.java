@@ -0,0 +1,221 @@
+package intermidiate;
+
+public final class Opcode {
+
+    // instrukcija = opkod + fiksan broj int operanada (vidi OPERANDS)
+
+    public static final int PUSH = 0;          // push <konstanta>
+    public static final int LOAD_LOCAL = 1;    // load_local <slot>
+    public static final int STORE_LOCAL = 2;   // store_local <slot>
+    public static final int POP = 3;
+
+    public static final int ADD = 4;
+    public static final int SUB = 5;
+    public static final int MUL = 6;
+    public static final int DIV = 7;
+    public static final int MOD = 8;
+    public static final int POW = 9;
+    public static final int LT = 10;
+    public static final int LE = 11;
+    public static final int GT = 12;
+    public static final int GE = 13;
+    public static final int EQ = 14;
+    public static final int NEQ = 15;
+    public static final int AND = 16;
+    public static final int OR = 17;
+    public static final int NEG = 18;
+    public static final int NOT = 19;
+    public static final int INC = 20;
+    public static final int DEC = 21;
+
+    public static final int JMP = 22;          // jmp <adresa>
+    public static final int JMP_IF_FALSE = 23;
+    public static final int JMP_IF_TRUE = 24;
+    public static final int CALL = 25;         // call <adresa> <velicina okvira>
+    public static final int RET = 26;
+    public static final int HALT = 27;         // halt <tip rezultata>
+    public static final int COLLECT = 28;      // collect <tip>
+    public static final int DROP = 29;         // drop <tip>
+
+    public static final int MAKE_ARRAY = 30;   // make_array <broj elemenata> <tip elementa>
+    public static final int NEW_ARRAY = 31;    // new_array <broj dimenzija> <tip>
+    public static final int LOAD_ARRAY = 32;   // niz, indeksi -> element; load_array <broj indeksa> <tip elementa>
+    public static final int STORE_ARRAY = 33;  // niz, indeksi, vrednost; store_array <broj indeksa> <tip elementa>
+    public static final int CAST = 34;         // cast <iz tipa> <u tip>
+    public static final int LOAD_GLOBAL = 35;  // load_global <indeks>
+    public static final int STORE_GLOBAL = 36; // store_global <indeks>
+    public static final int SHL = 37;
+    public static final int SHR = 38;
+    public static final int BAND = 39;
+    public static final int BOR = 40;
+
+    // tipizirane varijante: CodeGenerator ih bira po inferredType, pa VM ne ispituje tip operanada;
+    // genericki add..ge i neg ostaju samo u IR-u (Instr), VirtualMachine ih ne izvrsava
+    public static final int IADD = 41;
+    public static final int ISUB = 42;
+    public static final int IMUL = 43;
+    public static final int IDIV = 44;
+    public static final int IMOD = 45;
+    public static final int LADD = 46;
+    public static final int LSUB = 47;
+    public static final int LMUL = 48;
+    public static final int LDIV = 49;
+    public static final int LMOD = 50;
+    public static final int DADD = 51;
+    public static final int DSUB = 52;
+    public static final int DMUL = 53;
+    public static final int DDIV = 54;
+    public static final int DMOD = 55;
+    public static final int INEG = 56;
+    public static final int LNEG = 57;
+    public static final int DNEG = 58;
+    public static final int ILT = 59;
+    public static final int ILE = 60;
+    public static final int IGT = 61;
+    public static final int IGE = 62;
+    public static final int IEQ = 63;
+    public static final int INE = 64;
+    public static final int LLT = 65;
+    public static final int LLE = 66;
+    public static final int LGT = 67;
+    public static final int LGE = 68;
+    public static final int LEQ = 69;
+    public static final int LNE = 70;
+    public static final int DLT = 71;
+    public static final int DLE = 72;
+    public static final int DGT = 73;
+    public static final int DGE = 74;
+    public static final int DEQ = 75;
+    public static final int DNE = 76;
+
+    // superinstrukcije (SuperinstructionFuser): cesti nizovi instrukcija spojeni u jednu
+    public static final int INC_LOCAL = 77;       // inc_local <slot> <delta>        (gold slot += delta)
+    public static final int JLT_LOCAL_LOCAL = 78; // jlt_local_local <a> <b> <adresa>  (skok ako a < b)
+    public static final int JLE_LOCAL_LOCAL = 79;
+    public static final int JGT_LOCAL_LOCAL = 80;
+    public static final int JGE_LOCAL_LOCAL = 81;
+    public static final int JEQ_LOCAL_LOCAL = 82;
+    public static final int JNE_LOCAL_LOCAL = 83;
+    public static final int LOAD_ARRAY_LOCAL = 84; // load_array_local <niz> <indeks> <tip elementa>
+
+    public static final int TAILCALL = 85;     // tailcall <adresa> <velicina okvira>; poziv iste funkcije u loot-u, koristi tekuci okvir
+
+    // pristup nizu ciji su indeksi dokazano u granicama (optimizer.BoundsCheckElimination)
+    public static final int LOAD_ARRAY_UNCHECKED = 86;       // kao load_array, bez provere indeksa
+    public static final int STORE_ARRAY_UNCHECKED = 87;      // kao store_array, bez provere indeksa
+    public static final int LOAD_ARRAY_LOCAL_UNCHECKED = 88; // kao load_array_local, bez provere indeksa
+
+    // vector_loop <adresa> <kernel>: lo i hi su na steku; izvrsava ArrayKernel iz konstanti nad
+    // celim opsegom i skace na adresu (kraj petlje), a ako nizovi nisu oblika koji kernel
+    // ocekuje, nastavlja na sledecu instrukciju, obicnu petlju
+    public static final int VECTOR_LOOP = 89;
+
+    // parallel_loop <adresa> <petlja>: brojac i granica su u slotovima iz ParallelLoop; deli
+    // opseg na radnike koji izvrsavaju petlju ispod do end_parallel na adresi, pa skace tamo,
+    // a ako petlja nije dovoljno duga ili nizovi nisu razliciti, nastavlja na obicnu petlju
+    public static final int PARALLEL_LOOP = 90;
+    public static final int END_PARALLEL = 91;  // kraj petlje; radnik tu staje, ostalima ne radi nista
+
+    public static final int COUNT = 92;
+
+    // tipovi za cast, nizove, ispis i rezultat programa
+    public static final int TYPE_INT = 0;
+    public static final int TYPE_LONG = 1;
+    public static final int TYPE_DOUBLE = 2;
+    public static final int TYPE_CHAR = 3;
+    public static final int TYPE_BOOL = 4;
+    public static final int TYPE_STRING = 5;
+    public static final int TYPE_ARRAY = 6;    // niz kao element ili vrednost (referenca)
+
+    private static final String[] NAMES = new String[COUNT];
+    private static final int[] OPERANDS = new int[COUNT];
+    private static final String[] TYPE_NAMES = { "int", "long", "double", "char", "bool", "string", "array" };
+
+    static {
+        define(PUSH, "push", 1);
+        define(LOAD_LOCAL, "load_local", 1);
+        define(STORE_LOCAL, "store_local", 1);
+        define(POP, "pop", 0);
+        define(ADD, "add", 0);
+        define(SUB, "sub", 0);
+        define(MUL, "mul", 0);
+        define(DIV, "div", 0);
+        define(MOD, "mod", 0);
+        define(POW, "pow", 0);
+        define(LT, "lt", 0);
+        define(LE, "le", 0);
+        define(GT, "gt", 0);
+        define(GE, "ge", 0);
+        define(EQ, "eq", 0);
+        define(NEQ, "neq", 0);
+        define(AND, "and", 0);
+        define(OR, "or", 0);
+        define(NEG, "neg", 0);
+        define(NOT, "not", 0);
+        define(INC, "inc", 0);
+        define(DEC, "dec", 0);
+        define(JMP, "jmp", 1);
+        define(JMP_IF_FALSE, "jmp_if_false", 1);
+        define(JMP_IF_TRUE, "jmp_if_true", 1);
+        define(CALL, "call", 2);
+        define(RET, "ret", 0);
+        define(HALT, "halt", 1);
+        define(COLLECT, "collect", 1);
+        define(DROP, "drop", 1);
+        define(MAKE_ARRAY, "make_array", 2);
+        define(NEW_ARRAY, "new_array", 2);
+        define(LOAD_ARRAY, "load_array", 2);
+        define(STORE_ARRAY, "store_array", 2);
+        define(CAST, "cast", 2);
+        define(LOAD_GLOBAL, "load_global", 1);
+        define(STORE_GLOBAL, "store_global", 1);
+        define(SHL, "shl", 0);
+        define(SHR, "shr", 0);
+        define(BAND, "band", 0);
+        define(BOR, "bor", 0);
+        String[] arithmetic = { "add", "sub", "mul", "div", "mod" };
+        String[] comparisons = { "lt", "le", "gt", "ge", "eq", "ne" };
+        for (int i = 0; i < arithmetic.length; i++) {
+            define(IADD + i, "i" + arithmetic[i], 0);
+            define(LADD + i, "l" + arithmetic[i], 0);
+            define(DADD + i, "d" + arithmetic[i], 0);
+        }
+        define(INEG, "ineg", 0);
+        define(LNEG, "lneg", 0);
+        define(DNEG, "dneg", 0);
+        for (int i = 0; i < comparisons.length; i++) {
+            define(ILT + i, "i" + comparisons[i], 0);
+            define(LLT + i, "l" + comparisons[i], 0);
+            define(DLT + i, "d" + comparisons[i], 0);
+            define(JLT_LOCAL_LOCAL + i, "j" + comparisons[i] + "_local_local", 3);
+        }
+        define(INC_LOCAL, "inc_local", 2);
+        define(LOAD_ARRAY_LOCAL, "load_array_local", 3);
+        define(TAILCALL, "tailcall", 2);
+        define(LOAD_ARRAY_UNCHECKED, "load_array_unchecked", 2);
+        define(STORE_ARRAY_UNCHECKED, "store_array_unchecked", 2);
+        define(LOAD_ARRAY_LOCAL_UNCHECKED, "load_array_local_unchecked", 3);
+        define(VECTOR_LOOP, "vector_loop", 2);
+        define(PARALLEL_LOOP, "parallel_loop", 2);
+        define(END_PARALLEL, "end_parallel", 0);
+    }
+
+    private Opcode() {}
+
+    private static void define(int op, String name, int operands) {
+        NAMES[op] = name;
+        OPERANDS[op] = operands;
+    }
+
+    public static String name(int op) {
+        return NAMES[op];
+    }
+
+    public static int operands(int op) {
+        return OPERANDS[op];
+    }
+
+    public static String typeName(int type) {
+        return TYPE_NAMES[type];
+    }
+}
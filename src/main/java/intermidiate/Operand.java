@@ -0,0 +1,45 @@
+package intermidiate;
+
+// Operand troadresne instrukcije: virtuelni registar ili konstanta.
+public final class Operand {
+
+    public final int reg;        // -1 za konstantu
+    public final Object value;   // null za registar
+
+    private Operand(int reg, Object value) {
+        this.reg = reg;
+        this.value = value;
+    }
+
+    public static Operand reg(int reg) {
+        return new Operand(reg, null);
+    }
+
+    public static Operand constant(Object value) {
+        return new Operand(-1, value);
+    }
+
+    public boolean isReg() {
+        return reg >= 0;
+    }
+
+    public boolean isConst() {
+        return reg < 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Operand other)) return false;
+        return isReg() ? reg == other.reg : other.isConst() && value.equals(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return isReg() ? reg : value.hashCode() * 31 + 7;
+    }
+
+    @Override
+    public String toString() {
+        return isReg() ? "r" + reg : Bytecode.formatConstant(value);
+    }
+}
@@ -0,0 +1,39 @@
+package intermidiate;
+
+// Petlja craft cije su iteracije nezavisne (optimizer.LoopParallelizer), operand parallel_loop.
+// Brojac je u slotu counter, a hi u slotu limit; uslov petlje je counter < limit (ili <= kad
+// je inclusive), pa masina radniku zadaje deo opsega upisom ta dva slota u kopiju okvira.
+// written i read su nizovi iz tela (lokal je slot, globalna g je ~g): pre pokretanja masina
+// proverava da nijedan niz u koji se pise nije isti objekat kao neki drugi.
+public final class ParallelLoop {
+
+    public final int counter;
+    public final int limit;
+    public final boolean inclusive;
+    public final int frameSize;
+    public final int[] written;
+    public final int[] read;
+
+    public ParallelLoop(int counter, int limit, boolean inclusive, int frameSize, int[] written, int[] read) {
+        this.counter = counter;
+        this.limit = limit;
+        this.inclusive = inclusive;
+        this.frameSize = frameSize;
+        this.written = written;
+        this.read = read;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{l").append(counter).append(inclusive ? " <= l" : " < l").append(limit);
+        sb.append(", frame ").append(frameSize).append(", writes");
+        for (int r : written) sb.append(' ').append(ref(r));
+        sb.append(", reads");
+        for (int r : read) sb.append(' ').append(ref(r));
+        return sb.append('}').toString();
+    }
+
+    private static String ref(int r) {
+        return r >= 0 ? "l" + r : "g" + ~r;
+    }
+}
@@ -0,0 +1,288 @@
+package intermidiate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static intermidiate.Opcode.*;
+
+// Peephole prolaz nad izlazom CodeGenerator-a (pre SuperinstructionFuser-a). Pravila se
+// primenjuju u krug dok ima promena:
+//   JUMP_TO_NEXT  jmp L; L:                        -> (nista),  jmp_if_x L; L: -> pop
+//   JUMP_CHAIN    skok na jmp M                    -> skok na M
+//   PUSH_POP      push|load_local|load_global; pop -> (nista)
+//   DEAD_STORE    push|load_*; store_local s, pa store_local s bez citanja s izmedju -> (nista)
+//   UNREACHABLE   instrukcije posle jmp/ret/halt/tailcall do prvog cilja skoka
+public final class PeepholeOptimizer {
+
+    public enum Rule { JUMP_TO_NEXT, JUMP_CHAIN, PUSH_POP, DEAD_STORE, UNREACHABLE }
+
+    private static final String TOP_LEVEL = "<top level>";
+
+    private final Set<Rule> rules;
+
+    // instrukcije su dekodirane; operand skoka je indeks ciljne instrukcije, ne adresa
+    private int[] ops;
+    private int[][] args;
+    private boolean[] removed;
+    private boolean[] target;
+    private int count;
+
+    // funkcija (po originalnom polozaju) -> {pre, posle}
+    private final Map<String, int[]> sizes = new LinkedHashMap<>();
+
+    public PeepholeOptimizer() {
+        this(EnumSet.allOf(Rule.class));
+    }
+
+    public PeepholeOptimizer(Set<Rule> rules) {
+        this.rules = rules.isEmpty() ? EnumSet.noneOf(Rule.class) : EnumSet.copyOf(rules);
+    }
+
+    public Bytecode optimize(Bytecode program) {
+        int[] indexAt = decode(program);
+        int[] entries = new int[program.functions.size()];
+        int e = 0;
+        for (int entry : program.functions.values()) entries[e++] = indexAt[entry];
+
+        boolean changed = true;
+        while (changed) {
+            markTargets(entries);
+            changed = false;
+            if (rules.contains(Rule.UNREACHABLE)) changed |= removeUnreachable();
+            if (rules.contains(Rule.JUMP_CHAIN)) changed |= threadJumps();
+            if (rules.contains(Rule.JUMP_TO_NEXT)) changed |= removeJumpsToNext();
+            if (rules.contains(Rule.PUSH_POP)) changed |= removePushPop();
+            if (rules.contains(Rule.DEAD_STORE)) changed |= removeDeadStores();
+        }
+        return encode(program, entries);
+    }
+
+    public int getEliminatedCount() {
+        int total = 0;
+        for (int[] s : sizes.values()) total += s[0] - s[1];
+        return total;
+    }
+
+    // jedna linija po funkciji, u redosledu iz koda
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        sizes.forEach((name, s) -> lines.add(String.format("%s: %d -> %d instructions (%d eliminated)",
+                name, s[0], s[1], s[0] - s[1])));
+        return lines;
+    }
+
+    /* ================= PRAVILA ================= */
+
+    private boolean removeUnreachable() {
+        boolean changed = false;
+        boolean reachable = true;
+        for (int i = 0; i < count; i++) {
+            if (removed[i]) continue;
+            if (target[i]) reachable = true;
+            if (!reachable) {
+                removed[i] = true;
+                changed = true;
+                continue;
+            }
+            int op = ops[i];
+            if (op == JMP || op == RET || op == HALT || op == TAILCALL) reachable = false;
+        }
+        return changed;
+    }
+
+    private boolean threadJumps() {
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            if (removed[i] || !isBranch(ops[i])) continue;
+            int slot = jumpOperand(ops[i]);
+            int to = live(args[i][slot]);
+            // ciklus jmp-ova (beskonacna petlja) se ne razmotava
+            for (int steps = 0; to < count && ops[to] == JMP && steps < count; steps++) {
+                int next = live(args[to][0]);
+                if (next == to) break;
+                to = next;
+            }
+            if (to != live(args[i][slot])) {
+                args[i][slot] = to;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean removeJumpsToNext() {
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            int op = ops[i];
+            if (removed[i] || op != JMP && op != JMP_IF_FALSE && op != JMP_IF_TRUE) continue;
+            if (live(args[i][0]) != live(i + 1)) continue;
+            if (op == JMP) {
+                removed[i] = true;
+            } else {
+                // uslov je vec na steku i mora da se skine
+                ops[i] = POP;
+                args[i] = new int[0];
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean removePushPop() {
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            if (removed[i] || !isPureLoad(ops[i])) continue;
+            int next = live(i + 1);
+            if (next < count && ops[next] == POP && !target[next]) {
+                removed[i] = true;
+                removed[next] = true;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // vrednost upisana u lokal koji se pre citanja u istom bloku ponovo upisuje
+    private boolean removeDeadStores() {
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            if (removed[i] || !isPureLoad(ops[i])) continue;
+            int store = live(i + 1);
+            if (store >= count || ops[store] != STORE_LOCAL || target[store]) continue;
+            int slot = args[store][0];
+            if (overwrittenBeforeRead(store, slot)) {
+                removed[i] = true;
+                removed[store] = true;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean overwrittenBeforeRead(int store, int slot) {
+        for (int j = live(store + 1); j < count; j = live(j + 1)) {
+            int op = ops[j];
+            if (target[j] || isBranch(op) || op == RET || op == HALT) return false;
+            if (reads(j, slot)) return false;
+            if (op == STORE_LOCAL && args[j][0] == slot) return true;
+        }
+        return false;
+    }
+
+    private boolean reads(int i, int slot) {
+        return switch (ops[i]) {
+            case LOAD_LOCAL, INC_LOCAL -> args[i][0] == slot;
+            case LOAD_ARRAY_LOCAL, LOAD_ARRAY_LOCAL_UNCHECKED -> args[i][0] == slot || args[i][1] == slot;
+            default -> ops[i] >= JLT_LOCAL_LOCAL && ops[i] <= JNE_LOCAL_LOCAL
+                    && (args[i][0] == slot || args[i][1] == slot);
+        };
+    }
+
+    private static boolean isPureLoad(int op) {
+        return op == PUSH || op == LOAD_LOCAL || op == LOAD_GLOBAL;
+    }
+
+    /* ================= KODIRANJE ================= */
+
+    // vraca indeks instrukcije za svaku adresu
+    private int[] decode(Bytecode program) {
+        int[] code = program.code;
+        int[] indexAt = new int[code.length + 1];
+        ops = new int[code.length];
+        args = new int[code.length][];
+        count = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            indexAt[pc] = count;
+            ops[count] = code[pc];
+            args[count] = Arrays.copyOfRange(code, pc + 1, pc + 1 + operands(code[pc]));
+            count++;
+            pc += 1 + operands(code[pc]);
+        }
+        indexAt[code.length] = count;
+        for (int i = 0; i < count; i++) {
+            if (isBranch(ops[i])) args[i][jumpOperand(ops[i])] = indexAt[args[i][jumpOperand(ops[i])]];
+        }
+        removed = new boolean[count + 1];
+        target = new boolean[count + 1];
+        return indexAt;
+    }
+
+    private Bytecode encode(Bytecode program, int[] entries) {
+        int[] address = new int[count + 1];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            address[i] = size;
+            if (!removed[i]) size += 1 + operands(ops[i]);
+        }
+        address[count] = size;
+
+        int[] code = new int[size];
+        int pc = 0;
+        for (int i = 0; i < count; i++) {
+            if (removed[i]) continue;
+            code[pc] = ops[i];
+            for (int k = 0; k < args[i].length; k++) {
+                boolean jump = isBranch(ops[i]) && k == jumpOperand(ops[i]);
+                code[pc + 1 + k] = jump ? address[live(args[i][k])] : args[i][k];
+            }
+            pc += 1 + args[i].length;
+        }
+
+        // ulazi funkcija su ciljevi, pa se ne brisu (vidi markTargets)
+        Map<String, Integer> functions = new LinkedHashMap<>();
+        int e = 0;
+        for (String name : program.functions.keySet()) functions.put(name, address[live(entries[e++])]);
+        countSizes(program, entries);
+        return new Bytecode(code, program.constants, functions, program.globalCount);
+    }
+
+    // vrh programa pa funkcije redom kojim su u kodu; funkcija traje do ulaza sledece
+    private void countSizes(Bytecode program, int[] entries) {
+        List<String> names = new ArrayList<>(program.functions.keySet());
+        Integer[] order = new Integer[entries.length];
+        for (int f = 0; f < order.length; f++) order[f] = f;
+        Arrays.sort(order, (a, b) -> Integer.compare(entries[a], entries[b]));
+
+        int next = 0;
+        String owner = TOP_LEVEL;
+        for (int i = 0; i < count; i++) {
+            while (next < order.length && entries[order[next]] == i) owner = names.get(order[next++]);
+            int[] s = sizes.computeIfAbsent(owner, name -> new int[2]);
+            s[0]++;
+            if (!removed[i]) s[1]++;
+        }
+    }
+
+    /* ================= POMOCNO ================= */
+
+    // prva instrukcija od i koja nije obrisana (ili count)
+    private int live(int i) {
+        while (i < count && removed[i]) i++;
+        return i;
+    }
+
+    private void markTargets(int[] entries) {
+        Arrays.fill(target, false);
+        target[0] = true;
+        for (int entry : entries) target[live(entry)] = true;
+        for (int i = 0; i < count; i++) {
+            if (!removed[i] && isBranch(ops[i])) target[live(args[i][jumpOperand(ops[i])])] = true;
+        }
+    }
+
+    private static boolean isBranch(int op) {
+        return op == JMP || op == JMP_IF_FALSE || op == JMP_IF_TRUE || op == CALL || op == TAILCALL
+                || op == VECTOR_LOOP || op == PARALLEL_LOOP || op >= JLT_LOCAL_LOCAL && op <= JNE_LOCAL_LOCAL;
+    }
+
+    // indeks operanda sa adresom
+    private static int jumpOperand(int op) {
+        return op >= JLT_LOCAL_LOCAL && op <= JNE_LOCAL_LOCAL ? 2 : 0;
+    }
+}
@@ -0,0 +1,369 @@
+package intermidiate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Prevodi optimizovane CFG-ove (posle Ssa.destruct) u kod registarske masine.
+// Virtuelni registri se gusto prenumerisu (parametri prvi), konstante dobijaju
+// sopstvene registre na kraju okvira, a opkod se bira po tipu operanada.
+public final class RegisterCodeGenerator {
+
+    private int[] code = new int[256];
+    private int size = 0;
+
+    private final Map<String, Integer> functionIndex = new HashMap<>();
+
+    // stanje funkcije koja se trenutno prevodi
+    private Cfg cfg;
+    private final Map<Integer, Integer> registers = new HashMap<>();
+    private final Map<Integer, Integer> types = new HashMap<>();
+    private final Map<List<Object>, Integer> constantIndex = new HashMap<>();
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<BasicBlock, Integer> blockPositions = new HashMap<>();
+    private final Map<Integer, BasicBlock> patchSites = new HashMap<>();
+
+    // ocekuje CFG-ove iz CfgBuilder-a, prvi je $top
+    public RegisterProgram generate(List<Cfg> cfgs, int globalCount) {
+        for (int i = 0; i < cfgs.size(); i++) functionIndex.put(cfgs.get(i).name, i);
+
+        RegisterProgram.Function[] functions = new RegisterProgram.Function[cfgs.size()];
+        for (int i = 0; i < cfgs.size(); i++) functions[i] = generateFunc(cfgs.get(i));
+        return new RegisterProgram(Arrays.copyOf(code, size), functions, globalCount);
+    }
+
+    private RegisterProgram.Function generateFunc(Cfg f) {
+        cfg = f;
+        registers.clear();
+        types.clear();
+        constantIndex.clear();
+        constants.clear();
+        blockPositions.clear();
+        patchSites.clear();
+
+        for (int i = 0; i < f.params; i++) {
+            registers.put(i, i);
+            types.put(i, f.paramTypes[i]);
+        }
+        inferTypes();
+
+        int entry = size;
+        List<BasicBlock> order = f.reversePostorder();
+        for (int k = 0; k < order.size(); k++) {
+            BasicBlock b = order.get(k);
+            BasicBlock next = k + 1 < order.size() ? order.get(k + 1) : null;
+            blockPositions.put(b, size);
+            for (Instr i : b.instrs) generate(i, next);
+        }
+        patchSites.forEach((site, target) -> code[site] = blockPositions.get(target));
+
+        // konstante dolaze posle svih registara; redosled je redosled prvog koriscenja
+        int constBase = registers.size();
+        long[] prims = new long[constants.size()];
+        Object[] refs = new Object[constants.size()];
+        boolean usesRefs = types.values().stream().anyMatch(RegisterCodeGenerator::isRef);
+        for (int k = 0; k < constants.size(); k++) {
+            Object c = constants.get(k);
+            if (isRefValue(c)) refs[k] = c;
+            else prims[k] = encode(c);
+            usesRefs |= refs[k] != null;
+        }
+        int frameSize = Math.max(1, constBase + constants.size());
+        relocateConstants(entry, constBase);
+        return new RegisterProgram.Function(f.name, entry, f.params, frameSize, constBase, prims, refs, usesRefs);
+    }
+
+    // tip registra je tip instrukcije koja ga definise (CfgBuilder daje svakom paru slot/tip
+    // poseban registar, pa su sve definicije istog tipa); kopije bez tipa ga preuzimaju od izvora
+    private void inferTypes() {
+        for (BasicBlock b : cfg.blocks) {
+            for (Instr i : b.instrs) if (i.dst >= 0 && i.type >= 0) types.put(i.dst, i.type);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock b : cfg.blocks) {
+                for (Instr i : b.instrs) {
+                    if (i.op != Instr.MOVE || types.containsKey(i.dst)) continue;
+                    int t = typeOf(i.args[0]);
+                    if (t >= 0) {
+                        types.put(i.dst, t);
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /* ================= IZBOR INSTRUKCIJA ================= */
+
+    private void generate(Instr i, BasicBlock next) {
+        switch (i.op) {
+            case Instr.MOVE -> {
+                int t = types.getOrDefault(i.dst, -1);
+                emit(isRef(t) ? RegisterOpcode.MOVR : RegisterOpcode.MOV, reg(i.dst), operand(i.args[0], t));
+            }
+            case Opcode.ADD, Opcode.SUB, Opcode.MUL, Opcode.DIV, Opcode.MOD -> {
+                int base = switch (i.type) {
+                    case Opcode.TYPE_INT -> RegisterOpcode.IADD;
+                    case Opcode.TYPE_LONG -> RegisterOpcode.LADD;
+                    case Opcode.TYPE_DOUBLE -> RegisterOpcode.DADD;
+                    default -> throw new IllegalStateException("Arithmetic on " + typeName(i.type) + " in " + cfg.name);
+                };
+                emit(base + i.op - Opcode.ADD, reg(i.dst), operand(i.args[0], i.type), operand(i.args[1], i.type));
+            }
+            case Opcode.NEG -> {
+                int op = switch (i.type) {
+                    case Opcode.TYPE_INT -> RegisterOpcode.INEG;
+                    case Opcode.TYPE_LONG -> RegisterOpcode.LNEG;
+                    case Opcode.TYPE_DOUBLE -> RegisterOpcode.DNEG;
+                    default -> throw new IllegalStateException("Unary minus on " + typeName(i.type) + " in " + cfg.name);
+                };
+                emit(op, reg(i.dst), operand(i.args[0], i.type));
+            }
+            case Opcode.LT, Opcode.LE, Opcode.GT, Opcode.GE, Opcode.EQ, Opcode.NEQ -> {
+                int t = operandType(i.args[0], i.args[1]);
+                int base = t == Opcode.TYPE_DOUBLE ? RegisterOpcode.DLT : RegisterOpcode.LT;
+                int op = base + i.op - Opcode.LT;
+                if (isRef(t)) {
+                    if (i.op != Opcode.EQ && i.op != Opcode.NEQ)
+                        throw new IllegalStateException("Ordering on " + typeName(t) + " in " + cfg.name);
+                    op = i.op == Opcode.EQ ? RegisterOpcode.REQ : RegisterOpcode.RNE;
+                }
+                emit(op, reg(i.dst), operand(i.args[0], t), operand(i.args[1], t));
+            }
+            case Opcode.AND, Opcode.OR, Opcode.SHL, Opcode.SHR, Opcode.BAND, Opcode.BOR -> {
+                int op = switch (i.op) {
+                    case Opcode.AND -> RegisterOpcode.AND;
+                    case Opcode.OR -> RegisterOpcode.OR;
+                    case Opcode.SHL -> RegisterOpcode.SHL;
+                    case Opcode.SHR -> RegisterOpcode.SHR;
+                    case Opcode.BAND -> RegisterOpcode.BAND;
+                    default -> RegisterOpcode.BOR;
+                };
+                emit(op, reg(i.dst), operand(i.args[0], -1), operand(i.args[1], -1));
+            }
+            case Opcode.NOT -> emit(RegisterOpcode.NOT, reg(i.dst), operand(i.args[0], -1));
+            case Opcode.CAST -> cast(i);
+            case Opcode.LOAD_GLOBAL -> emit(RegisterOpcode.GGET, reg(i.dst), i.aux);
+            case Opcode.STORE_GLOBAL -> emit(RegisterOpcode.GSET, i.aux, operand(i.args[0], -1));
+            case Opcode.COLLECT, Opcode.DROP -> {
+                int op = i.op == Opcode.COLLECT ? RegisterOpcode.PRINTLN : RegisterOpcode.PRINT;
+                for (Operand a : i.args) emit(op, operand(a, -1), known(typeOf(a)));
+            }
+            case Opcode.CALL -> {
+                Integer callee = functionIndex.get(i.callee);
+                if (callee == null) throw new IllegalStateException("Unknown function: " + i.callee);
+                int[] ops = new int[3 + i.args.length];
+                ops[0] = i.dst >= 0 ? reg(i.dst) : -1;
+                ops[1] = callee;
+                ops[2] = i.args.length;
+                for (int k = 0; k < i.args.length; k++) ops[3 + k] = operand(i.args[k], -1);
+                emit(RegisterOpcode.CALL, ops);
+            }
+            case Opcode.RET -> emit(RegisterOpcode.RET, operand(i.args[0], -1), known(typeOf(i.args[0])));
+            case Opcode.NEW_ARRAY -> {
+                int[] ops = new int[3 + i.args.length];
+                ops[0] = reg(i.dst);
+                ops[1] = i.aux;
+                ops[2] = i.args.length;
+                for (int k = 0; k < i.args.length; k++) ops[3 + k] = operand(i.args[k], Opcode.TYPE_INT);
+                emit(RegisterOpcode.NEWARR, ops);
+            }
+            case Opcode.MAKE_ARRAY -> {
+                // elementi literala su istog tipa (SemanticAnalyzer)
+                int t = known(typeOf(i.args[0]));
+                int[] ops = new int[3 + i.args.length];
+                ops[0] = reg(i.dst);
+                ops[1] = t;
+                ops[2] = i.args.length;
+                for (int k = 0; k < i.args.length; k++) ops[3 + k] = operand(i.args[k], t);
+                emit(RegisterOpcode.MKARR, ops);
+            }
+            case Opcode.LOAD_ARRAY -> {
+                int[] ops = new int[3 + i.args.length];
+                ops[0] = reg(i.dst);
+                ops[1] = known(i.type);
+                ops[2] = i.args.length - 1;
+                ops[3] = operand(i.args[0], -1);
+                for (int k = 1; k < i.args.length; k++) ops[3 + k] = operand(i.args[k], Opcode.TYPE_INT);
+                emit(RegisterOpcode.ALOAD, ops);
+            }
+            case Opcode.STORE_ARRAY -> {
+                int n = i.args.length - 2;
+                Operand value = i.args[i.args.length - 1];
+                int[] ops = new int[3 + n + 1];
+                ops[0] = known(typeOf(value));
+                ops[1] = n;
+                ops[2] = operand(i.args[0], -1);
+                for (int k = 1; k <= n; k++) ops[2 + k] = operand(i.args[k], Opcode.TYPE_INT);
+                ops[3 + n] = operand(value, -1);
+                emit(RegisterOpcode.ASTORE, ops);
+            }
+            case Opcode.JMP -> {
+                if (i.targets[0] != next) jump(RegisterOpcode.JMP, -1, i.targets[0]);
+            }
+            case Instr.BRANCH -> {
+                int c = operand(i.args[0], Opcode.TYPE_BOOL);
+                if (i.targets[1] == next) {
+                    jump(RegisterOpcode.JT, c, i.targets[0]);
+                } else if (i.targets[0] == next) {
+                    jump(RegisterOpcode.JF, c, i.targets[1]);
+                } else {
+                    jump(RegisterOpcode.JT, c, i.targets[0]);
+                    jump(RegisterOpcode.JMP, -1, i.targets[1]);
+                }
+            }
+            default -> throw new IllegalStateException("Unsupported IR instruction in " + cfg.name + ": " + i);
+        }
+    }
+
+    // gold/emerald/iron su isti long u registru, pa su neke konverzije obicna kopija
+    private void cast(Instr i) {
+        int from = typeOf(i.args[0]);
+        int to = i.aux;
+        int d = reg(i.dst);
+        int s = operand(i.args[0], -1);
+        switch (to) {
+            case Opcode.TYPE_DOUBLE -> emit(from == Opcode.TYPE_DOUBLE ? RegisterOpcode.MOV : RegisterOpcode.L2D, d, s);
+            case Opcode.TYPE_INT -> emit(from == Opcode.TYPE_DOUBLE ? RegisterOpcode.D2I
+                    : from == Opcode.TYPE_LONG ? RegisterOpcode.L2I : RegisterOpcode.MOV, d, s);
+            case Opcode.TYPE_LONG -> emit(from == Opcode.TYPE_DOUBLE ? RegisterOpcode.D2L : RegisterOpcode.MOV, d, s);
+            case Opcode.TYPE_CHAR -> {
+                if (from == Opcode.TYPE_CHAR) {
+                    emit(RegisterOpcode.MOV, d, s);
+                } else if (from == Opcode.TYPE_DOUBLE) {
+                    emit(RegisterOpcode.D2I, d, s);
+                    emit(RegisterOpcode.I2C, d, d);
+                } else {
+                    emit(RegisterOpcode.I2C, d, s);
+                }
+            }
+            case Opcode.TYPE_BOOL -> emit(RegisterOpcode.MOV, d, s);
+            case Opcode.TYPE_ARRAY -> emit(RegisterOpcode.MOVR, d, s);
+            default -> throw new IllegalStateException("Unsupported cast to " + typeName(to) + " in " + cfg.name);
+        }
+    }
+
+    /* ================= REGISTRI I KONSTANTE ================= */
+
+    private int reg(int virtual) {
+        return registers.computeIfAbsent(virtual, k -> registers.size());
+    }
+
+    // konstanta se prevodi u trazeni tip (npr. nedefinisana 0 u diamond phi-ju)
+    private int operand(Operand o, int wanted) {
+        if (o.isReg()) return reg(o.reg);
+        Object value = o.value;
+        if (wanted >= 0 && wanted != Opcode.TYPE_BOOL && !isRef(wanted) && !(value instanceof Boolean) && !isRefValue(value)
+                && wanted != constantType(value)) {
+            Object c = ConstantEvaluator.evaluate(Opcode.CAST, wanted, new Object[] { value });
+            if (c != null) value = c;
+        }
+        List<Object> key = List.of(value.getClass(), value);
+        Integer k = constantIndex.get(key);
+        if (k == null) {
+            k = constants.size();
+            constants.add(value);
+            constantIndex.put(key, k);
+        }
+        // broj registra konstante se zna tek kad su svi registri dodeljeni
+        return CONSTANT_TAG | k;
+    }
+
+    private static final int CONSTANT_TAG = 1 << 30;
+
+    private void relocateConstants(int entry, int constBase) {
+        int pc = entry;
+        while (pc < size) {
+            int op = code[pc];
+            int len = RegisterOpcode.length(code, pc);
+            for (int k = 1; k < len; k++) {
+                if (isRegisterOperand(op, k) && code[pc + k] >= CONSTANT_TAG) {
+                    code[pc + k] = constBase + (code[pc + k] & ~CONSTANT_TAG);
+                }
+            }
+            pc += len;
+        }
+    }
+
+    // da li je k-ti operand instrukcije broj registra (a ne tip, broj ili adresa)
+    private static boolean isRegisterOperand(int op, int k) {
+        return switch (op) {
+            case RegisterOpcode.JMP -> false;
+            case RegisterOpcode.JT, RegisterOpcode.JF -> k == 1;
+            case RegisterOpcode.CALL -> k == 1 || k >= 4;
+            case RegisterOpcode.RET, RegisterOpcode.PRINT, RegisterOpcode.PRINTLN -> k == 1;
+            case RegisterOpcode.GGET -> k == 1;
+            case RegisterOpcode.GSET -> k == 2;
+            case RegisterOpcode.NEWARR, RegisterOpcode.MKARR, RegisterOpcode.ALOAD -> k == 1 || k >= 4;
+            case RegisterOpcode.ASTORE -> k >= 3;
+            default -> true;
+        };
+    }
+
+    private int typeOf(Operand o) {
+        return o.isReg() ? types.getOrDefault(o.reg, -1) : constantType(o.value);
+    }
+
+    private int operandType(Operand a, Operand b) {
+        int ta = typeOf(a);
+        int tb = typeOf(b);
+        if (ta == Opcode.TYPE_DOUBLE || tb == Opcode.TYPE_DOUBLE) return Opcode.TYPE_DOUBLE;
+        return ta >= 0 ? ta : tb;
+    }
+
+    private static int constantType(Object c) {
+        if (c instanceof Integer) return Opcode.TYPE_INT;
+        if (c instanceof Long) return Opcode.TYPE_LONG;
+        if (c instanceof Double) return Opcode.TYPE_DOUBLE;
+        if (c instanceof Character) return Opcode.TYPE_CHAR;
+        if (c instanceof Boolean) return Opcode.TYPE_BOOL;
+        if (c instanceof String) return Opcode.TYPE_STRING;
+        return -1;
+    }
+
+    // primitivne konstante se cuvaju kao long; diamond kao bitovi
+    static long encode(Object c) {
+        if (c instanceof Double d) return Double.doubleToRawLongBits(d);
+        if (c instanceof Character ch) return ch;
+        if (c instanceof Boolean b) return b ? 1 : 0;
+        return ((Number) c).longValue();
+    }
+
+    private static boolean isRef(int type) {
+        return type == Opcode.TYPE_STRING || type == Opcode.TYPE_ARRAY;
+    }
+
+    private static boolean isRefValue(Object c) {
+        return !(c instanceof Number || c instanceof Character || c instanceof Boolean);
+    }
+
+    private static int known(int type) {
+        return type >= 0 ? type : Opcode.TYPE_INT;
+    }
+
+    private static String typeName(int type) {
+        return type >= 0 ? Opcode.typeName(type) : "unknown";
+    }
+
+    /* ================= EMITOVANJE ================= */
+
+    private void emit(int op, int... operands) {
+        ensureCapacity(1 + operands.length);
+        code[size++] = op;
+        for (int o : operands) code[size++] = o;
+    }
+
+    private void jump(int op, int cond, BasicBlock target) {
+        if (op == RegisterOpcode.JMP) emit(op, 0);
+        else emit(op, cond, 0);
+        patchSites.put(size - 1, target);
+    }
+
+    private void ensureCapacity(int n) {
+        if (size + n > code.length) code = Arrays.copyOf(code, Math.max(code.length * 2, size + n));
+    }
+}
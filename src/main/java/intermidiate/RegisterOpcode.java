@@ -0,0 +1,166 @@
+package intermidiate;
+
+public final class RegisterOpcode {
+
+    // troadresne instrukcije registarske masine: opkod, pa odredisni registar, pa izvori.
+    // Registri su relativni u odnosu na okvir; primitivne vrednosti (gold, emerald, iron,
+    // redstone kao long, diamond kao bitovi double-a) i reference (string, niz) su odvojene,
+    // pa tip svakog operanda mora biti poznat u vreme prevodjenja.
+
+    public static final int MOV = 0;        // mov d, s          (primitivna vrednost)
+    public static final int MOVR = 1;       // movr d, s         (referenca)
+
+    public static final int IADD = 2;       // iadd d, a, b
+    public static final int ISUB = 3;
+    public static final int IMUL = 4;
+    public static final int IDIV = 5;
+    public static final int IMOD = 6;
+    public static final int LADD = 7;
+    public static final int LSUB = 8;
+    public static final int LMUL = 9;
+    public static final int LDIV = 10;
+    public static final int LMOD = 11;
+    public static final int DADD = 12;
+    public static final int DSUB = 13;
+    public static final int DMUL = 14;
+    public static final int DDIV = 15;
+    public static final int DMOD = 16;
+    public static final int INEG = 17;      // ineg d, a
+    public static final int LNEG = 18;
+    public static final int DNEG = 19;
+
+    // poredjenja celobrojnih vrednosti (gold, emerald, iron, redstone) su ista nad long-om
+    public static final int LT = 20;        // lt d, a, b
+    public static final int LE = 21;
+    public static final int GT = 22;
+    public static final int GE = 23;
+    public static final int EQ = 24;
+    public static final int NE = 25;
+    public static final int DLT = 26;
+    public static final int DLE = 27;
+    public static final int DGT = 28;
+    public static final int DGE = 29;
+    public static final int DEQ = 30;
+    public static final int DNE = 31;
+    public static final int REQ = 32;       // poredjenje referenci (string po vrednosti)
+    public static final int RNE = 33;
+
+    public static final int AND = 34;
+    public static final int OR = 35;
+    public static final int NOT = 36;       // not d, a
+    public static final int SHL = 37;
+    public static final int SHR = 38;
+    public static final int BAND = 39;
+    public static final int BOR = 40;
+
+    public static final int L2D = 41;       // l2d d, a          (i gold -> diamond)
+    public static final int D2I = 42;
+    public static final int D2L = 43;
+    public static final int L2I = 44;
+    public static final int I2C = 45;
+
+    public static final int JMP = 46;       // jmp <adresa>
+    public static final int JT = 47;        // jt c, <adresa>
+    public static final int JF = 48;        // jf c, <adresa>
+    public static final int CALL = 49;      // call d, <funkcija>, n, a1..an
+    public static final int RET = 50;       // ret s, <tip>
+
+    public static final int GGET = 51;      // gget d, <globalna>
+    public static final int GSET = 52;      // gset <globalna>, s
+    public static final int PRINT = 53;     // print s, <tip>
+    public static final int PRINTLN = 54;   // println s, <tip>
+
+    public static final int NEWARR = 55;    // newarr d, <tip>, n, dim1..dimn
+    public static final int MKARR = 56;     // mkarr d, <tip>, n, e1..en
+    public static final int ALOAD = 57;     // aload d, <tip>, n, niz, i1..in
+    public static final int ASTORE = 58;    // astore <tip>, n, niz, i1..in, s
+
+    public static final int COUNT = 59;
+
+    private static final String[] NAMES = new String[COUNT];
+    private static final int[] OPERANDS = new int[COUNT];   // -1 za promenljivu duzinu
+
+    static {
+        define(MOV, "mov", 2);
+        define(MOVR, "movr", 2);
+        define(IADD, "iadd", 3);
+        define(ISUB, "isub", 3);
+        define(IMUL, "imul", 3);
+        define(IDIV, "idiv", 3);
+        define(IMOD, "imod", 3);
+        define(LADD, "ladd", 3);
+        define(LSUB, "lsub", 3);
+        define(LMUL, "lmul", 3);
+        define(LDIV, "ldiv", 3);
+        define(LMOD, "lmod", 3);
+        define(DADD, "dadd", 3);
+        define(DSUB, "dsub", 3);
+        define(DMUL, "dmul", 3);
+        define(DDIV, "ddiv", 3);
+        define(DMOD, "dmod", 3);
+        define(INEG, "ineg", 2);
+        define(LNEG, "lneg", 2);
+        define(DNEG, "dneg", 2);
+        define(LT, "lt", 3);
+        define(LE, "le", 3);
+        define(GT, "gt", 3);
+        define(GE, "ge", 3);
+        define(EQ, "eq", 3);
+        define(NE, "ne", 3);
+        define(DLT, "dlt", 3);
+        define(DLE, "dle", 3);
+        define(DGT, "dgt", 3);
+        define(DGE, "dge", 3);
+        define(DEQ, "deq", 3);
+        define(DNE, "dne", 3);
+        define(REQ, "req", 3);
+        define(RNE, "rne", 3);
+        define(AND, "and", 3);
+        define(OR, "or", 3);
+        define(NOT, "not", 2);
+        define(SHL, "shl", 3);
+        define(SHR, "shr", 3);
+        define(BAND, "band", 3);
+        define(BOR, "bor", 3);
+        define(L2D, "l2d", 2);
+        define(D2I, "d2i", 2);
+        define(D2L, "d2l", 2);
+        define(L2I, "l2i", 2);
+        define(I2C, "i2c", 2);
+        define(JMP, "jmp", 1);
+        define(JT, "jt", 2);
+        define(JF, "jf", 2);
+        define(CALL, "call", -1);
+        define(RET, "ret", 2);
+        define(GGET, "gget", 2);
+        define(GSET, "gset", 2);
+        define(PRINT, "print", 2);
+        define(PRINTLN, "println", 2);
+        define(NEWARR, "newarr", -1);
+        define(MKARR, "mkarr", -1);
+        define(ALOAD, "aload", -1);
+        define(ASTORE, "astore", -1);
+    }
+
+    private RegisterOpcode() {}
+
+    private static void define(int op, String name, int operands) {
+        NAMES[op] = name;
+        OPERANDS[op] = operands;
+    }
+
+    public static String name(int op) {
+        return NAMES[op];
+    }
+
+    // ukupna duzina instrukcije na pc (opkod + operandi)
+    public static int length(int[] code, int pc) {
+        int op = code[pc];
+        return switch (op) {
+            case CALL, NEWARR, MKARR -> 4 + code[pc + 3];
+            case ALOAD -> 5 + code[pc + 3];
+            case ASTORE -> 5 + code[pc + 2];
+            default -> 1 + OPERANDS[op];
+        };
+    }
+}
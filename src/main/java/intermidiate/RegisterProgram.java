@@ -0,0 +1,101 @@
+package intermidiate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class RegisterProgram {
+
+    // funkcija: registri 0..params-1 su argumenti, od constBase pocinju konstante
+    // koje se kopiraju u okvir pri svakom pozivu
+    public static final class Function {
+        public final String name;
+        public final int entry;
+        public final int params;
+        public final int frameSize;
+        public final int constBase;
+        public final long[] constants;
+        public final Object[] constantRefs;
+        public final boolean usesRefs;      // ima registre sa stringom ili nizom
+
+        public Function(String name, int entry, int params, int frameSize, int constBase,
+                        long[] constants, Object[] constantRefs, boolean usesRefs) {
+            this.name = name;
+            this.entry = entry;
+            this.params = params;
+            this.frameSize = frameSize;
+            this.constBase = constBase;
+            this.constants = constants;
+            this.constantRefs = constantRefs;
+            this.usesRefs = usesRefs;
+        }
+    }
+
+    public final int[] code;
+    public final Function[] functions;   // functions[0] je $top
+    public final int globalCount;
+
+    public RegisterProgram(int[] code, Function[] functions, int globalCount) {
+        this.code = code;
+        this.functions = functions;
+        this.globalCount = globalCount;
+    }
+
+    /* ================= DISASEMBLER ================= */
+
+    public List<String> disassemble() {
+        Map<Integer, Function> entries = new HashMap<>();
+        for (Function f : functions) entries.put(f.entry, f);
+
+        List<String> lines = new ArrayList<>();
+        int pc = 0;
+        while (pc < code.length) {
+            Function f = entries.get(pc);
+            if (f != null) {
+                lines.add(f.name + ":    ; frame " + f.frameSize + ", params " + f.params);
+                for (int k = 0; k < f.constants.length; k++) {
+                    Object ref = f.constantRefs[k];
+                    lines.add(String.format("         r%d = %s", f.constBase + k,
+                            ref != null ? Bytecode.formatConstant(ref) : String.valueOf(f.constants[k])));
+                }
+            }
+            lines.add(String.format("%5d  %s", pc, instruction(pc)));
+            pc += RegisterOpcode.length(code, pc);
+        }
+        return lines;
+    }
+
+    private String instruction(int pc) {
+        int op = code[pc];
+        StringBuilder sb = new StringBuilder(RegisterOpcode.name(op));
+        switch (op) {
+            case RegisterOpcode.JMP -> sb.append(' ').append(code[pc + 1]);
+            case RegisterOpcode.JT, RegisterOpcode.JF -> sb.append(" r").append(code[pc + 1]).append(", ").append(code[pc + 2]);
+            case RegisterOpcode.CALL -> {
+                if (code[pc + 1] >= 0) sb.append(" r").append(code[pc + 1]).append(",");
+                sb.append(' ').append(functions[code[pc + 2]].name).append('(');
+                for (int i = 0; i < code[pc + 3]; i++) sb.append(i > 0 ? ", r" : "r").append(code[pc + 4 + i]);
+                sb.append(')');
+            }
+            case RegisterOpcode.RET, RegisterOpcode.PRINT, RegisterOpcode.PRINTLN ->
+                    sb.append(" r").append(code[pc + 1]).append(", ").append(Opcode.typeName(code[pc + 2]));
+            case RegisterOpcode.GGET -> sb.append(" r").append(code[pc + 1]).append(", g").append(code[pc + 2]);
+            case RegisterOpcode.GSET -> sb.append(" g").append(code[pc + 1]).append(", r").append(code[pc + 2]);
+            case RegisterOpcode.NEWARR, RegisterOpcode.MKARR, RegisterOpcode.ALOAD -> {
+                sb.append(" r").append(code[pc + 1]).append(", ").append(Opcode.typeName(code[pc + 2]));
+                int n = code[pc + 3] + (op == RegisterOpcode.ALOAD ? 1 : 0);
+                for (int i = 0; i < n; i++) sb.append(", r").append(code[pc + 4 + i]);
+            }
+            case RegisterOpcode.ASTORE -> {
+                sb.append(' ').append(Opcode.typeName(code[pc + 1]));
+                for (int i = 0; i < code[pc + 2] + 2; i++) sb.append(", r").append(code[pc + 3 + i]);
+            }
+            default -> {
+                int n = RegisterOpcode.length(code, pc) - 1;
+                for (int i = 1; i <= n; i++) sb.append(i > 1 ? ", r" : " r").append(code[pc + i]);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package intermidiate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Sparse conditional constant propagation (Wegman, Zadeck) nad SSA oblikom.
+// Vrednost registra je nepoznata (nema je u mapi), konstanta ili BOTTOM; grana
+// sa konstantnim uslovom postaje skok, a blokovi do kojih se ne stize se brisu.
+final class Sccp {
+
+    private static final Object BOTTOM = new Object();
+
+    private final Cfg cfg;
+    private final Map<Integer, Object> values = new HashMap<>();
+    private final Map<Integer, List<Instr>> users = new HashMap<>();
+    private final Map<Instr, BasicBlock> owner = new HashMap<>();
+    private final Set<Integer> defined = new HashSet<>();
+    private final Set<BasicBlock> executable = new HashSet<>();
+    private final Set<List<BasicBlock>> executableEdges = new HashSet<>();
+    private final Deque<BasicBlock[]> flowWork = new ArrayDeque<>();
+    private final Deque<Instr> ssaWork = new ArrayDeque<>();
+    private int folded = 0;
+
+    Sccp(Cfg cfg) {
+        this.cfg = cfg;
+        for (BasicBlock b : cfg.blocks) {
+            for (Instr i : b.instrs) {
+                owner.put(i, b);
+                if (i.dst >= 0) defined.add(i.dst);
+                for (int r : i.uses()) users.computeIfAbsent(r, k -> new ArrayList<>()).add(i);
+            }
+        }
+    }
+
+    // vraca broj instrukcija i grana zamenjenih konstantom
+    int run() {
+        flowWork.add(new BasicBlock[] { null, cfg.entry() });
+        while (!flowWork.isEmpty() || !ssaWork.isEmpty()) {
+            while (!flowWork.isEmpty()) {
+                BasicBlock[] edge = flowWork.poll();
+                if (edge[0] != null && !executableEdges.add(List.of(edge[0], edge[1]))) continue;
+                BasicBlock b = edge[1];
+                boolean first = executable.add(b);
+                for (Instr i : b.instrs) {
+                    if (i.op == Instr.PHI) visit(i);
+                    else if (first) visit(i);
+                }
+            }
+            while (!ssaWork.isEmpty()) {
+                Instr i = ssaWork.poll();
+                if (executable.contains(owner.get(i))) visit(i);
+            }
+        }
+        rewrite();
+        return folded;
+    }
+
+    /* ================= ANALIZA ================= */
+
+    private void visit(Instr i) {
+        BasicBlock b = owner.get(i);
+        switch (i.op) {
+            case Instr.PHI -> {
+                Object v = null;
+                for (int k = 0; k < i.args.length; k++) {
+                    if (!executableEdges.contains(List.of(b.preds.get(k), b))) continue;
+                    v = meet(v, valueOf(i.args[k]));
+                }
+                update(i.dst, v);
+            }
+            case Instr.BRANCH -> {
+                Object c = valueOf(i.args[0]);
+                if (c == null) return;
+                if (c == BOTTOM || !(c instanceof Boolean)) {
+                    markEdge(b, i.targets[0]);
+                    markEdge(b, i.targets[1]);
+                } else {
+                    markEdge(b, i.targets[(Boolean) c ? 0 : 1]);
+                }
+            }
+            case Opcode.JMP -> markEdge(b, i.targets[0]);
+            default -> {
+                if (i.dst < 0) return;
+                if (!foldable(i)) {
+                    update(i.dst, BOTTOM);
+                    return;
+                }
+                Object[] args = new Object[i.args.length];
+                for (int k = 0; k < args.length; k++) {
+                    args[k] = valueOf(i.args[k]);
+                    if (args[k] == null) return;
+                    if (args[k] == BOTTOM) {
+                        update(i.dst, BOTTOM);
+                        return;
+                    }
+                }
+                Object r = ConstantEvaluator.evaluate(i.op, i.aux, args);
+                update(i.dst, r == null ? BOTTOM : r);
+            }
+        }
+    }
+
+    private static boolean foldable(Instr i) {
+        return i.isPure() || i.op == Opcode.DIV || i.op == Opcode.MOD;
+    }
+
+    private Object valueOf(Operand o) {
+        if (o.isConst()) return o.value;
+        // parametri i promenljive koje se nigde ne dodeljuju
+        if (!defined.contains(o.reg)) return BOTTOM;
+        return values.get(o.reg);
+    }
+
+    private static Object meet(Object a, Object b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a == BOTTOM || b == BOTTOM) return BOTTOM;
+        return a.equals(b) ? a : BOTTOM;
+    }
+
+    private void update(int reg, Object v) {
+        if (v == null) return;
+        Object old = values.get(reg);
+        if (old == BOTTOM || v.equals(old)) return;
+        values.put(reg, old == null ? v : BOTTOM);
+        ssaWork.addAll(users.getOrDefault(reg, List.of()));
+    }
+
+    private void markEdge(BasicBlock from, BasicBlock to) {
+        if (!executableEdges.contains(List.of(from, to))) flowWork.add(new BasicBlock[] { from, to });
+    }
+
+    /* ================= PREPISIVANJE ================= */
+
+    private void rewrite() {
+        for (BasicBlock b : cfg.blocks) {
+            if (!executable.contains(b)) continue;
+            for (int k = 0; k < b.instrs.size(); k++) {
+                Instr i = b.instrs.get(k);
+                if (i.op == Instr.BRANCH) {
+                    BasicBlock t = i.targets[0];
+                    BasicBlock f = i.targets[1];
+                    boolean toT = executableEdges.contains(List.of(b, t));
+                    boolean toF = executableEdges.contains(List.of(b, f));
+                    if (toT != toF && t != f) {
+                        cfg.removeEdge(b, toT ? f : t);
+                        Instr jump = Instr.jump(toT ? t : f);
+                        b.instrs.set(k, jump);
+                        folded++;
+                    }
+                    continue;
+                }
+                if (i.dst < 0 || i.op == Instr.MOVE && i.args[0].isConst()) continue;
+                Object v = values.get(i.dst);
+                if (v != null && v != BOTTOM && foldable(i)) {
+                    b.instrs.set(k, Instr.of(Instr.MOVE, i.dst, Operand.constant(v)).typed(i.type));
+                    folded++;
+                }
+            }
+        }
+        cfg.removeUnreachable();
+    }
+}
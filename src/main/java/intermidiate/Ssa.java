@@ -0,0 +1,135 @@
+package intermidiate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Prevodjenje CFG-a u SSA oblik i nazad. Phi se postavljaju na iteriranim granicama
+// dominacije, samo za registre koji su zivi izmedju blokova ("semi-pruned" SSA,
+// Briggs i dr.), a preimenovanje ide obilaskom stabla dominacije (Cytron i dr.).
+public final class Ssa {
+
+    // vrednost promenljive na putanji na kojoj jos nije dodeljena; tamo se ne cita
+    private static final Operand UNDEFINED = Operand.constant(0);
+
+    private final Cfg cfg;
+    private final Dominators dom;
+    private final Map<Instr, Integer> phiVariable = new IdentityHashMap<>();
+    private final Map<Integer, Deque<Integer>> names = new HashMap<>();
+
+    private Ssa(Cfg cfg) {
+        this.cfg = cfg;
+        this.dom = new Dominators(cfg);
+    }
+
+    public static void construct(Cfg cfg) {
+        Ssa ssa = new Ssa(cfg);
+        ssa.placePhis();
+        for (int p = 0; p < cfg.params; p++) ssa.push(p, p);
+        ssa.rename(cfg.entry());
+    }
+
+    /* ================= PHI ================= */
+
+    private void placePhis() {
+        Set<Integer> global = new HashSet<>();
+        Map<Integer, Set<BasicBlock>> defBlocks = new HashMap<>();
+        Map<Integer, Integer> defType = new HashMap<>();
+        for (int p = 0; p < cfg.params; p++) defType.put(p, cfg.paramTypes[p]);
+        for (BasicBlock b : cfg.blocks) {
+            Set<Integer> defined = new HashSet<>();
+            for (Instr i : b.instrs) {
+                for (int r : i.uses()) if (!defined.contains(r)) global.add(r);
+                if (i.dst >= 0) {
+                    defined.add(i.dst);
+                    defBlocks.computeIfAbsent(i.dst, r -> new HashSet<>()).add(b);
+                    defType.putIfAbsent(i.dst, i.type);
+                }
+            }
+        }
+
+        for (int v : global) {
+            Set<BasicBlock> blocksWithDef = defBlocks.getOrDefault(v, Set.of());
+            Deque<BasicBlock> work = new ArrayDeque<>(blocksWithDef);
+            Set<BasicBlock> hasPhi = new HashSet<>();
+            while (!work.isEmpty()) {
+                BasicBlock b = work.pop();
+                for (BasicBlock f : dom.frontier(b)) {
+                    if (!hasPhi.add(f)) continue;
+                    Operand[] args = new Operand[f.preds.size()];
+                    java.util.Arrays.fill(args, UNDEFINED);
+                    Instr phi = Instr.of(Instr.PHI, v, args).typed(defType.getOrDefault(v, -1));
+                    f.instrs.add(0, phi);
+                    phiVariable.put(phi, v);
+                    if (!blocksWithDef.contains(f)) work.push(f);
+                }
+            }
+        }
+    }
+
+    /* ================= PREIMENOVANJE ================= */
+
+    private void rename(BasicBlock b) {
+        List<Integer> pushed = new ArrayList<>();
+
+        for (Instr i : b.instrs) {
+            if (i.op != Instr.PHI) {
+                for (int j = 0; j < i.args.length; j++) {
+                    if (i.args[j].isReg()) i.args[j] = current(i.args[j].reg, i.args[j]);
+                }
+            }
+            if (i.dst >= 0) {
+                int v = i.dst;
+                i.dst = cfg.newRegister();
+                push(v, i.dst);
+                pushed.add(v);
+            }
+        }
+
+        for (BasicBlock s : b.succs) {
+            int k = s.preds.indexOf(b);
+            for (Instr phi : s.instrs) {
+                if (phi.op != Instr.PHI) break;
+                phi.args[k] = current(phiVariable.get(phi), UNDEFINED);
+            }
+        }
+
+        for (BasicBlock child : dom.children(b)) rename(child);
+        for (int v : pushed) names.get(v).pop();
+    }
+
+    private void push(int variable, int name) {
+        names.computeIfAbsent(variable, v -> new ArrayDeque<>()).push(name);
+    }
+
+    private Operand current(int variable, Operand undefined) {
+        Deque<Integer> stack = names.get(variable);
+        return stack == null || stack.isEmpty() ? undefined : Operand.reg(stack.peek());
+    }
+
+    /* ================= IZLAZ IZ SSA ================= */
+
+    // phi se zamenjuje kopijom u privremeni registar na kraju svakog prethodnika i
+    // kopijom iz njega na pocetku bloka; tako paralelne phi ne smetaju jedna drugoj
+    public static void destruct(Cfg cfg) {
+        for (BasicBlock b : cfg.blocks) {
+            List<Instr> entryCopies = new ArrayList<>();
+            while (!b.instrs.isEmpty() && b.instrs.get(0).op == Instr.PHI) {
+                Instr phi = b.instrs.remove(0);
+                int t = cfg.newRegister();
+                for (int k = 0; k < b.preds.size(); k++) {
+                    BasicBlock p = b.preds.get(k);
+                    p.instrs.add(p.instrs.size() - 1, Instr.of(Instr.MOVE, t, phi.args[k]).typed(phi.type));
+                }
+                entryCopies.add(Instr.of(Instr.MOVE, phi.dst, Operand.reg(t)).typed(phi.type));
+            }
+            b.instrs.addAll(0, entryCopies);
+        }
+    }
+}
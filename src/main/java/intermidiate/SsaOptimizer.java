@@ -0,0 +1,119 @@
+package intermidiate;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Optimizacije nad SSA oblikom CFG-a: SCCP, propagacija kopija, GVN i uklanjanje
+// mrtvih instrukcija. Posle optimize CFG ostaje u SSA obliku; Ssa.destruct ga vraca.
+public final class SsaOptimizer {
+
+    private int constants = 0;
+    private int redundant = 0;
+    private int copies = 0;
+    private int dead = 0;
+
+    public void optimize(Cfg cfg) {
+        Ssa.construct(cfg);
+        constants += new Sccp(cfg).run();
+        copies += propagateCopies(cfg);
+        redundant += new Gvn(cfg).run();
+        copies += propagateCopies(cfg);
+        dead += removeDead(cfg);
+    }
+
+    /* ================= PROPAGACIJA KOPIJA ================= */
+
+    // r = x se brise, a svako citanje r postaje x; phi ciji su svi argumenti isti
+    // (ili ona sama) je takodje kopija
+    private static int propagateCopies(Cfg cfg) {
+        int removed = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Map<Integer, Operand> copyOf = new HashMap<>();
+            for (BasicBlock b : cfg.blocks) {
+                for (Instr i : b.instrs) {
+                    Operand source = copySource(i);
+                    if (source != null) copyOf.put(i.dst, source);
+                }
+            }
+            if (copyOf.isEmpty()) break;
+
+            for (BasicBlock b : cfg.blocks) {
+                for (Instr i : b.instrs) {
+                    for (int j = 0; j < i.args.length; j++) {
+                        Operand a = i.args[j];
+                        Set<Integer> seen = new HashSet<>();
+                        while (a.isReg() && copyOf.containsKey(a.reg) && seen.add(a.reg)) a = copyOf.get(a.reg);
+                        i.args[j] = a;
+                    }
+                }
+                int before = b.instrs.size();
+                b.instrs.removeIf(i -> copyOf.containsKey(i.dst) && copySource(i) != null);
+                if (b.instrs.size() != before) {
+                    removed += before - b.instrs.size();
+                    changed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private static Operand copySource(Instr i) {
+        if (i.dst < 0) return null;
+        if (i.op == Instr.MOVE) return i.args[0].equals(Operand.reg(i.dst)) ? null : i.args[0];
+        if (i.op != Instr.PHI) return null;
+        Operand same = null;
+        for (Operand a : i.args) {
+            if (a.isReg() && a.reg == i.dst) continue;
+            if (same != null && !same.equals(a)) return null;
+            same = a;
+        }
+        return same;
+    }
+
+    /* ================= MRTAV KOD ================= */
+
+    // instrukcija je ziva ako ima sporedni efekat ili ako njen rezultat cita ziva instrukcija
+    private static int removeDead(Cfg cfg) {
+        Map<Integer, Instr> definition = new HashMap<>();
+        Set<Instr> live = new HashSet<>();
+        Deque<Instr> work = new ArrayDeque<>();
+        for (BasicBlock b : cfg.blocks) {
+            for (Instr i : b.instrs) {
+                if (i.dst >= 0) definition.put(i.dst, i);
+                if (!removable(i)) {
+                    live.add(i);
+                    work.push(i);
+                }
+            }
+        }
+        while (!work.isEmpty()) {
+            for (int r : work.pop().uses()) {
+                Instr def = definition.get(r);
+                if (def != null && live.add(def)) work.push(def);
+            }
+        }
+        int removed = 0;
+        for (BasicBlock b : cfg.blocks) {
+            int before = b.instrs.size();
+            b.instrs.removeIf(i -> !live.contains(i));
+            removed += before - b.instrs.size();
+        }
+        return removed;
+    }
+
+    // deljenje i citanja mogu da bace gresku, pa ostaju i kad se rezultat ne koristi
+    private static boolean removable(Instr i) {
+        return i.dst >= 0 && i.isPure();
+    }
+
+    public String report() {
+        return String.format("%d constants propagated, %d redundant expressions, %d copies, %d dead instructions removed",
+                constants, redundant, copies, dead);
+    }
+}
@@ -0,0 +1,155 @@
+package intermidiate;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static intermidiate.Opcode.*;
+
+// Peephole prolaz nad izlazom CodeGenerator-a koji cesto ponovljene nizove instrukcija
+// zamenjuje superinstrukcijama (izbor je iz main.PairProfile):
+//   load_local s, inc|dec, store_local s            -> inc_local s +-1
+//   load_local s, push k, iadd|isub, store_local s  -> inc_local s +-k     (k je gold)
+//   load_local a, load_local b, <i|l poredjenje>, jmp_if_false|jmp_if_true L
+//                                                   -> j<uslov>_local_local a b L
+//   load_local a, load_local i, load_array 1 t      -> load_array_local a i t
+//   (isto za load_array_unchecked -> load_array_local_unchecked)
+// Niz se spaja samo ako u njegovu sredinu ne vodi nijedan skok ni poziv.
+public final class SuperinstructionFuser {
+
+    private int fused = 0;
+
+    public Bytecode fuse(Bytecode program) {
+        int[] code = program.code;
+        boolean[] target = jumpTargets(program);
+
+        int[] out = new int[code.length];
+        int size = 0;
+        int[] newPc = new int[code.length + 1];
+        Arrays.fill(newPc, -1);
+        // mesta u novom kodu gde je jos stara adresa
+        int[] patches = new int[16];
+        int patchCount = 0;
+
+        int pc = 0;
+        while (pc < code.length) {
+            newPc[pc] = size;
+            int[] replacement = match(program, pc, target);
+            int length;
+            if (replacement != null) {
+                length = replacement[0];
+                fused++;
+                for (int i = 1; i < replacement.length; i++) out[size + i - 1] = replacement[i];
+                if (isJump(replacement[1])) {
+                    if (patchCount == patches.length) patches = Arrays.copyOf(patches, patchCount * 2);
+                    patches[patchCount++] = size + jumpOperand(replacement[1]);
+                }
+                size += replacement.length - 1;
+            } else {
+                length = 1 + operands(code[pc]);
+                System.arraycopy(code, pc, out, size, length);
+                if (isJump(code[pc])) {
+                    if (patchCount == patches.length) patches = Arrays.copyOf(patches, patchCount * 2);
+                    patches[patchCount++] = size + jumpOperand(code[pc]);
+                }
+                size += length;
+            }
+            pc += length;
+        }
+        newPc[code.length] = size;
+
+        for (int i = 0; i < patchCount; i++) {
+            int site = patches[i];
+            int mapped = newPc[out[site]];
+            if (mapped < 0) throw new IllegalStateException("Jump into a fused sequence at " + out[site]);
+            out[site] = mapped;
+        }
+        Map<String, Integer> functions = new LinkedHashMap<>();
+        program.functions.forEach((name, entry) -> functions.put(name, newPc[entry]));
+        return new Bytecode(Arrays.copyOf(out, size), program.constants, functions, program.globalCount);
+    }
+
+    public int getFusedCount() {
+        return fused;
+    }
+
+    /* ================= OBRASCI ================= */
+
+    // {duzina starog niza, nova instrukcija...} ili null
+    private static int[] match(Bytecode program, int pc, boolean[] target) {
+        int[] code = program.code;
+        if (code[pc] != LOAD_LOCAL) return null;
+        int slot = code[pc + 1];
+        int next = pc + 2;
+        if (next >= code.length || target[next]) return null;
+
+        int op = code[next];
+        if ((op == INC || op == DEC) && at(code, next + 1, STORE_LOCAL, target) && code[next + 2] == slot) {
+            return new int[] { 5, INC_LOCAL, slot, op == INC ? 1 : -1 };
+        }
+        if (op == PUSH && program.constants[code[next + 1]] instanceof Integer k
+                && (at(code, next + 2, IADD, target) || at(code, next + 2, ISUB, target))
+                && at(code, next + 3, STORE_LOCAL, target) && code[next + 4] == slot) {
+            return new int[] { 7, INC_LOCAL, slot, code[next + 2] == IADD ? k : -k };
+        }
+        if (op != LOAD_LOCAL) return null;
+        int second = code[next + 1];
+        int third = next + 2;
+        if (third >= code.length || target[third]) return null;
+
+        int cmp = code[third];
+        if ((cmp >= ILT && cmp <= INE || cmp >= LLT && cmp <= LNE)
+                && (at(code, third + 1, JMP_IF_FALSE, target) || at(code, third + 1, JMP_IF_TRUE, target))) {
+            // gold i emerald su na steku isti long, pa je poredjenje isto
+            int condition = cmp >= LLT ? cmp - LLT : cmp - ILT;
+            if (code[third + 1] == JMP_IF_FALSE) condition = negate(condition);
+            return new int[] { 7, JLT_LOCAL_LOCAL + condition, slot, second, code[third + 2] };
+        }
+        if ((cmp == LOAD_ARRAY || cmp == LOAD_ARRAY_UNCHECKED) && code[third + 1] == 1) {
+            int fused = cmp == LOAD_ARRAY ? LOAD_ARRAY_LOCAL : LOAD_ARRAY_LOCAL_UNCHECKED;
+            return new int[] { 7, fused, slot, second, code[third + 2] };
+        }
+        return null;
+    }
+
+    private static boolean at(int[] code, int pc, int op, boolean[] target) {
+        return pc < code.length && !target[pc] && code[pc] == op;
+    }
+
+    // lt <-> ge, le <-> gt, eq <-> ne (redosled kao u Opcode: lt le gt ge eq ne)
+    private static int negate(int condition) {
+        return switch (condition) {
+            case 0 -> 3;
+            case 1 -> 2;
+            case 2 -> 1;
+            case 3 -> 0;
+            case 4 -> 5;
+            default -> 4;
+        };
+    }
+
+    /* ================= SKOKOVI ================= */
+
+    private static boolean isJump(int op) {
+        return op == JMP || op == JMP_IF_FALSE || op == JMP_IF_TRUE || op == CALL || op == TAILCALL
+                || op == VECTOR_LOOP || op == PARALLEL_LOOP || op >= JLT_LOCAL_LOCAL && op <= JNE_LOCAL_LOCAL;
+    }
+
+    // pozicija adrese u instrukciji
+    private static int jumpOperand(int op) {
+        return op >= JLT_LOCAL_LOCAL && op <= JNE_LOCAL_LOCAL ? 3 : 1;
+    }
+
+    private static boolean[] jumpTargets(Bytecode program) {
+        int[] code = program.code;
+        boolean[] target = new boolean[code.length + 1];
+        for (int entry : program.functions.values()) target[entry] = true;
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            if (isJump(op)) target[code[pc + jumpOperand(op)]] = true;
+            pc += 1 + operands(op);
+        }
+        return target;
+    }
+}
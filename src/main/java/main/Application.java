@@ -1,20 +1,35 @@
 package main;
 
-import intermidiate.CodeGenerator;
+import intermidiate.Bytecode;
+import intermidiate.JvmCodeGenerator;
+import intermidiate.PeepholeOptimizer;
+import intermidiate.RegisterProgram;
 import lexer.Lexer;
 import lexer.token.Token;
 import lexer.token.TokenFormatter;
+import optimizer.PurityAnalysis;
 import parser.Ast;
 import parser.JsonAstPrinter;
 import parser.ParserAst;
+import semantic.Resolver;
 import semantic.SemanticAnalyzer;
+import vm.AstInterpreter;
+import vm.ClosureVirtualMachine;
+import vm.JvmRunner;
+import vm.OffHeap;
+import vm.RegisterVirtualMachine;
+import vm.VirtualMachine;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class Application {
 
@@ -23,14 +38,59 @@ public class Application {
     Ime fajla kao arg komandne linije
      */
 
+    private static final String USAGE = "Usage: java main.Application [--backend=vm|rvm|closure|ast|jvm] "
+            + "[--peephole=all|none|<rule>,...] [--memo] [--offheap[=<elements>]] [--parallel[=<min-trips>]] <source-file>";
+
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.err.println("Usage: java main.Application <source-file>");
+        String backend = "vm";
+        Set<PeepholeOptimizer.Rule> peephole = EnumSet.allOf(PeepholeOptimizer.Rule.class);
+        boolean memo = false;
+        long offHeapThreshold = -1;
+        long minTrips = -1;
+        String source = null;
+        for (String arg : args) {
+            if (arg.startsWith("--backend=")) {
+                backend = arg.substring("--backend=".length());
+            } else if (arg.startsWith("--peephole=")) {
+                peephole = peepholeRules(arg.substring("--peephole=".length()));
+                if (peephole == null) {
+                    source = null;
+                    break;
+                }
+            } else if (arg.equals("--memo")) {
+                memo = true;
+            } else if (arg.equals("--offheap")) {
+                offHeapThreshold = OffHeap.DEFAULT_THRESHOLD;
+            } else if (arg.startsWith("--offheap=")) {
+                offHeapThreshold = count(arg.substring("--offheap=".length()));
+                if (offHeapThreshold < 0) {
+                    source = null;
+                    break;
+                }
+            } else if (arg.equals("--parallel")) {
+                minTrips = VirtualMachine.DEFAULT_MIN_TRIPS;
+            } else if (arg.startsWith("--parallel=")) {
+                minTrips = count(arg.substring("--parallel=".length()));
+                if (minTrips < 0 || minTrips > Integer.MAX_VALUE) {
+                    source = null;
+                    break;
+                }
+            } else if (source == null) {
+                source = arg;
+            } else {
+                source = null;
+                break;
+            }
+        }
+        if (source == null || !List.of("vm", "rvm", "closure", "ast", "jvm").contains(backend)) {
+            System.err.println(USAGE);
             System.exit(64);
         }
         Path inputFile = null;
+        OffHeap offHeap = null;
+        ForkJoinPool pool = null;
         try {
-            inputFile = Paths.get(args[0]);
+            inputFile = Paths.get(source);
             String code = Files.readString(inputFile);
 
             System.out.println("----- LEKSICKA ANALIZA -----");
@@ -58,13 +118,130 @@ public class Application {
             Files.writeString(typedOut, typedAstJson);
             System.out.println("Typed AST written to: " + typedOut);
 
+            if (backend.equals("ast")) {
+                // stablo se izvrsava odmah, bez optimizacija i generisanja koda
+                new Resolver().resolve(program);
+                System.out.println("----- IZVRSAVANJE -----");
+                AstInterpreter interpreter = new AstInterpreter(program);
+                offHeap = openOffHeap(offHeapThreshold);
+                interpreter.setOffHeap(offHeap);
+                long start = System.nanoTime();
+                Object result = interpreter.run();
+                long elapsed = System.nanoTime() - start;
+                System.out.println("Program finished with value: " + result);
+                System.out.printf("Interpreted the AST in %.3f ms (%d nodes specialized)%n",
+                        elapsed / 1e6, interpreter.getSpecializationCount());
+                return;
+            }
+
+            System.out.println("----- OPTIMIZACIJA -----");
+            Pipeline pipeline = new Pipeline(peephole, true);
+            pipeline.optimize(program);
+            System.out.println("Function inlining: " + pipeline.inliner.getInlinedCount() + " calls inlined"
+                    + (pipeline.inliner.getRecursive().isEmpty() ? "" : " (recursive, not inlined: "
+                    + String.join(", ", pipeline.inliner.getRecursive()) + ")"));
+            System.out.println("Constant folding: " + pipeline.folder.getSimplifiedCount() + " expressions simplified");
+            System.out.println("Dead code elimination: " + pipeline.dce.getRemovedCount() + " statements removed");
+            System.out.println("Loop-invariant code motion: " + pipeline.licm.getHoistedCount() + " expressions hoisted");
+
             System.out.println("----- GENERISANJE MEDJUKODA -----");
-            CodeGenerator codeGen = new CodeGenerator();
-            List<String> intermediateCode = codeGen.generate(program);
+            pipeline.mark(program);
+            PurityAnalysis purity = pipeline.purity;
+            // rezultate pamti samo stek masina (--backend=vm)
+            boolean memoize = memo && backend.equals("vm") && !purity.getPure().isEmpty();
+            System.out.println("Pure functions: " + (purity.getPure().isEmpty() ? "none"
+                    : String.join(", ", purity.getPure()) + (memoize ? " (memoized)" : "")));
+            System.out.println("Bounds checks: " + pipeline.bce.getEliminatedCount() + " of " + pipeline.bce.getAccessCount()
+                    + " array accesses proven in bounds");
+            System.out.println("Vectorized loops: " + pipeline.vectorizer.getVectorizedCount());
+            System.out.println("Parallel loops: " + pipeline.parallelizer.getParallelCount());
+            Bytecode bytecode = pipeline.bytecode(program);
+            System.out.println("Tail calls: " + pipeline.codeGen.getTailCallCount() + " self-calls in loot reuse the frame");
+            System.out.println("Peephole: " + pipeline.peephole.getEliminatedCount() + " instructions eliminated");
+            pipeline.peephole.report().forEach(line -> System.out.println("  " + line));
+            System.out.println("Superinstructions: " + pipeline.fuser.getFusedCount() + " sequences fused");
             Path codeOut = Path.of("program_generated.txt");
-            Files.write(codeOut, intermediateCode);
+            Files.write(codeOut, bytecode.disassemble());
             System.out.println("Intermediate code written to: " + codeOut);
 
+            // CFG, SSA i registarski kod trebaju samo registarskim masinama (--backend=rvm|closure)
+            RegisterProgram registerProgram = null;
+            if (backend.equals("rvm") || backend.equals("closure")) {
+                registerProgram = pipeline.registers(program);
+                Path cfgOut = Path.of("program_cfg.txt");
+                Files.write(cfgOut, pipeline.cfgDump);
+                System.out.println("Control-flow graph written to: " + cfgOut);
+
+                Path ssaOut = Path.of("program_ssa.txt");
+                Files.write(ssaOut, pipeline.ssaDump);
+                System.out.println("SSA optimization: " + pipeline.irBefore + " -> " + pipeline.irAfter + " IR instructions ("
+                        + pipeline.ssaOptimizer.report() + ")");
+                System.out.println("SSA form written to: " + ssaOut);
+
+                Path registerOut = Path.of("program_register.txt");
+                Files.write(registerOut, registerProgram.disassemble());
+                System.out.println("Register code written to: " + registerOut);
+            }
+
+            if (backend.equals("jvm")) {
+                System.out.println("----- GENERISANJE JVM KLASE -----");
+                byte[] classBytes = new JvmCodeGenerator().generate(program);
+                Path classOut = Path.of("program_generated.class");
+                Files.write(classOut, classBytes);
+                System.out.println("JVM class written to: " + classOut);
+
+                System.out.println("----- IZVRSAVANJE -----");
+                long start = System.nanoTime();
+                Object result = JvmRunner.run(classBytes);
+                long elapsed = System.nanoTime() - start;
+                System.out.println("Program finished with value: " + result);
+                System.out.printf("Executed on the JVM in %.3f ms%n", elapsed / 1e6);
+            } else if (backend.equals("rvm")) {
+                System.out.println("----- IZVRSAVANJE -----");
+                RegisterVirtualMachine vm = new RegisterVirtualMachine(registerProgram);
+                offHeap = openOffHeap(offHeapThreshold);
+                vm.setOffHeap(offHeap);
+                long start = System.nanoTime();
+                Object result = vm.run();
+                long elapsed = System.nanoTime() - start;
+                System.out.println("Program finished with value: " + result);
+                System.out.printf("Executed %d instructions in %.3f ms%n", vm.getExecutedCount(), elapsed / 1e6);
+            } else if (backend.equals("closure")) {
+                System.out.println("----- IZVRSAVANJE -----");
+                ClosureVirtualMachine vm = new ClosureVirtualMachine(registerProgram);
+                offHeap = openOffHeap(offHeapThreshold);
+                vm.setOffHeap(offHeap);
+                long start = System.nanoTime();
+                Object result = vm.run();
+                long elapsed = System.nanoTime() - start;
+                System.out.println("Program finished with value: " + result);
+                System.out.printf("Executed %d instructions in %.3f ms%n", vm.getExecutedCount(), elapsed / 1e6);
+            } else {
+                System.out.println("----- IZVRSAVANJE -----");
+                VirtualMachine vm = new VirtualMachine(bytecode);
+                offHeap = openOffHeap(offHeapThreshold);
+                vm.setOffHeap(offHeap);
+                if (minTrips >= 0) {
+                    // deli samo stek masina (--backend=vm); paralelizam je broj jezgara
+                    pool = new ForkJoinPool();
+                    vm.parallelize(pool, (int) minTrips);
+                }
+                if (memoize) {
+                    for (Ast.TopItem it : program.items) {
+                        if (it instanceof Ast.FuncDef f && purity.getPure().contains(f.name.lexeme))
+                            vm.memoize(f.name.lexeme, f.params.size());
+                    }
+                }
+                long start = System.nanoTime();
+                Object result = vm.run();
+                long elapsed = System.nanoTime() - start;
+                System.out.println("Program finished with value: " + result);
+                System.out.printf("Executed %d instructions in %.3f ms%n", vm.getExecutedCount(), elapsed / 1e6);
+                vm.memoReport().forEach(line -> System.out.println("  memo " + line));
+                vm.kernelReport().forEach(line -> System.out.println("  kernels " + line));
+                vm.parallelReport().forEach(line -> System.out.println("  parallel " + line));
+            }
+
         }
         catch (FileNotFoundException e) {
             System.err.println("File not found: " + inputFile);
@@ -78,6 +255,50 @@ public class Application {
             System.err.println("Error: " + escapeVisible(e.getMessage()));
             System.exit(1);
         }
+        finally {
+            // nizovi van heap-a zive samo dok se program izvrsava
+            if (offHeap != null) {
+                System.out.println("Off-heap: " + offHeap.report() + " freed");
+                offHeap.close();
+            }
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    // --offheap: nizovi od bar threshold elemenata idu van heap-a; null kad je iskljuceno.
+    // vm.OffHeap koristi java.lang.foreign, koji je u Javi 21 preview, pa se ucitava tek ovde
+    private static OffHeap openOffHeap(long threshold) {
+        if (threshold < 0) return null;
+        try {
+            return new OffHeap(threshold);
+        } catch (UnsupportedClassVersionError e) {
+            throw new IllegalStateException("--offheap needs the JVM to run with --enable-preview");
+        }
+    }
+
+    // broj iz --offheap=N ili --parallel=N; -1 ako nije nenegativan broj
+    private static long count(String spec) {
+        try {
+            long n = Long.parseLong(spec);
+            return n < 0 ? -1 : n;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // "all", "none" ili spisak pravila, npr. jump-to-next,push-pop; null ako ime ne postoji
+    private static Set<PeepholeOptimizer.Rule> peepholeRules(String spec) {
+        if (spec.equals("all")) return EnumSet.allOf(PeepholeOptimizer.Rule.class);
+        Set<PeepholeOptimizer.Rule> rules = EnumSet.noneOf(PeepholeOptimizer.Rule.class);
+        if (spec.equals("none")) return rules;
+        for (String name : spec.split(",")) {
+            try {
+                rules.add(PeepholeOptimizer.Rule.valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return rules;
     }
 
     private static String escapeVisible(String s) {
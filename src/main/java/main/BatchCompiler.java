@@ -0,0 +1,159 @@
+package main;
+
+import intermidiate.Bytecode;
+import parser.Ast;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class BatchCompiler {
+
+    /*
+    Prevodi mnogo programa odjednom: svaki argument je .bg fajl ili folder (trazi se rekurzivno),
+    i svaki fajl prolazi leksicku, sintaksnu i semanticku analizu, optimizacije i generisanje
+    koda kao u Application, bez izvrsavanja. Fajlovi se prevode istovremeno na fiksnom broju
+    niti (podrazumevano broj jezgara); faze nemaju deljeno stanje, svaka dobija svoje instance.
+    Medjukod svakog fajla ide u <out>/<ime>.txt (iz foldera sa istom relativnom putanjom),
+    greske se ispisuju po fajlu, a na kraju se prijavljuje propusnost u fajlovima i linijama
+    u sekundi.
+     */
+
+    private static final String USAGE = "Usage: java main.BatchCompiler [--out=<dir>] [--threads=N] <source-file-or-dir>...";
+
+    record Unit(Path source, Path output) {}
+
+    record Result(Unit unit, long lines, String error) {}
+
+    public static void main(String[] args) {
+        Path out = Path.of("compiled");
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> sources = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--out=")) out = Path.of(arg.substring("--out=".length()));
+                else if (arg.startsWith("--threads=")) threads = Integer.parseInt(arg.substring("--threads=".length()));
+                else sources.add(arg);
+            }
+        } catch (NumberFormatException e) {
+            sources.clear();
+        }
+        if (sources.isEmpty() || threads < 1) {
+            System.err.println(USAGE);
+            System.exit(64);
+        }
+
+        List<Unit> units;
+        try {
+            units = units(sources, out);
+        } catch (IOException e) {
+            System.err.println("I/O error while listing sources: " + e.getMessage());
+            System.exit(66);
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Unit unit : units) futures.add(executor.submit(() -> compile(unit)));
+            for (Future<Result> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    // compile hvata greske prevodjenja i StackOverflowError po fajlu; ovde stizu
+                    // samo ostale greske same JVM (npr. OutOfMemoryError)
+                    throw new IllegalStateException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while compiling");
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long lines = 0;
+        int failed = 0;
+        for (Result r : results) {
+            lines += r.lines();
+            if (r.error() != null) {
+                failed++;
+                System.err.println(r.unit().source() + ": " + r.error());
+            }
+        }
+        double seconds = elapsed / 1e9;
+        System.out.printf("Compiled %d of %d files (%d lines) into %s in %.3f ms on %d threads%n",
+                results.size() - failed, results.size(), lines, out, elapsed / 1e6, threads);
+        System.out.printf("Throughput: %.1f files/s, %.0f lines/s%n", results.size() / seconds, lines / seconds);
+        if (failed > 0) System.exit(1);
+    }
+
+    // fajlovi iz argumenata redom, folderi sortirano; isti izlaz za dva fajla je greska
+    static List<Unit> units(List<String> sources, Path out) throws IOException {
+        List<Unit> units = new ArrayList<>();
+        Map<Path, Path> taken = new HashMap<>();
+        for (String source : sources) {
+            Path path = Path.of(source);
+            if (Files.isDirectory(path)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files = walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".bg")).sorted().toList();
+                }
+                for (Path file : files) units.add(unit(file, out.resolve(output(path.relativize(file))), taken));
+            } else {
+                units.add(unit(path, out.resolve(output(path.getFileName())), taken));
+            }
+        }
+        return units;
+    }
+
+    private static Unit unit(Path source, Path output, Map<Path, Path> taken) throws IOException {
+        Path other = taken.putIfAbsent(output.toAbsolutePath().normalize(), source);
+        if (other != null) throw new IOException(source + " and " + other + " would both be written to " + output);
+        return new Unit(source, output);
+    }
+
+    private static Path output(Path relative) {
+        String name = relative.getFileName().toString();
+        if (name.endsWith(".bg")) name = name.substring(0, name.length() - ".bg".length());
+        return relative.resolveSibling(name + ".txt");
+    }
+
+    // isti tok kao Application (Pipeline) za stek masinu, bez ispisa; greska se vraca kao poruka
+    static Result compile(Unit unit) {
+        long lines = 0;
+        try {
+            String code = Files.readString(unit.source());
+            lines = code.lines().count();
+            Ast.Program program = Pipeline.parse(code);
+            Pipeline pipeline = new Pipeline();
+            pipeline.analyze(program);
+            Bytecode bytecode = pipeline.bytecode(program);
+
+            Path parent = unit.output().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Files.write(unit.output(), bytecode.disassemble());
+            return new Result(unit, lines, null);
+        } catch (IOException e) {
+            return new Result(unit, lines, "I/O error: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return new Result(unit, lines, "Error: " + e.getMessage());
+        } catch (StackOverflowError e) {
+            // rekurzivni spust parsera i prolazi nad stablom na duboko ugnjezdenom izvoru
+            return new Result(unit, lines, "Error: source nested too deeply (stack overflow)");
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Error e) {
+            return new Result(unit, lines, "Error: " + e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package main;
+
+import intermidiate.Bytecode;
+import intermidiate.RegisterProgram;
+import parser.Ast;
+import semantic.Resolver;
+import vm.AstInterpreter;
+import vm.ClosureVirtualMachine;
+import vm.RegisterVirtualMachine;
+import vm.VirtualMachine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Benchmark {
+
+    /*
+    Poredi stek masinu, registarsku masinu (switch po opkodu), istu registarsku masinu
+    sa cvorovima-lambdama (ClosureVirtualMachine) i AST interpreter koji se specijalizuje
+    tokom rada (jedna instanca za sva izvrsavanja) na istim programima. Interpreter dobija
+    neoptimizovano stablo, kao --backend=ast. Svaki program se prevodi jednom, pa se
+    izvrsava warmup puta bez merenja i runs puta sa merenjem.
+    Ispis programa se baca; prijavljuje se broj instrukcija i medijana vremena.
+    Programi za poredjenje su u resources/bench_*.bg.
+     */
+
+    private static final String USAGE = "Usage: java main.Benchmark [--warmup=N] [--runs=N] <source-file>...";
+
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    record Compiled(Bytecode bytecode, RegisterProgram registerProgram, AstInterpreter interpreter) {}
+
+    public static void main(String[] args) {
+        int warmup = 5;
+        int runs = 10;
+        List<String> sources = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--warmup=")) warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+                else if (arg.startsWith("--runs=")) runs = Integer.parseInt(arg.substring("--runs=".length()));
+                else sources.add(arg);
+            }
+        } catch (NumberFormatException e) {
+            sources.clear();
+        }
+        if (sources.isEmpty() || runs < 1 || warmup < 0) {
+            System.err.println(USAGE);
+            System.exit(64);
+        }
+
+        System.out.printf("%-24s %-8s %14s %12s%n", "program", "vm", "instructions", "median ms");
+        for (String source : sources) {
+            Compiled c;
+            try {
+                c = compile(Files.readString(Path.of(source)));
+            } catch (IOException e) {
+                System.err.println("I/O error while reading " + source + ": " + e.getMessage());
+                continue;
+            } catch (RuntimeException e) {
+                System.err.println(source + ": " + e.getMessage());
+                continue;
+            }
+            String name = Path.of(source).getFileName().toString();
+            measure(name, "stack", warmup, runs, () -> {
+                VirtualMachine vm = new VirtualMachine(c.bytecode(), NULL_OUT);
+                vm.run();
+                return vm.getExecutedCount();
+            });
+            measure(name, "reg", warmup, runs, () -> {
+                RegisterVirtualMachine vm = new RegisterVirtualMachine(c.registerProgram(), NULL_OUT);
+                vm.run();
+                return vm.getExecutedCount();
+            });
+            measure(name, "closure", warmup, runs, () -> {
+                ClosureVirtualMachine vm = new ClosureVirtualMachine(c.registerProgram(), NULL_OUT);
+                vm.run();
+                return vm.getExecutedCount();
+            });
+            measure(name, "ast", warmup, runs, () -> {
+                c.interpreter().run();
+                return -1;
+            });
+        }
+    }
+
+    interface Run {
+        long execute();
+    }
+
+    static void measure(String name, String vm, int warmup, int runs, Run run) {
+        try {
+            long instructions = 0;
+            for (int i = 0; i < warmup; i++) run.execute();
+            long[] times = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                instructions = run.execute();
+                times[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(times);
+            // AST interpreter ne broji instrukcije
+            String count = instructions < 0 ? "-" : String.valueOf(instructions);
+            System.out.printf("%-24s %-8s %14s %12.3f%n", name, vm, count, times[runs / 2] / 1e6);
+        } catch (RuntimeException e) {
+            System.out.printf("%-24s %-8s %s%n", name, vm, e.getMessage());
+        }
+    }
+
+    // isti tok kao Application (Pipeline), bez ispisa i bez fajlova sa medjurezultatima
+    static Compiled compile(String code) {
+        Ast.Program program = Pipeline.parse(code);
+        Pipeline pipeline = new Pipeline();
+        pipeline.analyze(program);
+        Bytecode bytecode = pipeline.bytecode(program);
+        RegisterProgram registerProgram = pipeline.registers(program);
+        // --backend=ast izvrsava stablo posle semantike, bez optimizacija, pa i ovde
+        Ast.Program plain = Pipeline.parse(code);
+        new Resolver().resolve(plain);
+        return new Compiled(bytecode, registerProgram, new AstInterpreter(plain, NULL_OUT));
+    }
+}
@@ -0,0 +1,81 @@
+package main;
+
+import intermidiate.Bytecode;
+import intermidiate.Opcode;
+import intermidiate.PeepholeOptimizer;
+import parser.Ast;
+import vm.VirtualMachine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+public class PairProfile {
+
+    /*
+    Izvrsava svaki program na stek masini i broji koliko puta se koji opkod izvrsio
+    neposredno posle kog drugog, sabrano preko svih programa. Najcesci parovi su
+    kandidati za nove superinstrukcije; sa --fused se meri kod posle postojecih fuzija,
+    pa se vidi sta je ostalo.
+     */
+
+    private static final String USAGE = "Usage: java main.PairProfile [--top=N] [--fused] <source-file>...";
+
+    public static void main(String[] args) {
+        int top = 20;
+        boolean fused = false;
+        List<String> sources = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--top=")) top = Integer.parseInt(arg.substring("--top=".length()));
+                else if (arg.equals("--fused")) fused = true;
+                else sources.add(arg);
+            }
+        } catch (NumberFormatException e) {
+            sources.clear();
+        }
+        if (sources.isEmpty() || top < 1) {
+            System.err.println(USAGE);
+            System.exit(64);
+        }
+
+        long[] pairs = new long[Opcode.COUNT * Opcode.COUNT];
+        PrintStream nullOut = new PrintStream(OutputStream.nullOutputStream());
+        for (String source : sources) {
+            try {
+                Ast.Program program = Pipeline.parse(Files.readString(Path.of(source)));
+                Pipeline pipeline = new Pipeline(EnumSet.allOf(PeepholeOptimizer.Rule.class), fused);
+                pipeline.analyze(program);
+                Bytecode bytecode = pipeline.bytecode(program);
+                VirtualMachine vm = new VirtualMachine(bytecode, nullOut);
+                vm.profilePairs();
+                vm.run();
+                long[] counts = vm.getPairCounts();
+                for (int i = 0; i < pairs.length; i++) pairs[i] += counts[i];
+            } catch (IOException e) {
+                System.err.println("I/O error while reading " + source + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println(source + ": " + e.getMessage());
+            }
+        }
+
+        long total = 0;
+        for (long c : pairs) total += c;
+        Integer[] order = new Integer[pairs.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(pairs[b], pairs[a]));
+
+        System.out.printf("%-36s %14s %8s%n", "pair", "count", "share");
+        for (int i = 0; i < Math.min(top, order.length) && pairs[order[i]] > 0; i++) {
+            int p = order[i];
+            String pair = Opcode.name(p / Opcode.COUNT) + " -> " + Opcode.name(p % Opcode.COUNT);
+            System.out.printf("%-36s %14d %7.2f%%%n", pair, pairs[p], 100.0 * pairs[p] / total);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package main;
+
+import intermidiate.Bytecode;
+import intermidiate.Cfg;
+import intermidiate.CfgBuilder;
+import intermidiate.CodeGenerator;
+import intermidiate.PeepholeOptimizer;
+import intermidiate.RegisterCodeGenerator;
+import intermidiate.RegisterProgram;
+import intermidiate.Ssa;
+import intermidiate.SsaOptimizer;
+import intermidiate.SuperinstructionFuser;
+import lexer.Lexer;
+import optimizer.BoundsCheckElimination;
+import optimizer.ConstantFolder;
+import optimizer.DeadCodeEliminator;
+import optimizer.FunctionInliner;
+import optimizer.LoopInvariantCodeMotion;
+import optimizer.LoopParallelizer;
+import optimizer.LoopVectorizer;
+import optimizer.PurityAnalysis;
+import parser.Ast;
+import parser.ParserAst;
+import semantic.Resolver;
+import semantic.SemanticAnalyzer;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+// Redosled prolaza od stabla posle semantike do stek i registarskog koda, zajednicki za
+// Application, Benchmark, PairProfile i BatchCompiler. Prolazi ostaju u poljima, pa ko hoce
+// ispis cita njihove brojace posle; jedna instanca za jedan program.
+final class Pipeline {
+
+    final FunctionInliner inliner = new FunctionInliner();
+    final ConstantFolder folder = new ConstantFolder();
+    final DeadCodeEliminator dce = new DeadCodeEliminator();
+    final LoopInvariantCodeMotion licm = new LoopInvariantCodeMotion();
+    final PurityAnalysis purity = new PurityAnalysis();
+    final BoundsCheckElimination bce = new BoundsCheckElimination();
+    final LoopVectorizer vectorizer = new LoopVectorizer();
+    LoopParallelizer parallelizer;
+    final CodeGenerator codeGen = new CodeGenerator();
+    final PeepholeOptimizer peephole;
+    final SuperinstructionFuser fuser;
+    final SsaOptimizer ssaOptimizer = new SsaOptimizer();
+
+    // CFG pre i posle SSA optimizacije, za ispis
+    final List<String> cfgDump = new ArrayList<>();
+    final List<String> ssaDump = new ArrayList<>();
+    int irBefore = 0;
+    int irAfter = 0;
+
+    Pipeline() {
+        this(EnumSet.allOf(PeepholeOptimizer.Rule.class), true);
+    }
+
+    // fuse = false ostavlja kod posle peephole-a, bez superinstrukcija (PairProfile)
+    Pipeline(Set<PeepholeOptimizer.Rule> peephole, boolean fuse) {
+        this.peephole = new PeepholeOptimizer(peephole);
+        this.fuser = fuse ? new SuperinstructionFuser() : null;
+    }
+
+    // leksicka, sintaksna i semanticka analiza
+    static Ast.Program parse(String code) {
+        Ast.Program program = new ParserAst(new Lexer(code).scanTokens()).parseProgram();
+        new SemanticAnalyzer().analyze(program);
+        return program;
+    }
+
+    // optimizacije nad stablom, Resolver i oznake za generator (provere granica, vektorske
+    // i paralelne petlje)
+    void analyze(Ast.Program program) {
+        optimize(program);
+        mark(program);
+    }
+
+    void optimize(Ast.Program program) {
+        inliner.rewrite(program);
+        folder.rewrite(program);
+        dce.rewrite(program);
+        licm.rewrite(program);
+    }
+
+    void mark(Ast.Program program) {
+        new Resolver().resolve(program);
+        purity.analyze(program);
+        bce.analyze(program);
+        vectorizer.analyze(program);
+        parallelizer = new LoopParallelizer(purity.getPure());
+        parallelizer.analyze(program);
+    }
+
+    // kod za stek masinu; stablo mora proci analyze
+    Bytecode bytecode(Ast.Program program) {
+        Bytecode bytecode = peephole.optimize(codeGen.generate(program));
+        return fuser != null ? fuser.fuse(bytecode) : bytecode;
+    }
+
+    // kod za registarske masine; stablo mora proci analyze
+    RegisterProgram registers(Ast.Program program) {
+        List<Cfg> cfgs = new CfgBuilder().build(program);
+        for (Cfg cfg : cfgs) {
+            cfgDump.addAll(cfg.dump());
+            irBefore += cfg.instructionCount();
+        }
+        for (Cfg cfg : cfgs) {
+            ssaOptimizer.optimize(cfg);
+            ssaDump.addAll(cfg.dump());
+            irAfter += cfg.instructionCount();
+            Ssa.destruct(cfg);
+        }
+        return new RegisterCodeGenerator().generate(cfgs, program.globalCount);
+    }
+}
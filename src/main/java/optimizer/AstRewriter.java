@@ -0,0 +1,202 @@
+package optimizer;
+
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.List;
+
+// Osnova za prolaze koji prepisuju tipizirano stablo. Svaki visit vraca cvor koji
+// zamenjuje posecen; novi cvor se pravi samo ako se neko dete promenilo, a liste
+// (blokovi, argumenti, indeksi) se menjaju u mestu.
+public class AstRewriter implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+    /* ================= PROGRAM ================= */
+
+    public void rewrite(Ast.Program program) {
+        for (int i = 0; i < program.items.size(); i++) {
+            Ast.TopItem it = program.items.get(i);
+            if (it instanceof Ast.FuncDef f) {
+                rewriteFunc(f);
+            } else if (it instanceof Ast.TopStmt s) {
+                Stmt r = s.stmt.accept(this);
+                if (r != s.stmt) program.items.set(i, new Ast.TopStmt(r));
+            } else if (it instanceof Ast.TopVarDecl v) {
+                v.decl.accept(this);
+            }
+        }
+    }
+
+    protected void rewriteFunc(Ast.FuncDef f) {
+        rewriteBlock(f.body);
+    }
+
+    protected void rewriteBlock(List<Stmt> stmts) {
+        for (int i = 0; i < stmts.size(); i++) stmts.set(i, stmts.get(i).accept(this));
+    }
+
+    protected Expr rewrite(Expr e) {
+        return e == null ? null : e.accept(this);
+    }
+
+    protected void rewriteAll(List<Expr> exprs) {
+        for (int i = 0; i < exprs.size(); i++) exprs.set(i, rewrite(exprs.get(i)));
+    }
+
+    protected static <T extends Expr> T typed(T node, Ast.Type type) {
+        node.inferredType = type;
+        return node;
+    }
+
+    // ================== STMT VISITOR ==================
+
+    @Override
+    public Stmt visitVarDecl(Stmt.VarDecl s) {
+        rewriteAll(s.dims);
+        rewriteAll(s.values);
+        return s;
+    }
+
+    @Override
+    public Stmt visitArrayAssign(Stmt.ArrayAssign s) {
+        rewriteAll(s.target.indices);
+        Expr value = rewrite(s.value);
+        return value == s.value ? s : new Stmt.ArrayAssign(s.target, value);
+    }
+
+    @Override
+    public Stmt visitReturn(Stmt.Return s) {
+        Expr expr = rewrite(s.expr);
+        return expr == s.expr ? s : new Stmt.Return(expr);
+    }
+
+    @Override
+    public Stmt visitAssign(Stmt.Assign s) {
+        rewriteAll(s.lvalue.indices);
+        Expr left = rewrite(s.left);
+        return left == s.left ? s : new Stmt.Assign(left, s.lvalue);
+    }
+
+    @Override
+    public Stmt visitCallStmt(Stmt.CallStmt s) {
+        s.call.accept(this);
+        return s;
+    }
+
+    @Override
+    public Stmt visitBeginIf(Stmt.BeginIf s) {
+        Stmt.BeginIf.Arm ifArm = rewriteArm(s.ifArm);
+        for (int i = 0; i < s.orIfArms.size(); i++) s.orIfArms.set(i, rewriteArm(s.orIfArms.get(i)));
+        if (s.elseBlock != null) rewriteBlock(s.elseBlock);
+        return ifArm == s.ifArm ? s : new Stmt.BeginIf(ifArm, s.orIfArms, s.elseBlock);
+    }
+
+    private Stmt.BeginIf.Arm rewriteArm(Stmt.BeginIf.Arm arm) {
+        Expr cond = rewrite(arm.cond);
+        rewriteBlock(arm.block);
+        return cond == arm.cond ? arm : new Stmt.BeginIf.Arm(cond, arm.block);
+    }
+
+    @Override
+    public Stmt visitBeginFor(Stmt.BeginFor s) {
+        s.init.accept(this);
+        Expr cond = rewrite(s.cond);
+        Stmt update = s.update == null ? null : s.update.accept(this);
+        rewriteBlock(s.body);
+        return cond == s.cond && update == s.update ? s : new Stmt.BeginFor(s.init, cond, update, s.body);
+    }
+
+    @Override
+    public Stmt visitIncDec(Stmt.IncDec s) {
+        rewriteAll(s.target.indices);
+        return s;
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.WhileStmt s) {
+        Expr cond = rewrite(s.cond);
+        rewriteBlock(s.body);
+        return cond == s.cond ? s : new Stmt.WhileStmt(cond, s.body);
+    }
+
+    @Override
+    public Stmt visitDoWhileStmt(Stmt.DoWhileStmt s) {
+        rewriteBlock(s.body);
+        Expr cond = rewrite(s.cond);
+        return cond == s.cond ? s : new Stmt.DoWhileStmt(s.body, cond);
+    }
+
+    @Override
+    public Stmt visitExprStmt(Stmt.ExprStmt s) {
+        Expr expr = rewrite(s.expr);
+        return expr == s.expr ? s : new Stmt.ExprStmt(expr);
+    }
+
+    // ================== EXPR VISITOR ==================
+
+    @Override
+    public Expr visitArrayLiteral(Expr.ArrayLiteral e) {
+        rewriteAll(e.elements);
+        return e;
+    }
+
+    @Override
+    public Expr visitIndex(Expr.Index e) {
+        rewriteAll(e.indices);
+        return e;
+    }
+
+    @Override
+    public Expr visitCall(Expr.Call e) {
+        rewriteAll(e.args);
+        return e;
+    }
+
+    @Override
+    public Expr visitGrouping(Expr.Grouping e) {
+        Expr inner = rewrite(e.inner);
+        return inner == e.inner ? e : typed(new Expr.Grouping(inner), e.inferredType);
+    }
+
+    @Override
+    public Expr visitBinary(Expr.Binary e) {
+        Expr left = rewrite(e.left);
+        Expr right = rewrite(e.right);
+        return left == e.left && right == e.right ? e : typed(new Expr.Binary(left, e.op, right), e.inferredType);
+    }
+
+    @Override
+    public Expr visitUnary(Expr.Unary e) {
+        Expr right = rewrite(e.right);
+        return right == e.right ? e : typed(new Expr.Unary(e.op, right), e.inferredType);
+    }
+
+    @Override
+    public Expr visitTernary(Expr.Ternary e) {
+        Expr cond = rewrite(e.cond);
+        Expr thenExpr = rewrite(e.thenExpr);
+        Expr elseExpr = rewrite(e.elseExpr);
+        if (cond == e.cond && thenExpr == e.thenExpr && elseExpr == e.elseExpr) return e;
+        return typed(new Expr.Ternary(cond, thenExpr, elseExpr), e.inferredType);
+    }
+
+    @Override
+    public Expr visitCast(Expr.Cast e) {
+        Expr expr = rewrite(e.expr);
+        return expr == e.expr ? e : typed(new Expr.Cast(e.type, expr), e.inferredType);
+    }
+
+    @Override public Expr visitIdent(Expr.Ident e) { return e; }
+
+    @Override public Expr visitIntLiteral(Expr.IntLiteral e) { return e; }
+
+    @Override public Expr visitDoubleLiteral(Expr.DoubleLiteral e) { return e; }
+
+    @Override public Expr visitLongLiteral(Expr.LongLiteral e) { return e; }
+
+    @Override public Expr visitCharLiteral(Expr.CharLiteral e) { return e; }
+
+    @Override public Expr visitStringLiteral(Expr.StringLiteral e) { return e; }
+
+    @Override public Expr visitBooleanLiteral(Expr.BooleanLiteral e) { return e; }
+}
@@ -0,0 +1,434 @@
+package optimizer;
+
+import lexer.token.Token;
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Analiza opsega koja oznacava pristupe nizu (Expr.Index, Stmt.ArrayAssign) ciji su svi
+// indeksi dokazano u granicama, pa izvrsilac sme da preskoci proveru. Gleda samo tela
+// funkcija: top-level promenljive su globalne i moze ih promeniti svaki poziv.
+//
+// Promenljiva je "konacna" ako se posle deklaracije nigde ne upisuje; njena vrednost i
+// opseg iz inicijalizatora vaze dokle god je vidljiva. Niz koji je konacna promenljiva
+// deklarisana sa dimenzijama ima poznatu duzinu: bar donju granicu izraza dimenzije, a
+// tacno n ako je dimenzija konacna promenljiva n. Posle uspesnog pravljenja niza n >= 0.
+//
+// Indukciona promenljiva craft petlje:
+//     craft (gold i#<start>: i < U and ...: i++: | i#i + k:) { telo }
+// gde se i upisuje samo u koraku (k > 0), a U se u petlji ne menja (konacne promenljive
+// i indukcione promenljive spoljnih petlji), u telu je u [start, U - 1]. Indeks je u
+// granicama ako je >= 0 i <= duzina - 1, brojevima ili simbolicki (npr. j + 1 <= n - 1
+// jer je j < lim, a lim#n - i - 1 sa i >= 0).
+//
+// Opsezi se racunaju kao matematicki celi brojevi i odbacuju se cim izadju iz opsega gold,
+// pa prekoracenje ne moze da napravi pogresan dokaz.
+public final class BoundsCheckElimination {
+
+    private static final long MIN = Integer.MIN_VALUE;
+    private static final long MAX = Integer.MAX_VALUE;
+
+    // promenljiva jedne deklaracije (isto ime u razlicitim opsezima je druga promenljiva)
+    private static final class Var {
+        final Ast.Type type;
+        final List<Stmt> writes = new ArrayList<>();
+        Dim[] dims; // samo za konacan niz deklarisan sa dimenzijama
+
+        Var(Ast.Type type) {
+            this.type = type;
+        }
+
+        boolean isFinal() {
+            return writes.isEmpty();
+        }
+    }
+
+    // base + off, base == null je konstanta
+    private record Sym(Var base, long off) {
+        Sym plus(long k) {
+            return new Sym(base, off + k);
+        }
+    }
+
+    // vrednost je u [lo, hi] i nije veca od top (ako top postoji)
+    private record Range(long lo, long hi, Sym top) {}
+
+    // duzina dimenzije je bar min, i tacno exact ako je exact poznat
+    private record Dim(long min, Sym exact) {}
+
+    // Ident, Index, LValue i Token imena iz deklaracije -> promenljiva; globalne nisu tu
+    private final Map<Object, Var> vars = new IdentityHashMap<>();
+    private final Deque<Map<Var, Range>> facts = new ArrayDeque<>();
+
+    private int accessCount = 0;
+    private int eliminatedCount = 0;
+
+    public void analyze(Ast.Program program) {
+        for (Ast.TopItem it : program.items) {
+            if (it instanceof Ast.FuncDef f) {
+                new Names().function(f);
+                new Prover().function(f);
+            }
+        }
+    }
+
+    public int getAccessCount() {
+        return accessCount;
+    }
+
+    public int getEliminatedCount() {
+        return eliminatedCount;
+    }
+
+    /* ================= IMENA I UPISI ================= */
+
+    private final class Names extends AstRewriter {
+        private final Deque<Map<String, Var>> scopes = new ArrayDeque<>();
+
+        void function(Ast.FuncDef f) {
+            scopes.push(new HashMap<>());
+            for (Ast.Param p : f.params) declare(p.name, p.type);
+            rewriteBlock(f.body);
+            scopes.pop();
+        }
+
+        private void declare(Token name, Ast.Type type) {
+            Var v = new Var(type);
+            scopes.peek().put(name.lexeme, v);
+            vars.put(name, v);
+        }
+
+        private Var lookup(Token name) {
+            for (Map<String, Var> scope : scopes) {
+                Var v = scope.get(name.lexeme);
+                if (v != null) return v;
+            }
+            return null;
+        }
+
+        private void target(Stmt.LValue lv, Stmt write) {
+            Var v = lookup(lv.name);
+            if (v == null) return;
+            vars.put(lv, v);
+            if (lv.indices.isEmpty()) v.writes.add(write);
+        }
+
+        @Override
+        protected void rewriteBlock(List<Stmt> stmts) {
+            scopes.push(new HashMap<>());
+            super.rewriteBlock(stmts);
+            scopes.pop();
+        }
+
+        @Override
+        public Stmt visitVarDecl(Stmt.VarDecl s) {
+            rewriteAll(s.dims);
+            for (int i = 0; i < s.names.size(); i++) {
+                // inicijalizator vidi spoljasnje ime
+                if (i < s.values.size()) rewrite(s.values.get(i));
+                declare(s.names.get(i), s.type);
+            }
+            return s;
+        }
+
+        @Override
+        public Stmt visitAssign(Stmt.Assign s) {
+            super.visitAssign(s);
+            target(s.lvalue, s);
+            return s;
+        }
+
+        @Override
+        public Stmt visitArrayAssign(Stmt.ArrayAssign s) {
+            super.visitArrayAssign(s);
+            target(s.target, s);
+            return s;
+        }
+
+        @Override
+        public Stmt visitIncDec(Stmt.IncDec s) {
+            super.visitIncDec(s);
+            target(s.target, s);
+            return s;
+        }
+
+        @Override
+        public Stmt visitBeginFor(Stmt.BeginFor s) {
+            scopes.push(new HashMap<>());
+            super.visitBeginFor(s);
+            scopes.pop();
+            return s;
+        }
+
+        @Override
+        public Expr visitIdent(Expr.Ident e) {
+            Var v = lookup(e.name);
+            if (v != null) vars.put(e, v);
+            return e;
+        }
+
+        @Override
+        public Expr visitIndex(Expr.Index e) {
+            Var v = lookup(e.name);
+            if (v != null) vars.put(e, v);
+            return super.visitIndex(e);
+        }
+    }
+
+    /* ================= DOKAZIVANJE ================= */
+
+    private final class Prover extends AstRewriter {
+
+        void function(Ast.FuncDef f) {
+            facts.push(new HashMap<>());
+            rewriteBlock(f.body);
+            facts.pop();
+        }
+
+        @Override
+        protected void rewriteBlock(List<Stmt> stmts) {
+            facts.push(new HashMap<>());
+            super.rewriteBlock(stmts);
+            facts.pop();
+        }
+
+        @Override
+        public Stmt visitVarDecl(Stmt.VarDecl s) {
+            rewriteAll(s.dims);
+            Dim[] dims = s.dims.isEmpty() ? null : dims(s.dims);
+            boolean created = false;
+            for (int i = 0; i < s.names.size(); i++) {
+                Expr value = i < s.values.size() ? s.values.get(i) : null;
+                rewrite(value);
+                created |= dims != null && value == null;
+                Var v = vars.get(s.names.get(i));
+                if (!v.isFinal()) continue;
+                // niz sa inicijalizatorom nije napravljen po dimenzijama
+                if (value == null) v.dims = dims;
+                if (value != null && integral(v.type)) {
+                    Range r = range(value);
+                    if (r != null) facts.peek().put(v, r);
+                }
+            }
+            // niz je napravljen, pa dimenzija nije negativna
+            if (created) {
+                for (Expr d : s.dims) {
+                    Var n = vars.get(d);
+                    if (n == null || !n.isFinal() || n.type.kind != Ast.Type.Kind.INT) continue;
+                    Range r = fact(n);
+                    facts.peek().put(n, r == null ? new Range(0, MAX, null) : new Range(Math.max(r.lo, 0), r.hi, r.top));
+                }
+            }
+            return s;
+        }
+
+        private Dim[] dims(List<Expr> exprs) {
+            Dim[] dims = new Dim[exprs.size()];
+            for (int d = 0; d < dims.length; d++) {
+                Expr e = exprs.get(d);
+                Range r = range(e);
+                Sym exact = null;
+                if (e instanceof Expr.IntLiteral lit) exact = new Sym(null, lit.value);
+                // emerald dimenzija se pri pravljenju niza secce na gold, pa tacna duzina nije poznata
+                else if (vars.get(e) instanceof Var n && n.isFinal() && n.type.kind == Ast.Type.Kind.INT) exact = new Sym(n, 0);
+                dims[d] = new Dim(r == null ? 0 : Math.max(r.lo, 0), exact);
+            }
+            return dims;
+        }
+
+        @Override
+        public Stmt visitBeginFor(Stmt.BeginFor s) {
+            facts.push(new HashMap<>());
+            s.init.accept(this);
+            Range induction = induction(s);
+            rewrite(s.cond);
+            if (s.update != null) s.update.accept(this);
+            // uslov i korak vide i vrednost posle poslednjeg prolaza, pa opseg vazi samo u telu
+            if (induction != null) facts.peek().put(vars.get(s.init.names.get(0)), induction);
+            rewriteBlock(s.body);
+            facts.pop();
+            return s;
+        }
+
+        @Override
+        public Stmt visitArrayAssign(Stmt.ArrayAssign s) {
+            super.visitArrayAssign(s);
+            s.inBounds = mark(vars.get(s.target), s.target.indices);
+            return s;
+        }
+
+        @Override
+        public Expr visitIndex(Expr.Index e) {
+            super.visitIndex(e);
+            e.inBounds = mark(vars.get(e), e.indices);
+            return e;
+        }
+
+        private boolean mark(Var array, List<Expr> indices) {
+            accessCount++;
+            boolean proven = inBounds(array, indices);
+            if (proven) eliminatedCount++;
+            return proven;
+        }
+    }
+
+    private boolean inBounds(Var array, List<Expr> indices) {
+        if (array == null || array.dims == null || indices.size() > array.dims.length) return false;
+        for (int d = 0; d < indices.size(); d++) {
+            Range r = range(indices.get(d));
+            Dim dim = array.dims[d];
+            if (r == null || r.lo < 0) return false;
+            if (r.hi >= dim.min && (dim.exact == null || !le(top(r), dim.exact.plus(-1)))) return false;
+        }
+        return true;
+    }
+
+    /* ================= INDUKCIONE PROMENLJIVE ================= */
+
+    private Range induction(Stmt.BeginFor s) {
+        Stmt.VarDecl init = s.init;
+        if (init.names.size() != 1 || init.values.size() != 1 || init.values.get(0) == null || !init.dims.isEmpty()) return null;
+        Var i = vars.get(init.names.get(0));
+        if (!integral(i.type) || i.writes.size() != 1 || i.writes.get(0) != s.update) return null;
+        long step = step(s.update, i);
+        Range start = range(init.values.get(0));
+        if (step <= 0 || start == null) return null;
+
+        for (Expr c : conjuncts(s.cond, new ArrayList<>())) {
+            Range limit = limit(c, i);
+            // korak posle poslednjeg prolaza ne sme da prekoraci gold
+            if (limit != null && limit.hi + step <= MAX) return new Range(start.lo, limit.hi, limit.top);
+        }
+        return null;
+    }
+
+    private long step(Stmt update, Var i) {
+        if (update instanceof Stmt.IncDec inc && inc.target.indices.isEmpty()) {
+            return inc.op.type == TokenType.INC ? 1 : 0;
+        }
+        if (update instanceof Stmt.Assign a && a.lvalue.indices.isEmpty()
+                && strip(a.left) instanceof Expr.Binary b && b.op.type == TokenType.ADD) {
+            if (vars.get(strip(b.left)) == i && strip(b.right) instanceof Expr.IntLiteral k) return k.value;
+            if (vars.get(strip(b.right)) == i && strip(b.left) instanceof Expr.IntLiteral k) return k.value;
+        }
+        return 0;
+    }
+
+    private static List<Expr> conjuncts(Expr e, List<Expr> out) {
+        e = strip(e);
+        if (e instanceof Expr.Binary b && b.op.type == TokenType.AND) {
+            conjuncts(b.left, out);
+            conjuncts(b.right, out);
+        } else {
+            out.add(e);
+        }
+        return out;
+    }
+
+    // najveca vrednost i u telu iz i < U, i <= U, U > i ili U >= i
+    private Range limit(Expr c, Var i) {
+        if (!(c instanceof Expr.Binary b)) return null;
+        TokenType op = b.op.type;
+        Expr bound;
+        boolean strict;
+        if ((op == TokenType.LT || op == TokenType.LE) && vars.get(strip(b.left)) == i) {
+            bound = b.right;
+            strict = op == TokenType.LT;
+        } else if ((op == TokenType.GT || op == TokenType.GE) && vars.get(strip(b.right)) == i) {
+            bound = b.left;
+            strict = op == TokenType.GT;
+        } else {
+            return null;
+        }
+        Range r = range(bound);
+        if (r == null) return null;
+        long k = strict ? -1 : 0;
+        return new Range(r.lo + k, r.hi + k, r.top == null ? null : r.top.plus(k));
+    }
+
+    /* ================= OPSEZI ================= */
+
+    private Range range(Expr e) {
+        e = strip(e);
+        if (e instanceof Expr.IntLiteral lit) return constant(lit.value);
+        if (e instanceof Expr.LongLiteral lit) return lit.value >= MIN && lit.value <= MAX ? constant(lit.value) : null;
+        if (e instanceof Expr.Ident) {
+            Var v = vars.get(e);
+            if (v == null || !integral(v.type)) return null;
+            Range known = fact(v);
+            if (!v.isFinal()) return known;
+            if (known == null && v.type.kind != Ast.Type.Kind.INT) return null;
+            return new Range(known == null ? MIN : known.lo, known == null ? MAX : known.hi, new Sym(v, 0));
+        }
+        if (!(e instanceof Expr.Binary b)) return null;
+        Range l = range(b.left);
+        Range r = range(b.right);
+        if (l == null || r == null) return null;
+        return switch (b.op.type) {
+            case ADD -> {
+                Sym lt = top(l), rt = top(r);
+                Sym top = rt.base == null ? lt.plus(rt.off) : lt.base == null ? rt.plus(lt.off) : null;
+                yield checked(l.lo + r.lo, l.hi + r.hi, top);
+            }
+            case SUBTRACT -> checked(l.lo - r.hi, l.hi - r.lo, top(l).plus(-r.lo));
+            case MULTIPLY -> {
+                long a = l.lo * r.lo, c = l.lo * r.hi, d = l.hi * r.lo, f = l.hi * r.hi;
+                yield checked(Math.min(Math.min(a, c), Math.min(d, f)), Math.max(Math.max(a, c), Math.max(d, f)), null);
+            }
+            // x % m je u [0, m - 1] kad je x >= 0 i m > 0
+            case PERCENT -> l.lo >= 0 && r.lo > 0
+                    ? checked(0, Math.min(l.hi, r.hi - 1), r.top == null ? null : r.top.plus(-1))
+                    : null;
+            default -> null;
+        };
+    }
+
+    private static Range constant(long k) {
+        return new Range(k, k, new Sym(null, k));
+    }
+
+    private static Range checked(long lo, long hi, Sym top) {
+        return lo < MIN || hi > MAX ? null : new Range(lo, hi, top);
+    }
+
+    private static Sym top(Range r) {
+        return r.top != null ? r.top : new Sym(null, r.hi);
+    }
+
+    // a <= b; gornja granica konacne promenljive se zamenjuje njenim inicijalizatorom
+    private boolean le(Sym a, Sym b) {
+        for (int steps = 0; steps < 16 && a != null; steps++) {
+            if (a.base == b.base) return a.off <= b.off;
+            if (a.base == null) return false;
+            Range r = fact(a.base);
+            a = r == null || r.top == null ? null : r.top.plus(a.off);
+        }
+        return false;
+    }
+
+    private Range fact(Var v) {
+        for (Map<Var, Range> scope : facts) {
+            Range r = scope.get(v);
+            if (r != null) return r;
+        }
+        return null;
+    }
+
+    private static boolean integral(Ast.Type t) {
+        return t.kind == Ast.Type.Kind.INT || t.kind == Ast.Type.Kind.LONG;
+    }
+
+    private static Expr strip(Expr e) {
+        while (e instanceof Expr.Grouping g) e = g.inner;
+        return e;
+    }
+}
@@ -0,0 +1,316 @@
+package optimizer;
+
+import lexer.token.Token;
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+// Racuna izraze nad literalima u vreme prevodjenja i primenjuje algebarske
+// identitete (x+0, x*1, x*2^k -> x<<k za gold...). Rezultat mora biti isti kao
+// kad bi izraz izvrsio VM, pa se npr. deljenje nulom ostavlja za izvrsavanje.
+public final class ConstantFolder extends AstRewriter {
+
+    private int simplified = 0;
+
+    public int getSimplifiedCount() {
+        return simplified;
+    }
+
+    // ================== NAREDBE ==================
+
+    @Override
+    public Stmt visitVarDecl(Stmt.VarDecl s) {
+        super.visitVarDecl(s);
+        // implicitna konverzija inicijalizatora (gold -> diamond) se radi odmah nad literalom
+        for (int i = 0; i < s.values.size(); i++) {
+            Expr v = s.values.get(i);
+            Object c = value(v);
+            if (c instanceof Number n && v.inferredType != null && v.inferredType.kind != s.type.kind) {
+                Expr lit = convert(n, s.type, token(v));
+                if (lit != null) {
+                    s.values.set(i, lit);
+                    simplified++;
+                }
+            }
+        }
+        return s;
+    }
+
+    // ================== IZRAZI ==================
+
+    @Override
+    public Expr visitGrouping(Expr.Grouping e) {
+        // zagrade ne uticu na generisani kod, a smetaju prepoznavanju literala
+        return rewrite(e.inner);
+    }
+
+    @Override
+    public Expr visitBinary(Expr.Binary e) {
+        Expr left = rewrite(e.left);
+        Expr right = rewrite(e.right);
+
+        Object a = value(left);
+        Object b = value(right);
+        if (a != null && b != null) {
+            Object r = fold(e.op.type, a, b);
+            if (r != null) {
+                simplified++;
+                return literal(r, e.op);
+            }
+        }
+
+        Expr s = simplify(e, left, right);
+        if (s != null) {
+            simplified++;
+            return s;
+        }
+        return left == e.left && right == e.right ? e : typed(new Expr.Binary(left, e.op, right), e.inferredType);
+    }
+
+    @Override
+    public Expr visitUnary(Expr.Unary e) {
+        Expr right = rewrite(e.right);
+        Object a = value(right);
+
+        Object r = null;
+        if (e.op.type == TokenType.SUBTRACT) {
+            if (a instanceof Integer x) r = -x;
+            else if (a instanceof Long x) r = -x;
+            else if (a instanceof Double x) r = -x;
+        } else if (e.op.type == TokenType.NOT && a instanceof Boolean x) {
+            r = !x;
+        }
+        if (r != null) {
+            simplified++;
+            return literal(r, e.op);
+        }
+
+        // --x i !!x
+        if (right instanceof Expr.Unary u && u.op.type == e.op.type) {
+            simplified++;
+            return u.right;
+        }
+        return right == e.right ? e : typed(new Expr.Unary(e.op, right), e.inferredType);
+    }
+
+    @Override
+    public Expr visitCast(Expr.Cast e) {
+        Expr expr = rewrite(e.expr);
+        if (value(expr) instanceof Number n) {
+            Expr lit = convert(n, e.type, token(expr));
+            if (lit != null) {
+                simplified++;
+                return lit;
+            }
+        }
+        return expr == e.expr ? e : typed(new Expr.Cast(e.type, expr), e.inferredType);
+    }
+
+    @Override
+    public Expr visitTernary(Expr.Ternary e) {
+        Expr cond = rewrite(e.cond);
+        if (value(cond) instanceof Boolean c) {
+            simplified++;
+            return rewrite(c ? e.thenExpr : e.elseExpr);
+        }
+        Expr thenExpr = rewrite(e.thenExpr);
+        Expr elseExpr = rewrite(e.elseExpr);
+        if (cond == e.cond && thenExpr == e.thenExpr && elseExpr == e.elseExpr) return e;
+        return typed(new Expr.Ternary(cond, thenExpr, elseExpr), e.inferredType);
+    }
+
+    /* ================= RACUNANJE ================= */
+
+    private static Object fold(TokenType op, Object a, Object b) {
+        switch (op) {
+            case ADD, SUBTRACT, MULTIPLY, DIVIDE, PERCENT -> {
+                return arithmetic(op, a, b);
+            }
+            case LT, LE, GT, GE -> {
+                if (!(a instanceof Number x) || !(b instanceof Number y)) return null;
+                if (a instanceof Double || b instanceof Double) {
+                    // IEEE poredjenje kao u izvrsavanju: -0.0 == 0.0, NaN je netacan za sve
+                    double p = x.doubleValue();
+                    double q = y.doubleValue();
+                    return switch (op) {
+                        case LT -> p < q;
+                        case LE -> p <= q;
+                        case GT -> p > q;
+                        default -> p >= q;
+                    };
+                }
+                int c;
+                if (a instanceof Integer && b instanceof Integer) c = Integer.compare(x.intValue(), y.intValue());
+                else c = Long.compare(x.longValue(), y.longValue());
+                return switch (op) {
+                    case LT -> c < 0;
+                    case LE -> c <= 0;
+                    case GT -> c > 0;
+                    default -> c >= 0;
+                };
+            }
+            case EQ, NEQ -> {
+                boolean eq;
+                if (a instanceof Number x && b instanceof Number y) {
+                    eq = a instanceof Double || b instanceof Double
+                            ? x.doubleValue() == y.doubleValue()
+                            : x.longValue() == y.longValue();
+                } else {
+                    eq = a.equals(b);
+                }
+                return eq == (op == TokenType.EQ);
+            }
+            case AND, OR -> {
+                if (!(a instanceof Boolean x) || !(b instanceof Boolean y)) return null;
+                return op == TokenType.AND ? x && y : x || y;
+            }
+            case BIT_AND, BIT_OR, BIT_LSHIFT, BIT_RSHIFT -> {
+                if (!(a instanceof Integer x) || !(b instanceof Integer y)) return null;
+                return switch (op) {
+                    case BIT_AND -> x & y;
+                    case BIT_OR -> x | y;
+                    case BIT_LSHIFT -> x << y;
+                    default -> x >> y;
+                };
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static Object arithmetic(TokenType op, Object a, Object b) {
+        if (a instanceof Integer x && b instanceof Integer y) {
+            if ((op == TokenType.DIVIDE || op == TokenType.PERCENT) && y == 0) return null;
+            return switch (op) {
+                case ADD -> x + y;
+                case SUBTRACT -> x - y;
+                case MULTIPLY -> x * y;
+                case DIVIDE -> x / y;
+                default -> x % y;
+            };
+        }
+        if (a instanceof Long x && b instanceof Long y) {
+            if ((op == TokenType.DIVIDE || op == TokenType.PERCENT) && y == 0) return null;
+            return switch (op) {
+                case ADD -> x + y;
+                case SUBTRACT -> x - y;
+                case MULTIPLY -> x * y;
+                case DIVIDE -> x / y;
+                default -> x % y;
+            };
+        }
+        if (a instanceof Double x && b instanceof Double y) {
+            return switch (op) {
+                case ADD -> x + y;
+                case SUBTRACT -> x - y;
+                case MULTIPLY -> x * y;
+                case DIVIDE -> x / y;
+                default -> x % y;
+            };
+        }
+        return null;
+    }
+
+    /* ================= IDENTITETI ================= */
+
+    private Expr simplify(Expr.Binary e, Expr l, Expr r) {
+        Ast.Type.Kind kind = e.inferredType == null ? null : e.inferredType.kind;
+        boolean integral = kind == Ast.Type.Kind.INT || kind == Ast.Type.Kind.LONG;
+
+        switch (e.op.type) {
+            case ADD -> {
+                // x + 0.0 nije x za -0.0, zato samo celi brojevi
+                if (integral && isConst(r, 0)) return l;
+                if (integral && isConst(l, 0)) return r;
+            }
+            case SUBTRACT -> {
+                if ((integral || kind == Ast.Type.Kind.DOUBLE) && isConst(r, 0)) return l;
+            }
+            case MULTIPLY -> {
+                if (isConst(r, 1)) return l;
+                if (isConst(l, 1)) return r;
+                if (kind == Ast.Type.Kind.INT) {
+                    if (value(r) instanceof Integer c && isPowerOfTwo(c)) return shiftLeft(l, c, e.op);
+                    if (value(l) instanceof Integer c && isPowerOfTwo(c)) return shiftLeft(r, c, e.op);
+                }
+            }
+            case DIVIDE -> {
+                if (isConst(r, 1)) return l;
+            }
+            case AND -> {
+                // oba operanda se uvek racunaju, pa se sme izbaciti samo neutralni literal
+                if (value(r) instanceof Boolean c && c) return l;
+                if (value(l) instanceof Boolean c && c) return r;
+            }
+            case OR -> {
+                if (value(r) instanceof Boolean c && !c) return l;
+                if (value(l) instanceof Boolean c && !c) return r;
+            }
+            default -> { }
+        }
+        return null;
+    }
+
+    private static boolean isConst(Expr e, int n) {
+        Object v = value(e);
+        // Double.equals razlikuje -0.0 od 0.0, a x - (-0.0) nije uvek x
+        return v instanceof Number x && x.doubleValue() == n && !Double.valueOf(-0.0).equals(v);
+    }
+
+    private static boolean isPowerOfTwo(int c) {
+        return c > 1 && (c & (c - 1)) == 0;
+    }
+
+    private static Expr shiftLeft(Expr x, int factor, Token at) {
+        Token shl = new Token(TokenType.BIT_LSHIFT, "<<", null, at.line, at.colStart, at.colEnd);
+        Expr amount = literal(Integer.numberOfTrailingZeros(factor), at);
+        return typed(new Expr.Binary(x, shl, amount), new Ast.Type(Ast.Type.Kind.INT, null, 0));
+    }
+
+    /* ================= LITERALI ================= */
+
+    private static Object value(Expr e) {
+        if (e instanceof Expr.IntLiteral l) return l.value;
+        if (e instanceof Expr.LongLiteral l) return l.value;
+        if (e instanceof Expr.DoubleLiteral l) return l.value;
+        if (e instanceof Expr.BooleanLiteral l) return l.value;
+        return null;
+    }
+
+    private static Token token(Expr literal) {
+        if (literal instanceof Expr.IntLiteral l) return l.token;
+        if (literal instanceof Expr.LongLiteral l) return l.token;
+        if (literal instanceof Expr.DoubleLiteral l) return l.token;
+        return ((Expr.BooleanLiteral) literal).token;
+    }
+
+    private static Expr convert(Number n, Ast.Type to, Token at) {
+        return switch (to.kind) {
+            case INT -> literal(n.intValue(), at);
+            case LONG -> literal(n.longValue(), at);
+            case DOUBLE -> literal(n.doubleValue(), at);
+            default -> null;
+        };
+    }
+
+    private static Expr literal(Object v, Token at) {
+        String lexeme = String.valueOf(v);
+        if (v instanceof Integer i) {
+            Token t = new Token(TokenType.INT_LIT, lexeme, i, at.line, at.colStart, at.colEnd);
+            return typed(new Expr.IntLiteral(t, i), new Ast.Type(Ast.Type.Kind.INT, null, 0));
+        }
+        if (v instanceof Long l) {
+            Token t = new Token(TokenType.LONG_LIT, lexeme, l, at.line, at.colStart, at.colEnd);
+            return typed(new Expr.LongLiteral(t, l), new Ast.Type(Ast.Type.Kind.LONG, null, 0));
+        }
+        if (v instanceof Double d) {
+            Token t = new Token(TokenType.DOUBLE_LIT, lexeme, d, at.line, at.colStart, at.colEnd);
+            return typed(new Expr.DoubleLiteral(t, d), new Ast.Type(Ast.Type.Kind.DOUBLE, null, 0));
+        }
+        boolean b = (Boolean) v;
+        Token t = new Token(b ? TokenType.TRUE : TokenType.FALSE, b ? "powered" : "unpowered", b, at.line, at.colStart, at.colEnd);
+        return typed(new Expr.BooleanLiteral(t, b), new Ast.Type(Ast.Type.Kind.BOOLEAN, null, 0));
+    }
+}
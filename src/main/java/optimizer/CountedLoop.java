@@ -0,0 +1,77 @@
+package optimizer;
+
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+// Petlja craft (gold i#lo: i < hi: i#i + 1:) ili sa i <= hi: brojac je nov gold lokal sa
+// korakom 1, a lo i hi su gold izrazi (+, -, *) nad lokalima i konstantama, bez i.
+// Zajednicko za LoopVectorizer i LoopParallelizer; ide posle Resolver-a.
+final class CountedLoop {
+
+    private CountedLoop() {}
+
+    // brojac petlje, ili null ako petlja nije ovog oblika
+    static Ast.Binding counter(Stmt.BeginFor s) {
+        Stmt.VarDecl init = s.init;
+        if (init == null || init.names.size() != 1 || init.values.size() != 1 || !init.dims.isEmpty()) return null;
+        Ast.Binding i = init.bindings[0];
+        Expr lo = init.values.get(0);
+        if (i.global || init.type.kind != Ast.Type.Kind.INT || lo == null || !invariant(lo, i)) return null;
+        if (!unitStep(s.update, i)) return null;
+        if (!(strip(s.cond) instanceof Expr.Binary c) || c.op.type != TokenType.LT && c.op.type != TokenType.LE
+                || !isCounter(c.left, i) || !invariant(c.right, i)) return null;
+        return i;
+    }
+
+    static boolean inclusive(Stmt.BeginFor s) {
+        return ((Expr.Binary) strip(s.cond)).op.type == TokenType.LE;
+    }
+
+    // gold izraz nad lokalima i konstantama, bez brojaca; isti je u svakoj iteraciji dok
+    // telo ne pise te lokale
+    static boolean invariant(Expr e, Ast.Binding i) {
+        if (e.inferredType == null || e.inferredType.kind != Ast.Type.Kind.INT) return false;
+        if (e instanceof Expr.Grouping g) return invariant(g.inner, i);
+        if (e instanceof Expr.IntLiteral) return true;
+        if (e instanceof Expr.Ident id) return local(id.binding) && id.binding.index != i.index;
+        if (e instanceof Expr.Binary b) {
+            return (b.op.type == TokenType.ADD || b.op.type == TokenType.SUBTRACT || b.op.type == TokenType.MULTIPLY)
+                    && invariant(b.left, i) && invariant(b.right, i);
+        }
+        return false;
+    }
+
+    static boolean isCounter(Expr e, Ast.Binding i) {
+        return strip(e) instanceof Expr.Ident id && same(id.binding, i);
+    }
+
+    static boolean local(Ast.Binding b) {
+        return b != null && !b.global;
+    }
+
+    static boolean same(Ast.Binding b, Ast.Binding i) {
+        return local(b) && b.index == i.index;
+    }
+
+    static Expr strip(Expr e) {
+        while (e instanceof Expr.Grouping g) e = g.inner;
+        return e;
+    }
+
+    private static boolean unitStep(Stmt update, Ast.Binding i) {
+        if (update instanceof Stmt.IncDec inc) {
+            return inc.op.type == TokenType.INC && inc.target.indices.isEmpty() && same(inc.target.binding, i);
+        }
+        if (update instanceof Stmt.Assign a && a.lvalue.indices.isEmpty() && same(a.lvalue.binding, i)
+                && strip(a.left) instanceof Expr.Binary b && b.op.type == TokenType.ADD) {
+            return isCounter(b.left, i) && one(b.right) || one(b.left) && isCounter(b.right, i);
+        }
+        return false;
+    }
+
+    private static boolean one(Expr e) {
+        return strip(e) instanceof Expr.IntLiteral k && k.value == 1;
+    }
+}
@@ -0,0 +1,262 @@
+package optimizer;
+
+import lexer.token.Token;
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Uklanja naredbe posle loot-a, grane dig-a ciji je uslov konstantan (posle
+// ConstantFolder-a) i promenljive koje se nigde ne citaju, zajedno sa dodelama,
+// ako ni inicijalizator, dimenzije, indeksi ni dodeljene vrednosti nemaju poziv
+// niti mogu da bace gresku (SideEffects.mayThrow); upis u element niza uvek moze
+// da promasi granice, pa takav niz ostaje.
+public final class DeadCodeEliminator extends AstRewriter {
+
+    private int removed = 0;
+
+    public int getRemovedCount() {
+        return removed;
+    }
+
+    @Override
+    public void rewrite(Ast.Program program) {
+        super.rewrite(program);
+
+        // ponavlja se jer uklanjanje jedne promenljive moze osloboditi drugu
+        boolean changed = true;
+        while (changed) {
+            Usage u = Usage.of(program);
+            changed = false;
+            for (int i = 0; i < program.items.size(); i++) {
+                Ast.TopItem it = program.items.get(i);
+                if (it instanceof Ast.FuncDef f) {
+                    changed |= removeUnused(f.body, u);
+                } else if (it instanceof Ast.TopVarDecl v) {
+                    if (removeUnusedNames(v.decl, u)) {
+                        changed = true;
+                        if (v.decl.names.isEmpty()) program.items.remove(i--);
+                    }
+                } else if (it instanceof Ast.TopStmt t) {
+                    List<Stmt> single = new ArrayList<>(List.of(t.stmt));
+                    if (removeUnused(single, u)) {
+                        changed = true;
+                        if (single.isEmpty()) program.items.remove(i--);
+                        else program.items.set(i, new Ast.TopStmt(single.get(0)));
+                    }
+                }
+            }
+        }
+    }
+
+    /* ================= NEDOSTIZNE NAREDBE ================= */
+
+    @Override
+    protected void rewriteBlock(List<Stmt> stmts) {
+        List<Stmt> out = new ArrayList<>(stmts.size());
+        int i = 0;
+        while (i < stmts.size()) {
+            Stmt s = stmts.get(i++).accept(this);
+            List<Stmt> replacement = prune(s);
+            removed += replacement.isEmpty() ? 1 : 0;
+            out.addAll(replacement);
+
+            if (!out.isEmpty() && alwaysReturns(out.get(out.size() - 1))) {
+                removed += stmts.size() - i;
+                break;
+            }
+        }
+        stmts.clear();
+        stmts.addAll(out);
+    }
+
+    private List<Stmt> prune(Stmt s) {
+        if (s instanceof Stmt.BeginIf b) return pruneIf(b);
+        if (s instanceof Stmt.WhileStmt w && isConst(w.cond, false)) return List.of();
+        if (s instanceof Stmt.BeginFor f && isConst(f.cond, false) && !SideEffects.hasCall(f.init.values)) {
+            // init se izvrsi jednom i pre netacnog uslova; ako moze da baci, ostaje
+            if (SideEffects.mayThrow(f.init.values)) return unconditional(new ArrayList<>(List.of(f.init)));
+            return List.of();
+        }
+        if (s instanceof Stmt.DoWhileStmt d && isConst(d.cond, false)) return unconditional(d.body);
+        return List.of(s);
+    }
+
+    private List<Stmt> pruneIf(Stmt.BeginIf s) {
+        List<Stmt.BeginIf.Arm> arms = new ArrayList<>();
+        List<Stmt> elseBlock = s.elseBlock;
+
+        List<Stmt.BeginIf.Arm> all = new ArrayList<>();
+        all.add(s.ifArm);
+        all.addAll(s.orIfArms);
+        for (Stmt.BeginIf.Arm arm : all) {
+            if (isConst(arm.cond, false)) continue;
+            if (isConst(arm.cond, true)) {
+                // ostale grane i bedrock se nikad ne izvrsavaju
+                elseBlock = arm.block;
+                break;
+            }
+            arms.add(arm);
+        }
+
+        if (arms.size() == all.size() && elseBlock == s.elseBlock) return List.of(s);
+        if (arms.isEmpty()) return elseBlock == null ? List.of() : unconditional(elseBlock);
+        return List.of(new Stmt.BeginIf(arms.get(0), new ArrayList<>(arms.subList(1, arms.size())), elseBlock));
+    }
+
+    // blok bez uslova; ako deklarise promenljive, mora ostati u svom opsegu
+    private static List<Stmt> unconditional(List<Stmt> block) {
+        boolean declares = block.stream().anyMatch(st -> st instanceof Stmt.VarDecl);
+        if (!declares) return block;
+        Token powered = new Token(TokenType.TRUE, "powered", true, 0, 0, 0);
+        Expr cond = typed(new Expr.BooleanLiteral(powered, true), new Ast.Type(Ast.Type.Kind.BOOLEAN, null, 0));
+        return List.of(new Stmt.BeginIf(new Stmt.BeginIf.Arm(cond, block), new ArrayList<>(), null));
+    }
+
+    private static boolean alwaysReturns(Stmt s) {
+        if (s instanceof Stmt.Return) return true;
+        if (s instanceof Stmt.BeginIf b) {
+            if (b.elseBlock == null || !endsWithReturn(b.elseBlock) || !endsWithReturn(b.ifArm.block)) return false;
+            return b.orIfArms.stream().allMatch(arm -> endsWithReturn(arm.block));
+        }
+        return false;
+    }
+
+    private static boolean endsWithReturn(List<Stmt> block) {
+        return !block.isEmpty() && alwaysReturns(block.get(block.size() - 1));
+    }
+
+    private static boolean isConst(Expr e, boolean value) {
+        return e instanceof Expr.BooleanLiteral b && b.value == value;
+    }
+
+    /* ================= NEISKORISCENE PROMENLJIVE ================= */
+
+    // promenljiva je mrtva ako se nigde ne cita i nijedna dodela ni inicijalizator nemaju poziv;
+    // tada se uklanjaju i deklaracija i sve dodele
+    private boolean removeUnused(List<Stmt> block, Usage u) {
+        boolean changed = false;
+        for (int i = 0; i < block.size(); i++) {
+            Stmt s = block.get(i);
+            if (s instanceof Stmt.VarDecl v) {
+                if (removeUnusedNames(v, u)) {
+                    changed = true;
+                    if (v.names.isEmpty()) block.remove(i--);
+                }
+            } else if (isDeadWrite(s, u)) {
+                block.remove(i--);
+                removed++;
+                changed = true;
+            } else if (s instanceof Stmt.BeginIf b) {
+                changed |= removeUnused(b.ifArm.block, u);
+                for (Stmt.BeginIf.Arm arm : b.orIfArms) changed |= removeUnused(arm.block, u);
+                if (b.elseBlock != null) changed |= removeUnused(b.elseBlock, u);
+            } else if (s instanceof Stmt.BeginFor f) {
+                changed |= removeUnused(f.body, u);
+                if (f.update != null && isDeadWrite(f.update, u)) {
+                    block.set(i, new Stmt.BeginFor(f.init, f.cond, null, f.body));
+                    removed++;
+                    changed = true;
+                }
+            } else if (s instanceof Stmt.WhileStmt w) {
+                changed |= removeUnused(w.body, u);
+            } else if (s instanceof Stmt.DoWhileStmt d) {
+                changed |= removeUnused(d.body, u);
+            }
+        }
+        return changed;
+    }
+
+    private boolean removeUnusedNames(Stmt.VarDecl v, Usage u) {
+        boolean changed = false;
+        for (int i = 0; i < v.names.size(); i++) {
+            if (u.isDead(v.names.get(i).lexeme)) {
+                v.names.remove(i);
+                if (i < v.values.size()) v.values.remove(i);
+                i--;
+                removed++;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isDeadWrite(Stmt s, Usage u) {
+        if (s instanceof Stmt.Assign a) return u.isDead(a.lvalue.name.lexeme);
+        if (s instanceof Stmt.ArrayAssign a) return u.isDead(a.target.name.lexeme);
+        if (s instanceof Stmt.IncDec a) return u.isDead(a.target.name.lexeme);
+        return false;
+    }
+
+    // imena se porede kao stringovi: senceno ime koje se cita cuva sve istoimene promenljive
+    private static final class Usage extends AstRewriter {
+        final Set<String> read = new HashSet<>();
+        final Set<String> pinned = new HashSet<>();
+
+        static Usage of(Ast.Program program) {
+            Usage u = new Usage();
+            u.rewrite(program);
+            return u;
+        }
+
+        boolean isDead(String name) {
+            return !read.contains(name) && !pinned.contains(name);
+        }
+
+        @Override
+        public Expr visitIdent(Expr.Ident e) {
+            read.add(e.name.lexeme);
+            return e;
+        }
+
+        @Override
+        public Expr visitIndex(Expr.Index e) {
+            read.add(e.name.lexeme);
+            return super.visitIndex(e);
+        }
+
+        @Override
+        public Stmt visitVarDecl(Stmt.VarDecl s) {
+            boolean dims = SideEffects.hasCall(s.dims) || SideEffects.mayThrowDims(s.dims);
+            for (int i = 0; i < s.names.size(); i++) {
+                if (dims || (i < s.values.size() && effects(s.values.get(i))))
+                    pinned.add(s.names.get(i).lexeme);
+            }
+            return super.visitVarDecl(s);
+        }
+
+        @Override
+        public Stmt visitBeginFor(Stmt.BeginFor s) {
+            // inicijalizacija petlje ostaje, pa i njene promenljive
+            s.init.names.forEach(n -> pinned.add(n.lexeme));
+            return super.visitBeginFor(s);
+        }
+
+        @Override
+        public Stmt visitAssign(Stmt.Assign s) {
+            if (effects(s.left) || !s.lvalue.indices.isEmpty()) pinned.add(s.lvalue.name.lexeme);
+            return super.visitAssign(s);
+        }
+
+        @Override
+        public Stmt visitArrayAssign(Stmt.ArrayAssign s) {
+            if (effects(s.value) || !s.target.indices.isEmpty()) pinned.add(s.target.name.lexeme);
+            return super.visitArrayAssign(s);
+        }
+
+        @Override
+        public Stmt visitIncDec(Stmt.IncDec s) {
+            if (!s.target.indices.isEmpty()) pinned.add(s.target.name.lexeme);
+            return super.visitIncDec(s);
+        }
+
+        private static boolean effects(Expr e) {
+            return SideEffects.hasCall(e) || SideEffects.mayThrow(e);
+        }
+    }
+}
@@ -0,0 +1,578 @@
+package optimizer;
+
+import lexer.token.Token;
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Ugradjivanje malih mine funkcija na mesto poziva, unutar tela drugih funkcija.
+// Funkcija koja je u ciklusu grafa poziva (rekurzivna, direktno ili preko drugih)
+// se ne ugradjuje, kao ni funkcija sa vise od MAX_SIZE cvorova.
+//
+// Funkcija oblika "loot izraz:" bez poziva se ugradjuje u sam izraz: parametri se
+// zamenjuju argumentima ako su argumenti bez poziva i ne mogu da bace gresku (a
+// parametar koji se cita vise puta samo literalom ili promenljivom). Inace, ako je
+// poziv cela vrednost naredbe (gold x#f(a):, x#f(a):, f(a):, loot f(a):), telo se
+// kopira u blok ispred naredbe:
+//
+//     gold $inl0_r:
+//     dig (powered) {
+//         gold $inl0_a#a:          // argumenti redom, kao pri pozivu
+//         ...telo, lokalne promenljive preimenovane u $inl0_...
+//         $inl0_r#<izraz iz loot>:
+//     }
+//     gold x#$inl0_r:
+//
+// Telo sme da ima loot samo kao poslednju naredbu. Slobodna imena tela (globalne
+// promenljive) ne smeju biti deklarisana u funkciji pozivaoca, jer bi ih ona zaklonila.
+public final class FunctionInliner extends AstRewriter {
+
+    private static final String TEMP_PREFIX = "$inl";
+    private static final int MAX_SIZE = 40;
+
+    private final Map<String, Ast.FuncDef> functions = new HashMap<>();
+    private final Map<String, Integer> sizes = new HashMap<>();
+    private final Set<String> recursive = new TreeSet<>();
+    private Set<String> callerNames = Set.of();
+
+    private int inlinedCount = 0;
+    private int nextTemp = 0;
+
+    public int getInlinedCount() {
+        return inlinedCount;
+    }
+
+    // imena rekurzivnih funkcija, abecedno
+    public Set<String> getRecursive() {
+        return recursive;
+    }
+
+    @Override
+    public void rewrite(Ast.Program program) {
+        Map<String, Set<String>> calls = new LinkedHashMap<>();
+        for (Ast.TopItem it : program.items) {
+            if (it instanceof Ast.FuncDef f) {
+                functions.put(f.name.lexeme, f);
+                calls.put(f.name.lexeme, CallGraph.callees(f));
+                sizes.put(f.name.lexeme, Size.of(f.body));
+            }
+        }
+        for (String f : calls.keySet()) {
+            if (reaches(calls, f, f)) recursive.add(f);
+        }
+
+        // top-level naredbe se ne diraju: tamo bi privremene promenljive postale globalne
+        for (Ast.TopItem it : program.items) {
+            if (it instanceof Ast.FuncDef f) rewriteFunc(f);
+        }
+    }
+
+    @Override
+    protected void rewriteFunc(Ast.FuncDef f) {
+        callerNames = DeclaredNames.of(f);
+        super.rewriteFunc(f);
+    }
+
+    /* ================= GRAF POZIVA ================= */
+
+    private static boolean reaches(Map<String, Set<String>> calls, String from, String to) {
+        Set<String> seen = new HashSet<>();
+        Deque<String> work = new ArrayDeque<>(calls.getOrDefault(from, Set.of()));
+        while (!work.isEmpty()) {
+            String f = work.pop();
+            if (f.equals(to)) return true;
+            if (seen.add(f)) work.addAll(calls.getOrDefault(f, Set.of()));
+        }
+        return false;
+    }
+
+    private static final class CallGraph extends AstRewriter {
+        final Set<String> callees = new LinkedHashSet<>();
+
+        static Set<String> callees(Ast.FuncDef f) {
+            CallGraph g = new CallGraph();
+            g.rewriteBlock(f.body);
+            return g.callees;
+        }
+
+        @Override
+        public Expr visitCall(Expr.Call e) {
+            if (!isBuiltin(e)) callees.add(e.callee.lexeme);
+            return super.visitCall(e);
+        }
+    }
+
+    private static boolean isBuiltin(Expr.Call e) {
+        return e.callee.type == TokenType.PRINT || e.callee.type == TokenType.SCAN;
+    }
+
+    private Ast.FuncDef candidate(Expr.Call e) {
+        if (isBuiltin(e) || recursive.contains(e.callee.lexeme)) return null;
+        Ast.FuncDef f = functions.get(e.callee.lexeme);
+        if (f == null || f.params.size() != e.args.size() || sizes.get(f.name.lexeme) > MAX_SIZE) return null;
+        return f;
+    }
+
+    /* ================= UGRADJIVANJE U IZRAZ ================= */
+
+    @Override
+    public Expr visitCall(Expr.Call e) {
+        rewriteAll(e.args);
+        Expr inlined = substitute(e);
+        if (inlined == null) return e;
+        inlinedCount++;
+        return inlined;
+    }
+
+    @Override
+    public Stmt visitCallStmt(Stmt.CallStmt s) {
+        Expr e = s.call.accept(this);
+        return e == s.call ? s : new Stmt.ExprStmt(e);
+    }
+
+    private Expr substitute(Expr.Call e) {
+        Ast.FuncDef f = candidate(e);
+        if (f == null || f.body.size() != 1 || !(f.body.get(0) instanceof Stmt.Return r)
+                || r.expr == null || SideEffects.hasCall(r.expr)) {
+            return null;
+        }
+        Map<String, Integer> uses = Uses.of(r.expr);
+        Map<String, Expr> args = new HashMap<>();
+        for (int i = 0; i < f.params.size(); i++) {
+            Ast.Param p = f.params.get(i);
+            Expr arg = e.args.get(i);
+            if (SideEffects.hasCall(arg) || SideEffects.mayThrow(arg)) return null;
+            if (uses.getOrDefault(p.name.lexeme, 0) > 1 && !trivial(arg)) return null;
+            args.put(p.name.lexeme, widen(arg, p.type));
+        }
+
+        Copier copier = new Copier(args);
+        Expr body = r.expr.accept(copier);
+        if (copier.failed || captured(copier.free)) return null;
+        return widen(body, f.returnType);
+    }
+
+    private static boolean trivial(Expr e) {
+        return e instanceof Expr.Ident || e instanceof Expr.IntLiteral || e instanceof Expr.LongLiteral
+                || e instanceof Expr.DoubleLiteral || e instanceof Expr.CharLiteral
+                || e instanceof Expr.BooleanLiteral || e instanceof Expr.StringLiteral;
+    }
+
+    // gold argument za diamond parametar i sl.; poziv je to radio implicitno
+    private static Expr widen(Expr e, Ast.Type type) {
+        if (e.inferredType == null || type.isArray() || Ast.sameType(e.inferredType, type)) return e;
+        return typed(new Expr.Cast(type, e), type);
+    }
+
+    private boolean captured(Set<String> free) {
+        for (String name : free) {
+            if (callerNames.contains(name)) return true;
+        }
+        return false;
+    }
+
+    /* ================= UGRADJIVANJE TELA ================= */
+
+    @Override
+    protected void rewriteBlock(List<Stmt> stmts) {
+        for (int i = 0; i < stmts.size(); i++) {
+            Stmt s = stmts.get(i);
+            Expr.Call call = wholeCall(s);
+            if (call != null) {
+                rewriteAll(call.args);
+                List<Stmt> expanded = substitute(call) == null ? expand(s, call) : null;
+                if (expanded != null) {
+                    stmts.remove(i);
+                    stmts.addAll(i, expanded);
+                    i += expanded.size() - 1;
+                    inlinedCount++;
+                    continue;
+                }
+            }
+            stmts.set(i, s.accept(this));
+        }
+    }
+
+    // poziv koji je cela vrednost naredbe, pa se telo sme izvrsiti pre nje
+    private static Expr.Call wholeCall(Stmt s) {
+        Expr e = null;
+        if (s instanceof Stmt.CallStmt c) e = c.call;
+        else if (s instanceof Stmt.ExprStmt x) e = x.expr;
+        else if (s instanceof Stmt.Return r) e = r.expr;
+        else if (s instanceof Stmt.Assign a && a.lvalue.indices.isEmpty()) e = a.left;
+        else if (s instanceof Stmt.VarDecl d && d.names.size() == 1 && d.values.size() == 1 && d.dims.isEmpty()) {
+            e = d.values.get(0);
+        }
+        return e instanceof Expr.Call c && !isBuiltin(c) ? c : null;
+    }
+
+    private List<Stmt> expand(Stmt s, Expr.Call call) {
+        Ast.FuncDef f = candidate(call);
+        if (f == null || !returnsOnlyAtEnd(f.body)) return null;
+        boolean needsValue = !(s instanceof Stmt.CallStmt || s instanceof Stmt.ExprStmt);
+        Stmt last = f.body.isEmpty() ? null : f.body.get(f.body.size() - 1);
+        Expr result = last instanceof Stmt.Return r ? r.expr : null;
+        if (needsValue && result == null) return null;
+
+        String prefix = TEMP_PREFIX + nextTemp + "_";
+        Copier copier = new Copier(prefix);
+        List<Stmt> block = new ArrayList<>();
+        for (int i = 0; i < f.params.size(); i++) {
+            Ast.Param p = f.params.get(i);
+            Token name = copier.declare(p.name);
+            block.add(new Stmt.VarDecl(p.type, new ArrayList<>(), new ArrayList<>(List.of(name)),
+                    new ArrayList<>(List.of(call.args.get(i)))));
+        }
+        int bodyEnd = last instanceof Stmt.Return ? f.body.size() - 1 : f.body.size();
+        for (int i = 0; i < bodyEnd; i++) block.add(f.body.get(i).accept(copier));
+        Expr value = result == null ? null : result.accept(copier);
+        if (copier.failed || captured(copier.free)) return null;
+
+        List<Stmt> out = new ArrayList<>();
+        Token resultName = new Token(TokenType.IDENTIFICATOR, prefix + "r", null, 0, 0, 0);
+        if (needsValue) {
+            out.add(new Stmt.VarDecl(f.returnType, new ArrayList<>(), new ArrayList<>(List.of(resultName)), new ArrayList<>()));
+            Stmt.LValue target = new Stmt.LValue(resultName, new ArrayList<>());
+            block.add(new Stmt.Assign(value, target));
+        } else if (value != null && (SideEffects.hasCall(value) || SideEffects.mayThrow(value))) {
+            block.add(new Stmt.ExprStmt(value));
+        }
+        Token powered = new Token(TokenType.TRUE, "powered", true, 0, 0, 0);
+        Expr cond = typed(new Expr.BooleanLiteral(powered, true), new Ast.Type(Ast.Type.Kind.BOOLEAN, null, 0));
+        out.add(new Stmt.BeginIf(new Stmt.BeginIf.Arm(cond, block), new ArrayList<>(), null));
+        nextTemp++;
+
+        if (!needsValue) return out;
+        Expr read = typed(new Expr.Ident(resultName), f.returnType);
+        if (s instanceof Stmt.Return) {
+            out.add(new Stmt.Return(read));
+        } else if (s instanceof Stmt.Assign a) {
+            out.add(new Stmt.Assign(read, a.lvalue));
+        } else {
+            Stmt.VarDecl d = (Stmt.VarDecl) s;
+            out.add(new Stmt.VarDecl(d.type, d.dims, d.names, new ArrayList<>(List.of(read))));
+        }
+        return out;
+    }
+
+    private static boolean returnsOnlyAtEnd(List<Stmt> body) {
+        Returns r = new Returns();
+        r.rewriteBlock(body);
+        return r.count == 0 || r.count == 1 && body.get(body.size() - 1) instanceof Stmt.Return;
+    }
+
+    /* ================= KOPIRANJE TELA ================= */
+
+    // Duboka kopija tela funkcije. Lokalne promenljive i parametri dobijaju nova imena
+    // (opsezi prate Resolver), a parametri iz konstruktora sa mapom se zamenjuju izrazima.
+    // Imena koja nisu razresena u telu su globalna i skupljaju se u free.
+    private static final class Copier implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+        private final String prefix;
+        private final Map<String, Expr> args;
+        private final Deque<Map<String, Token>> scopes = new ArrayDeque<>();
+        final Set<String> free = new HashSet<>();
+        boolean failed = false;
+
+        Copier(String prefix) {
+            this.prefix = prefix;
+            this.args = Map.of();
+            scopes.push(new HashMap<>());
+        }
+
+        Copier(Map<String, Expr> args) {
+            this.prefix = null;
+            this.args = args;
+            scopes.push(new HashMap<>());
+        }
+
+        Token declare(Token name) {
+            Token renamed = new Token(TokenType.IDENTIFICATOR, prefix + name.lexeme, null, name.line, name.colStart, name.colEnd);
+            scopes.peek().put(name.lexeme, renamed);
+            return renamed;
+        }
+
+        private Token rename(Token name) {
+            for (Map<String, Token> scope : scopes) {
+                Token t = scope.get(name.lexeme);
+                if (t != null) return t;
+            }
+            Expr arg = args.get(name.lexeme);
+            if (arg instanceof Expr.Ident id) return id.name;
+            if (arg != null) failed = true;   // niz kao parametar se indeksira, argument mora biti ime
+            else free.add(name.lexeme);
+            return name;
+        }
+
+        private List<Stmt> block(List<Stmt> stmts) {
+            scopes.push(new HashMap<>());
+            List<Stmt> out = new ArrayList<>(stmts.size());
+            for (Stmt s : stmts) out.add(s.accept(this));
+            scopes.pop();
+            return out;
+        }
+
+        private List<Expr> all(List<Expr> exprs) {
+            List<Expr> out = new ArrayList<>(exprs.size());
+            for (Expr e : exprs) out.add(e.accept(this));
+            return out;
+        }
+
+        private Expr copy(Expr e) {
+            return e == null ? null : e.accept(this);
+        }
+
+        private Stmt.LValue copy(Stmt.LValue lv) {
+            List<Expr> indices = all(lv.indices);
+            return new Stmt.LValue(rename(lv.name), indices);
+        }
+
+        // ================== STMT ==================
+
+        @Override
+        public Stmt visitVarDecl(Stmt.VarDecl s) {
+            List<Expr> dims = all(s.dims);
+            List<Token> names = new ArrayList<>();
+            List<Expr> values = new ArrayList<>();
+            for (int i = 0; i < s.names.size(); i++) {
+                // inicijalizator vidi spoljasnje ime
+                if (i < s.values.size()) values.add(copy(s.values.get(i)));
+                names.add(declare(s.names.get(i)));
+            }
+            return new Stmt.VarDecl(s.type, dims, names, values);
+        }
+
+        @Override
+        public Stmt visitArrayAssign(Stmt.ArrayAssign s) {
+            Stmt.LValue target = copy(s.target);
+            return new Stmt.ArrayAssign(target, copy(s.value));
+        }
+
+        @Override
+        public Stmt visitReturn(Stmt.Return s) {
+            return new Stmt.Return(copy(s.expr));
+        }
+
+        @Override
+        public Stmt visitAssign(Stmt.Assign s) {
+            Expr left = copy(s.left);
+            return new Stmt.Assign(left, copy(s.lvalue));
+        }
+
+        @Override
+        public Stmt visitCallStmt(Stmt.CallStmt s) {
+            return new Stmt.CallStmt((Expr.Call) s.call.accept(this));
+        }
+
+        @Override
+        public Stmt visitBeginIf(Stmt.BeginIf s) {
+            Stmt.BeginIf.Arm ifArm = new Stmt.BeginIf.Arm(copy(s.ifArm.cond), block(s.ifArm.block));
+            List<Stmt.BeginIf.Arm> arms = new ArrayList<>();
+            for (Stmt.BeginIf.Arm arm : s.orIfArms) arms.add(new Stmt.BeginIf.Arm(copy(arm.cond), block(arm.block)));
+            return new Stmt.BeginIf(ifArm, arms, s.elseBlock == null ? null : block(s.elseBlock));
+        }
+
+        @Override
+        public Stmt visitBeginFor(Stmt.BeginFor s) {
+            scopes.push(new HashMap<>());
+            Stmt.VarDecl init = (Stmt.VarDecl) s.init.accept(this);
+            Expr cond = copy(s.cond);
+            Stmt update = s.update == null ? null : s.update.accept(this);
+            List<Stmt> body = new ArrayList<>();
+            for (Stmt st : s.body) body.add(st.accept(this));
+            scopes.pop();
+            return new Stmt.BeginFor(init, cond, update, body);
+        }
+
+        @Override
+        public Stmt visitIncDec(Stmt.IncDec s) {
+            return new Stmt.IncDec(copy(s.target), s.op);
+        }
+
+        @Override
+        public Stmt visitWhileStmt(Stmt.WhileStmt s) {
+            Expr cond = copy(s.cond);
+            return new Stmt.WhileStmt(cond, block(s.body));
+        }
+
+        @Override
+        public Stmt visitDoWhileStmt(Stmt.DoWhileStmt s) {
+            List<Stmt> body = block(s.body);
+            return new Stmt.DoWhileStmt(body, copy(s.cond));
+        }
+
+        @Override
+        public Stmt visitExprStmt(Stmt.ExprStmt s) {
+            return new Stmt.ExprStmt(copy(s.expr));
+        }
+
+        // ================== EXPR ==================
+
+        @Override
+        public Expr visitIdent(Expr.Ident e) {
+            for (Map<String, Token> scope : scopes) {
+                Token t = scope.get(e.name.lexeme);
+                if (t != null) return typed(new Expr.Ident(t), e.inferredType);
+            }
+            Expr arg = args.get(e.name.lexeme);
+            if (arg == null) {
+                free.add(e.name.lexeme);
+                return typed(new Expr.Ident(e.name), e.inferredType);
+            }
+            return copyArgument(arg);
+        }
+
+        // argument koji se cita vise puta je ime ili literal (vidi substitute), pa se ime kopira
+        private Expr copyArgument(Expr arg) {
+            if (arg instanceof Expr.Ident id) return typed(new Expr.Ident(id.name), id.inferredType);
+            if (arg instanceof Expr.Cast c && c.expr instanceof Expr.Ident id) {
+                return typed(new Expr.Cast(c.type, typed(new Expr.Ident(id.name), id.inferredType)), c.inferredType);
+            }
+            return arg;
+        }
+
+        @Override
+        public Expr visitIndex(Expr.Index e) {
+            List<Expr> indices = all(e.indices);
+            return typed(new Expr.Index(rename(e.name), indices), e.inferredType);
+        }
+
+        @Override
+        public Expr visitArrayLiteral(Expr.ArrayLiteral e) {
+            return typed(new Expr.ArrayLiteral(all(e.elements)), e.inferredType);
+        }
+
+        @Override
+        public Expr visitCall(Expr.Call e) {
+            return typed(new Expr.Call(e.callTok, e.callee, all(e.args)), e.inferredType);
+        }
+
+        @Override
+        public Expr visitGrouping(Expr.Grouping e) {
+            return typed(new Expr.Grouping(copy(e.inner)), e.inferredType);
+        }
+
+        @Override
+        public Expr visitBinary(Expr.Binary e) {
+            Expr left = copy(e.left);
+            return typed(new Expr.Binary(left, e.op, copy(e.right)), e.inferredType);
+        }
+
+        @Override
+        public Expr visitUnary(Expr.Unary e) {
+            return typed(new Expr.Unary(e.op, copy(e.right)), e.inferredType);
+        }
+
+        @Override
+        public Expr visitTernary(Expr.Ternary e) {
+            Expr cond = copy(e.cond);
+            Expr thenExpr = copy(e.thenExpr);
+            return typed(new Expr.Ternary(cond, thenExpr, copy(e.elseExpr)), e.inferredType);
+        }
+
+        @Override
+        public Expr visitCast(Expr.Cast e) {
+            return typed(new Expr.Cast(e.type, copy(e.expr)), e.inferredType);
+        }
+
+        @Override public Expr visitIntLiteral(Expr.IntLiteral e) { return e; }
+
+        @Override public Expr visitDoubleLiteral(Expr.DoubleLiteral e) { return e; }
+
+        @Override public Expr visitLongLiteral(Expr.LongLiteral e) { return e; }
+
+        @Override public Expr visitCharLiteral(Expr.CharLiteral e) { return e; }
+
+        @Override public Expr visitStringLiteral(Expr.StringLiteral e) { return e; }
+
+        @Override public Expr visitBooleanLiteral(Expr.BooleanLiteral e) { return e; }
+    }
+
+    /* ================= POMOCNE ================= */
+
+    // broj cvorova (naredbi i izraza) tela
+    private static final class Size extends AstRewriter {
+        int count = 0;
+
+        static int of(List<Stmt> body) {
+            Size s = new Size();
+            s.rewriteBlock(body);
+            return s.count;
+        }
+
+        @Override
+        protected void rewriteBlock(List<Stmt> stmts) {
+            count += stmts.size();
+            super.rewriteBlock(stmts);
+        }
+
+        @Override
+        protected Expr rewrite(Expr e) {
+            if (e != null) count++;
+            return super.rewrite(e);
+        }
+    }
+
+    private static final class Returns extends AstRewriter {
+        int count = 0;
+
+        @Override
+        public Stmt visitReturn(Stmt.Return s) {
+            count++;
+            return s;
+        }
+    }
+
+    // koliko puta se koje ime cita u izrazu
+    private static final class Uses extends AstRewriter {
+        final Map<String, Integer> counts = new HashMap<>();
+
+        static Map<String, Integer> of(Expr e) {
+            Uses u = new Uses();
+            e.accept(u);
+            return u.counts;
+        }
+
+        @Override
+        public Expr visitIdent(Expr.Ident e) {
+            counts.merge(e.name.lexeme, 1, Integer::sum);
+            return e;
+        }
+
+        @Override
+        public Expr visitIndex(Expr.Index e) {
+            counts.merge(e.name.lexeme, 1, Integer::sum);
+            return super.visitIndex(e);
+        }
+    }
+
+    // parametri i sve lokalne promenljive funkcije, bez obzira na opseg
+    private static final class DeclaredNames extends AstRewriter {
+        final Set<String> names = new HashSet<>();
+
+        static Set<String> of(Ast.FuncDef f) {
+            DeclaredNames d = new DeclaredNames();
+            for (Ast.Param p : f.params) d.names.add(p.name.lexeme);
+            d.rewriteBlock(f.body);
+            return d.names;
+        }
+
+        @Override
+        public Stmt visitVarDecl(Stmt.VarDecl s) {
+            for (Token n : s.names) names.add(n.lexeme);
+            return super.visitVarDecl(s);
+        }
+    }
+}
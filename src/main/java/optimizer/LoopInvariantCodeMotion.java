@@ -0,0 +1,339 @@
+package optimizer;
+
+import lexer.token.Token;
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Izvlacenje invarijantnih izraza iz petlji (craft, build, do-build). Izraz je invarijantan
+// ako ne cita promenljivu kojoj se u petlji dodeljuje ili koja je u njoj deklarisana, a niz
+// samo ako petlja ne upisuje ni u jedan niz (nizovi mogu biti isti objekat pod dva imena).
+// Petlja sa pozivom korisnicke funkcije se preskace. Izraz se racuna jednom, u novu
+// promenljivu $invN deklarisanu ispred petlje.
+//
+// Izraz koji moze da baci gresku (indeksiranje, celobrojno deljenje, cast stringa) izvlaci
+// se samo ako bi se sigurno izracunao u prvom prolazu: u uslovu petlje ili u naredbama tela
+// pre prve koja ispisuje, vraca ili grana. Za izraz iz tela while/for petlje deklaracija se
+// stavlja u "dig (uslov)" oko petlje, da se ne bi racunao kad se telo ne izvrsava.
+public final class LoopInvariantCodeMotion extends AstRewriter {
+
+    private static final String TEMP_PREFIX = "$inv";
+
+    private int hoistedCount = 0;
+    private int nextTemp = 0;
+
+    public int getHoistedCount() {
+        return hoistedCount;
+    }
+
+    // petlje se obradjuju spolja ka unutra: sto je invarijantno za spoljnu ide najdalje,
+    // a ostatak tela se posle obradjuje za unutrasnje petlje
+    @Override
+    protected void rewriteBlock(List<Stmt> stmts) {
+        for (int i = 0; i < stmts.size(); i++) {
+            Stmt s = stmts.get(i);
+            if (!(s instanceof Stmt.BeginFor || s instanceof Stmt.WhileStmt || s instanceof Stmt.DoWhileStmt)) {
+                stmts.set(i, s.accept(this));
+                continue;
+            }
+            Writes writes = new Writes();
+            s.accept(writes);
+            if (writes.userCall) {
+                stmts.set(i, s.accept(this));
+                continue;
+            }
+
+            Hoister h = new Hoister(writes);
+            Stmt loop = h.hoist(s);
+            stmts.addAll(i, h.entry);
+            i += h.entry.size();
+            loop = loop.accept(this);
+            if (!h.guarded.isEmpty()) {
+                List<Stmt> block = new ArrayList<>(h.guarded);
+                block.add(loop);
+                loop = new Stmt.BeginIf(new Stmt.BeginIf.Arm(h.guard, block), new ArrayList<>(), null);
+            }
+            stmts.set(i, loop);
+        }
+    }
+
+    /* ================= ANALIZA PETLJE ================= */
+
+    // imena kojima se u petlji dodeljuje ili koja se u njoj deklarisu, i da li se upisuje u niz
+    private static final class Writes extends AstRewriter {
+        final Set<String> names = new HashSet<>();
+        boolean arrays = false;
+        boolean userCall = false;
+
+        @Override
+        public Stmt visitVarDecl(Stmt.VarDecl s) {
+            for (Token n : s.names) names.add(n.lexeme);
+            return super.visitVarDecl(s);
+        }
+
+        @Override
+        public Stmt visitAssign(Stmt.Assign s) {
+            write(s.lvalue);
+            return super.visitAssign(s);
+        }
+
+        @Override
+        public Stmt visitArrayAssign(Stmt.ArrayAssign s) {
+            write(s.target);
+            return super.visitArrayAssign(s);
+        }
+
+        @Override
+        public Stmt visitIncDec(Stmt.IncDec s) {
+            write(s.target);
+            return super.visitIncDec(s);
+        }
+
+        private void write(Stmt.LValue target) {
+            if (target.indices.isEmpty()) names.add(target.name.lexeme);
+            else arrays = true;
+        }
+
+        @Override
+        public Expr visitCall(Expr.Call e) {
+            if (!isBuiltin(e)) userCall = true;
+            return super.visitCall(e);
+        }
+    }
+
+    private static boolean isBuiltin(Expr.Call e) {
+        return e.callee.type == TokenType.PRINT || e.callee.type == TokenType.SCAN;
+    }
+
+    /* ================= IZVLACENJE ================= */
+
+    private final class Hoister extends AstRewriter {
+        private final Writes writes;
+        private final Map<String, Expr.Ident> temps = new HashMap<>();
+        final List<Stmt> entry = new ArrayList<>();      // ispred petlje
+        final List<Stmt> guarded = new ArrayList<>();    // ispred petlje, pod uslovom guard
+        Expr guard;
+
+        private boolean anticipated = false;   // izraz se sigurno racuna u prvom prolazu
+        private boolean inBody = false;        // ... ali samo ako se telo izvrsi
+
+        Hoister(Writes writes) {
+            this.writes = writes;
+        }
+
+        Stmt hoist(Stmt loop) {
+            if (loop instanceof Stmt.BeginFor s) {
+                boolean simpleInit = s.init == null || !anyMayThrow(s.init.values) && !anyMayThrow(s.init.dims);
+                anticipated = simpleInit;
+                Expr cond = rewrite(s.cond);
+                boolean canGuard = simpleInit && s.cond != null && !hasIndexOrCall(s.cond)
+                        && (s.init == null || s.init.values.size() == s.init.names.size());
+                Stmt update = s.update;
+                body(s.body, canGuard || s.cond == null, s.cond != null);
+                anticipated = false;
+                if (update != null) update = update.accept(this);
+                if (!guarded.isEmpty()) guard = s.init == null ? cond : cond.accept(new Substitution(s.init));
+                return cond == s.cond && update == s.update ? s : new Stmt.BeginFor(s.init, cond, update, s.body);
+            }
+            if (loop instanceof Stmt.WhileStmt s) {
+                anticipated = true;
+                Expr cond = rewrite(s.cond);
+                body(s.body, true, true);
+                guard = cond;
+                return cond == s.cond ? s : new Stmt.WhileStmt(cond, s.body);
+            }
+            Stmt.DoWhileStmt s = (Stmt.DoWhileStmt) loop;
+            boolean straight = body(s.body, true, false);
+            anticipated = straight;
+            Expr cond = rewrite(s.cond);
+            return cond == s.cond ? s : new Stmt.DoWhileStmt(s.body, cond);
+        }
+
+        // vraca true ako se celo telo izvrsava pravolinijski (pa i uslov do-while posle njega)
+        private boolean body(List<Stmt> stmts, boolean anticipate, boolean needsGuard) {
+            anticipated = anticipate;
+            inBody = needsGuard;
+            for (int i = 0; i < stmts.size(); i++) {
+                Stmt s = stmts.get(i);
+                stmts.set(i, s.accept(this));
+                if (!straightLine(s)) anticipated = false;
+            }
+            boolean straight = anticipated;
+            anticipated = false;
+            inBody = false;
+            return straight;
+        }
+
+        @Override
+        protected void rewriteBlock(List<Stmt> stmts) {
+            anticipated = false;
+            super.rewriteBlock(stmts);
+        }
+
+        @Override
+        public Stmt visitBeginIf(Stmt.BeginIf s) {
+            Expr cond = rewrite(s.ifArm.cond);
+            rewriteBlock(s.ifArm.block);
+            for (int i = 0; i < s.orIfArms.size(); i++) {
+                Stmt.BeginIf.Arm arm = s.orIfArms.get(i);
+                Expr armCond = rewrite(arm.cond);
+                rewriteBlock(arm.block);
+                if (armCond != arm.cond) s.orIfArms.set(i, new Stmt.BeginIf.Arm(armCond, arm.block));
+            }
+            if (s.elseBlock != null) rewriteBlock(s.elseBlock);
+            if (cond == s.ifArm.cond) return s;
+            return new Stmt.BeginIf(new Stmt.BeginIf.Arm(cond, s.ifArm.block), s.orIfArms, s.elseBlock);
+        }
+
+        @Override
+        public Stmt visitBeginFor(Stmt.BeginFor s) {
+            anticipated = false;
+            return super.visitBeginFor(s);
+        }
+
+        @Override
+        public Stmt visitWhileStmt(Stmt.WhileStmt s) {
+            anticipated = false;
+            return super.visitWhileStmt(s);
+        }
+
+        @Override
+        public Stmt visitDoWhileStmt(Stmt.DoWhileStmt s) {
+            anticipated = false;
+            return super.visitDoWhileStmt(s);
+        }
+
+        @Override
+        public Expr visitTernary(Expr.Ternary e) {
+            Expr cond = rewrite(e.cond);
+            boolean saved = anticipated;
+            anticipated = false;
+            Expr thenExpr = rewrite(e.thenExpr);
+            Expr elseExpr = rewrite(e.elseExpr);
+            anticipated = saved;
+            if (cond == e.cond && thenExpr == e.thenExpr && elseExpr == e.elseExpr) return e;
+            return typed(new Expr.Ternary(cond, thenExpr, elseExpr), e.inferredType);
+        }
+
+        @Override
+        protected Expr rewrite(Expr e) {
+            if (e == null || !worthHoisting(e) || !invariant(e)) return super.rewrite(e);
+            String key = shape(e);
+            Expr.Ident existing = temps.get(key);
+            if (existing != null) return existing;
+            boolean safe = !SideEffects.mayThrow(e);
+            if (!safe && !anticipated) return super.rewrite(e);
+
+            Token name = new Token(TokenType.IDENTIFICATOR, TEMP_PREFIX + nextTemp++, null, 0, 0, 0);
+            List<Token> names = new ArrayList<>(List.of(name));
+            List<Expr> values = new ArrayList<>(List.of(e));
+            Stmt.VarDecl decl = new Stmt.VarDecl(e.inferredType, new ArrayList<>(), names, values);
+            (safe || !inBody ? entry : guarded).add(decl);
+            hoistedCount++;
+            Expr.Ident temp = typed(new Expr.Ident(name), e.inferredType);
+            temps.put(key, temp);
+            return temp;
+        }
+
+        private boolean invariant(Expr e) {
+            if (e instanceof Expr.Ident id) return !writes.names.contains(id.name.lexeme);
+            if (e instanceof Expr.Index ix) {
+                return !writes.arrays && !writes.names.contains(ix.name.lexeme) && ix.indices.stream().allMatch(this::invariant);
+            }
+            if (e instanceof Expr.Binary b) return invariant(b.left) && invariant(b.right);
+            if (e instanceof Expr.Unary u) return invariant(u.right);
+            if (e instanceof Expr.Cast c) return invariant(c.expr);
+            if (e instanceof Expr.Grouping g) return invariant(g.inner);
+            if (e instanceof Expr.Ternary t) return invariant(t.cond) && invariant(t.thenExpr) && invariant(t.elseExpr);
+            if (e instanceof Expr.Call || e instanceof Expr.ArrayLiteral) return false;
+            return true;
+        }
+    }
+
+    // uslov for petlje u kom su promenljive iz init zamenjene pocetnim vrednostima
+    private static final class Substitution extends AstRewriter {
+        private final Map<String, Expr> values = new HashMap<>();
+
+        Substitution(Stmt.VarDecl init) {
+            for (int i = 0; i < init.names.size() && i < init.values.size(); i++) {
+                values.put(init.names.get(i).lexeme, init.values.get(i));
+            }
+        }
+
+        @Override
+        public Expr visitIdent(Expr.Ident e) {
+            return values.getOrDefault(e.name.lexeme, e);
+        }
+    }
+
+    /* ================= POMOCNE ================= */
+
+    private static boolean worthHoisting(Expr e) {
+        if (e.inferredType == null) return false;
+        switch (e.inferredType.kind) {
+            case ARRAY, VOID, ANY -> {
+                return false;
+            }
+            default -> { }
+        }
+        return e instanceof Expr.Binary || e instanceof Expr.Unary || e instanceof Expr.Cast
+                || e instanceof Expr.Index || e instanceof Expr.Ternary;
+    }
+
+    // naredba posle koje sledece vise nisu sigurno izvrsene (ili bi greska promenila izlaz)
+    private static boolean straightLine(Stmt s) {
+        if (s instanceof Stmt.VarDecl d) return !SideEffects.hasCall(d.values) && !SideEffects.hasCall(d.dims);
+        if (s instanceof Stmt.Assign a) return !SideEffects.hasCall(a.left) && !SideEffects.hasCall(a.lvalue.indices);
+        if (s instanceof Stmt.ArrayAssign a) return !SideEffects.hasCall(a.value) && !SideEffects.hasCall(a.target.indices);
+        if (s instanceof Stmt.IncDec i) return !SideEffects.hasCall(i.target.indices);
+        if (s instanceof Stmt.ExprStmt e) return !SideEffects.hasCall(e.expr);
+        return false;
+    }
+
+    private static boolean anyMayThrow(List<Expr> exprs) {
+        for (Expr e : exprs) {
+            if (SideEffects.mayThrow(e) || SideEffects.hasCall(e)) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasIndexOrCall(Expr e) {
+        if (e instanceof Expr.Index || e instanceof Expr.Call || e instanceof Expr.ArrayLiteral) return true;
+        if (e instanceof Expr.Binary b) return hasIndexOrCall(b.left) || hasIndexOrCall(b.right);
+        if (e instanceof Expr.Unary u) return hasIndexOrCall(u.right);
+        if (e instanceof Expr.Cast c) return hasIndexOrCall(c.expr);
+        if (e instanceof Expr.Grouping g) return hasIndexOrCall(g.inner);
+        if (e instanceof Expr.Ternary t) return hasIndexOrCall(t.cond) || hasIndexOrCall(t.thenExpr) || hasIndexOrCall(t.elseExpr);
+        return false;
+    }
+
+    // strukturni kljuc izraza; isti izrazi u petlji dele istu promenljivu
+    private static String shape(Expr e) {
+        if (e instanceof Expr.Ident id) return id.name.lexeme;
+        if (e instanceof Expr.Index ix) {
+            StringBuilder sb = new StringBuilder(ix.name.lexeme);
+            for (Expr i : ix.indices) sb.append('[').append(shape(i)).append(']');
+            return sb.toString();
+        }
+        if (e instanceof Expr.Binary b) return "(" + shape(b.left) + " " + b.op.type + " " + shape(b.right) + ")";
+        if (e instanceof Expr.Unary u) return "(" + u.op.type + " " + shape(u.right) + ")";
+        if (e instanceof Expr.Cast c) return "(" + c.type + ")" + shape(c.expr);
+        if (e instanceof Expr.Grouping g) return shape(g.inner);
+        if (e instanceof Expr.Ternary t) return "(" + shape(t.cond) + " ? " + shape(t.thenExpr) + " : " + shape(t.elseExpr) + ")";
+        if (e instanceof Expr.IntLiteral l) return l.value + "";
+        if (e instanceof Expr.LongLiteral l) return l.value + "L";
+        if (e instanceof Expr.DoubleLiteral l) return l.value + "D";
+        if (e instanceof Expr.CharLiteral l) return "'" + l.value + "'";
+        if (e instanceof Expr.BooleanLiteral l) return l.value + "";
+        if (e instanceof Expr.StringLiteral l) return "\"" + l.value.replace("\"", "\\\"") + "\"";
+        return e.getClass().getSimpleName() + "@" + System.identityHashCode(e);
+    }
+}
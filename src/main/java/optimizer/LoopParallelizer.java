@@ -0,0 +1,215 @@
+package optimizer;
+
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Petlja sa brojacem (CountedLoop) cije su iteracije nezavisne, pa stek masina sme da je
+// izvrsi u delovima na vise niti (--parallel). Petlja se oznacava ako telo:
+//   - pise samo lokale deklarisane u telu i elemente nizova,
+//   - nema loot, collect, drop ni poziv funkcije koja nije cista (PurityAnalysis),
+//   - koristi nizove samo indeksirane (niz kao vrednost bi dao novo ime za isti niz),
+//   - za svaki spoljni niz u koji pise ima dimenziju u kojoj je svaki pristup tom nizu,
+//     i citanje i pisanje, indeksiran sa i + c za isto c, pa iteracija i dira samo
+//     elemente sa tim indeksom i + c.
+// Da dva imena ne pokazuju na isti niz proverava masina pre pokretanja (ParallelLoop).
+// Petlja koja je vec kernel (LoopVectorizer) se ne oznacava.
+// Ide posle Resolver-a; hi dobija novi slot na kraju okvira funkcije.
+public final class LoopParallelizer {
+
+    private final Set<String> pure;
+    private int parallel = 0;
+
+    public LoopParallelizer(Set<String> pure) {
+        this.pure = pure;
+    }
+
+    public void analyze(Ast.Program program) {
+        new Loops().rewrite(program);
+    }
+
+    public int getParallelCount() {
+        return parallel;
+    }
+
+    // lokal kao slot, globalna g kao ~g
+    private static int ref(Ast.Binding b) {
+        return b.global ? ~b.index : b.index;
+    }
+
+    private final class Loops extends AstRewriter {
+        private Ast.FuncDef function;
+
+        @Override
+        protected void rewriteFunc(Ast.FuncDef f) {
+            function = f;
+            super.rewriteFunc(f);
+            function = null;
+        }
+
+        @Override
+        public Stmt visitBeginFor(Stmt.BeginFor s) {
+            Stmt r = super.visitBeginFor(s);
+            if (function == null || !(r instanceof Stmt.BeginFor loop) || loop.vectorizable) return r;
+            Ast.Binding i = CountedLoop.counter(loop);
+            if (i == null) return r;
+
+            Body body = new Body(i);
+            body.rewriteBlock(loop.body);
+            if (body.independent()) {
+                List<Integer> written = new ArrayList<>(), read = new ArrayList<>();
+                for (int array : body.accesses.keySet()) (body.written.contains(array) ? written : read).add(array);
+                loop.parallel = new Stmt.BeginFor.Parallel(function.frameSize++, ints(written), ints(read));
+                parallel++;
+            }
+            return r;
+        }
+    }
+
+    // sta telo petlje sa brojacem i pise i cita
+    private final class Body extends AstRewriter {
+        private final Ast.Binding i;
+        private final Set<Integer> declared = new HashSet<>();
+        // lokal iz tela deklarisan kao i + c (LoopInvariantCodeMotion tako izvlaci indekse iz
+        // unutrasnjih petlji); vazi ako se posle ne menja i slot se ne deklarise ponovo
+        private final Map<Integer, Integer> shifted = new HashMap<>();
+        private final Set<Integer> changed = new HashSet<>();
+        // indeksi svakog pristupa spoljnim nizovima, po ref
+        final Map<Integer, List<List<Expr>>> accesses = new LinkedHashMap<>();
+        final Set<Integer> written = new HashSet<>();
+        private boolean ok = true;
+
+        Body(Ast.Binding i) {
+            this.i = i;
+        }
+
+        boolean independent() {
+            if (!ok) return false;
+            for (int array : written) {
+                if (!sliced(accesses.get(array))) return false;
+            }
+            return true;
+        }
+
+        // postoji dimenzija u kojoj su svi pristupi i + c za isto c
+        private boolean sliced(List<List<Expr>> all) {
+            int rank = all.get(0).size();
+            for (int d = 0; d < rank; d++) {
+                Integer c = offset(all.get(0).get(d));
+                boolean same = c != null;
+                for (int k = 1; same && k < all.size(); k++) same = c.equals(offset(all.get(k).get(d)));
+                if (same) return true;
+            }
+            return false;
+        }
+
+        // c za indeks oblika i, i + c, c + i ili i - c, ili lokal deklarisan tako; inace null
+        private Integer offset(Expr e) {
+            e = CountedLoop.strip(e);
+            if (e instanceof Expr.Ident id && CountedLoop.local(id.binding) && !changed.contains(id.binding.index)
+                    && shifted.containsKey(id.binding.index)) return shifted.get(id.binding.index);
+            return counterOffset(e);
+        }
+
+        private Integer counterOffset(Expr e) {
+            e = CountedLoop.strip(e);
+            if (CountedLoop.isCounter(e, i)) return 0;
+            if (!(e instanceof Expr.Binary b)) return null;
+            Expr l = CountedLoop.strip(b.left), r = CountedLoop.strip(b.right);
+            if (b.op.type == TokenType.ADD && CountedLoop.isCounter(l, i) && r instanceof Expr.IntLiteral k) return k.value;
+            if (b.op.type == TokenType.ADD && l instanceof Expr.IntLiteral k && CountedLoop.isCounter(r, i)) return k.value;
+            if (b.op.type == TokenType.SUBTRACT && CountedLoop.isCounter(l, i) && r instanceof Expr.IntLiteral k) return -k.value;
+            return null;
+        }
+
+        private void access(Ast.Binding array, List<Expr> indices, boolean write) {
+            if (array == null) {
+                ok = false;
+                return;
+            }
+            // niz deklarisan u telu pripada jednoj iteraciji
+            if (!array.global && declared.contains(array.index)) return;
+            accesses.computeIfAbsent(ref(array), k -> new ArrayList<>()).add(indices);
+            if (write) written.add(ref(array));
+        }
+
+        private void write(Stmt.LValue target) {
+            if (!target.indices.isEmpty()) access(target.binding, target.indices, true);
+            else if (target.binding == null || target.binding.global || !declared.contains(target.binding.index)) ok = false;
+            else changed.add(target.binding.index);
+        }
+
+        @Override
+        public Stmt visitVarDecl(Stmt.VarDecl s) {
+            super.visitVarDecl(s);
+            for (int k = 0; k < s.bindings.length; k++) {
+                Ast.Binding b = s.bindings[k];
+                if (b.global) {
+                    ok = false;
+                    continue;
+                }
+                if (!declared.add(b.index)) changed.add(b.index);
+                Integer c = k < s.values.size() && s.dims.isEmpty() ? counterOffset(s.values.get(k)) : null;
+                if (c != null && s.type.kind == Ast.Type.Kind.INT) shifted.put(b.index, c);
+            }
+            return s;
+        }
+
+        @Override
+        public Stmt visitAssign(Stmt.Assign s) {
+            write(s.lvalue);
+            return super.visitAssign(s);
+        }
+
+        @Override
+        public Stmt visitArrayAssign(Stmt.ArrayAssign s) {
+            access(s.target.binding, s.target.indices, true);
+            return super.visitArrayAssign(s);
+        }
+
+        @Override
+        public Stmt visitIncDec(Stmt.IncDec s) {
+            write(s.target);
+            return super.visitIncDec(s);
+        }
+
+        @Override
+        public Stmt visitReturn(Stmt.Return s) {
+            ok = false;
+            return s;
+        }
+
+        @Override
+        public Expr visitIdent(Expr.Ident e) {
+            if (e.inferredType == null || e.inferredType.kind == Ast.Type.Kind.ARRAY) ok = false;
+            return e;
+        }
+
+        @Override
+        public Expr visitIndex(Expr.Index e) {
+            access(e.binding, e.indices, false);
+            return super.visitIndex(e);
+        }
+
+        @Override
+        public Expr visitCall(Expr.Call e) {
+            if (!pure.contains(e.callee.lexeme)) ok = false;
+            return super.visitCall(e);
+        }
+    }
+
+    private static int[] ints(List<Integer> list) {
+        int[] out = new int[list.size()];
+        for (int k = 0; k < out.length; k++) out[k] = list.get(k);
+        return out;
+    }
+}
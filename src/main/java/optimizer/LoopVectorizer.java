@@ -0,0 +1,110 @@
+package optimizer;
+
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Petlja craft (gold i#lo: i < hi: i#i + 1:) ciji su svi iskazi a[..][i]#izraz racuna svaki
+// element nezavisno od ostalih, pa je stek masina izvrsava kao jedan kernel nad celim
+// opsegom (intermidiate.ArrayKernel, vector_loop); ostale masine je izvrsavaju kao obicnu
+// petlju. Ovde se petlje samo oznacavaju (BeginFor.vectorizable), kernel pravi CodeGenerator.
+// Petlja se oznacava ako:
+//   - je brojac nov gold lokal sa korakom 1, a uslov i < hi ili i <= hi,
+//   - su lo, hi i spoljni indeksi gold izrazi (+, -, *) nad lokalima i konstantama, bez i,
+//   - su nizovi lokali tipa chest[gold] ili chest[diamond], svi sa istim tipom elementa,
+//     indeksirani sa i na poslednjem mestu,
+//   - je izraz +, -, * (za diamond i /) nad elementima nizova, lokalima i konstantama tog
+//     tipa, bez konverzija i poziva.
+// Telo ne pise nijedan lokal, pa su granice, skalari i nizovi isti u svim iteracijama.
+// Ide posle Resolver-a: lokali se prepoznaju po Binding-u.
+public final class LoopVectorizer {
+
+    private int vectorized = 0;
+
+    public void analyze(Ast.Program program) {
+        new Loops().rewrite(program);
+    }
+
+    public int getVectorizedCount() {
+        return vectorized;
+    }
+
+    private final class Loops extends AstRewriter {
+        // tipovi lokala po slotu, kao u CodeGenerator-u: poslednja deklaracija u redosledu koda
+        private final Map<Integer, Ast.Type> localTypes = new HashMap<>();
+
+        @Override
+        protected void rewriteFunc(Ast.FuncDef f) {
+            localTypes.clear();
+            for (int i = 0; i < f.params.size(); i++) localTypes.put(i, f.params.get(i).type);
+            super.rewriteFunc(f);
+        }
+
+        @Override
+        public Stmt visitVarDecl(Stmt.VarDecl s) {
+            for (Ast.Binding b : s.bindings) {
+                if (!b.global) localTypes.put(b.index, s.type);
+            }
+            return super.visitVarDecl(s);
+        }
+
+        @Override
+        public Stmt visitBeginFor(Stmt.BeginFor s) {
+            Stmt r = super.visitBeginFor(s);
+            if (r instanceof Stmt.BeginFor loop && vectorizable(loop)) {
+                loop.vectorizable = true;
+                vectorized++;
+            }
+            return r;
+        }
+
+        private boolean vectorizable(Stmt.BeginFor s) {
+            Ast.Binding i = CountedLoop.counter(s);
+            if (i == null || s.body.isEmpty()) return false;
+
+            Ast.Type.Kind kind = null;
+            for (Stmt st : s.body) {
+                if (!(st instanceof Stmt.ArrayAssign a)) return false;
+                Ast.Type.Kind k = element(a.target.binding, a.target.indices, i);
+                if (k == null || kind != null && k != kind) return false;
+                kind = k;
+                if (!operand(a.value, kind, i)) return false;
+            }
+            return true;
+        }
+
+        // tip elementa niza indeksiranog sa [..][i], ili null
+        private Ast.Type.Kind element(Ast.Binding b, List<Expr> indices, Ast.Binding i) {
+            if (b == null || b.global) return null;
+            Ast.Type t = localTypes.get(b.index);
+            if (t == null || t.kind != Ast.Type.Kind.ARRAY || indices.size() != t.rank) return null;
+            for (int d = 0; d < indices.size(); d++) {
+                Expr idx = indices.get(d);
+                if (d == indices.size() - 1 ? !CountedLoop.isCounter(idx, i) : !CountedLoop.invariant(idx, i)) return null;
+                t = t.inner;
+            }
+            return t != null && (t.kind == Ast.Type.Kind.INT || t.kind == Ast.Type.Kind.DOUBLE) ? t.kind : null;
+        }
+
+        private boolean operand(Expr e, Ast.Type.Kind kind, Ast.Binding i) {
+            if (e.inferredType == null || e.inferredType.kind != kind) return false;
+            if (e instanceof Expr.Grouping g) return operand(g.inner, kind, i);
+            if (e instanceof Expr.IntLiteral || e instanceof Expr.DoubleLiteral) return true;
+            if (e instanceof Expr.Ident id) return CountedLoop.local(id.binding) && id.binding.index != i.index;
+            if (e instanceof Expr.Index x) return element(x.binding, x.indices, i) == kind;
+            if (e instanceof Expr.Binary b) {
+                boolean op = switch (b.op.type) {
+                    case ADD, SUBTRACT, MULTIPLY -> true;
+                    case DIVIDE -> kind == Ast.Type.Kind.DOUBLE;
+                    default -> false;
+                };
+                return op && operand(b.left, kind, i) && operand(b.right, kind, i);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package optimizer;
+
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Cista funkcija: rezultat zavisi samo od argumenata, a poziv nema vidljiv efekat, pa se
+// rezultat sme zapamtiti (memoizacija). Funkcija je cista ako:
+//   - su parametri i povratni tip primitivni (gold, emerald, diamond, iron, redstone),
+//   - ne upisuje u globalne promenljive i ne cita ih (globalna moze da se promeni
+//     izmedju dva poziva sa istim argumentima),
+//   - ne menja elemente niza,
+//   - ne poziva collect ni drop,
+//   - poziva samo ciste funkcije (rekurzija je dozvoljena).
+// Analiza ide posle Resolver-a: globalnost imena se cita iz Binding-a.
+public final class PurityAnalysis {
+
+    private final Set<String> pure = new LinkedHashSet<>();
+
+    // imena cistih funkcija, redom iz programa (bez main)
+    public Set<String> analyze(Ast.Program program) {
+        Map<String, Ast.FuncDef> candidates = new LinkedHashMap<>();
+        Map<String, Set<String>> calls = new LinkedHashMap<>();
+        for (Ast.TopItem it : program.items) {
+            if (!(it instanceof Ast.FuncDef f) || f.name.lexeme.equals("main")) continue;
+            Effects effects = Effects.of(f);
+            if (effects.impure || !primitive(f)) continue;
+            candidates.put(f.name.lexeme, f);
+            calls.put(f.name.lexeme, effects.callees);
+        }
+
+        // funkcija koja poziva necistu (ili nepoznatu) i sama je necista; ponavlja se do
+        // nepromenjenog skupa, pa ciklus cistih funkcija ostaje ciste
+        boolean changed = true;
+        while (changed) {
+            changed = calls.entrySet().removeIf(e -> !calls.keySet().containsAll(e.getValue()));
+        }
+        for (String name : candidates.keySet()) {
+            if (calls.containsKey(name)) pure.add(name);
+        }
+        return pure;
+    }
+
+    public Set<String> getPure() {
+        return pure;
+    }
+
+    private static boolean primitive(Ast.FuncDef f) {
+        for (Ast.Param p : f.params) {
+            if (!primitive(p.type)) return false;
+        }
+        return primitive(f.returnType);
+    }
+
+    private static boolean primitive(Ast.Type t) {
+        return switch (t.kind) {
+            case INT, LONG, DOUBLE, CHAR, BOOLEAN -> true;
+            default -> false;
+        };
+    }
+
+    private static final class Effects extends AstRewriter {
+        final Set<String> callees = new LinkedHashSet<>();
+        boolean impure = false;
+
+        static Effects of(Ast.FuncDef f) {
+            Effects e = new Effects();
+            e.rewriteBlock(f.body);
+            return e;
+        }
+
+        private void write(Stmt.LValue target) {
+            if (target.binding == null || target.binding.global || !target.indices.isEmpty()) impure = true;
+        }
+
+        @Override
+        public Stmt visitAssign(Stmt.Assign s) {
+            write(s.lvalue);
+            return super.visitAssign(s);
+        }
+
+        @Override
+        public Stmt visitArrayAssign(Stmt.ArrayAssign s) {
+            impure = true;
+            return super.visitArrayAssign(s);
+        }
+
+        @Override
+        public Stmt visitIncDec(Stmt.IncDec s) {
+            write(s.target);
+            return super.visitIncDec(s);
+        }
+
+        @Override
+        public Expr visitIdent(Expr.Ident e) {
+            if (e.binding == null || e.binding.global) impure = true;
+            return e;
+        }
+
+        @Override
+        public Expr visitIndex(Expr.Index e) {
+            if (e.binding == null || e.binding.global) impure = true;
+            return super.visitIndex(e);
+        }
+
+        @Override
+        public Expr visitCall(Expr.Call e) {
+            if (e.callee.type == TokenType.PRINT || e.callee.type == TokenType.SCAN) impure = true;
+            else callees.add(e.callee.lexeme);
+            return super.visitCall(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package optimizer;
+
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+
+// Izraz bez poziva funkcija ne menja stanje programa (dodele su naredbe, ne izrazi),
+// pa se sme ukloniti ili premestiti ako mu se vrednost ne koristi.
+public final class SideEffects {
+
+    private SideEffects() {}
+
+    public static boolean hasCall(Expr e) {
+        if (e == null) return false;
+        CallFinder f = new CallFinder();
+        e.accept(f);
+        return f.found;
+    }
+
+    public static boolean hasCall(Iterable<Expr> exprs) {
+        for (Expr e : exprs) {
+            if (hasCall(e)) return true;
+        }
+        return false;
+    }
+
+    // indeksiranje, celobrojno deljenje, cast stringa i poziv mogu da bace gresku
+    public static boolean mayThrow(Expr e) {
+        if (e instanceof Expr.Index) return true;
+        if (e instanceof Expr.Binary b) {
+            boolean integral = b.inferredType != null
+                    && (b.inferredType.kind == Ast.Type.Kind.INT || b.inferredType.kind == Ast.Type.Kind.LONG);
+            if (integral && (b.op.type == TokenType.DIVIDE || b.op.type == TokenType.PERCENT)) return true;
+            return mayThrow(b.left) || mayThrow(b.right);
+        }
+        if (e instanceof Expr.Unary u) return mayThrow(u.right);
+        if (e instanceof Expr.Cast c) {
+            Ast.Type from = c.expr.inferredType;
+            boolean numeric = from != null && (Ast.isNumeric(from) || from.kind == Ast.Type.Kind.CHAR);
+            return !numeric && c.type.kind != Ast.Type.Kind.STRING || mayThrow(c.expr);
+        }
+        if (e instanceof Expr.Grouping g) return mayThrow(g.inner);
+        if (e instanceof Expr.Ternary t) return mayThrow(t.cond) || mayThrow(t.thenExpr) || mayThrow(t.elseExpr);
+        if (e instanceof Expr.ArrayLiteral a) return mayThrow(a.elements);
+        return e instanceof Expr.Call;
+    }
+
+    public static boolean mayThrow(Iterable<Expr> exprs) {
+        for (Expr e : exprs) {
+            if (mayThrow(e)) return true;
+        }
+        return false;
+    }
+
+    // dimenzija koja nije nenegativna konstanta moze dati gresku "Negative array size"
+    public static boolean mayThrowDims(Iterable<Expr> dims) {
+        for (Expr d : dims) {
+            if (!(d instanceof Expr.IntLiteral k && k.value >= 0) || mayThrow(d)) return true;
+        }
+        return false;
+    }
+
+    private static final class CallFinder extends AstRewriter {
+        boolean found = false;
+
+        @Override
+        public Expr visitCall(Expr.Call e) {
+            found = true;
+            return e;
+        }
+    }
+}
@@ -9,6 +9,7 @@ public final class Ast {
     public static final class Program {
         public final boolean explicitProgram; // BEGIN PROGRAM ... END PROGRAM
         public final List<TopItem> items;
+        public int globalCount; // popunjava Resolver
         public Program(boolean explicitProgram, List<TopItem> items) {
             this.explicitProgram = explicitProgram;
             this.items = items;
@@ -32,6 +33,7 @@ public final class Ast {
         public final List<Param> params;
         public final Type returnType;
         public final List<Stmt> body;
+        public int frameSize; // broj slotova za parametre i lokalne promenljive, popunjava Resolver
         public FuncDef(Token name, List<Param> params, Type returnType, List<Stmt> body) {
             this.name = name;
             this.params = params;
@@ -51,6 +53,13 @@ public final class Ast {
         }
     }
 
+    // razresena promenljiva: slot u okviru funkcije ili indeks globalne promenljive
+    public static final class Binding {
+        public final int index;
+        public final boolean global;
+        public Binding(int index, boolean global) { this.index = index; this.global = global; }
+    }
+
     public static final class Param {
         public final Token name;
         public final Type type;
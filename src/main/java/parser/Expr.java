@@ -109,6 +109,7 @@ public abstract class Expr {
     // ===== IDENT I INDEX =====
     public static final class Ident extends Expr {
         public final Token name;
+        public Ast.Binding binding;
         public Ident(Token name) { this.name = name; }
         @Override public <R> R accept(Visitor<R> v) { return v.visitIdent(this); }
     }
@@ -116,6 +117,8 @@ public abstract class Expr {
     public static final class Index extends Expr {
         public final Token name;
         public final List<Expr> indices;
+        public Ast.Binding binding;
+        public boolean inBounds; // svi indeksi dokazano u granicama, popunjava BoundsCheckElimination
         public Index(Token name, List<Expr> indices) { this.name = name; this.indices = indices; }
         @Override public <R> R accept(Visitor<R> v) { return v.visitIndex(this); }
     }
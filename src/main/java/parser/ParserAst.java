@@ -201,6 +201,17 @@ public final class ParserAst {
             consume(RBRACKET, "expected ']' after dimension");
         }
 
+        // chest[T][n][m] x: niz nizova, po jedan nivo tipa za svaku dimenziju
+        if (type.kind == Ast.Type.Kind.ARRAY && dims.size() > 1) {
+            Ast.Type t = type.inner;
+            for (int rank = 1; rank <= dims.size(); rank++) {
+                Ast.Type level = new Ast.Type(Ast.Type.Kind.ARRAY, type.baseType, rank);
+                level.inner = t;
+                t = level;
+            }
+            type = t;
+        }
+
         Token id = consume(IDENTIFICATOR, "expected variable name");
 
         Expr value = null;
@@ -28,6 +28,7 @@ public abstract class Stmt {
         public final List<Expr> dims;
         public final List<Token> names;
         public final List<Expr> values;
+        public Ast.Binding[] bindings; // po jedan za svako ime
 
         public VarDecl(Ast.Type type, List<Expr> dims, List<Token> names, List<Expr> values) {
             this.type = type;
@@ -43,6 +44,7 @@ public abstract class Stmt {
     public static final class ArrayAssign extends Stmt {
         public final LValue target;
         public final Expr value;
+        public boolean inBounds; // svi indeksi dokazano u granicama, popunjava BoundsCheckElimination
         public ArrayAssign(LValue target, Expr value) {
             this.target = target;
             this.value = value;
@@ -91,10 +93,22 @@ public abstract class Stmt {
     }
 
     public static final class BeginFor extends Stmt {
+        // iteracije su nezavisne (LoopParallelizer): hi ide u slot limit, written su nizovi u
+        // koje telo pise, read ostali nizovi koje cita; lokal je slot, globalna g je ~g
+        public static final class Parallel {
+            public final int limit;
+            public final int[] written;
+            public final int[] read;
+            public Parallel(int limit, int[] written, int[] read) {
+                this.limit = limit; this.written = written; this.read = read;
+            }
+        }
         public final Stmt.VarDecl init;
         public final Expr cond;
         public final Stmt update;
         public final List<Stmt> body;
+        public boolean vectorizable; // telo je jedan kernel nad nizovima, popunjava LoopVectorizer
+        public Parallel parallel;    // null ako iteracije nisu dokazano nezavisne
 
         public BeginFor(Stmt.VarDecl init, Expr cond, Stmt update, List<Stmt> body) {
             this.init = init;
@@ -143,6 +157,7 @@ public abstract class Stmt {
     public static final class LValue {
         public final Token name;
         public final List<Expr> indices;
+        public Ast.Binding binding;
         public LValue(Token name, List<Expr> indices) { this.name = name; this.indices = indices; }
     }
 
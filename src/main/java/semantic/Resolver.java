@@ -0,0 +1,273 @@
+package semantic;
+
+import lexer.token.Token;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.List;
+
+// Dodeljuje svakoj promenljivoj slot u okviru funkcije (parametri su slotovi 0..n-1)
+// ili indeks u tabeli globalnih promenljivih. Opsezi prate SemanticAnalyzer, pa se
+// senceno ime uvek razresava na najblizu deklaraciju. Pokrece se nad vec proverenim
+// stablom, neposredno pre generisanja koda, i moze se ponoviti posle transformacija.
+public final class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    private SymbolTable symbols = new SymbolTable();
+    private int globalCount = 0;
+
+    private boolean inFunction = false;
+    private int nextSlot = 0;
+    private int frameSize = 0;
+
+    /* ================= PROGRAM ================= */
+
+    public void resolve(Ast.Program program) {
+        for (Ast.TopItem it : program.items) {
+            if (it instanceof Ast.FuncDef f) {
+                symbols.defineFunc(f.name.lexeme, f);
+            } else if (it instanceof Ast.TopVarDecl v) {
+                v.decl.bindings = new Ast.Binding[v.decl.names.size()];
+                for (int i = 0; i < v.decl.names.size(); i++) {
+                    Ast.Binding b = new Ast.Binding(globalCount++, true);
+                    v.decl.bindings[i] = b;
+                    symbols.defineVar(v.decl.names.get(i).lexeme, v.decl.type, b);
+                }
+            }
+        }
+
+        for (Ast.TopItem it : program.items) {
+            if (it instanceof Ast.FuncDef f) {
+                resolveFunc(f);
+            } else if (it instanceof Ast.TopStmt s) {
+                s.stmt.accept(this);
+            } else if (it instanceof Ast.TopVarDecl v) {
+                v.decl.dims.forEach(this::resolve);
+                v.decl.values.forEach(this::resolve);
+            }
+        }
+        program.globalCount = globalCount;
+    }
+
+    private void resolveFunc(Ast.FuncDef f) {
+        symbols = symbols.enterScope();
+        inFunction = true;
+        nextSlot = 0;
+        frameSize = 0;
+
+        for (Ast.Param p : f.params) {
+            symbols.defineParam(p.name.lexeme, p.type, allocate());
+        }
+        for (Stmt s : f.body) s.accept(this);
+
+        f.frameSize = frameSize;
+        inFunction = false;
+        symbols = symbols.exitScope();
+    }
+
+    /* ================= SLOTOVI ================= */
+
+    // promenljive iz top-level naredbi zive koliko i program, pa dobijaju globalni indeks
+    private Ast.Binding allocate() {
+        if (!inFunction) return new Ast.Binding(globalCount++, true);
+        Ast.Binding b = new Ast.Binding(nextSlot++, false);
+        frameSize = Math.max(frameSize, nextSlot);
+        return b;
+    }
+
+    // slotovi iz zatvorenog opsega se ponovo koriste u narednim blokovima
+    private void block(Runnable body) {
+        int saved = nextSlot;
+        symbols = symbols.enterScope();
+        body.run();
+        symbols = symbols.exitScope();
+        nextSlot = saved;
+    }
+
+    private void block(List<Stmt> stmts) {
+        block(() -> stmts.forEach(s -> s.accept(this)));
+    }
+
+    private Ast.Binding lookup(Token name) {
+        Ast.Binding b = symbols.lookupBinding(name.lexeme);
+        if (b == null) throw new IllegalStateException("Unresolved variable: " + name.lexeme);
+        return b;
+    }
+
+    private void resolve(Expr e) {
+        if (e != null) e.accept(this);
+    }
+
+    private void resolve(Stmt.LValue lv) {
+        lv.indices.forEach(this::resolve);
+        lv.binding = lookup(lv.name);
+    }
+
+    // ================== STMT VISITOR ==================
+
+    @Override
+    public Void visitVarDecl(Stmt.VarDecl s) {
+        s.dims.forEach(this::resolve);
+        s.bindings = new Ast.Binding[s.names.size()];
+        for (int i = 0; i < s.names.size(); i++) {
+            // inicijalizator vidi spoljasnje ime, kao u SemanticAnalyzer-u
+            if (i < s.values.size()) resolve(s.values.get(i));
+            s.bindings[i] = allocate();
+            symbols.defineVar(s.names.get(i).lexeme, s.type, s.bindings[i]);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitArrayAssign(Stmt.ArrayAssign s) {
+        resolve(s.target);
+        resolve(s.value);
+        return null;
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return s) {
+        resolve(s.expr);
+        return null;
+    }
+
+    @Override
+    public Void visitAssign(Stmt.Assign s) {
+        resolve(s.left);
+        resolve(s.lvalue);
+        return null;
+    }
+
+    @Override
+    public Void visitCallStmt(Stmt.CallStmt s) {
+        resolve(s.call);
+        return null;
+    }
+
+    @Override
+    public Void visitBeginIf(Stmt.BeginIf s) {
+        resolve(s.ifArm.cond);
+        block(s.ifArm.block);
+        for (Stmt.BeginIf.Arm arm : s.orIfArms) {
+            resolve(arm.cond);
+            block(arm.block);
+        }
+        if (s.elseBlock != null) block(s.elseBlock);
+        return null;
+    }
+
+    @Override
+    public Void visitBeginFor(Stmt.BeginFor s) {
+        block(() -> {
+            s.init.accept(this);
+            resolve(s.cond);
+            if (s.update != null) s.update.accept(this);
+            s.body.forEach(st -> st.accept(this));
+        });
+        return null;
+    }
+
+    @Override
+    public Void visitIncDec(Stmt.IncDec s) {
+        resolve(s.target);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.WhileStmt s) {
+        resolve(s.cond);
+        block(s.body);
+        return null;
+    }
+
+    @Override
+    public Void visitDoWhileStmt(Stmt.DoWhileStmt s) {
+        block(s.body);
+        resolve(s.cond);
+        return null;
+    }
+
+    @Override
+    public Void visitExprStmt(Stmt.ExprStmt s) {
+        resolve(s.expr);
+        return null;
+    }
+
+    // ================== EXPR VISITOR ==================
+
+    @Override
+    public Void visitIdent(Expr.Ident e) {
+        e.binding = lookup(e.name);
+        return null;
+    }
+
+    @Override
+    public Void visitIndex(Expr.Index e) {
+        e.indices.forEach(this::resolve);
+        e.binding = lookup(e.name);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayLiteral(Expr.ArrayLiteral e) {
+        e.elements.forEach(this::resolve);
+        return null;
+    }
+
+    @Override
+    public Void visitCall(Expr.Call e) {
+        e.args.forEach(this::resolve);
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Expr.Binary e) {
+        resolve(e.left);
+        resolve(e.right);
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(Expr.Unary e) {
+        resolve(e.right);
+        return null;
+    }
+
+    @Override
+    public Void visitTernary(Expr.Ternary e) {
+        resolve(e.cond);
+        resolve(e.thenExpr);
+        resolve(e.elseExpr);
+        return null;
+    }
+
+    @Override
+    public Void visitGrouping(Expr.Grouping e) {
+        resolve(e.inner);
+        return null;
+    }
+
+    @Override
+    public Void visitCast(Expr.Cast e) {
+        resolve(e.expr);
+        return null;
+    }
+
+    @Override
+    public Void visitIntLiteral(Expr.IntLiteral e) { return null; }
+
+    @Override
+    public Void visitDoubleLiteral(Expr.DoubleLiteral e) { return null; }
+
+    @Override
+    public Void visitLongLiteral(Expr.LongLiteral e) { return null; }
+
+    @Override
+    public Void visitCharLiteral(Expr.CharLiteral e) { return null; }
+
+    @Override
+    public Void visitStringLiteral(Expr.StringLiteral e) { return null; }
+
+    @Override
+    public Void visitBooleanLiteral(Expr.BooleanLiteral e) { return null; }
+}
@@ -60,6 +60,8 @@ public final class SemanticAnalyzer
                 visitFunc(f);
             } else if (it instanceof Ast.TopStmt s) {
                 s.stmt.accept(this);
+            } else if (it instanceof Ast.TopVarDecl v) {
+                checkGlobalDecl(v.decl);
             }
         }
     }
@@ -170,6 +172,8 @@ public final class SemanticAnalyzer
                 throw error("Array index must be INT", null, idx instanceof Expr.Ident ide ? ide.name : null);
             current = current.inner;
         }
+        if (t.rank > 1 && e.indices.size() != t.rank)
+            throw error("Multi-dimensional chest needs all " + t.rank + " indices", null, e.name);
 
         e.inferredType = current;
         return current;
@@ -320,51 +324,67 @@ public final class SemanticAnalyzer
 
     @Override
     public Void visitVarDecl(Stmt.VarDecl s) {
+        checkDims(s);
         for (int i = 0; i < s.names.size(); i++) {
             String name = s.names.get(i).lexeme;
 
             if (symbols.isDefinedLocally(name))
                 throw error("Variable redeclared in local scope: " + name);
 
-            Ast.Type t = s.type;
+            if (s.values.get(i) != null)
+                checkInitializer(s.type, s.values.get(i));
 
-            if (s.values.get(i) != null) {
-                Expr rhsExpr = s.values.get(i);
-                Ast.Type rhs = rhsExpr.accept(this);
+            symbols.defineVar(name, s.type);
+        }
+        return null;
+    }
+
+    // globalne promenljive su vec definisane u prvom prolazu, ovde se samo proveravaju inicijalizatori
+    private void checkGlobalDecl(Stmt.VarDecl s) {
+        checkDims(s);
+        for (Expr value : s.values) {
+            if (value != null) checkInitializer(s.type, value);
+        }
+    }
 
-                if (!Ast.sameType(t, rhs)) {
-                    if (isNumeric(t) && isNumeric(rhs)) {
+    private void checkDims(Stmt.VarDecl s) {
+        for (Expr dim : s.dims) {
+            if (dim.accept(this).kind != Ast.Type.Kind.INT)
+                throw error("Array dimension must be INT");
+        }
+    }
 
-                        if ((t.kind == Ast.Type.Kind.INT || t.kind == Ast.Type.Kind.LONG)
-                                && rhs.kind == Ast.Type.Kind.DOUBLE) {
+    private void checkInitializer(Ast.Type t, Expr rhsExpr) {
+        Ast.Type rhs = rhsExpr.accept(this);
 
-                            if (rhsExpr instanceof Expr.DoubleLiteral dl) {
-                                if (dl.value % 1 != 0)
-                                    throw error("Cannot assign fractional double literal " + dl.value + " to gold");
-                            } else if (rhsExpr instanceof Expr.Cast cast) {
-                                if (cast.expr instanceof Expr.DoubleLiteral dl2) {
-                                    if (dl2.value % 1 != 0)
-                                        throw error("Cannot cast fractional double literal " + dl2.value + " to gold");
-                                }
-                            } else {
-                                throw error("Cannot assign double variable/expression to gold without explicit (gold) cast");
-                            }
+        if (!Ast.sameType(t, rhs)) {
+            if (isNumeric(t) && isNumeric(rhs)) {
 
-                        }
-                        else if (t.kind == Ast.Type.Kind.DOUBLE && rhs.kind == Ast.Type.Kind.INT) {
-                        } else {
-                            throw error("Invalid numeric cast in declaration");
-                        }
+                if ((t.kind == Ast.Type.Kind.INT || t.kind == Ast.Type.Kind.LONG)
+                        && rhs.kind == Ast.Type.Kind.DOUBLE) {
 
+                    if (rhsExpr instanceof Expr.DoubleLiteral dl) {
+                        if (dl.value % 1 != 0)
+                            throw error("Cannot assign fractional double literal " + dl.value + " to gold");
+                    } else if (rhsExpr instanceof Expr.Cast cast) {
+                        if (cast.expr instanceof Expr.DoubleLiteral dl2) {
+                            if (dl2.value % 1 != 0)
+                                throw error("Cannot cast fractional double literal " + dl2.value + " to gold");
+                        }
                     } else {
-                        throw error("Type mismatch in initialization");
+                        throw error("Cannot assign double variable/expression to gold without explicit (gold) cast");
                     }
+
+                }
+                else if (t.kind == Ast.Type.Kind.DOUBLE && rhs.kind == Ast.Type.Kind.INT) {
+                } else {
+                    throw error("Invalid numeric cast in declaration");
                 }
-            }
 
-            symbols.defineVar(name, t);
+            } else {
+                throw error("Type mismatch in initialization");
+            }
         }
-        return null;
     }
 
     @Override
@@ -569,6 +589,8 @@ public final class SemanticAnalyzer
 
             current = current.inner;
         }
+        if (t.rank > 1 && !lv.indices.isEmpty() && lv.indices.size() != t.rank)
+            throw error("Multi-dimensional chest needs all " + t.rank + " indices: " + lv.name.lexeme);
 
         return current;
     }
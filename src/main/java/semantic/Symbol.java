@@ -12,6 +12,7 @@ public final class Symbol {
     public final Kind kind;
     public final Ast.Type type;
     public final Ast.FuncDef funcDef; // samo za funkcije
+    public final Ast.Binding binding; // slot promenljive, samo posle Resolver-a
 
     // za varijable, parametre, klase
     public Symbol(String name, Kind kind, Ast.Type type) {
@@ -19,6 +20,16 @@ public final class Symbol {
         this.kind = kind;
         this.type = type;
         this.funcDef = null;
+        this.binding = null;
+    }
+
+    // za promenljive sa dodeljenim slotom
+    public Symbol(String name, Kind kind, Ast.Type type, Ast.Binding binding) {
+        this.name = name;
+        this.kind = kind;
+        this.type = type;
+        this.funcDef = null;
+        this.binding = binding;
     }
 
     // za funkcije
@@ -27,5 +38,6 @@ public final class Symbol {
         this.kind = kind;
         this.type = type;
         this.funcDef = funcDef;
+        this.binding = null;
     }
 }
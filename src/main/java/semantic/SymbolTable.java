@@ -69,6 +69,14 @@ public final class SymbolTable {
         return define(new Symbol(name, Symbol.Kind.PARAMETER, type));
     }
 
+    public boolean defineVar(String name, Ast.Type type, Ast.Binding binding) {
+        return define(new Symbol(name, Symbol.Kind.VARIABLE, type, binding));
+    }
+
+    public boolean defineParam(String name, Ast.Type type, Ast.Binding binding) {
+        return define(new Symbol(name, Symbol.Kind.PARAMETER, type, binding));
+    }
+
     public boolean defineFunc(String name, Ast.FuncDef func) {
         return define(new Symbol(name, Symbol.Kind.FUNCTION, func.returnType, func));
     }
@@ -91,6 +99,13 @@ public final class SymbolTable {
         return null;
     }
 
+    public Ast.Binding lookupBinding(String name) {
+        Symbol s = resolve(name);
+        if (s != null && (s.kind == Symbol.Kind.VARIABLE || s.kind == Symbol.Kind.PARAMETER))
+            return s.binding;
+        return null;
+    }
+
     public Ast.FuncDef lookupFunc(String name) {
         Symbol s = resolve(name);
         if (s != null && s.kind == Symbol.Kind.FUNCTION)
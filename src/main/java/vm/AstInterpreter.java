@@ -0,0 +1,378 @@
+package vm;
+
+import lexer.token.TokenType;
+import parser.Ast;
+import parser.Expr;
+import parser.Stmt;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static intermidiate.Opcode.TYPE_ARRAY;
+import static intermidiate.Opcode.TYPE_BOOL;
+import static intermidiate.Opcode.TYPE_CHAR;
+import static intermidiate.Opcode.TYPE_DOUBLE;
+import static intermidiate.Opcode.TYPE_INT;
+import static intermidiate.Opcode.TYPE_LONG;
+import static intermidiate.Opcode.TYPE_STRING;
+import static vm.AstNodes.*;
+
+public final class AstInterpreter implements Expr.Visitor<ExprNode>, Stmt.Visitor<StmtNode> {
+
+    /*
+    Izvrsava program direktno nad stablom, bez generisanja bajtkoda: posle semantike i
+    Resolver-a se AST jednom prevede u izvrsne cvorove (AstNodes), koji se tokom rada
+    sami specijalizuju po tipovima operanada. Isti interpreter se moze pokrenuti vise
+    puta; specijalizovano stablo ostaje, a globalne promenljive se svaki put resetuju.
+     */
+
+    // Java stek mora da primi rekurziju programa (jedan poziv je nekoliko Java okvira)
+    private static final long STACK_SIZE = 1L << 28;
+
+    private final Map<String, FunctionNode> functions = new HashMap<>();
+    private final Context ctx;
+    private final StmtNode topLevel;
+    private final int resultKind;
+
+    // deklarisani tipovi za dodele, kao u generatoru koda
+    private final Map<Integer, Ast.Type> localTypes = new HashMap<>();
+    private final Map<Integer, Ast.Type> globalTypes = new HashMap<>();
+    private FunctionNode currentFunction;
+
+    private Object result;
+    private RuntimeException failure;
+
+    public AstInterpreter(Ast.Program program) {
+        this(program, System.out);
+    }
+
+    // ocekuje stablo na kome je vec pokrenut semantic.Resolver
+    public AstInterpreter(Ast.Program program, PrintStream out) {
+        this.ctx = new Context(out, functions, program.globalCount);
+
+        int mainKind = TYPE_INT;
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.FuncDef func) {
+                int[] params = new int[func.params.size()];
+                for (int i = 0; i < params.length; i++) params[i] = kind(func.params.get(i).type);
+                functions.put(func.name.lexeme, new FunctionNode(func.name.lexeme, func.frameSize, params, kind(func.returnType)));
+                if (func.name.lexeme.equals("main")) mainKind = kind(func.returnType);
+            }
+        }
+        this.resultKind = mainKind;
+
+        // globalne promenljive moraju biti poznate pre tela funkcija
+        List<StmtNode> top = new ArrayList<>();
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.TopStmt topStmt) top.add(topStmt.stmt.accept(this));
+            else if (item instanceof Ast.TopVarDecl topVar) top.add(topVar.decl.accept(this));
+        }
+        this.topLevel = new Block(top.toArray(new StmtNode[0]));
+
+        for (Ast.TopItem item : program.items) {
+            if (item instanceof Ast.FuncDef func) {
+                currentFunction = functions.get(func.name.lexeme);
+                localTypes.clear();
+                for (int i = 0; i < func.params.size(); i++) localTypes.put(i, func.params.get(i).type);
+                currentFunction.setBody(block(func.body));
+            }
+        }
+        currentFunction = null;
+    }
+
+    /* ================= IZVRSAVANJE ================= */
+
+    public Object run() {
+        ctx.globals = new long[ctx.globals.length];
+        ctx.globalRefs = new Object[ctx.globalRefs.length];
+        ctx.initialized = new boolean[ctx.initialized.length];
+        result = null;
+        failure = null;
+        Thread thread = new Thread(null, this::execute, "ast-interpreter", STACK_SIZE);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError("Interrupted", -1);
+        }
+        if (failure != null) throw failure;
+        return result;
+    }
+
+    private void execute() {
+        try {
+            topLevel.execute(new Frame(0));
+            FunctionNode main = functions.get("main");
+            if (main == null) throw new RuntimeError("Call to undefined function: main", -1);
+            Frame frame = new Frame(main.frameSize);
+            main.invoke(frame);
+            result = VirtualMachine.box(frame.result, frame.resultRef, resultKind);
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (StackOverflowError e) {
+            failure = new RuntimeError("Call stack overflow", -1);
+        }
+    }
+
+    // veliki primitivni nizovi van heap-a za sledece run(); null iskljucuje
+    public void setOffHeap(OffHeap offHeap) {
+        ctx.offHeap = offHeap;
+    }
+
+    // broj cvorova koji su se do sada zamenili specijalizovanom varijantom
+    public int getSpecializationCount() {
+        return ctx.specializations;
+    }
+
+    /* ================= NAREDBE ================= */
+
+    private StmtNode block(List<Stmt> stmts) {
+        StmtNode[] body = new StmtNode[stmts.size()];
+        for (int i = 0; i < body.length; i++) body[i] = stmts.get(i).accept(this);
+        return new Block(body);
+    }
+
+    private StmtNode write(Ast.Binding b, Ast.Type type, ExprNode value) {
+        int k = kind(type);
+        if (b.global) return new WriteGlobal(ctx, k, b.index, value);
+        if (VirtualMachine.isRef(k)) return new WriteLocalRef(b.index, value);
+        if (k == TYPE_DOUBLE) return new WriteLocalDouble(b.index, value);
+        return new WriteLocalPrim(b.index, value);
+    }
+
+    private ExprNode read(Ast.Binding b, int k) {
+        if (b.global) return new ReadGlobal(ctx, k, b.index);
+        if (VirtualMachine.isRef(k)) return new ReadLocalRef(k, b.index);
+        if (k == TYPE_DOUBLE) return new ReadLocalDouble(b.index);
+        return new ReadLocalPrim(k, b.index);
+    }
+
+    private ExprNode[] all(List<Expr> exprs) {
+        ExprNode[] nodes = new ExprNode[exprs.size()];
+        for (int i = 0; i < nodes.length; i++) nodes[i] = exprs.get(i).accept(this);
+        return nodes;
+    }
+
+    @Override
+    public StmtNode visitVarDecl(Stmt.VarDecl s) {
+        StmtNode[] writes = new StmtNode[s.names.size()];
+        for (int i = 0; i < writes.length; i++) {
+            Expr value = s.values.size() > i ? s.values.get(i) : null;
+            ExprNode node;
+            if (value != null) {
+                node = value.accept(this);
+                if (!(value instanceof Expr.Cast) && value.inferredType != null && !Ast.sameType(s.type, value.inferredType))
+                    node = new Cast(kind(value.inferredType), kind(s.type), node);
+            } else if (!s.dims.isEmpty()) {
+                node = new NewArray(ctx, TYPE_ARRAY, kind(elementType(s.type, s.dims.size())), all(s.dims));
+            } else {
+                node = defaultValue(s.type);
+            }
+            // tip se belezi posle inicijalizatora, koji jos vidi spoljasnje ime
+            (s.bindings[i].global ? globalTypes : localTypes).put(s.bindings[i].index, s.type);
+            writes[i] = write(s.bindings[i], s.type, node);
+        }
+        return writes.length == 1 ? writes[0] : new Block(writes);
+    }
+
+    @Override
+    public StmtNode visitReturn(Stmt.Return s) {
+        int k = currentFunction == null ? TYPE_INT : currentFunction.returnKind;
+        if (currentFunction != null && s.expr instanceof Expr.Call call && call.callee.lexeme.equals(currentFunction.name)) {
+            return new TailCall(currentFunction.paramKinds, all(call.args));
+        }
+        return new Return(k, s.expr == null ? null : s.expr.accept(this));
+    }
+
+    @Override
+    public StmtNode visitAssign(Stmt.Assign s) {
+        Ast.Type declared = declaredType(s.lvalue.binding);
+        if (s.lvalue.indices.isEmpty()) return write(s.lvalue.binding, declared, s.left.accept(this));
+        ExprNode array = read(s.lvalue.binding, TYPE_ARRAY);
+        ExprNode[] indices = all(s.lvalue.indices);
+        Ast.Type element = elementType(declared, indices.length);
+        return new WriteElement(kind(element), true, array, indices, s.left.accept(this));
+    }
+
+    @Override
+    public StmtNode visitCallStmt(Stmt.CallStmt s) {
+        return new ExprStmt(s.call.accept(this));
+    }
+
+    @Override
+    public StmtNode visitBeginIf(Stmt.BeginIf s) {
+        StmtNode otherwise = s.elseBlock == null ? null : block(s.elseBlock);
+        for (int i = s.orIfArms.size() - 1; i >= 0; i--) {
+            Stmt.BeginIf.Arm arm = s.orIfArms.get(i);
+            otherwise = new If(arm.cond.accept(this), block(arm.block), otherwise);
+        }
+        return new If(s.ifArm.cond.accept(this), block(s.ifArm.block), otherwise);
+    }
+
+    @Override
+    public StmtNode visitBeginFor(Stmt.BeginFor s) {
+        StmtNode init = s.init.accept(this);
+        ExprNode cond = s.cond.accept(this);
+        StmtNode body = block(s.body);
+        StmtNode update = s.update == null ? null : s.update.accept(this);
+        return new For(init, cond, update, body);
+    }
+
+    @Override
+    public StmtNode visitIncDec(Stmt.IncDec s) {
+        int delta = s.op.type == TokenType.INC ? 1 : -1;
+        Ast.Binding b = s.target.binding;
+        if (s.target.indices.isEmpty()) {
+            return b.global ? new IncGlobal(ctx, b.index, delta) : new IncLocal(b.index, delta);
+        }
+        return new IncElement(delta, read(b, TYPE_ARRAY), all(s.target.indices));
+    }
+
+    @Override
+    public StmtNode visitWhileStmt(Stmt.WhileStmt s) {
+        return new While(s.cond.accept(this), block(s.body));
+    }
+
+    @Override
+    public StmtNode visitDoWhileStmt(Stmt.DoWhileStmt s) {
+        return new DoWhile(block(s.body), s.cond.accept(this));
+    }
+
+    @Override
+    public StmtNode visitExprStmt(Stmt.ExprStmt s) {
+        return new ExprStmt(s.expr.accept(this));
+    }
+
+    @Override
+    public StmtNode visitArrayAssign(Stmt.ArrayAssign s) {
+        Ast.Type declared = declaredType(s.target.binding);
+        ExprNode array = read(s.target.binding, TYPE_ARRAY);
+        ExprNode[] indices = all(s.target.indices);
+        Ast.Type element = elementType(declared, indices.length);
+        return new WriteElement(kind(element), !s.inBounds, array, indices, s.value.accept(this));
+    }
+
+    // ================== EXPR VISITOR ==================
+
+    @Override
+    public ExprNode visitArrayLiteral(Expr.ArrayLiteral e) {
+        return new ArrayLiteral(TYPE_ARRAY, kind(e.inferredType.inner), all(e.elements));
+    }
+
+    @Override
+    public ExprNode visitIntLiteral(Expr.IntLiteral e) {
+        return new ConstPrim(TYPE_INT, e.value);
+    }
+
+    @Override
+    public ExprNode visitDoubleLiteral(Expr.DoubleLiteral e) {
+        return new ConstDouble(e.value);
+    }
+
+    @Override
+    public ExprNode visitLongLiteral(Expr.LongLiteral e) {
+        return new ConstPrim(TYPE_LONG, e.value);
+    }
+
+    @Override
+    public ExprNode visitCharLiteral(Expr.CharLiteral e) {
+        return new ConstPrim(TYPE_CHAR, e.value);
+    }
+
+    @Override
+    public ExprNode visitStringLiteral(Expr.StringLiteral e) {
+        return new ConstRef(TYPE_STRING, e.value);
+    }
+
+    @Override
+    public ExprNode visitBooleanLiteral(Expr.BooleanLiteral e) {
+        return new ConstPrim(TYPE_BOOL, e.value ? 1 : 0);
+    }
+
+    @Override
+    public ExprNode visitIdent(Expr.Ident e) {
+        return read(e.binding, kind(e.inferredType));
+    }
+
+    @Override
+    public ExprNode visitIndex(Expr.Index e) {
+        ExprNode array = read(e.binding, TYPE_ARRAY);
+        return new ReadElement(kind(e.inferredType), !e.inBounds, array, all(e.indices));
+    }
+
+    @Override
+    public ExprNode visitGrouping(Expr.Grouping e) {
+        return e.inner.accept(this);
+    }
+
+    @Override
+    public ExprNode visitCall(Expr.Call e) {
+        if (e.callee.type == TokenType.PRINT || e.callee.type == TokenType.SCAN) {
+            return new Print(ctx, e.callee.type == TokenType.PRINT, e.args.get(0).accept(this));
+        }
+        return new Call(ctx, kind(e.inferredType), e.callee.lexeme, all(e.args));
+    }
+
+    @Override
+    public ExprNode visitBinary(Expr.Binary e) {
+        return new UninitializedBinary(ctx, kind(e.inferredType), e.op.type, e.left.accept(this), e.right.accept(this));
+    }
+
+    @Override
+    public ExprNode visitUnary(Expr.Unary e) {
+        ExprNode operand = e.right.accept(this);
+        return switch (e.op.type) {
+            case SUBTRACT -> new UninitializedNeg(ctx, kind(e.inferredType), operand);
+            case NOT -> new Not(operand);
+            default -> throw new IllegalStateException("Unknown unary op: " + e.op.type);
+        };
+    }
+
+    @Override
+    public ExprNode visitTernary(Expr.Ternary e) {
+        return new Ternary(kind(e.inferredType), e.cond.accept(this), e.thenExpr.accept(this), e.elseExpr.accept(this));
+    }
+
+    @Override
+    public ExprNode visitCast(Expr.Cast e) {
+        return new Cast(kind(e.expr.inferredType), kind(e.type), e.expr.accept(this));
+    }
+
+    // ================== HELPERS ==================
+
+    private Ast.Type declaredType(Ast.Binding b) {
+        return (b.global ? globalTypes : localTypes).get(b.index);
+    }
+
+    private static Ast.Type elementType(Ast.Type array, int count) {
+        Ast.Type t = array;
+        for (int i = 0; i < count && t != null; i++) t = t.inner;
+        return t;
+    }
+
+    private static ExprNode defaultValue(Ast.Type type) {
+        return switch (type.kind) {
+            case DOUBLE -> new ConstDouble(0.0);
+            case STRING -> new ConstRef(TYPE_STRING, "");
+            default -> new ConstPrim(kind(type), 0);
+        };
+    }
+
+    // void i any nemaju vrednost; generator koda za njih vraca gold 0
+    private static int kind(Ast.Type type) {
+        if (type == null) return TYPE_INT;
+        return switch (type.kind) {
+            case LONG -> TYPE_LONG;
+            case DOUBLE -> TYPE_DOUBLE;
+            case CHAR -> TYPE_CHAR;
+            case BOOLEAN -> TYPE_BOOL;
+            case STRING -> TYPE_STRING;
+            case ARRAY -> TYPE_ARRAY;
+            default -> TYPE_INT;
+        };
+    }
+}
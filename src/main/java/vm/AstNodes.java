@@ -0,0 +1,1436 @@
+package vm;
+
+import lexer.token.TokenType;
+
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import static intermidiate.Opcode.TYPE_BOOL;
+import static intermidiate.Opcode.TYPE_CHAR;
+import static intermidiate.Opcode.TYPE_DOUBLE;
+import static intermidiate.Opcode.TYPE_INT;
+import static intermidiate.Opcode.TYPE_LONG;
+
+// Cvorovi AST interpretera. Svaki izraz ima genericko execute (upakovana vrednost) i
+// tipizirane varijante executeInt/Long/Double/Boolean; specijalizovani cvorovi pozivaju
+// tipizirane varijante dece, pa vrednosti u petljama ne prolaze kroz pakovanje.
+// Binarni i unarni operatori krecu kao neinicijalizovani cvor koji pri prvom izvrsavanju
+// pogleda tipove operanada i zameni sebe u roditelju specijalizovanim cvorom (IntAdd...).
+final class AstNodes {
+
+    private AstNodes() {}
+
+    /* ================= OKRUZENJE ================= */
+
+    // okvir poziva: primitivne vrednosti i reference istog slota su na istom indeksu
+    static final class Frame {
+        final long[] p;
+        final Object[] r;
+        long result;
+        Object resultRef;
+        boolean tailCall;   // loot f(...) u f: argumenti su vec u parametrima, telo se ponavlja
+
+        Frame(int size) {
+            p = new long[size];
+            r = new Object[size];
+        }
+    }
+
+    static final class Context {
+        final PrintStream out;
+        final Map<String, FunctionNode> functions;
+        long[] globals;
+        Object[] globalRefs;
+        boolean[] initialized;
+        int specializations = 0;
+        OffHeap offHeap;
+
+        Context(PrintStream out, Map<String, FunctionNode> functions, int globalCount) {
+            this.out = out;
+            this.functions = functions;
+            this.globals = new long[globalCount];
+            this.globalRefs = new Object[globalCount];
+            this.initialized = new boolean[globalCount];
+        }
+    }
+
+    /* ================= OSNOVNI CVOROVI ================= */
+
+    abstract static class Node {
+        Node parent;
+
+        final <T extends Node> T adopt(T child) {
+            if (child != null) child.parent = this;
+            return child;
+        }
+
+        final <T extends Node> T[] adoptAll(T[] children) {
+            for (T c : children) adopt(c);
+            return children;
+        }
+
+        // zamena se desava samo jednom po cvoru, pa se dete trazi refleksijom kao u Truffle-u
+        final <T extends Node> T replace(T replacement) {
+            replacement.parent = parent;
+            parent.replaceChild(this, replacement);
+            return replacement;
+        }
+
+        private void replaceChild(Node old, Node replacement) {
+            try {
+                for (Class<?> c = getClass(); c != Node.class; c = c.getSuperclass()) {
+                    for (Field field : c.getDeclaredFields()) {
+                        if (Node.class.isAssignableFrom(field.getType())) {
+                            field.setAccessible(true);
+                            if (field.get(this) == old) {
+                                field.set(this, replacement);
+                                return;
+                            }
+                        } else if (Node[].class.isAssignableFrom(field.getType())) {
+                            field.setAccessible(true);
+                            Node[] children = (Node[]) field.get(this);
+                            for (int i = 0; i < children.length; i++) {
+                                if (children[i] == old) {
+                                    children[i] = replacement;
+                                    return;
+                                }
+                            }
+                        }
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            throw new IllegalStateException("Node " + old.getClass().getSimpleName() + " is not a child of "
+                    + getClass().getSimpleName());
+        }
+    }
+
+    abstract static class ExprNode extends Node {
+        final int kind;     // Opcode.TYPE_* staticki poznatog tipa rezultata
+
+        ExprNode(int kind) {
+            this.kind = kind;
+        }
+
+        abstract Object execute(Frame f);
+
+        long executeLong(Frame f) {
+            return toLong(execute(f));
+        }
+
+        int executeInt(Frame f) {
+            return (int) executeLong(f);
+        }
+
+        double executeDouble(Frame f) {
+            return toDouble(execute(f));
+        }
+
+        boolean executeBoolean(Frame f) {
+            return executeLong(f) != 0;
+        }
+
+        // vrednost se ne koristi (naredba poziva)
+        void executeVoid(Frame f) {
+            execute(f);
+        }
+    }
+
+    abstract static class IntNode extends ExprNode {
+        IntNode() {
+            super(TYPE_INT);
+        }
+
+        @Override
+        abstract int executeInt(Frame f);
+
+        @Override
+        long executeLong(Frame f) {
+            return executeInt(f);
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            return executeInt(f);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return executeInt(f);
+        }
+    }
+
+    abstract static class LongNode extends ExprNode {
+        LongNode() {
+            super(TYPE_LONG);
+        }
+
+        @Override
+        abstract long executeLong(Frame f);
+
+        @Override
+        double executeDouble(Frame f) {
+            return executeLong(f);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return executeLong(f);
+        }
+    }
+
+    abstract static class DoubleNode extends ExprNode {
+        DoubleNode() {
+            super(TYPE_DOUBLE);
+        }
+
+        @Override
+        abstract double executeDouble(Frame f);
+
+        @Override
+        long executeLong(Frame f) {
+            return (long) executeDouble(f);
+        }
+
+        @Override
+        int executeInt(Frame f) {
+            return (int) executeDouble(f);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return executeDouble(f);
+        }
+    }
+
+    abstract static class BoolNode extends ExprNode {
+        BoolNode() {
+            super(TYPE_BOOL);
+        }
+
+        @Override
+        abstract boolean executeBoolean(Frame f);
+
+        @Override
+        long executeLong(Frame f) {
+            return executeBoolean(f) ? 1 : 0;
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return executeBoolean(f);
+        }
+    }
+
+    abstract static class StmtNode extends Node {
+        // true ako je izvrsen loot; rezultat je tada u f.result/f.resultRef
+        abstract boolean execute(Frame f);
+    }
+
+    static long toLong(Object v) {
+        if (v instanceof Double d) return (long) d.doubleValue();
+        if (v instanceof Number n) return n.longValue();
+        if (v instanceof Character c) return c;
+        if (v instanceof Boolean b) return b ? 1 : 0;
+        throw new RuntimeError("Expected a primitive value, got " + VirtualMachine.format(v), -1);
+    }
+
+    static double toDouble(Object v) {
+        if (v instanceof Number n) return n.doubleValue();
+        return toLong(v);
+    }
+
+    private static double real(long bits) {
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long bits(double v) {
+        return Double.doubleToRawLongBits(v);
+    }
+
+    /* ================= KONSTANTE I PROMENLJIVE ================= */
+
+    static final class ConstPrim extends ExprNode {
+        private final long value;
+
+        ConstPrim(int kind, long value) {
+            super(kind);
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return VirtualMachine.box(value, null, kind);
+        }
+
+        @Override
+        long executeLong(Frame f) {
+            return value;
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            return value;
+        }
+    }
+
+    static final class ConstDouble extends DoubleNode {
+        private final double value;
+
+        ConstDouble(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            return value;
+        }
+    }
+
+    static final class ConstRef extends ExprNode {
+        private final Object value;
+
+        ConstRef(int kind, Object value) {
+            super(kind);
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return value;
+        }
+    }
+
+    // gold, emerald, iron i redstone su u slotu kao long
+    static final class ReadLocalPrim extends ExprNode {
+        private final int slot;
+
+        ReadLocalPrim(int kind, int slot) {
+            super(kind);
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return VirtualMachine.box(f.p[slot], null, kind);
+        }
+
+        @Override
+        long executeLong(Frame f) {
+            return f.p[slot];
+        }
+
+        @Override
+        int executeInt(Frame f) {
+            return (int) f.p[slot];
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            return f.p[slot];
+        }
+
+        @Override
+        boolean executeBoolean(Frame f) {
+            return f.p[slot] != 0;
+        }
+    }
+
+    static final class ReadLocalDouble extends DoubleNode {
+        private final int slot;
+
+        ReadLocalDouble(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            return real(f.p[slot]);
+        }
+    }
+
+    static final class ReadLocalRef extends ExprNode {
+        private final int slot;
+
+        ReadLocalRef(int kind, int slot) {
+            super(kind);
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return f.r[slot];
+        }
+    }
+
+    static final class ReadGlobal extends ExprNode {
+        private final Context ctx;
+        private final int index;
+
+        ReadGlobal(Context ctx, int kind, int index) {
+            super(kind);
+            this.ctx = ctx;
+            this.index = index;
+        }
+
+        private long load() {
+            if (!ctx.initialized[index]) throw new RuntimeError("Global variable used before initialization", -1);
+            return ctx.globals[index];
+        }
+
+        @Override
+        Object execute(Frame f) {
+            long v = load();
+            return VirtualMachine.box(v, ctx.globalRefs[index], kind);
+        }
+
+        @Override
+        long executeLong(Frame f) {
+            return kind == TYPE_DOUBLE ? (long) real(load()) : load();
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            return kind == TYPE_DOUBLE ? real(load()) : load();
+        }
+    }
+
+    static final class WriteLocalPrim extends StmtNode {
+        private final int slot;
+        private ExprNode value;
+
+        WriteLocalPrim(int slot, ExprNode value) {
+            this.slot = slot;
+            this.value = adopt(value);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            f.p[slot] = value.executeLong(f);
+            return false;
+        }
+    }
+
+    // gold se u slot diamond promenljive siri preko executeDouble
+    static final class WriteLocalDouble extends StmtNode {
+        private final int slot;
+        private ExprNode value;
+
+        WriteLocalDouble(int slot, ExprNode value) {
+            this.slot = slot;
+            this.value = adopt(value);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            f.p[slot] = bits(value.executeDouble(f));
+            return false;
+        }
+    }
+
+    static final class WriteLocalRef extends StmtNode {
+        private final int slot;
+        private ExprNode value;
+
+        WriteLocalRef(int slot, ExprNode value) {
+            this.slot = slot;
+            this.value = adopt(value);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            f.r[slot] = value.execute(f);
+            return false;
+        }
+    }
+
+    static final class WriteGlobal extends StmtNode {
+        private final Context ctx;
+        private final int kind;
+        private final int index;
+        private ExprNode value;
+
+        WriteGlobal(Context ctx, int kind, int index, ExprNode value) {
+            this.ctx = ctx;
+            this.kind = kind;
+            this.index = index;
+            this.value = adopt(value);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            if (VirtualMachine.isRef(kind)) ctx.globalRefs[index] = value.execute(f);
+            else if (kind == TYPE_DOUBLE) ctx.globals[index] = bits(value.executeDouble(f));
+            else ctx.globals[index] = value.executeLong(f);
+            ctx.initialized[index] = true;
+            return false;
+        }
+    }
+
+    // x++ / x-- nad gold promenljivom
+    static final class IncLocal extends StmtNode {
+        private final int slot;
+        private final int delta;
+
+        IncLocal(int slot, int delta) {
+            this.slot = slot;
+            this.delta = delta;
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            f.p[slot] = (int) f.p[slot] + delta;
+            return false;
+        }
+    }
+
+    static final class IncGlobal extends StmtNode {
+        private final Context ctx;
+        private final int index;
+        private final int delta;
+
+        IncGlobal(Context ctx, int index, int delta) {
+            this.ctx = ctx;
+            this.index = index;
+            this.delta = delta;
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            if (!ctx.initialized[index]) throw new RuntimeError("Global variable used before initialization", -1);
+            ctx.globals[index] = (int) ctx.globals[index] + delta;
+            return false;
+        }
+    }
+
+    /* ================= NIZOVI ================= */
+
+    static final class NewArray extends ExprNode {
+        private final Context ctx;
+        private final int elementType;
+        private ExprNode[] dims;
+
+        NewArray(Context ctx, int kind, int elementType, ExprNode[] dims) {
+            super(kind);
+            this.ctx = ctx;
+            this.elementType = elementType;
+            this.dims = adoptAll(dims);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            long[] n = new long[dims.length];
+            for (int i = 0; i < n.length; i++) n[i] = dims[i].executeLong(f);
+            return RuntimeArrays.create(elementType, n, ctx.offHeap, -1);
+        }
+    }
+
+    static final class ArrayLiteral extends ExprNode {
+        private final int elementType;
+        private ExprNode[] elements;
+
+        ArrayLiteral(int kind, int elementType, ExprNode[] elements) {
+            super(kind);
+            this.elementType = elementType;
+            this.elements = adoptAll(elements);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            Object arr = RuntimeArrays.create(elementType, elements.length);
+            for (int i = 0; i < elements.length; i++) {
+                if (VirtualMachine.isRef(elementType)) RuntimeArrays.setRef(arr, i, elements[i].execute(f), -1);
+                else if (elementType == TYPE_DOUBLE) RuntimeArrays.set(arr, elementType, i, bits(elements[i].executeDouble(f)), -1);
+                else RuntimeArrays.set(arr, elementType, i, elements[i].executeLong(f), -1);
+            }
+            return arr;
+        }
+    }
+
+    // pomeraj elementa: za jedan indeks sam indeks, za vise jedan pomeraj u FlatArray
+    private static long offset(Object arr, ExprNode[] indices, Frame f, boolean checked) {
+        if (indices.length == 1) return indices[0].executeLong(f);
+        FlatArray flat = checked ? RuntimeArrays.flat(arr, -1) : (FlatArray) arr;
+        long off = 0;
+        for (int k = 0; k < indices.length; k++) {
+            long i = indices[k].executeLong(f);
+            off = checked ? flat.step(off, k, i, -1) : off * flat.dims[k] + i;
+        }
+        return off;
+    }
+
+    // niz u kome je element sa tim pomerajem
+    private static Object data(Object arr, ExprNode[] indices) {
+        return indices.length == 1 ? arr : ((FlatArray) arr).data;
+    }
+
+    // checked == false: indeksi su dokazano u granicama (optimizer.BoundsCheckElimination)
+    static final class ReadElement extends ExprNode {
+        private final boolean checked;
+        private ExprNode array;
+        private ExprNode[] indices;
+
+        ReadElement(int kind, boolean checked, ExprNode array, ExprNode[] indices) {
+            super(kind);
+            this.checked = checked;
+            this.array = adopt(array);
+            this.indices = adoptAll(indices);
+        }
+
+        private long load(Frame f) {
+            Object arr = array.execute(f);
+            long idx = offset(arr, indices, f, checked);
+            arr = data(arr, indices);
+            return checked ? RuntimeArrays.get(arr, kind, idx, -1) : RuntimeArrays.getUnchecked(arr, kind, idx);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            if (!VirtualMachine.isRef(kind)) return VirtualMachine.box(load(f), null, kind);
+            Object arr = array.execute(f);
+            long idx = offset(arr, indices, f, checked);
+            arr = data(arr, indices);
+            return checked ? RuntimeArrays.getRef(arr, idx, -1) : RuntimeArrays.getRefUnchecked(arr, idx);
+        }
+
+        @Override
+        long executeLong(Frame f) {
+            return kind == TYPE_DOUBLE ? (long) real(load(f)) : load(f);
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            return kind == TYPE_DOUBLE ? real(load(f)) : load(f);
+        }
+    }
+
+    static final class WriteElement extends StmtNode {
+        private final int elementType;
+        private final boolean checked;
+        private ExprNode array;
+        private ExprNode[] indices;
+        private ExprNode value;
+
+        WriteElement(int elementType, boolean checked, ExprNode array, ExprNode[] indices, ExprNode value) {
+            this.elementType = elementType;
+            this.checked = checked;
+            this.array = adopt(array);
+            this.indices = adoptAll(indices);
+            this.value = adopt(value);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            Object arr = array.execute(f);
+            long idx = offset(arr, indices, f, checked);
+            arr = data(arr, indices);
+            if (VirtualMachine.isRef(elementType)) {
+                Object v = value.execute(f);
+                if (checked) RuntimeArrays.setRef(arr, idx, v, -1);
+                else RuntimeArrays.setRefUnchecked(arr, idx, v);
+            } else {
+                long v = elementType == TYPE_DOUBLE ? bits(value.executeDouble(f)) : value.executeLong(f);
+                if (checked) RuntimeArrays.set(arr, elementType, idx, v, -1);
+                else RuntimeArrays.setUnchecked(arr, elementType, idx, v);
+            }
+            return false;
+        }
+    }
+
+    static final class IncElement extends StmtNode {
+        private final int delta;
+        private ExprNode array;
+        private ExprNode[] indices;
+
+        IncElement(int delta, ExprNode array, ExprNode[] indices) {
+            this.delta = delta;
+            this.array = adopt(array);
+            this.indices = adoptAll(indices);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            Object arr = array.execute(f);
+            long idx = offset(arr, indices, f, true);
+            arr = data(arr, indices);
+            RuntimeArrays.set(arr, TYPE_INT, idx, (int) RuntimeArrays.get(arr, TYPE_INT, idx, -1) + delta, -1);
+            return false;
+        }
+    }
+
+    /* ================= OPERATORI ================= */
+
+    // specijalizovani operator zna da izracuna i vec izracunate (upakovane) operande,
+    // jer ih neinicijalizovani cvor ne sme izracunati dvaput
+    interface Specialized {
+        Object evaluated(Object a, Object b);
+    }
+
+    static final class UninitializedBinary extends ExprNode {
+        private final Context ctx;
+        private final TokenType op;
+        private ExprNode left;
+        private ExprNode right;
+        private ExprNode specialized;
+
+        UninitializedBinary(Context ctx, int kind, TokenType op, ExprNode left, ExprNode right) {
+            super(kind);
+            this.ctx = ctx;
+            this.op = op;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            Object a = left.execute(f);
+            Object b = right.execute(f);
+            // rekurzivni poziv u operandu je mozda vec zamenio ovaj cvor
+            if (specialized == null) {
+                specialized = replace(specialize(a, b));
+                ctx.specializations++;
+            }
+            return ((Specialized) specialized).evaluated(a, b);
+        }
+
+        private ExprNode specialize(Object a, Object b) {
+            ExprNode l = left;
+            ExprNode r = right;
+            boolean real = a instanceof Double || b instanceof Double;
+            boolean wide = a instanceof Long || b instanceof Long;
+            boolean number = a instanceof Number && b instanceof Number;
+            return switch (op) {
+                case ADD -> real ? new DoubleAdd(l, r) : wide ? new LongAdd(l, r) : new IntAdd(l, r);
+                case SUBTRACT -> real ? new DoubleSub(l, r) : wide ? new LongSub(l, r) : new IntSub(l, r);
+                case MULTIPLY -> real ? new DoubleMul(l, r) : wide ? new LongMul(l, r) : new IntMul(l, r);
+                case DIVIDE -> real ? new DoubleDiv(l, r) : wide ? new LongDiv(l, r) : new IntDiv(l, r);
+                case PERCENT -> real ? new DoubleMod(l, r) : wide ? new LongMod(l, r) : new IntMod(l, r);
+                case LT -> real ? new DoubleLt(l, r) : new LongLt(l, r);
+                case LE -> real ? new DoubleLe(l, r) : new LongLe(l, r);
+                case GT -> real ? new DoubleGt(l, r) : new LongGt(l, r);
+                case GE -> real ? new DoubleGe(l, r) : new LongGe(l, r);
+                // gold, emerald, iron i redstone se porede kao long, string i niz po vrednosti
+                case EQ -> real ? new DoubleEq(l, r) : number || a instanceof Character || a instanceof Boolean
+                        ? new LongEq(l, r) : new RefEq(l, r, true);
+                case NEQ -> real ? new DoubleNe(l, r) : number || a instanceof Character || a instanceof Boolean
+                        ? new LongNe(l, r) : new RefEq(l, r, false);
+                case AND -> new And(l, r);
+                case OR -> new Or(l, r);
+                case BIT_AND -> new BitAnd(l, r);
+                case BIT_OR -> new BitOr(l, r);
+                case BIT_LSHIFT -> new Shl(l, r);
+                case BIT_RSHIFT -> new Shr(l, r);
+                default -> throw new RuntimeError("Unsupported binary operator: " + op, -1);
+            };
+        }
+    }
+
+    abstract static class IntBinary extends IntNode implements Specialized {
+        ExprNode left;
+        ExprNode right;
+
+        IntBinary(ExprNode left, ExprNode right) {
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        public Object evaluated(Object a, Object b) {
+            return apply((int) toLong(a), (int) toLong(b));
+        }
+
+        abstract int apply(int a, int b);
+    }
+
+    static final class IntAdd extends IntBinary {
+        IntAdd(ExprNode l, ExprNode r) { super(l, r); }
+        @Override int executeInt(Frame f) { return left.executeInt(f) + right.executeInt(f); }
+        @Override int apply(int a, int b) { return a + b; }
+    }
+
+    static final class IntSub extends IntBinary {
+        IntSub(ExprNode l, ExprNode r) { super(l, r); }
+        @Override int executeInt(Frame f) { return left.executeInt(f) - right.executeInt(f); }
+        @Override int apply(int a, int b) { return a - b; }
+    }
+
+    static final class IntMul extends IntBinary {
+        IntMul(ExprNode l, ExprNode r) { super(l, r); }
+        @Override int executeInt(Frame f) { return left.executeInt(f) * right.executeInt(f); }
+        @Override int apply(int a, int b) { return a * b; }
+    }
+
+    static final class IntDiv extends IntBinary {
+        IntDiv(ExprNode l, ExprNode r) { super(l, r); }
+        @Override int executeInt(Frame f) { return apply(left.executeInt(f), right.executeInt(f)); }
+        @Override int apply(int a, int b) {
+            if (b == 0) throw new RuntimeError("Division by zero", -1);
+            return a / b;
+        }
+    }
+
+    static final class IntMod extends IntBinary {
+        IntMod(ExprNode l, ExprNode r) { super(l, r); }
+        @Override int executeInt(Frame f) { return apply(left.executeInt(f), right.executeInt(f)); }
+        @Override int apply(int a, int b) {
+            if (b == 0) throw new RuntimeError("Division by zero", -1);
+            return a % b;
+        }
+    }
+
+    static final class BitAnd extends IntBinary {
+        BitAnd(ExprNode l, ExprNode r) { super(l, r); }
+        @Override int executeInt(Frame f) { return left.executeInt(f) & right.executeInt(f); }
+        @Override int apply(int a, int b) { return a & b; }
+    }
+
+    static final class BitOr extends IntBinary {
+        BitOr(ExprNode l, ExprNode r) { super(l, r); }
+        @Override int executeInt(Frame f) { return left.executeInt(f) | right.executeInt(f); }
+        @Override int apply(int a, int b) { return a | b; }
+    }
+
+    static final class Shl extends IntBinary {
+        Shl(ExprNode l, ExprNode r) { super(l, r); }
+        @Override int executeInt(Frame f) { return left.executeInt(f) << right.executeInt(f); }
+        @Override int apply(int a, int b) { return a << b; }
+    }
+
+    static final class Shr extends IntBinary {
+        Shr(ExprNode l, ExprNode r) { super(l, r); }
+        @Override int executeInt(Frame f) { return left.executeInt(f) >> right.executeInt(f); }
+        @Override int apply(int a, int b) { return a >> b; }
+    }
+
+    abstract static class LongBinary extends LongNode implements Specialized {
+        ExprNode left;
+        ExprNode right;
+
+        LongBinary(ExprNode left, ExprNode right) {
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        public Object evaluated(Object a, Object b) {
+            return apply(toLong(a), toLong(b));
+        }
+
+        abstract long apply(long a, long b);
+    }
+
+    static final class LongAdd extends LongBinary {
+        LongAdd(ExprNode l, ExprNode r) { super(l, r); }
+        @Override long executeLong(Frame f) { return left.executeLong(f) + right.executeLong(f); }
+        @Override long apply(long a, long b) { return a + b; }
+    }
+
+    static final class LongSub extends LongBinary {
+        LongSub(ExprNode l, ExprNode r) { super(l, r); }
+        @Override long executeLong(Frame f) { return left.executeLong(f) - right.executeLong(f); }
+        @Override long apply(long a, long b) { return a - b; }
+    }
+
+    static final class LongMul extends LongBinary {
+        LongMul(ExprNode l, ExprNode r) { super(l, r); }
+        @Override long executeLong(Frame f) { return left.executeLong(f) * right.executeLong(f); }
+        @Override long apply(long a, long b) { return a * b; }
+    }
+
+    static final class LongDiv extends LongBinary {
+        LongDiv(ExprNode l, ExprNode r) { super(l, r); }
+        @Override long executeLong(Frame f) { return apply(left.executeLong(f), right.executeLong(f)); }
+        @Override long apply(long a, long b) {
+            if (b == 0) throw new RuntimeError("Division by zero", -1);
+            return a / b;
+        }
+    }
+
+    static final class LongMod extends LongBinary {
+        LongMod(ExprNode l, ExprNode r) { super(l, r); }
+        @Override long executeLong(Frame f) { return apply(left.executeLong(f), right.executeLong(f)); }
+        @Override long apply(long a, long b) {
+            if (b == 0) throw new RuntimeError("Division by zero", -1);
+            return a % b;
+        }
+    }
+
+    abstract static class DoubleBinary extends DoubleNode implements Specialized {
+        ExprNode left;
+        ExprNode right;
+
+        DoubleBinary(ExprNode left, ExprNode right) {
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        public Object evaluated(Object a, Object b) {
+            return apply(toDouble(a), toDouble(b));
+        }
+
+        abstract double apply(double a, double b);
+    }
+
+    static final class DoubleAdd extends DoubleBinary {
+        DoubleAdd(ExprNode l, ExprNode r) { super(l, r); }
+        @Override double executeDouble(Frame f) { return left.executeDouble(f) + right.executeDouble(f); }
+        @Override double apply(double a, double b) { return a + b; }
+    }
+
+    static final class DoubleSub extends DoubleBinary {
+        DoubleSub(ExprNode l, ExprNode r) { super(l, r); }
+        @Override double executeDouble(Frame f) { return left.executeDouble(f) - right.executeDouble(f); }
+        @Override double apply(double a, double b) { return a - b; }
+    }
+
+    static final class DoubleMul extends DoubleBinary {
+        DoubleMul(ExprNode l, ExprNode r) { super(l, r); }
+        @Override double executeDouble(Frame f) { return left.executeDouble(f) * right.executeDouble(f); }
+        @Override double apply(double a, double b) { return a * b; }
+    }
+
+    static final class DoubleDiv extends DoubleBinary {
+        DoubleDiv(ExprNode l, ExprNode r) { super(l, r); }
+        @Override double executeDouble(Frame f) { return left.executeDouble(f) / right.executeDouble(f); }
+        @Override double apply(double a, double b) { return a / b; }
+    }
+
+    static final class DoubleMod extends DoubleBinary {
+        DoubleMod(ExprNode l, ExprNode r) { super(l, r); }
+        @Override double executeDouble(Frame f) { return left.executeDouble(f) % right.executeDouble(f); }
+        @Override double apply(double a, double b) { return a % b; }
+    }
+
+    abstract static class Compare extends BoolNode implements Specialized {
+        ExprNode left;
+        ExprNode right;
+
+        Compare(ExprNode left, ExprNode right) {
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+    }
+
+    // gold se za poredjenje siri u long, kao na steku masine
+    abstract static class LongCompare extends Compare {
+        LongCompare(ExprNode l, ExprNode r) { super(l, r); }
+        @Override public Object evaluated(Object a, Object b) { return test(toLong(a), toLong(b)); }
+        abstract boolean test(long a, long b);
+    }
+
+    static final class LongLt extends LongCompare {
+        LongLt(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeLong(f) < right.executeLong(f); }
+        @Override boolean test(long a, long b) { return a < b; }
+    }
+
+    static final class LongLe extends LongCompare {
+        LongLe(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeLong(f) <= right.executeLong(f); }
+        @Override boolean test(long a, long b) { return a <= b; }
+    }
+
+    static final class LongGt extends LongCompare {
+        LongGt(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeLong(f) > right.executeLong(f); }
+        @Override boolean test(long a, long b) { return a > b; }
+    }
+
+    static final class LongGe extends LongCompare {
+        LongGe(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeLong(f) >= right.executeLong(f); }
+        @Override boolean test(long a, long b) { return a >= b; }
+    }
+
+    static final class LongEq extends LongCompare {
+        LongEq(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeLong(f) == right.executeLong(f); }
+        @Override boolean test(long a, long b) { return a == b; }
+    }
+
+    static final class LongNe extends LongCompare {
+        LongNe(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeLong(f) != right.executeLong(f); }
+        @Override boolean test(long a, long b) { return a != b; }
+    }
+
+    abstract static class DoubleCompare extends Compare {
+        DoubleCompare(ExprNode l, ExprNode r) { super(l, r); }
+        @Override public Object evaluated(Object a, Object b) { return test(toDouble(a), toDouble(b)); }
+        abstract boolean test(double a, double b);
+    }
+
+    static final class DoubleLt extends DoubleCompare {
+        DoubleLt(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeDouble(f) < right.executeDouble(f); }
+        @Override boolean test(double a, double b) { return a < b; }
+    }
+
+    static final class DoubleLe extends DoubleCompare {
+        DoubleLe(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeDouble(f) <= right.executeDouble(f); }
+        @Override boolean test(double a, double b) { return a <= b; }
+    }
+
+    static final class DoubleGt extends DoubleCompare {
+        DoubleGt(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeDouble(f) > right.executeDouble(f); }
+        @Override boolean test(double a, double b) { return a > b; }
+    }
+
+    static final class DoubleGe extends DoubleCompare {
+        DoubleGe(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeDouble(f) >= right.executeDouble(f); }
+        @Override boolean test(double a, double b) { return a >= b; }
+    }
+
+    static final class DoubleEq extends DoubleCompare {
+        DoubleEq(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeDouble(f) == right.executeDouble(f); }
+        @Override boolean test(double a, double b) { return a == b; }
+    }
+
+    static final class DoubleNe extends DoubleCompare {
+        DoubleNe(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeDouble(f) != right.executeDouble(f); }
+        @Override boolean test(double a, double b) { return a != b; }
+    }
+
+    static final class RefEq extends Compare {
+        private final boolean equal;
+
+        RefEq(ExprNode l, ExprNode r, boolean equal) {
+            super(l, r);
+            this.equal = equal;
+        }
+
+        @Override
+        boolean executeBoolean(Frame f) {
+            return left.execute(f).equals(right.execute(f)) == equal;
+        }
+
+        @Override
+        public Object evaluated(Object a, Object b) {
+            return a.equals(b) == equal;
+        }
+    }
+
+    // and/or racunaju oba operanda, kao i bajtkod
+    static final class And extends Compare {
+        And(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeBoolean(f) & right.executeBoolean(f); }
+        @Override public Object evaluated(Object a, Object b) { return (Boolean) a & (Boolean) b; }
+    }
+
+    static final class Or extends Compare {
+        Or(ExprNode l, ExprNode r) { super(l, r); }
+        @Override boolean executeBoolean(Frame f) { return left.executeBoolean(f) | right.executeBoolean(f); }
+        @Override public Object evaluated(Object a, Object b) { return (Boolean) a | (Boolean) b; }
+    }
+
+    static final class UninitializedNeg extends ExprNode {
+        private final Context ctx;
+        private ExprNode operand;
+        private ExprNode specialized;
+
+        UninitializedNeg(Context ctx, int kind, ExprNode operand) {
+            super(kind);
+            this.ctx = ctx;
+            this.operand = adopt(operand);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            Object v = operand.execute(f);
+            if (specialized == null) {
+                specialized = replace(v instanceof Double ? new DoubleNeg(operand)
+                        : v instanceof Long ? new LongNeg(operand) : new IntNeg(operand));
+                ctx.specializations++;
+            }
+            if (v instanceof Double d) return -d;
+            if (v instanceof Long l) return -l;
+            return -(int) toLong(v);
+        }
+    }
+
+    static final class IntNeg extends IntNode {
+        private ExprNode operand;
+        IntNeg(ExprNode operand) { this.operand = adopt(operand); }
+        @Override int executeInt(Frame f) { return -operand.executeInt(f); }
+    }
+
+    static final class LongNeg extends LongNode {
+        private ExprNode operand;
+        LongNeg(ExprNode operand) { this.operand = adopt(operand); }
+        @Override long executeLong(Frame f) { return -operand.executeLong(f); }
+    }
+
+    static final class DoubleNeg extends DoubleNode {
+        private ExprNode operand;
+        DoubleNeg(ExprNode operand) { this.operand = adopt(operand); }
+        @Override double executeDouble(Frame f) { return -operand.executeDouble(f); }
+    }
+
+    static final class Not extends BoolNode {
+        private ExprNode operand;
+        Not(ExprNode operand) { this.operand = adopt(operand); }
+        @Override boolean executeBoolean(Frame f) { return !operand.executeBoolean(f); }
+    }
+
+    static final class Ternary extends ExprNode {
+        private ExprNode cond;
+        private ExprNode thenExpr;
+        private ExprNode elseExpr;
+
+        Ternary(int kind, ExprNode cond, ExprNode thenExpr, ExprNode elseExpr) {
+            super(kind);
+            this.cond = adopt(cond);
+            this.thenExpr = adopt(thenExpr);
+            this.elseExpr = adopt(elseExpr);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return cond.executeBoolean(f) ? thenExpr.execute(f) : elseExpr.execute(f);
+        }
+
+        @Override
+        long executeLong(Frame f) {
+            return cond.executeBoolean(f) ? thenExpr.executeLong(f) : elseExpr.executeLong(f);
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            return cond.executeBoolean(f) ? thenExpr.executeDouble(f) : elseExpr.executeDouble(f);
+        }
+
+        @Override
+        boolean executeBoolean(Frame f) {
+            return cond.executeBoolean(f) ? thenExpr.executeBoolean(f) : elseExpr.executeBoolean(f);
+        }
+    }
+
+    // eksplicitna konverzija i konverzija pri deklaraciji sa inicijalizatorom drugog tipa
+    static final class Cast extends ExprNode {
+        private final int from;
+        private ExprNode operand;
+
+        Cast(int from, int to, ExprNode operand) {
+            super(to);
+            this.from = from;
+            this.operand = adopt(operand);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            return switch (kind) {
+                case TYPE_DOUBLE -> executeDouble(f);
+                case TYPE_INT, TYPE_LONG, TYPE_BOOL -> VirtualMachine.box(executeLong(f), null, kind);
+                case TYPE_CHAR -> (char) executeLong(f);
+                default -> VirtualMachine.format(operand.execute(f));
+            };
+        }
+
+        @Override
+        long executeLong(Frame f) {
+            if (from == TYPE_DOUBLE) {
+                double d = operand.executeDouble(f);
+                return switch (kind) {
+                    case TYPE_INT -> (int) d;
+                    case TYPE_CHAR -> (char) (int) d;
+                    default -> (long) d;
+                };
+            }
+            long v = operand.executeLong(f);
+            return switch (kind) {
+                case TYPE_INT -> (int) v;
+                case TYPE_CHAR -> (char) v;
+                default -> v;
+            };
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            return kind == TYPE_DOUBLE ? operand.executeDouble(f) : executeLong(f);
+        }
+    }
+
+    /* ================= POZIVI ================= */
+
+    static final class FunctionNode extends Node {
+        final String name;
+        final int frameSize;
+        final int[] paramKinds;
+        final int returnKind;
+        StmtNode body;
+
+        FunctionNode(String name, int frameSize, int[] paramKinds, int returnKind) {
+            this.name = name;
+            this.frameSize = frameSize;
+            this.paramKinds = paramKinds;
+            this.returnKind = returnKind;
+        }
+
+        void setBody(StmtNode body) {
+            this.body = adopt(body);
+        }
+
+        // funkcija bez loot-a na kraju vraca 0, kao u generatoru bajtkoda
+        void invoke(Frame f) {
+            do {
+                f.tailCall = false;
+                if (!body.execute(f)) {
+                    f.result = 0;
+                    f.resultRef = null;
+                }
+            } while (f.tailCall);
+        }
+    }
+
+    // ciljna funkcija se trazi po imenu samo pri prvom pozivu i pamti u cvoru
+    static final class Call extends ExprNode {
+        private final Context ctx;
+        private final String name;
+        private ExprNode[] args;
+        private FunctionNode target;
+
+        Call(Context ctx, int kind, String name, ExprNode[] args) {
+            super(kind);
+            this.ctx = ctx;
+            this.name = name;
+            this.args = adoptAll(args);
+        }
+
+        private Frame call(Frame f) {
+            FunctionNode t = target;
+            if (t == null) {
+                t = ctx.functions.get(name);
+                if (t == null) throw new RuntimeError("Call to undefined function: " + name, -1);
+                target = t;
+            }
+            Frame callee = new Frame(t.frameSize);
+            for (int i = 0; i < args.length; i++) {
+                int k = t.paramKinds[i];
+                if (VirtualMachine.isRef(k)) callee.r[i] = args[i].execute(f);
+                else if (k == TYPE_DOUBLE) callee.p[i] = bits(args[i].executeDouble(f));
+                else callee.p[i] = args[i].executeLong(f);
+            }
+            t.invoke(callee);
+            return callee;
+        }
+
+        @Override
+        Object execute(Frame f) {
+            Frame c = call(f);
+            return VirtualMachine.box(c.result, c.resultRef, kind);
+        }
+
+        @Override
+        long executeLong(Frame f) {
+            long v = call(f).result;
+            return kind == TYPE_DOUBLE ? (long) real(v) : v;
+        }
+
+        @Override
+        double executeDouble(Frame f) {
+            long v = call(f).result;
+            return kind == TYPE_DOUBLE ? real(v) : v;
+        }
+
+        @Override
+        void executeVoid(Frame f) {
+            call(f);
+        }
+    }
+
+    // collect (println) i drop (print)
+    static final class Print extends ExprNode {
+        private final Context ctx;
+        private final boolean newline;
+        private ExprNode value;
+
+        Print(Context ctx, boolean newline, ExprNode value) {
+            super(TYPE_INT);
+            this.ctx = ctx;
+            this.newline = newline;
+            this.value = adopt(value);
+        }
+
+        @Override
+        Object execute(Frame f) {
+            String text = VirtualMachine.format(value.execute(f));
+            if (newline) ctx.out.println(text);
+            else ctx.out.print(text);
+            return 0;
+        }
+    }
+
+    /* ================= NAREDBE ================= */
+
+    static final class Block extends StmtNode {
+        private StmtNode[] body;
+
+        Block(StmtNode[] body) {
+            this.body = adoptAll(body);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            for (StmtNode s : body) {
+                if (s.execute(f)) return true;
+            }
+            return false;
+        }
+    }
+
+    static final class ExprStmt extends StmtNode {
+        private ExprNode expr;
+
+        ExprStmt(ExprNode expr) {
+            this.expr = adopt(expr);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            expr.executeVoid(f);
+            return false;
+        }
+    }
+
+    static final class If extends StmtNode {
+        private ExprNode cond;
+        private StmtNode thenBody;
+        private StmtNode elseBody;      // moze biti null
+
+        If(ExprNode cond, StmtNode thenBody, StmtNode elseBody) {
+            this.cond = adopt(cond);
+            this.thenBody = adopt(thenBody);
+            this.elseBody = adopt(elseBody);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            if (cond.executeBoolean(f)) return thenBody.execute(f);
+            return elseBody != null && elseBody.execute(f);
+        }
+    }
+
+    static final class While extends StmtNode {
+        private ExprNode cond;
+        private StmtNode body;
+
+        While(ExprNode cond, StmtNode body) {
+            this.cond = adopt(cond);
+            this.body = adopt(body);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            while (cond.executeBoolean(f)) {
+                if (body.execute(f)) return true;
+            }
+            return false;
+        }
+    }
+
+    static final class DoWhile extends StmtNode {
+        private StmtNode body;
+        private ExprNode cond;
+
+        DoWhile(StmtNode body, ExprNode cond) {
+            this.body = adopt(body);
+            this.cond = adopt(cond);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            do {
+                if (body.execute(f)) return true;
+            } while (cond.executeBoolean(f));
+            return false;
+        }
+    }
+
+    static final class For extends StmtNode {
+        private StmtNode init;
+        private ExprNode cond;
+        private StmtNode update;        // moze biti null
+        private StmtNode body;
+
+        For(StmtNode init, ExprNode cond, StmtNode update, StmtNode body) {
+            this.init = adopt(init);
+            this.cond = adopt(cond);
+            this.update = adopt(update);
+            this.body = adopt(body);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            if (init.execute(f)) return true;
+            while (cond.executeBoolean(f)) {
+                if (body.execute(f)) return true;
+                if (update != null && update.execute(f)) return true;
+            }
+            return false;
+        }
+    }
+
+    static final class Return extends StmtNode {
+        private final int kind;
+        private ExprNode value;         // null za loot bez vrednosti
+
+        Return(int kind, ExprNode value) {
+            this.kind = kind;
+            this.value = adopt(value);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            if (value == null) {
+                f.result = 0;
+                f.resultRef = null;
+            } else if (VirtualMachine.isRef(kind)) {
+                f.resultRef = value.execute(f);
+            } else if (kind == TYPE_DOUBLE) {
+                f.result = bits(value.executeDouble(f));
+            } else {
+                f.result = value.executeLong(f);
+            }
+            return true;
+        }
+    }
+
+    // loot f(...) u funkciji f: isti okvir, novi argumenti; FunctionNode.invoke ponavlja telo
+    static final class TailCall extends StmtNode {
+        private final int[] paramKinds;
+        private ExprNode[] args;
+
+        TailCall(int[] paramKinds, ExprNode[] args) {
+            this.paramKinds = paramKinds;
+            this.args = adoptAll(args);
+        }
+
+        @Override
+        boolean execute(Frame f) {
+            // svi argumenti se racunaju pre upisa, jer mogu da citaju parametre; nizovi su
+            // lokalni jer argument moze ponovo da pozove f i izvrsi ovaj isti cvor
+            long[] prims = new long[args.length];
+            Object[] refs = new Object[args.length];
+            for (int i = 0; i < args.length; i++) {
+                int k = paramKinds[i];
+                if (VirtualMachine.isRef(k)) refs[i] = args[i].execute(f);
+                else if (k == TYPE_DOUBLE) prims[i] = bits(args[i].executeDouble(f));
+                else prims[i] = args[i].executeLong(f);
+            }
+            for (int i = 0; i < args.length; i++) {
+                f.p[i] = prims[i];
+                f.r[i] = refs[i];
+            }
+            f.tailCall = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package vm;
+
+import intermidiate.RegisterOpcode;
+import intermidiate.RegisterProgram;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import static intermidiate.RegisterOpcode.*;
+
+public final class ClosureVirtualMachine {
+
+    /*
+    Isti registarski program kao RegisterVirtualMachine, ali se pre izvrsavanja svaka
+    instrukcija prevodi u cvor (lambda) sa vec procitanim operandima. Petlja samo poziva
+    nodes[pc].exec() koji vraca sledeci pc, bez dekodiranja i bez switch-a po opkodu.
+    Poredjenje za kojim odmah sledi jt/jf nad istim registrom postaje jedan cvor.
+     */
+
+    private static final int MAX_FRAMES = 1 << 16;
+    private static final int MAX_REGISTERS = 1 << 22;
+    private static final int HALT = -1;
+
+    private interface Node {
+        int exec();
+    }
+
+    private interface LongOp {
+        long apply(long x, long y);
+    }
+
+    private interface Test {
+        boolean test(long x, long y);
+    }
+
+    private final RegisterProgram.Function[] functions;
+    private final PrintStream out;
+    private final Node[] nodes;
+
+    private long[] prims = new long[256];
+    private Object[] refs = new Object[256];
+    private int base = 0;
+    private int top = 0;
+
+    private final long[] globals;
+    private final Object[] globalRefs;
+    private final boolean[] initialized;
+
+    private int[] returnPcs = new int[64];
+    private int[] savedBases = new int[64];
+    private int[] resultRegs = new int[64];
+    private RegisterProgram.Function[] callers = new RegisterProgram.Function[64];
+    private RegisterProgram.Function current;
+    private int fp = 0;
+
+    private Object result;
+    private long executed = 0;
+
+    // null: svi nizovi su na heap-u
+    private OffHeap offHeap;
+
+    public ClosureVirtualMachine(RegisterProgram program) {
+        this(program, System.out);
+    }
+
+    public ClosureVirtualMachine(RegisterProgram program, PrintStream out) {
+        this.functions = program.functions;
+        this.out = out;
+        this.globals = new long[program.globalCount];
+        this.globalRefs = new Object[program.globalCount];
+        this.initialized = new boolean[program.globalCount];
+        this.nodes = compile(program.code);
+    }
+
+    /* ================= IZVRSAVANJE ================= */
+
+    public Object run() {
+        fp = 0;
+        base = 0;
+        top = 0;
+        current = functions[0];
+        enter(current, -1);
+        Node[] nodes = this.nodes;
+        int pc = current.entry;
+        while (pc != HALT) {
+            executed++;
+            pc = nodes[pc].exec();
+        }
+        return result;
+    }
+
+    // veliki primitivni nizovi van heap-a za sledece run(); null iskljucuje
+    public void setOffHeap(OffHeap offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public long getExecutedCount() {
+        return executed;
+    }
+
+    /* ================= PREVODJENJE U CVOROVE ================= */
+
+    private Node[] compile(int[] code) {
+        Node[] nodes = new Node[code.length];
+        int pc = 0;
+        while (pc < code.length) {
+            nodes[pc] = node(code, pc);
+            pc += RegisterOpcode.length(code, pc);
+        }
+        return nodes;
+    }
+
+    private Node node(int[] code, int pc) {
+        int op = code[pc];
+        int next = pc + RegisterOpcode.length(code, pc);
+        int a1 = next > pc + 1 ? code[pc + 1] : 0;
+        int a2 = next > pc + 2 ? code[pc + 2] : 0;
+        int a3 = next > pc + 3 ? code[pc + 3] : 0;
+        return switch (op) {
+            case MOV -> () -> {
+                long[] p = prims;
+                p[base + a1] = p[base + a2];
+                return next;
+            };
+            case MOVR -> () -> {
+                Object[] r = refs;
+                r[base + a1] = r[base + a2];
+                return next;
+            };
+            case IADD -> binary(a1, a2, a3, next, (x, y) -> (int) (x + y));
+            case ISUB -> binary(a1, a2, a3, next, (x, y) -> (int) (x - y));
+            case IMUL -> binary(a1, a2, a3, next, (x, y) -> (int) x * (int) y);
+            case IDIV, IMOD -> () -> {
+                long[] p = prims;
+                int b = base;
+                int y = (int) p[b + a3];
+                if (y == 0) throw new RuntimeError("Division by zero", pc);
+                int x = (int) p[b + a2];
+                p[b + a1] = op == IDIV ? x / y : x % y;
+                return next;
+            };
+            case LADD -> binary(a1, a2, a3, next, Long::sum);
+            case LSUB -> binary(a1, a2, a3, next, (x, y) -> x - y);
+            case LMUL -> binary(a1, a2, a3, next, (x, y) -> x * y);
+            case LDIV, LMOD -> () -> {
+                long[] p = prims;
+                int b = base;
+                long y = p[b + a3];
+                if (y == 0) throw new RuntimeError("Division by zero", pc);
+                long x = p[b + a2];
+                p[b + a1] = op == LDIV ? x / y : x % y;
+                return next;
+            };
+            case DADD -> binary(a1, a2, a3, next, (x, y) -> bits(real(x) + real(y)));
+            case DSUB -> binary(a1, a2, a3, next, (x, y) -> bits(real(x) - real(y)));
+            case DMUL -> binary(a1, a2, a3, next, (x, y) -> bits(real(x) * real(y)));
+            case DDIV -> binary(a1, a2, a3, next, (x, y) -> bits(real(x) / real(y)));
+            case DMOD -> binary(a1, a2, a3, next, (x, y) -> bits(real(x) % real(y)));
+            case INEG -> unary(a1, a2, next, (x, y) -> -(int) x);
+            case LNEG -> unary(a1, a2, next, (x, y) -> -x);
+            case DNEG -> unary(a1, a2, next, (x, y) -> bits(-real(x)));
+            case LT -> compare(code, a1, a2, a3, next, (x, y) -> x < y);
+            case LE -> compare(code, a1, a2, a3, next, (x, y) -> x <= y);
+            case GT -> compare(code, a1, a2, a3, next, (x, y) -> x > y);
+            case GE -> compare(code, a1, a2, a3, next, (x, y) -> x >= y);
+            case EQ -> compare(code, a1, a2, a3, next, (x, y) -> x == y);
+            case NE -> compare(code, a1, a2, a3, next, (x, y) -> x != y);
+            case DLT -> compare(code, a1, a2, a3, next, (x, y) -> real(x) < real(y));
+            case DLE -> compare(code, a1, a2, a3, next, (x, y) -> real(x) <= real(y));
+            case DGT -> compare(code, a1, a2, a3, next, (x, y) -> real(x) > real(y));
+            case DGE -> compare(code, a1, a2, a3, next, (x, y) -> real(x) >= real(y));
+            case DEQ -> compare(code, a1, a2, a3, next, (x, y) -> real(x) == real(y));
+            case DNE -> compare(code, a1, a2, a3, next, (x, y) -> real(x) != real(y));
+            case REQ, RNE -> () -> {
+                int b = base;
+                boolean eq = refs[b + a2].equals(refs[b + a3]);
+                prims[b + a1] = eq == (op == REQ) ? 1 : 0;
+                return next;
+            };
+            case AND, BAND -> binary(a1, a2, a3, next, (x, y) -> x & y);
+            case OR, BOR -> binary(a1, a2, a3, next, (x, y) -> x | y);
+            case NOT -> unary(a1, a2, next, (x, y) -> x ^ 1);
+            case SHL -> binary(a1, a2, a3, next, (x, y) -> (int) x << (int) y);
+            case SHR -> binary(a1, a2, a3, next, (x, y) -> (int) x >> (int) y);
+            case L2D -> unary(a1, a2, next, (x, y) -> bits((double) x));
+            case D2I -> unary(a1, a2, next, (x, y) -> (int) real(x));
+            case D2L -> unary(a1, a2, next, (x, y) -> (long) real(x));
+            case L2I -> unary(a1, a2, next, (x, y) -> (int) x);
+            case I2C -> unary(a1, a2, next, (x, y) -> (char) x);
+            case JMP -> () -> a1;
+            case JT -> () -> prims[base + a1] != 0 ? a2 : next;
+            case JF -> () -> prims[base + a1] != 0 ? next : a2;
+            case CALL -> {
+                RegisterProgram.Function f = functions[a2];
+                int[] args = Arrays.copyOfRange(code, pc + 4, next);
+                yield () -> call(f, a1, args, next, pc);
+            }
+            case RET -> () -> ret(a1, a2);
+            case GGET -> () -> {
+                if (!initialized[a2]) throw new RuntimeError("Global variable used before initialization", pc);
+                prims[base + a1] = globals[a2];
+                refs[base + a1] = globalRefs[a2];
+                return next;
+            };
+            case GSET -> () -> {
+                globals[a1] = prims[base + a2];
+                globalRefs[a1] = refs[base + a2];
+                initialized[a1] = true;
+                return next;
+            };
+            case PRINT, PRINTLN -> () -> {
+                int s = base + a1;
+                String text = VirtualMachine.format(VirtualMachine.box(prims[s], refs[s], a2));
+                if (op == PRINTLN) out.println(text);
+                else out.print(text);
+                return next;
+            };
+            case NEWARR -> {
+                int[] dimRegs = Arrays.copyOfRange(code, pc + 4, next);
+                yield () -> {
+                    long[] dims = new long[dimRegs.length];
+                    for (int i = 0; i < dims.length; i++) dims[i] = prims[base + dimRegs[i]];
+                    refs[base + a1] = RuntimeArrays.create(a2, dims, offHeap, pc);
+                    return next;
+                };
+            }
+            case MKARR -> {
+                int[] elems = Arrays.copyOfRange(code, pc + 4, next);
+                boolean ref = VirtualMachine.isRef(a2);
+                yield () -> {
+                    int b = base;
+                    Object arr = RuntimeArrays.create(a2, elems.length);
+                    for (int i = 0; i < elems.length; i++) {
+                        if (ref) RuntimeArrays.setRef(arr, i, refs[b + elems[i]], pc);
+                        else RuntimeArrays.set(arr, a2, i, prims[b + elems[i]], pc);
+                    }
+                    refs[b + a1] = arr;
+                    return next;
+                };
+            }
+            case ALOAD -> arrayLoad(code, pc, a1, a2, a3, next);
+            case ASTORE -> arrayStore(code, pc, a1, a2, next);
+            default -> throw new RuntimeError("Invalid opcode: " + op, pc);
+        };
+    }
+
+    private Node binary(int d, int x, int y, int next, LongOp f) {
+        return () -> {
+            long[] p = prims;
+            int b = base;
+            p[b + d] = f.apply(p[b + x], p[b + y]);
+            return next;
+        };
+    }
+
+    private Node unary(int d, int x, int next, LongOp f) {
+        return () -> {
+            long[] p = prims;
+            int b = base;
+            p[b + d] = f.apply(p[b + x], 0);
+            return next;
+        };
+    }
+
+    // poredjenje i grananje po njegovom rezultatu su jedan cvor; rezultat se i dalje upisuje
+    // jer registar moze biti ziv i posle grananja, a izvrsene instrukcije se broje obe
+    private Node compare(int[] code, int d, int x, int y, int next, Test t) {
+        if (next < code.length && (code[next] == JT || code[next] == JF) && code[next + 1] == d) {
+            boolean onTrue = code[next] == JT;
+            int target = code[next + 2];
+            int fall = next + 3;
+            return () -> {
+                long[] p = prims;
+                int b = base;
+                boolean v = t.test(p[b + x], p[b + y]);
+                p[b + d] = v ? 1 : 0;
+                executed++;
+                return v == onTrue ? target : fall;
+            };
+        }
+        return () -> {
+            long[] p = prims;
+            int b = base;
+            p[b + d] = t.test(p[b + x], p[b + y]) ? 1 : 0;
+            return next;
+        };
+    }
+
+    private Node arrayLoad(int[] code, int pc, int d, int type, int n, int next) {
+        int arrReg = code[pc + 4];
+        int[] idx = Arrays.copyOfRange(code, pc + 5, pc + 5 + n);
+        if (n == 1 && !VirtualMachine.isRef(type)) {
+            int i0 = idx[0];
+            return () -> {
+                int b = base;
+                prims[b + d] = RuntimeArrays.get(refs[b + arrReg], type, prims[b + i0], pc);
+                return next;
+            };
+        }
+        if (n == 2 && !VirtualMachine.isRef(type)) {
+            int i0 = idx[0], i1 = idx[1];
+            return () -> {
+                int b = base;
+                FlatArray flat = RuntimeArrays.flat(refs[b + arrReg], pc);
+                long off = flat.step(flat.step(0, 0, prims[b + i0], pc), 1, prims[b + i1], pc);
+                prims[b + d] = RuntimeArrays.get(flat.data, type, off, pc);
+                return next;
+            };
+        }
+        boolean ref = VirtualMachine.isRef(type);
+        return () -> {
+            int b = base;
+            Object arr = refs[b + arrReg];
+            long last = prims[b + idx[n - 1]];
+            if (n > 1) {
+                FlatArray flat = RuntimeArrays.flat(arr, pc);
+                last = 0;
+                for (int k = 0; k < n; k++) last = flat.step(last, k, prims[b + idx[k]], pc);
+                arr = flat.data;
+            }
+            if (ref) refs[b + d] = RuntimeArrays.getRef(arr, last, pc);
+            else prims[b + d] = RuntimeArrays.get(arr, type, last, pc);
+            return next;
+        };
+    }
+
+    private Node arrayStore(int[] code, int pc, int type, int n, int next) {
+        int arrReg = code[pc + 3];
+        int[] idx = Arrays.copyOfRange(code, pc + 4, pc + 4 + n);
+        int src = code[pc + 4 + n];
+        if (n == 1 && !VirtualMachine.isRef(type)) {
+            int i0 = idx[0];
+            return () -> {
+                int b = base;
+                RuntimeArrays.set(refs[b + arrReg], type, prims[b + i0], prims[b + src], pc);
+                return next;
+            };
+        }
+        if (n == 2 && !VirtualMachine.isRef(type)) {
+            int i0 = idx[0], i1 = idx[1];
+            return () -> {
+                int b = base;
+                FlatArray flat = RuntimeArrays.flat(refs[b + arrReg], pc);
+                long off = flat.step(flat.step(0, 0, prims[b + i0], pc), 1, prims[b + i1], pc);
+                RuntimeArrays.set(flat.data, type, off, prims[b + src], pc);
+                return next;
+            };
+        }
+        boolean ref = VirtualMachine.isRef(type);
+        return () -> {
+            int b = base;
+            Object arr = refs[b + arrReg];
+            long last = prims[b + idx[n - 1]];
+            if (n > 1) {
+                FlatArray flat = RuntimeArrays.flat(arr, pc);
+                last = 0;
+                for (int k = 0; k < n; k++) last = flat.step(last, k, prims[b + idx[k]], pc);
+                arr = flat.data;
+            }
+            if (ref) RuntimeArrays.setRef(arr, last, refs[b + src], pc);
+            else RuntimeArrays.set(arr, type, last, prims[b + src], pc);
+            return next;
+        };
+    }
+
+    private static double real(long bits) {
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long bits(double v) {
+        return Double.doubleToRawLongBits(v);
+    }
+
+    /* ================= OKVIRI ================= */
+
+    private int call(RegisterProgram.Function f, int dst, int[] args, int returnPc, int pc) {
+        int callerBase = base;
+        if (fp + 1 == MAX_FRAMES) throw new RuntimeError("Call stack overflow", pc);
+        if (fp + 1 == returnPcs.length) {
+            returnPcs = Arrays.copyOf(returnPcs, returnPcs.length * 2);
+            savedBases = Arrays.copyOf(savedBases, savedBases.length * 2);
+            resultRegs = Arrays.copyOf(resultRegs, resultRegs.length * 2);
+            callers = Arrays.copyOf(callers, callers.length * 2);
+        }
+        fp++;
+        returnPcs[fp] = returnPc;
+        savedBases[fp] = callerBase;
+        resultRegs[fp] = dst;
+        callers[fp] = current;
+        current = f;
+        enter(f, pc);
+        long[] p = prims;
+        Object[] r = refs;
+        int b = base;
+        for (int i = 0; i < args.length; i++) {
+            int s = callerBase + args[i];
+            p[b + i] = p[s];
+            if (f.usesRefs) r[b + i] = r[s];
+        }
+        return f.entry;
+    }
+
+    private int ret(int src, int type) {
+        int b = base;
+        int s = b + src;
+        if (fp == 0) {
+            result = VirtualMachine.box(prims[s], refs[s], type);
+            return HALT;
+        }
+        long value = prims[s];
+        Object ref = refs[s];
+        if (current.usesRefs) Arrays.fill(refs, b, top, null);
+        top = b;
+        current = callers[fp];
+        b = base = savedBases[fp];
+        int dst = resultRegs[fp];
+        int pc = returnPcs[fp--];
+        if (dst >= 0) {
+            prims[b + dst] = value;
+            refs[b + dst] = ref;
+        }
+        return pc;
+    }
+
+    private void enter(RegisterProgram.Function f, int pc) {
+        base = top;
+        allocate(base + f.frameSize, pc);
+        top = base + f.frameSize;
+        int k = base + f.constBase;
+        System.arraycopy(f.constants, 0, prims, k, f.constants.length);
+        if (f.usesRefs) System.arraycopy(f.constantRefs, 0, refs, k, f.constantRefs.length);
+    }
+
+    private void allocate(int size, int pc) {
+        if (size <= prims.length) return;
+        if (size > MAX_REGISTERS) throw new RuntimeError("Call stack overflow", pc);
+        int n = Math.max(prims.length * 2, size);
+        prims = Arrays.copyOf(prims, n);
+        refs = Arrays.copyOf(refs, n);
+    }
+}
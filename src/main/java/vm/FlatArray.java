@@ -0,0 +1,63 @@
+package vm;
+
+// Visedimenzionalni chest u jednom nizu, red po red (row-major): element [i0][i1]..[ik]
+// je na pomeraju ((i0 * d1 + i1) * d2 + ...) * dk + ik. Pristup racuna jedan pomeraj i
+// cita jedan primitivni niz, umesto po jednog Object[] za svaku spoljnu dimenziju.
+final class FlatArray {
+
+    final Object data;
+    final int[] dims;
+
+    FlatArray(Object data, int[] dims) {
+        this.data = data;
+        this.dims = dims;
+    }
+
+    // pomeraj za indekse idx[from .. from + rank), svaki proveren prema svojoj dimenziji
+    int offset(long[] idx, int from, int pc) {
+        long off = 0;
+        for (int k = 0; k < dims.length; k++) off = step(off, k, idx[from + k], pc);
+        return (int) off;
+    }
+
+    // za pristupe koje je optimizer.BoundsCheckElimination dokazao; indeks van svoje dimenzije
+    // ostaje unutar data i cita drugi red, pa je tacnost dokaza jedina zastita (assert za -ea)
+    int offsetUnchecked(long[] idx, int from) {
+        long off = 0;
+        for (int k = 0; k < dims.length; k++) {
+            assert idx[from + k] >= 0 && idx[from + k] < dims[k] : "unproven index " + idx[from + k];
+            off = off * dims[k] + idx[from + k];
+        }
+        return (int) off;
+    }
+
+    // jedan korak Horner-ove seme, za masine kod kojih indeksi nisu jedan do drugog
+    long step(long off, int k, long i, int pc) {
+        if (i < 0 || i >= dims[k])
+            throw new RuntimeError("Array index out of bounds: " + i + " (length " + dims[k] + ")", pc);
+        return off * dims[k] + i;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        format(sb, 0, 0);
+        return sb.toString();
+    }
+
+    private void format(StringBuilder sb, int k, int off) {
+        sb.append('[');
+        for (int i = 0; i < dims[k]; i++) {
+            if (i > 0) sb.append(", ");
+            int at = off * dims[k] + i;
+            if (k == dims.length - 1) sb.append(VirtualMachine.format(element(at)));
+            else format(sb, k + 1, at);
+        }
+        sb.append(']');
+    }
+
+    private Object element(int at) {
+        if (data instanceof OffHeapArray h) return h.box(at);
+        return java.lang.reflect.Array.get(data, at);
+    }
+}
@@ -0,0 +1,53 @@
+package vm;
+
+import intermidiate.JvmCodeGenerator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+// ucitava klasu iz JvmCodeGenerator-a i izvrsava program
+public final class JvmRunner {
+
+    private static final class ProgramLoader extends ClassLoader {
+        ProgramLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private JvmRunner() {}
+
+    public static Object run(byte[] classBytes) {
+        ProgramLoader loader = new ProgramLoader(JvmRunner.class.getClassLoader());
+        Class<?> program = loader.define(JvmCodeGenerator.CLASS_NAME, classBytes);
+
+        try {
+            Method entry = program.getMethod(JvmCodeGenerator.ENTRY);
+            return entry.invoke(null);
+        } catch (InvocationTargetException e) {
+            throw translate(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot start generated program: " + e.getMessage(), e);
+        }
+    }
+
+    // greske iz generisanog koda se prijavljuju isto kao greske VM-a
+    private static RuntimeException translate(Throwable t) {
+        if (t instanceof ArithmeticException)
+            return new RuntimeError("Division by zero", -1);
+        if (t instanceof ArrayIndexOutOfBoundsException)
+            return new RuntimeError("Array index out of bounds: " + t.getMessage(), -1);
+        if (t instanceof NegativeArraySizeException)
+            return new RuntimeError("Negative array size: " + t.getMessage(), -1);
+        if (t instanceof NullPointerException)
+            return new RuntimeError("Indexing non-array value", -1);
+        if (t instanceof StackOverflowError)
+            return new RuntimeError("Call stack overflow", -1);
+        if (t instanceof RuntimeException r)
+            return r;
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,21 @@
+package vm;
+
+// pomocne metode koje poziva klasa generisana u JvmCodeGenerator-u
+public final class JvmRuntime {
+
+    private JvmRuntime() {}
+
+    public static void collect(int v) { System.out.println(v); }
+    public static void collect(long v) { System.out.println(v); }
+    public static void collect(double v) { System.out.println(v); }
+    public static void collect(char v) { System.out.println(v); }
+    public static void collect(boolean v) { System.out.println(VirtualMachine.format(v)); }
+    public static void collect(Object v) { System.out.println(VirtualMachine.format(v)); }
+
+    public static void drop(int v) { System.out.print(v); }
+    public static void drop(long v) { System.out.print(v); }
+    public static void drop(double v) { System.out.print(v); }
+    public static void drop(char v) { System.out.print(v); }
+    public static void drop(boolean v) { System.out.print(VirtualMachine.format(v)); }
+    public static void drop(Object v) { System.out.print(VirtualMachine.format(v)); }
+}
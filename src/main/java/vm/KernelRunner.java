@@ -0,0 +1,276 @@
+package vm;
+
+import intermidiate.ArrayKernel;
+import intermidiate.Opcode;
+
+import java.util.Arrays;
+
+// Izvrsava intermidiate.ArrayKernel (vector_loop) nad celim opsegom brojaca, u blokovima od
+// BLOCK elemenata: svaka operacija izraza ide preko celog bloka, a medjurezultati su u
+// privremenim nizovima. Ova klasa racuna obicnim petljama; SimdKernelRunner iste operacije
+// racuna vektorima iz jdk.incubator.vector kad je modul ukljucen.
+// run vraca false kad kernel ne moze da se izvrsi bez promene ponasanja (niz van heap-a,
+// null, pristup van granica), pa masina izvrsava obicnu petlju koja gresku prijavljuje
+// na pravom mestu. Provera je pre prvog upisa, tako da kernel nikad ne uradi pola posla.
+class KernelRunner {
+
+    static final int BLOCK = 1024;
+
+    long runs = 0;
+    long fallbacks = 0;
+    long elements = 0;
+
+    // za jedan run: primitivni niz i pocetak reda za svaki pristup, skalari kao sirove vrednosti
+    private Object[] columns = new Object[4];
+    private int[] offsets = new int[4];
+    private long[] raw = new long[4];
+
+    // stek izraza: niz sa pomerajem, ili skalar (gold kao long, diamond kao bitovi) kad je niz null
+    private Object[] opArrays = new Object[4];
+    private int[] opOffsets = new int[4];
+    private long[] opScalars = new long[4];
+    private int[][] intTemps = new int[0][];
+    private double[][] realTemps = new double[0][];
+
+    static KernelRunner create() {
+        // SimdKernelRunner se ucitava tek ovde, pa bez modula nema NoClassDefFoundError
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new SimdKernelRunner();
+            } catch (LinkageError e) {
+                // ostaje skalarno
+            }
+        }
+        return new KernelRunner();
+    }
+
+    String mode() {
+        return "scalar";
+    }
+
+    String report() {
+        return String.format("%s: %d runs, %d elements, %d fallbacks", mode(), runs, elements, fallbacks);
+    }
+
+    // i od lo do hi (ili hi - 1); false znaci da masina treba da izvrsi obicnu petlju
+    final boolean run(ArrayKernel k, long[] locals, Object[] localRefs, int base, long lo, long hi) {
+        long end = k.inclusive ? hi + 1 : hi;
+        if (lo >= end) {
+            runs++;
+            return true;
+        }
+        if (lo < 0 || !bind(k, locals, localRefs, base, end)) {
+            Arrays.fill(columns, null);
+            fallbacks++;
+            return false;
+        }
+        boolean real = k.type == Opcode.TYPE_DOUBLE;
+        for (long from = lo; from < end; from += BLOCK) {
+            int n = (int) Math.min(BLOCK, end - from);
+            for (ArrayKernel.Assign a : k.body) evaluate(k, a, (int) from, n, real);
+        }
+        Arrays.fill(columns, null);
+        Arrays.fill(opArrays, null);
+        runs++;
+        elements += end - lo;
+        return true;
+    }
+
+    private boolean bind(ArrayKernel k, long[] locals, Object[] localRefs, int base, long end) {
+        reserve(k);
+        for (int s = 0; s < k.scalars.length; s++) raw[s] = locals[base + k.scalars[s]];
+        for (int a = 0; a < k.accesses.length; a++) {
+            ArrayKernel.Access access = k.accesses[a];
+            Object arr = localRefs[base + access.slot];
+            long off = 0;
+            if (access.prefix.length > 0) {
+                if (!(arr instanceof FlatArray flat) || flat.dims.length != access.prefix.length + 1) return false;
+                for (int d = 0; d < access.prefix.length; d++) {
+                    int i = prefix(k, access.prefix[d]);
+                    if (i < 0 || i >= flat.dims[d]) return false;
+                    off = off * flat.dims[d] + i;
+                }
+                int row = flat.dims[access.prefix.length];
+                if (row < end) return false;
+                off *= row;
+                arr = flat.data;
+            }
+            int length = length(arr, k.type);
+            if (length < 0 || length - off < end) return false;
+            columns[a] = arr;
+            offsets[a] = (int) off;
+        }
+        return true;
+    }
+
+    private void reserve(ArrayKernel k) {
+        if (columns.length < k.accesses.length) {
+            columns = new Object[k.accesses.length];
+            offsets = new int[k.accesses.length];
+        }
+        if (raw.length < k.scalars.length) raw = new long[k.scalars.length];
+        if (opArrays.length < k.depth) {
+            opArrays = new Object[k.depth];
+            opOffsets = new int[k.depth];
+            opScalars = new long[k.depth];
+        }
+        if (k.type == Opcode.TYPE_DOUBLE && realTemps.length < k.depth) {
+            realTemps = new double[k.depth][BLOCK];
+        } else if (k.type == Opcode.TYPE_INT && intTemps.length < k.depth) {
+            intTemps = new int[k.depth][BLOCK];
+        }
+    }
+
+    private static int length(Object arr, int type) {
+        if (type == Opcode.TYPE_INT && arr instanceof int[] a) return a.length;
+        if (type == Opcode.TYPE_DOUBLE && arr instanceof double[] a) return a.length;
+        return -1;
+    }
+
+    // spoljni indeks u gold aritmetici, kao IADD/ISUB/IMUL
+    private int prefix(ArrayKernel k, int[] code) {
+        int[] st = new int[code.length];
+        int d = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case ArrayKernel.SCALAR -> st[d++] = (int) raw[code[++pc]];
+                case ArrayKernel.CONST -> st[d++] = (int) k.constants[code[++pc]];
+                default -> {
+                    d--;
+                    st[d - 1] = fold(code[pc], st[d - 1], st[d]);
+                }
+            }
+        }
+        return st[0];
+    }
+
+    private void evaluate(ArrayKernel k, ArrayKernel.Assign a, int from, int n, boolean real) {
+        int[] code = a.code;
+        Object target = columns[a.target];
+        int targetOff = offsets[a.target] + from;
+        int d = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case ArrayKernel.ARRAY -> {
+                    int access = code[++pc];
+                    opArrays[d] = columns[access];
+                    opOffsets[d++] = offsets[access] + from;
+                }
+                case ArrayKernel.SCALAR -> {
+                    opArrays[d] = null;
+                    opScalars[d++] = raw[code[++pc]];
+                }
+                case ArrayKernel.CONST -> {
+                    opArrays[d] = null;
+                    opScalars[d++] = k.constants[code[++pc]];
+                }
+                default -> {
+                    d--;
+                    // poslednja operacija pise pravo u cilj: element i zavisi samo od elemenata i
+                    boolean last = pc == code.length - 1;
+                    Object dst = last ? target : real ? realTemps[d - 1] : intTemps[d - 1];
+                    apply(code[pc], real, d - 1, dst, last ? targetOff : 0, n);
+                }
+            }
+        }
+        if (opArrays[0] == null) {
+            if (real) Arrays.fill((double[]) target, targetOff, targetOff + n, Double.longBitsToDouble(opScalars[0]));
+            else Arrays.fill((int[]) target, targetOff, targetOff + n, (int) opScalars[0]);
+        } else if (opArrays[0] != target || opOffsets[0] != targetOff) {
+            System.arraycopy(opArrays[0], opOffsets[0], target, targetOff, n);
+        }
+    }
+
+    // operandi su na x i x + 1, rezultat ide na x
+    private void apply(int op, boolean real, int x, Object dst, int dstOff, int n) {
+        Object a = opArrays[x], b = opArrays[x + 1];
+        long sa = opScalars[x], sb = opScalars[x + 1];
+        int ia = opOffsets[x], ib = opOffsets[x + 1];
+        if (a == null && b == null) {
+            opScalars[x] = real
+                    ? Double.doubleToRawLongBits(fold(op, Double.longBitsToDouble(sa), Double.longBitsToDouble(sb)))
+                    : fold(op, (int) sa, (int) sb);
+            return;
+        }
+        if (real) {
+            double[] out = (double[]) dst;
+            if (a != null && b != null) columns(op, (double[]) a, ia, (double[]) b, ib, out, dstOff, n);
+            else if (b == null) scalar(op, (double[]) a, ia, Double.longBitsToDouble(sb), false, out, dstOff, n);
+            else scalar(op, (double[]) b, ib, Double.longBitsToDouble(sa), true, out, dstOff, n);
+        } else {
+            int[] out = (int[]) dst;
+            if (a != null && b != null) columns(op, (int[]) a, ia, (int[]) b, ib, out, dstOff, n);
+            else if (b == null) scalar(op, (int[]) a, ia, (int) sb, false, out, dstOff, n);
+            else scalar(op, (int[]) b, ib, (int) sa, true, out, dstOff, n);
+        }
+        opArrays[x] = dst;
+        opOffsets[x] = dstOff;
+    }
+
+    /* ================= OPERACIJE NAD BLOKOM ================= */
+
+    // out[oi + k] = a[ai + k] op b[bi + k] za k < n
+    void columns(int op, int[] a, int ai, int[] b, int bi, int[] out, int oi, int n) {
+        switch (op) {
+            case ArrayKernel.ADD -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] + b[bi + k]; }
+            case ArrayKernel.SUB -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] - b[bi + k]; }
+            case ArrayKernel.MUL -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] * b[bi + k]; }
+            default -> throw new IllegalStateException("Gold kernel operation " + op);
+        }
+    }
+
+    // out[oi + k] = a[ai + k] op s, ili s op a[ai + k] kad je left
+    void scalar(int op, int[] a, int ai, int s, boolean left, int[] out, int oi, int n) {
+        switch (op) {
+            case ArrayKernel.ADD -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] + s; }
+            case ArrayKernel.SUB -> {
+                if (left) for (int k = 0; k < n; k++) out[oi + k] = s - a[ai + k];
+                else for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] - s;
+            }
+            case ArrayKernel.MUL -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] * s; }
+            default -> throw new IllegalStateException("Gold kernel operation " + op);
+        }
+    }
+
+    void columns(int op, double[] a, int ai, double[] b, int bi, double[] out, int oi, int n) {
+        switch (op) {
+            case ArrayKernel.ADD -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] + b[bi + k]; }
+            case ArrayKernel.SUB -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] - b[bi + k]; }
+            case ArrayKernel.MUL -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] * b[bi + k]; }
+            default -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] / b[bi + k]; }
+        }
+    }
+
+    void scalar(int op, double[] a, int ai, double s, boolean left, double[] out, int oi, int n) {
+        switch (op) {
+            case ArrayKernel.ADD -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] + s; }
+            case ArrayKernel.SUB -> {
+                if (left) for (int k = 0; k < n; k++) out[oi + k] = s - a[ai + k];
+                else for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] - s;
+            }
+            case ArrayKernel.MUL -> { for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] * s; }
+            default -> {
+                if (left) for (int k = 0; k < n; k++) out[oi + k] = s / a[ai + k];
+                else for (int k = 0; k < n; k++) out[oi + k] = a[ai + k] / s;
+            }
+        }
+    }
+
+    private static int fold(int op, int a, int b) {
+        return switch (op) {
+            case ArrayKernel.ADD -> a + b;
+            case ArrayKernel.SUB -> a - b;
+            case ArrayKernel.MUL -> a * b;
+            default -> throw new IllegalStateException("Gold kernel operation " + op);
+        };
+    }
+
+    private static double fold(int op, double a, double b) {
+        return switch (op) {
+            case ArrayKernel.ADD -> a + b;
+            case ArrayKernel.SUB -> a - b;
+            case ArrayKernel.MUL -> a * b;
+            default -> a / b;
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package vm;
+
+import java.util.Arrays;
+
+// Ogranicena tabela zapamcenih rezultata jedne ciste funkcije. Kljuc su argumenti kao
+// long (diamond kao bitovi double-a), vrednost je rezultat u istom obliku. Tabela je
+// direktno mapirana: svaki kljuc ima tacno jedan ulaz, pa novi kljuc izbacuje stari
+// koji je tu bio, a velicina ne raste preko CAPACITY.
+final class MemoTable {
+
+    static final int CAPACITY = 1 << 12;
+
+    private final int arity;
+    private final long[] keys;
+    private final long[] values;
+    private final boolean[] used;
+
+    long hits = 0;
+    long misses = 0;
+    long evictions = 0;
+
+    MemoTable(int arity) {
+        this.arity = arity;
+        this.keys = new long[CAPACITY * arity];
+        this.values = new long[CAPACITY];
+        this.used = new boolean[CAPACITY];
+    }
+
+    int arity() {
+        return arity;
+    }
+
+    // ulaz sa argumentima args[from .. from + arity) ili -1
+    int find(long[] args, int from) {
+        int slot = slot(args, from);
+        if (used[slot] && Arrays.equals(keys, slot * arity, slot * arity + arity, args, from, from + arity)) {
+            hits++;
+            return slot;
+        }
+        misses++;
+        return -1;
+    }
+
+    long value(int slot) {
+        return values[slot];
+    }
+
+    void put(long[] args, int from, long value) {
+        int slot = slot(args, from);
+        if (used[slot] && !Arrays.equals(keys, slot * arity, slot * arity + arity, args, from, from + arity)) {
+            evictions++;
+        }
+        System.arraycopy(args, from, keys, slot * arity, arity);
+        values[slot] = value;
+        used[slot] = true;
+    }
+
+    private int slot(long[] args, int from) {
+        long h = 0;
+        for (int i = from; i < from + arity; i++) h = (h + args[i]) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 52) & (CAPACITY - 1);
+    }
+}
@@ -0,0 +1,41 @@
+package vm;
+
+import java.lang.foreign.Arena;
+
+// Memorija van heap-a za velike primitivne chest nizove (--offheap). Niz od bar threshold
+// elemenata dobija se iz arene umesto kao Java niz, pa ga GC ne kopira i ne skenira. Arena
+// traje koliko i izvrsavanje programa: close() oslobadja sve odjednom. Arena je deljena
+// (ofShared), pa nizu mogu da pristupaju i druge niti.
+//
+// java.lang.foreign je u Javi 21 preview, pa se ova klasa ucitava samo uz --offheap i
+// tada JVM mora da radi sa --enable-preview; bez te opcije ostatak masine je ne dodiruje.
+public final class OffHeap implements AutoCloseable {
+
+    public static final long DEFAULT_THRESHOLD = 1 << 20;
+
+    final long threshold;
+    private final Arena arena = Arena.ofShared();
+    private long arrays = 0;
+    private long bytes = 0;
+
+    public OffHeap(long threshold) {
+        this.threshold = threshold;
+    }
+
+    // memorija iz arene je popunjena nulama, kao i novi Java niz
+    synchronized OffHeapArray allocate(int type, int length) {
+        long size = SegmentArray.elementSize(type) * length;
+        arrays++;
+        bytes += size;
+        return SegmentArray.of(type, length, arena.allocate(size, 8));
+    }
+
+    public String report() {
+        return arrays + " arrays, " + bytes + " bytes";
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,34 @@
+package vm;
+
+// Primitivni chest van Java heap-a (--offheap). Ova klasa ne koristi java.lang.foreign,
+// pa RuntimeArrays sme da je proverava i kad masina radi bez --enable-preview;
+// memorija i citanje su u SegmentArray.
+abstract class OffHeapArray {
+
+    final int type;
+    final int length;
+
+    OffHeapArray(int type, int length) {
+        this.type = type;
+        this.length = length;
+    }
+
+    // element kao long (diamond kao bitovi), isto kao RuntimeArrays.get
+    abstract long get(int i);
+
+    abstract void set(int i, long v);
+
+    Object box(int i) {
+        return VirtualMachine.box(get(i), null, type);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(VirtualMachine.format(box(i)));
+        }
+        return sb.append("]").toString();
+    }
+}
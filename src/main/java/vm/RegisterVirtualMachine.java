@@ -0,0 +1,389 @@
+package vm;
+
+import intermidiate.RegisterProgram;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import static intermidiate.RegisterOpcode.*;
+
+public final class RegisterVirtualMachine {
+
+    private static final int MAX_FRAMES = 1 << 16;
+    private static final int MAX_REGISTERS = 1 << 22;
+
+    private final int[] code;
+    private final RegisterProgram.Function[] functions;
+    private final PrintStream out;
+
+    // registri svih aktivnih poziva; okvir pocinje na base, primitivne vrednosti
+    // i reference istog registra su na istom indeksu u dva niza
+    private long[] prims = new long[256];
+    private Object[] refs = new Object[256];
+    private int base = 0;
+    private int top = 0;
+
+    private final long[] globals;
+    private final Object[] globalRefs;
+    private final boolean[] initialized;
+
+    // okvir poziva: povratna adresa, base pozivaoca, registar za rezultat i pozivalac
+    private int[] returnPcs = new int[64];
+    private int[] savedBases = new int[64];
+    private int[] resultRegs = new int[64];
+    private RegisterProgram.Function[] callers = new RegisterProgram.Function[64];
+    private int fp = 0;
+
+    private long executed = 0;
+
+    // null: svi nizovi su na heap-u
+    private OffHeap offHeap;
+
+    public RegisterVirtualMachine(RegisterProgram program) {
+        this(program, System.out);
+    }
+
+    public RegisterVirtualMachine(RegisterProgram program, PrintStream out) {
+        this.code = program.code;
+        this.functions = program.functions;
+        this.out = out;
+        this.globals = new long[program.globalCount];
+        this.globalRefs = new Object[program.globalCount];
+        this.initialized = new boolean[program.globalCount];
+    }
+
+    /* ================= IZVRSAVANJE ================= */
+
+    public Object run() {
+        fp = 0;
+        base = 0;
+        top = 0;
+        RegisterProgram.Function entry = functions[0];
+        enter(entry, -1);
+
+        RegisterProgram.Function current = entry;
+        long[] p = prims;
+        Object[] r = refs;
+        int b = base;
+        int pc = entry.entry;
+        while (true) {
+            executed++;
+            int op = code[pc];
+            switch (op) {
+                case MOV -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]];
+                    pc += 3;
+                }
+                case MOVR -> {
+                    r[b + code[pc + 1]] = r[b + code[pc + 2]];
+                    pc += 3;
+                }
+                case IADD -> {
+                    p[b + code[pc + 1]] = (int) (p[b + code[pc + 2]] + p[b + code[pc + 3]]);
+                    pc += 4;
+                }
+                case ISUB -> {
+                    p[b + code[pc + 1]] = (int) (p[b + code[pc + 2]] - p[b + code[pc + 3]]);
+                    pc += 4;
+                }
+                case IMUL -> {
+                    p[b + code[pc + 1]] = (int) p[b + code[pc + 2]] * (int) p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case IDIV, IMOD -> {
+                    int y = (int) p[b + code[pc + 3]];
+                    if (y == 0) throw new RuntimeError("Division by zero", pc);
+                    int x = (int) p[b + code[pc + 2]];
+                    p[b + code[pc + 1]] = op == IDIV ? x / y : x % y;
+                    pc += 4;
+                }
+                case LADD -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] + p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case LSUB -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] - p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case LMUL -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] * p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case LDIV, LMOD -> {
+                    long y = p[b + code[pc + 3]];
+                    if (y == 0) throw new RuntimeError("Division by zero", pc);
+                    long x = p[b + code[pc + 2]];
+                    p[b + code[pc + 1]] = op == LDIV ? x / y : x % y;
+                    pc += 4;
+                }
+                case DADD, DSUB, DMUL, DDIV, DMOD -> {
+                    double x = Double.longBitsToDouble(p[b + code[pc + 2]]);
+                    double y = Double.longBitsToDouble(p[b + code[pc + 3]]);
+                    double v = switch (op) {
+                        case DADD -> x + y;
+                        case DSUB -> x - y;
+                        case DMUL -> x * y;
+                        case DDIV -> x / y;
+                        default -> x % y;
+                    };
+                    p[b + code[pc + 1]] = Double.doubleToRawLongBits(v);
+                    pc += 4;
+                }
+                case INEG -> {
+                    p[b + code[pc + 1]] = -(int) p[b + code[pc + 2]];
+                    pc += 3;
+                }
+                case LNEG -> {
+                    p[b + code[pc + 1]] = -p[b + code[pc + 2]];
+                    pc += 3;
+                }
+                case DNEG -> {
+                    p[b + code[pc + 1]] = Double.doubleToRawLongBits(-Double.longBitsToDouble(p[b + code[pc + 2]]));
+                    pc += 3;
+                }
+                case LT -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] < p[b + code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case LE -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] <= p[b + code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case GT -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] > p[b + code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case GE -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] >= p[b + code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case EQ -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] == p[b + code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case NE -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] != p[b + code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case DLT, DLE, DGT, DGE, DEQ, DNE -> {
+                    double x = Double.longBitsToDouble(p[b + code[pc + 2]]);
+                    double y = Double.longBitsToDouble(p[b + code[pc + 3]]);
+                    boolean v = switch (op) {
+                        case DLT -> x < y;
+                        case DLE -> x <= y;
+                        case DGT -> x > y;
+                        case DGE -> x >= y;
+                        case DEQ -> x == y;
+                        default -> x != y;
+                    };
+                    p[b + code[pc + 1]] = v ? 1 : 0;
+                    pc += 4;
+                }
+                case REQ, RNE -> {
+                    boolean eq = r[b + code[pc + 2]].equals(r[b + code[pc + 3]]);
+                    p[b + code[pc + 1]] = eq == (op == REQ) ? 1 : 0;
+                    pc += 4;
+                }
+                case AND -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] & p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case OR -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] | p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case NOT -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] ^ 1;
+                    pc += 3;
+                }
+                case SHL -> {
+                    p[b + code[pc + 1]] = (int) p[b + code[pc + 2]] << (int) p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case SHR -> {
+                    p[b + code[pc + 1]] = (int) p[b + code[pc + 2]] >> (int) p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case BAND -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] & p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case BOR -> {
+                    p[b + code[pc + 1]] = p[b + code[pc + 2]] | p[b + code[pc + 3]];
+                    pc += 4;
+                }
+                case L2D -> {
+                    p[b + code[pc + 1]] = Double.doubleToRawLongBits((double) p[b + code[pc + 2]]);
+                    pc += 3;
+                }
+                case D2I -> {
+                    p[b + code[pc + 1]] = (int) Double.longBitsToDouble(p[b + code[pc + 2]]);
+                    pc += 3;
+                }
+                case D2L -> {
+                    p[b + code[pc + 1]] = (long) Double.longBitsToDouble(p[b + code[pc + 2]]);
+                    pc += 3;
+                }
+                case L2I -> {
+                    p[b + code[pc + 1]] = (int) p[b + code[pc + 2]];
+                    pc += 3;
+                }
+                case I2C -> {
+                    p[b + code[pc + 1]] = (char) p[b + code[pc + 2]];
+                    pc += 3;
+                }
+                case JMP -> pc = code[pc + 1];
+                case JT -> pc = p[b + code[pc + 1]] != 0 ? code[pc + 2] : pc + 3;
+                case JF -> pc = p[b + code[pc + 1]] != 0 ? pc + 3 : code[pc + 2];
+                case CALL -> {
+                    RegisterProgram.Function f = functions[code[pc + 2]];
+                    int callerBase = b;
+                    int n = code[pc + 3];
+                    if (fp + 1 == MAX_FRAMES) throw new RuntimeError("Call stack overflow", pc);
+                    if (fp + 1 == returnPcs.length) {
+                        returnPcs = Arrays.copyOf(returnPcs, returnPcs.length * 2);
+                        savedBases = Arrays.copyOf(savedBases, savedBases.length * 2);
+                        resultRegs = Arrays.copyOf(resultRegs, resultRegs.length * 2);
+                        callers = Arrays.copyOf(callers, callers.length * 2);
+                    }
+                    fp++;
+                    returnPcs[fp] = pc + 4 + n;
+                    savedBases[fp] = callerBase;
+                    resultRegs[fp] = code[pc + 1];
+                    callers[fp] = current;
+                    current = f;
+                    enter(f, pc);
+                    p = prims;
+                    r = refs;
+                    b = base;
+                    for (int i = 0; i < n; i++) {
+                        int s = callerBase + code[pc + 4 + i];
+                        p[b + i] = p[s];
+                        if (f.usesRefs) r[b + i] = r[s];
+                    }
+                    pc = f.entry;
+                }
+                case RET -> {
+                    int s = b + code[pc + 1];
+                    if (fp == 0) return VirtualMachine.box(p[s], r[s], code[pc + 2]);
+                    long value = p[s];
+                    Object ref = r[s];
+                    // funkcija bez referenci ne ostavlja nista sto bi trebalo osloboditi
+                    if (current.usesRefs) Arrays.fill(r, b, top, null);
+                    top = b;
+                    current = callers[fp];
+                    b = base = savedBases[fp];
+                    int dst = resultRegs[fp];
+                    pc = returnPcs[fp--];
+                    if (dst >= 0) {
+                        p[b + dst] = value;
+                        r[b + dst] = ref;
+                    }
+                }
+                case GGET -> {
+                    int g = code[pc + 2];
+                    if (!initialized[g]) throw new RuntimeError("Global variable used before initialization", pc);
+                    p[b + code[pc + 1]] = globals[g];
+                    r[b + code[pc + 1]] = globalRefs[g];
+                    pc += 3;
+                }
+                case GSET -> {
+                    int g = code[pc + 1];
+                    globals[g] = p[b + code[pc + 2]];
+                    globalRefs[g] = r[b + code[pc + 2]];
+                    initialized[g] = true;
+                    pc += 3;
+                }
+                case PRINT, PRINTLN -> {
+                    int s = b + code[pc + 1];
+                    String text = VirtualMachine.format(VirtualMachine.box(p[s], r[s], code[pc + 2]));
+                    if (op == PRINTLN) out.println(text);
+                    else out.print(text);
+                    pc += 3;
+                }
+                case NEWARR -> {
+                    long[] dims = new long[code[pc + 3]];
+                    for (int i = 0; i < dims.length; i++) dims[i] = p[b + code[pc + 4 + i]];
+                    r[b + code[pc + 1]] = RuntimeArrays.create(code[pc + 2], dims, offHeap, pc);
+                    pc += 4 + dims.length;
+                }
+                case MKARR -> {
+                    int type = code[pc + 2];
+                    int n = code[pc + 3];
+                    Object arr = RuntimeArrays.create(type, n);
+                    for (int i = 0; i < n; i++) {
+                        int s = b + code[pc + 4 + i];
+                        if (VirtualMachine.isRef(type)) RuntimeArrays.setRef(arr, i, r[s], pc);
+                        else RuntimeArrays.set(arr, type, i, p[s], pc);
+                    }
+                    r[b + code[pc + 1]] = arr;
+                    pc += 4 + n;
+                }
+                case ALOAD -> {
+                    int type = code[pc + 2];
+                    int n = code[pc + 3];
+                    Object arr = r[b + code[pc + 4]];
+                    long idx = p[b + code[pc + 4 + n]];
+                    if (n > 1) {
+                        FlatArray flat = RuntimeArrays.flat(arr, pc);
+                        long off = 0;
+                        for (int k = 0; k < n; k++) off = flat.step(off, k, p[b + code[pc + 5 + k]], pc);
+                        idx = off;
+                        arr = flat.data;
+                    }
+                    int d = b + code[pc + 1];
+                    if (VirtualMachine.isRef(type)) r[d] = RuntimeArrays.getRef(arr, idx, pc);
+                    else p[d] = RuntimeArrays.get(arr, type, idx, pc);
+                    pc += 5 + n;
+                }
+                case ASTORE -> {
+                    int type = code[pc + 1];
+                    int n = code[pc + 2];
+                    Object arr = r[b + code[pc + 3]];
+                    long idx = p[b + code[pc + 3 + n]];
+                    if (n > 1) {
+                        FlatArray flat = RuntimeArrays.flat(arr, pc);
+                        long off = 0;
+                        for (int k = 0; k < n; k++) off = flat.step(off, k, p[b + code[pc + 4 + k]], pc);
+                        idx = off;
+                        arr = flat.data;
+                    }
+                    int s = b + code[pc + 4 + n];
+                    if (VirtualMachine.isRef(type)) RuntimeArrays.setRef(arr, idx, r[s], pc);
+                    else RuntimeArrays.set(arr, type, idx, p[s], pc);
+                    pc += 5 + n;
+                }
+                default -> throw new RuntimeError("Invalid opcode: " + op, pc);
+            }
+        }
+    }
+
+    // veliki primitivni nizovi van heap-a za sledece run(); null iskljucuje
+    public void setOffHeap(OffHeap offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public long getExecutedCount() {
+        return executed;
+    }
+
+    /* ================= OKVIRI ================= */
+
+    // registri novog okvira pocinju na vrhu, konstante funkcije se upisuju na svoja mesta
+    private void enter(RegisterProgram.Function f, int pc) {
+        base = top;
+        allocate(base + f.frameSize, pc);
+        top = base + f.frameSize;
+        int k = base + f.constBase;
+        System.arraycopy(f.constants, 0, prims, k, f.constants.length);
+        if (f.usesRefs) System.arraycopy(f.constantRefs, 0, refs, k, f.constantRefs.length);
+    }
+
+    private void allocate(int size, int pc) {
+        if (size <= prims.length) return;
+        if (size > MAX_REGISTERS) throw new RuntimeError("Call stack overflow", pc);
+        int n = Math.max(prims.length * 2, size);
+        prims = Arrays.copyOf(prims, n);
+        refs = Arrays.copyOf(refs, n);
+    }
+}
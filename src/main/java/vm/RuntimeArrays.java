@@ -0,0 +1,179 @@
+package vm;
+
+import static intermidiate.Opcode.TYPE_BOOL;
+import static intermidiate.Opcode.TYPE_CHAR;
+import static intermidiate.Opcode.TYPE_DOUBLE;
+import static intermidiate.Opcode.TYPE_INT;
+import static intermidiate.Opcode.TYPE_LONG;
+import static intermidiate.Opcode.TYPE_STRING;
+
+// Nizovi obe masine: chest[gold] je int[], chest[emerald] long[], chest[diamond] double[],
+// chest[iron] char[], chest[redstone] boolean[], a chest[chain] je Object[]. Niz sa vise
+// dimenzija je FlatArray nad jednim takvim nizom. Uz --offheap veliki primitivni niz je
+// OffHeapArray. Primitivni elementi se citaju i pisu kao long
+// (diamond kao bitovi), isto kao u registrima i na steku, pa pristup ne pravi objekte.
+final class RuntimeArrays {
+
+    private RuntimeArrays() {}
+
+    static Object create(int type, int length) {
+        return switch (type) {
+            case TYPE_INT -> new int[length];
+            case TYPE_LONG -> new long[length];
+            case TYPE_DOUBLE -> new double[length];
+            case TYPE_CHAR -> new char[length];
+            case TYPE_BOOL -> new boolean[length];
+            case TYPE_STRING -> {
+                Object[] arr = new Object[length];
+                java.util.Arrays.fill(arr, "");
+                yield arr;
+            }
+            default -> new Object[length];
+        };
+    }
+
+    // type je tip elementa; za vise dimenzija svi elementi su u jednom nizu (FlatArray);
+    // heap je null kad nema --offheap
+    static Object create(int type, long[] dims, OffHeap heap, int pc) {
+        if (dims.length == 1) return create(type, (int) size(dims[0], pc), heap);
+        int[] sizes = new int[dims.length];
+        long total = 1;
+        for (int k = 0; k < dims.length; k++) {
+            sizes[k] = (int) size(dims[k], pc);
+            total *= sizes[k];
+            if (total > Integer.MAX_VALUE - 8) throw new RuntimeError("Array too large: " + java.util.Arrays.toString(dims), pc);
+        }
+        return new FlatArray(create(type, (int) total, heap), sizes);
+    }
+
+    private static Object create(int type, int length, OffHeap heap) {
+        if (heap != null && !VirtualMachine.isRef(type) && length >= heap.threshold) return heap.allocate(type, length);
+        return create(type, length);
+    }
+
+    private static long size(long n, int pc) {
+        if (n < 0) throw new RuntimeError("Negative array size: " + n, pc);
+        return n;
+    }
+
+    static FlatArray flat(Object v, int pc) {
+        if (v instanceof FlatArray arr) return arr;
+        throw new RuntimeError("Indexing non-array value: " + VirtualMachine.format(v), pc);
+    }
+
+    static long get(Object arr, int type, long i, int pc) {
+        if (arr instanceof OffHeapArray h) return h.get(index(i, h.length, pc));
+        switch (type) {
+            case TYPE_INT -> {
+                int[] a = (int[]) arr;
+                return a[index(i, a.length, pc)];
+            }
+            case TYPE_LONG -> {
+                long[] a = (long[]) arr;
+                return a[index(i, a.length, pc)];
+            }
+            case TYPE_DOUBLE -> {
+                double[] a = (double[]) arr;
+                return Double.doubleToRawLongBits(a[index(i, a.length, pc)]);
+            }
+            case TYPE_CHAR -> {
+                char[] a = (char[]) arr;
+                return a[index(i, a.length, pc)];
+            }
+            case TYPE_BOOL -> {
+                boolean[] a = (boolean[]) arr;
+                return a[index(i, a.length, pc)] ? 1 : 0;
+            }
+            default -> throw new RuntimeError("Not a primitive array type: " + type, pc);
+        }
+    }
+
+    static void set(Object arr, int type, long i, long v, int pc) {
+        if (arr instanceof OffHeapArray h) {
+            h.set(index(i, h.length, pc), v);
+            return;
+        }
+        switch (type) {
+            case TYPE_INT -> {
+                int[] a = (int[]) arr;
+                a[index(i, a.length, pc)] = (int) v;
+            }
+            case TYPE_LONG -> {
+                long[] a = (long[]) arr;
+                a[index(i, a.length, pc)] = v;
+            }
+            case TYPE_DOUBLE -> {
+                double[] a = (double[]) arr;
+                a[index(i, a.length, pc)] = Double.longBitsToDouble(v);
+            }
+            case TYPE_CHAR -> {
+                char[] a = (char[]) arr;
+                a[index(i, a.length, pc)] = (char) v;
+            }
+            case TYPE_BOOL -> {
+                boolean[] a = (boolean[]) arr;
+                a[index(i, a.length, pc)] = v != 0;
+            }
+            default -> throw new RuntimeError("Not a primitive array type: " + type, pc);
+        }
+    }
+
+    static Object getRef(Object arr, long i, int pc) {
+        Object[] a = asArray(arr, pc);
+        return a[index(i, a.length, pc)];
+    }
+
+    static void setRef(Object arr, long i, Object v, int pc) {
+        Object[] a = asArray(arr, pc);
+        a[index(i, a.length, pc)] = v;
+    }
+
+    // bez provere indeksa, za pristupe koje je optimizer.BoundsCheckElimination dokazao;
+    // JVM proverava samo ravan niz, pa kod visedimenzionalnih (FlatArray) pogresan dokaz za
+    // jednu dimenziju tiho cita drugi red; tamo bezbednost zavisi samo od tog dokaza
+    static long getUnchecked(Object arr, int type, long i) {
+        int k = (int) i;
+        if (arr instanceof OffHeapArray h) return h.get(k);
+        return switch (type) {
+            case TYPE_INT -> ((int[]) arr)[k];
+            case TYPE_LONG -> ((long[]) arr)[k];
+            case TYPE_DOUBLE -> Double.doubleToRawLongBits(((double[]) arr)[k]);
+            case TYPE_CHAR -> ((char[]) arr)[k];
+            default -> ((boolean[]) arr)[k] ? 1 : 0;
+        };
+    }
+
+    static void setUnchecked(Object arr, int type, long i, long v) {
+        int k = (int) i;
+        if (arr instanceof OffHeapArray h) {
+            h.set(k, v);
+            return;
+        }
+        switch (type) {
+            case TYPE_INT -> ((int[]) arr)[k] = (int) v;
+            case TYPE_LONG -> ((long[]) arr)[k] = v;
+            case TYPE_DOUBLE -> ((double[]) arr)[k] = Double.longBitsToDouble(v);
+            case TYPE_CHAR -> ((char[]) arr)[k] = (char) v;
+            default -> ((boolean[]) arr)[k] = v != 0;
+        }
+    }
+
+    static Object getRefUnchecked(Object arr, long i) {
+        return ((Object[]) arr)[(int) i];
+    }
+
+    static void setRefUnchecked(Object arr, long i, Object v) {
+        ((Object[]) arr)[(int) i] = v;
+    }
+
+    static Object[] asArray(Object v, int pc) {
+        if (v instanceof Object[] arr) return arr;
+        throw new RuntimeError("Indexing non-array value: " + VirtualMachine.format(v), pc);
+    }
+
+    private static int index(long i, int length, int pc) {
+        if (i < 0 || i >= length)
+            throw new RuntimeError("Array index out of bounds: " + i + " (length " + length + ")", pc);
+        return (int) i;
+    }
+}
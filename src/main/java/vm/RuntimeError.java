@@ -0,0 +1,28 @@
+package vm;
+
+public final class RuntimeError extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int pc;
+
+    public RuntimeError(String message, int pc) {
+        super(buildMessage(message, pc));
+        this.pc = pc;
+    }
+
+    public int getPc() {
+        return pc;
+    }
+
+    private static String buildMessage(String msg, int pc) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Runtime error: ").append(msg);
+
+        if (pc >= 0) {
+            sb.append(" [at instruction ").append(pc).append("]");
+        }
+
+        return sb.toString();
+    }
+}
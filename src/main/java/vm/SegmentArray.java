@@ -0,0 +1,55 @@
+package vm;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+import static intermidiate.Opcode.TYPE_CHAR;
+import static intermidiate.Opcode.TYPE_DOUBLE;
+import static intermidiate.Opcode.TYPE_INT;
+import static intermidiate.Opcode.TYPE_LONG;
+
+// OffHeapArray nad MemorySegment-om iz OffHeap arene. Citanje i pisanje idu direktno u
+// memoriju preko ValueLayout-a, bez pravljenja objekata.
+final class SegmentArray extends OffHeapArray {
+
+    private final MemorySegment segment;
+
+    private SegmentArray(int type, int length, MemorySegment segment) {
+        super(type, length);
+        this.segment = segment;
+    }
+
+    static OffHeapArray of(int type, int length, MemorySegment segment) {
+        return new SegmentArray(type, length, segment);
+    }
+
+    static long elementSize(int type) {
+        return switch (type) {
+            case TYPE_INT -> 4;
+            case TYPE_LONG, TYPE_DOUBLE -> 8;
+            case TYPE_CHAR -> 2;
+            default -> 1;
+        };
+    }
+
+    @Override
+    long get(int i) {
+        return switch (type) {
+            case TYPE_INT -> segment.getAtIndex(ValueLayout.JAVA_INT, i);
+            case TYPE_LONG -> segment.getAtIndex(ValueLayout.JAVA_LONG, i);
+            case TYPE_DOUBLE -> segment.getAtIndex(ValueLayout.JAVA_LONG, i);
+            case TYPE_CHAR -> segment.getAtIndex(ValueLayout.JAVA_CHAR, i);
+            default -> segment.get(ValueLayout.JAVA_BYTE, i);
+        };
+    }
+
+    @Override
+    void set(int i, long v) {
+        switch (type) {
+            case TYPE_INT -> segment.setAtIndex(ValueLayout.JAVA_INT, i, (int) v);
+            case TYPE_LONG, TYPE_DOUBLE -> segment.setAtIndex(ValueLayout.JAVA_LONG, i, v);
+            case TYPE_CHAR -> segment.setAtIndex(ValueLayout.JAVA_CHAR, i, (char) v);
+            default -> segment.set(ValueLayout.JAVA_BYTE, i, (byte) (v != 0 ? 1 : 0));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package vm;
+
+import intermidiate.ArrayKernel;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// KernelRunner sa operacijama iz jdk.incubator.vector: po jedna petlja za svaku operaciju,
+// da bi operator bio konstanta i JIT svaku preveo u SIMD instrukcije, pa ostatak bloka
+// (manje od jednog vektora) obicnom petljom iz KernelRunner-a.
+// Jedina klasa koja koristi modul; ucitava je samo KernelRunner.create kad je modul ukljucen.
+final class SimdKernelRunner extends KernelRunner {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    String mode() {
+        return "simd (" + INTS.length() + " gold, " + DOUBLES.length() + " diamond lanes)";
+    }
+
+    @Override
+    void columns(int op, int[] a, int ai, int[] b, int bi, int[] out, int oi, int n) {
+        int k = 0, bound = INTS.loopBound(n), step = INTS.length();
+        switch (op) {
+            case ArrayKernel.ADD -> {
+                for (; k < bound; k += step)
+                    IntVector.fromArray(INTS, a, ai + k).add(IntVector.fromArray(INTS, b, bi + k)).intoArray(out, oi + k);
+            }
+            case ArrayKernel.SUB -> {
+                for (; k < bound; k += step)
+                    IntVector.fromArray(INTS, a, ai + k).sub(IntVector.fromArray(INTS, b, bi + k)).intoArray(out, oi + k);
+            }
+            case ArrayKernel.MUL -> {
+                for (; k < bound; k += step)
+                    IntVector.fromArray(INTS, a, ai + k).mul(IntVector.fromArray(INTS, b, bi + k)).intoArray(out, oi + k);
+            }
+            default -> throw new IllegalStateException("Gold kernel operation " + op);
+        }
+        super.columns(op, a, ai + k, b, bi + k, out, oi + k, n - k);
+    }
+
+    @Override
+    void scalar(int op, int[] a, int ai, int s, boolean left, int[] out, int oi, int n) {
+        int k = 0, bound = INTS.loopBound(n), step = INTS.length();
+        IntVector v = IntVector.broadcast(INTS, s);
+        switch (op) {
+            case ArrayKernel.ADD -> {
+                for (; k < bound; k += step) IntVector.fromArray(INTS, a, ai + k).add(v).intoArray(out, oi + k);
+            }
+            case ArrayKernel.SUB -> {
+                if (left) for (; k < bound; k += step) v.sub(IntVector.fromArray(INTS, a, ai + k)).intoArray(out, oi + k);
+                else for (; k < bound; k += step) IntVector.fromArray(INTS, a, ai + k).sub(v).intoArray(out, oi + k);
+            }
+            case ArrayKernel.MUL -> {
+                for (; k < bound; k += step) IntVector.fromArray(INTS, a, ai + k).mul(v).intoArray(out, oi + k);
+            }
+            default -> throw new IllegalStateException("Gold kernel operation " + op);
+        }
+        super.scalar(op, a, ai + k, s, left, out, oi + k, n - k);
+    }
+
+    @Override
+    void columns(int op, double[] a, int ai, double[] b, int bi, double[] out, int oi, int n) {
+        int k = 0, bound = DOUBLES.loopBound(n), step = DOUBLES.length();
+        switch (op) {
+            case ArrayKernel.ADD -> {
+                for (; k < bound; k += step)
+                    DoubleVector.fromArray(DOUBLES, a, ai + k).add(DoubleVector.fromArray(DOUBLES, b, bi + k)).intoArray(out, oi + k);
+            }
+            case ArrayKernel.SUB -> {
+                for (; k < bound; k += step)
+                    DoubleVector.fromArray(DOUBLES, a, ai + k).sub(DoubleVector.fromArray(DOUBLES, b, bi + k)).intoArray(out, oi + k);
+            }
+            case ArrayKernel.MUL -> {
+                for (; k < bound; k += step)
+                    DoubleVector.fromArray(DOUBLES, a, ai + k).mul(DoubleVector.fromArray(DOUBLES, b, bi + k)).intoArray(out, oi + k);
+            }
+            default -> {
+                for (; k < bound; k += step)
+                    DoubleVector.fromArray(DOUBLES, a, ai + k).div(DoubleVector.fromArray(DOUBLES, b, bi + k)).intoArray(out, oi + k);
+            }
+        }
+        super.columns(op, a, ai + k, b, bi + k, out, oi + k, n - k);
+    }
+
+    @Override
+    void scalar(int op, double[] a, int ai, double s, boolean left, double[] out, int oi, int n) {
+        int k = 0, bound = DOUBLES.loopBound(n), step = DOUBLES.length();
+        DoubleVector v = DoubleVector.broadcast(DOUBLES, s);
+        switch (op) {
+            case ArrayKernel.ADD -> {
+                for (; k < bound; k += step) DoubleVector.fromArray(DOUBLES, a, ai + k).add(v).intoArray(out, oi + k);
+            }
+            case ArrayKernel.SUB -> {
+                if (left) for (; k < bound; k += step) v.sub(DoubleVector.fromArray(DOUBLES, a, ai + k)).intoArray(out, oi + k);
+                else for (; k < bound; k += step) DoubleVector.fromArray(DOUBLES, a, ai + k).sub(v).intoArray(out, oi + k);
+            }
+            case ArrayKernel.MUL -> {
+                for (; k < bound; k += step) DoubleVector.fromArray(DOUBLES, a, ai + k).mul(v).intoArray(out, oi + k);
+            }
+            default -> {
+                if (left) for (; k < bound; k += step) v.div(DoubleVector.fromArray(DOUBLES, a, ai + k)).intoArray(out, oi + k);
+                else for (; k < bound; k += step) DoubleVector.fromArray(DOUBLES, a, ai + k).div(v).intoArray(out, oi + k);
+            }
+        }
+        super.scalar(op, a, ai + k, s, left, out, oi + k, n - k);
+    }
+}
@@ -0,0 +1,725 @@
+package vm;
+
+import intermidiate.ArrayKernel;
+import intermidiate.Bytecode;
+import intermidiate.ParallelLoop;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static intermidiate.Opcode.*;
+
+public final class VirtualMachine {
+
+    private static final int MAX_STACK = 1 << 20;
+    private static final int MAX_FRAMES = 1 << 16;
+    private static final int MAX_LOCALS = 1 << 22;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // --parallel bez broja: kraca petlja se ne deli
+    public static final int DEFAULT_MIN_TRIPS = 64;
+
+    private final int[] code;
+    private final long[] constants;
+    private final Object[] constantRefs;
+    private final PrintStream out;
+    private final Map<String, Integer> functions;
+
+    // vrednosti su neupakovane: gold, emerald, iron i redstone kao long, diamond kao bitovi
+    // double-a; string i niz su u paralelnom nizu referenci na istom indeksu
+    private long[] stack = new long[256];
+    private Object[] refs = new Object[256];
+    private int sp = 0;
+
+    private final long[] globals;
+    private final Object[] globalRefs;
+    private final boolean[] initialized;
+
+    // lokalne promenljive svih aktivnih poziva su u jednom nizu, okvir pocinje na base
+    private long[] locals = new long[256];
+    private Object[] localRefs = new Object[256];
+    private int base = 0;
+    private int localsTop = 0;
+
+    // okvir poziva: povratna adresa i base pozivaoca
+    private int[] returnPcs = new int[64];
+    private int[] savedBases = new int[64];
+    private int fp = 0;
+
+    private long executed = 0;
+
+    // zapamceni rezultati cistih funkcija po adresi ulaza, samo kad se trazi memoizacija;
+    // okvir poziva koji nije nasao rezultat cuva tabelu, a argumente stavlja u memoKeys
+    // da bi ret upisao rezultat pod kljucem sa kojim je funkcija pozvana
+    private MemoTable[] memo;
+    private MemoTable[] frameMemo;
+    private long[] memoKeys;
+    private int memoTop = 0;
+
+    // brojaci uzastopnih parova opkoda [prethodni * COUNT + sledeci], samo kad se trazi profil
+    private long[] pairCounts;
+
+    // null: svi nizovi su na heap-u
+    private OffHeap offHeap;
+
+    // vector_loop; pravi se kod prvog kernela
+    private KernelRunner kernels;
+
+    // parallel_loop: null izvrsava sve petlje na ovoj niti (i uvek u radniku, bez ugnezdenih
+    // paralelnih delova); petlja krace od minTrips iteracija ne vredi deljenja
+    private ForkJoinPool pool;
+    private int minTrips;
+    private long parallelRuns = 0;
+    private long serialRuns = 0;
+    private long chunkCount = 0;
+
+    // radnik izvrsava petlju do end_parallel na ovoj adresi; -1 za glavnu masinu
+    private int stopPc = -1;
+    private RuntimeError failure;
+
+    public VirtualMachine(Bytecode program) {
+        this(program, System.out);
+    }
+
+    public VirtualMachine(Bytecode program, PrintStream out) {
+        this.code = program.code;
+        this.out = out;
+        this.functions = program.functions;
+        this.constants = new long[program.constants.length];
+        this.constantRefs = new Object[program.constants.length];
+        for (int i = 0; i < program.constants.length; i++) {
+            Object c = program.constants[i];
+            if (c instanceof String || c instanceof ArrayKernel || c instanceof ParallelLoop) constantRefs[i] = c;
+            else constants[i] = encode(c);
+        }
+        this.globals = new long[program.globalCount];
+        this.globalRefs = new Object[program.globalCount];
+        this.initialized = new boolean[program.globalCount];
+    }
+
+    // radnik za parallel_loop: deli kod, konstante, globalne i nizove van heap-a sa glavnom masinom
+    private VirtualMachine(VirtualMachine parent) {
+        this.code = parent.code;
+        this.out = parent.out;
+        this.functions = parent.functions;
+        this.constants = parent.constants;
+        this.constantRefs = parent.constantRefs;
+        this.globals = parent.globals;
+        this.globalRefs = parent.globalRefs;
+        this.initialized = parent.initialized;
+        this.offHeap = parent.offHeap;
+    }
+
+    /* ================= IZVRSAVANJE ================= */
+
+    public Object run() {
+        fp = 0;
+        sp = 0;
+        base = 0;
+        localsTop = 0;
+        memoTop = 0;
+        return execute(0);
+    }
+
+    private Object execute(int pc) {
+        int previous = -1;
+        while (true) {
+            if (pc < 0 || pc >= code.length)
+                throw new RuntimeError("Program counter out of range", pc);
+            executed++;
+
+            int op = code[pc];
+            if (pairCounts != null) {
+                if (previous >= 0) pairCounts[previous * COUNT + op]++;
+                previous = op;
+            }
+            switch (op) {
+                case PUSH -> {
+                    int k = code[pc + 1];
+                    push(constants[k], constantRefs[k]);
+                    pc += 2;
+                }
+                case LOAD_LOCAL -> {
+                    int slot = base + code[pc + 1];
+                    push(locals[slot], localRefs[slot]);
+                    pc += 2;
+                }
+                case STORE_LOCAL -> {
+                    int slot = base + code[pc + 1];
+                    sp--;
+                    locals[slot] = stack[sp];
+                    localRefs[slot] = refs[sp];
+                    pc += 2;
+                }
+                case LOAD_GLOBAL -> {
+                    int g = code[pc + 1];
+                    if (!initialized[g]) throw new RuntimeError("Global variable used before initialization", pc);
+                    push(globals[g], globalRefs[g]);
+                    pc += 2;
+                }
+                case STORE_GLOBAL -> {
+                    int g = code[pc + 1];
+                    sp--;
+                    globals[g] = stack[sp];
+                    globalRefs[g] = refs[sp];
+                    initialized[g] = true;
+                    pc += 2;
+                }
+                case POP -> {
+                    refs[--sp] = null;
+                    pc++;
+                }
+                case IADD, ISUB, IMUL, IDIV, IMOD -> {
+                    int b = (int) stack[--sp];
+                    int a = (int) stack[sp - 1];
+                    if (b == 0 && (op == IDIV || op == IMOD)) throw new RuntimeError("Division by zero", pc);
+                    stack[sp - 1] = switch (op) {
+                        case IADD -> a + b;
+                        case ISUB -> a - b;
+                        case IMUL -> a * b;
+                        case IDIV -> a / b;
+                        default -> a % b;
+                    };
+                    pc++;
+                }
+                case LADD, LSUB, LMUL, LDIV, LMOD -> {
+                    long b = stack[--sp];
+                    long a = stack[sp - 1];
+                    if (b == 0 && (op == LDIV || op == LMOD)) throw new RuntimeError("Division by zero", pc);
+                    stack[sp - 1] = switch (op) {
+                        case LADD -> a + b;
+                        case LSUB -> a - b;
+                        case LMUL -> a * b;
+                        case LDIV -> a / b;
+                        default -> a % b;
+                    };
+                    pc++;
+                }
+                case DADD, DSUB, DMUL, DDIV, DMOD -> {
+                    double b = Double.longBitsToDouble(stack[--sp]);
+                    double a = Double.longBitsToDouble(stack[sp - 1]);
+                    stack[sp - 1] = Double.doubleToRawLongBits(switch (op) {
+                        case DADD -> a + b;
+                        case DSUB -> a - b;
+                        case DMUL -> a * b;
+                        case DDIV -> a / b;
+                        default -> a % b;
+                    });
+                    pc++;
+                }
+                case INEG -> {
+                    stack[sp - 1] = -(int) stack[sp - 1];
+                    pc++;
+                }
+                case LNEG -> {
+                    stack[sp - 1] = -stack[sp - 1];
+                    pc++;
+                }
+                case DNEG -> {
+                    stack[sp - 1] = Double.doubleToRawLongBits(-Double.longBitsToDouble(stack[sp - 1]));
+                    pc++;
+                }
+                case ILT, ILE, IGT, IGE, IEQ, INE, LLT, LLE, LGT, LGE, LEQ, LNE -> {
+                    // gold je na steku prosiren u long, pa je poredjenje isto kao za emerald
+                    long b = stack[--sp];
+                    long a = stack[sp - 1];
+                    boolean r = switch (op) {
+                        case ILT, LLT -> a < b;
+                        case ILE, LLE -> a <= b;
+                        case IGT, LGT -> a > b;
+                        case IGE, LGE -> a >= b;
+                        case IEQ, LEQ -> a == b;
+                        default -> a != b;
+                    };
+                    stack[sp - 1] = r ? 1 : 0;
+                    pc++;
+                }
+                case DLT, DLE, DGT, DGE, DEQ, DNE -> {
+                    double b = Double.longBitsToDouble(stack[--sp]);
+                    double a = Double.longBitsToDouble(stack[sp - 1]);
+                    boolean r = switch (op) {
+                        case DLT -> a < b;
+                        case DLE -> a <= b;
+                        case DGT -> a > b;
+                        case DGE -> a >= b;
+                        case DEQ -> a == b;
+                        default -> a != b;
+                    };
+                    stack[sp - 1] = r ? 1 : 0;
+                    pc++;
+                }
+                case EQ, NEQ -> {
+                    // netipizirano poredjenje ostaje samo za string i niz
+                    Object b = refs[--sp];
+                    Object a = refs[sp - 1];
+                    refs[sp] = null;
+                    refs[sp - 1] = null;
+                    stack[sp - 1] = a.equals(b) == (op == EQ) ? 1 : 0;
+                    pc++;
+                }
+                case AND, OR, BAND, BOR -> {
+                    long b = stack[--sp];
+                    long a = stack[sp - 1];
+                    stack[sp - 1] = op == AND || op == BAND ? a & b : a | b;
+                    pc++;
+                }
+                case SHL, SHR -> {
+                    int b = (int) stack[--sp];
+                    int a = (int) stack[sp - 1];
+                    stack[sp - 1] = op == SHL ? a << b : a >> b;
+                    pc++;
+                }
+                case NOT -> {
+                    stack[sp - 1] ^= 1;
+                    pc++;
+                }
+                case INC, DEC -> {
+                    int a = (int) stack[sp - 1];
+                    stack[sp - 1] = op == INC ? a + 1 : a - 1;
+                    pc++;
+                }
+                case JMP -> pc = code[pc + 1];
+                case JMP_IF_FALSE -> pc = stack[--sp] != 0 ? pc + 2 : code[pc + 1];
+                case JMP_IF_TRUE -> pc = stack[--sp] != 0 ? code[pc + 1] : pc + 2;
+                case CALL -> {
+                    MemoTable table = memo == null ? null : memo[code[pc + 1]];
+                    if (table != null) {
+                        int n = table.arity();
+                        int hit = table.find(stack, sp - n);
+                        if (hit >= 0) {
+                            sp -= n;
+                            push(table.value(hit), null);
+                            pc += 3;
+                            continue;
+                        }
+                        if (memoTop + n > memoKeys.length) memoKeys = Arrays.copyOf(memoKeys, (memoTop + n) * 2);
+                        System.arraycopy(stack, sp - n, memoKeys, memoTop, n);
+                        memoTop += n;
+                    }
+                    if (fp + 1 == MAX_FRAMES) throw new RuntimeError("Call stack overflow", pc);
+                    if (fp + 1 == returnPcs.length) {
+                        returnPcs = Arrays.copyOf(returnPcs, returnPcs.length * 2);
+                        savedBases = Arrays.copyOf(savedBases, savedBases.length * 2);
+                        if (memo != null) frameMemo = Arrays.copyOf(frameMemo, returnPcs.length);
+                    }
+                    fp++;
+                    if (memo != null) frameMemo[fp] = table;
+                    returnPcs[fp] = pc + 3;
+                    savedBases[fp] = base;
+                    base = localsTop;
+                    allocateFrame(code[pc + 2], pc);
+                    pc = code[pc + 1];
+                }
+                case TAILCALL -> {
+                    // argumenti su na steku, a prolog funkcije ih upisuje u slotove parametara;
+                    // ostali lokali se pre citanja uvek inicijalizuju, pa se okvir samo ponovo koristi
+                    pc = code[pc + 1];
+                }
+                case RET -> {
+                    if (fp == 0) throw new RuntimeError("Return outside function", pc);
+                    if (memo != null && frameMemo[fp] != null) {
+                        // tail call u istom okviru ne menja rezultat, pa vazi kljuc prvog poziva
+                        MemoTable table = frameMemo[fp];
+                        memoTop -= table.arity();
+                        table.put(memoKeys, memoTop, stack[sp - 1]);
+                        frameMemo[fp] = null;
+                    }
+                    Arrays.fill(localRefs, base, localsTop, null);
+                    localsTop = base;
+                    base = savedBases[fp];
+                    pc = returnPcs[fp--];
+                }
+                case HALT -> {
+                    if (sp == 0) return null;
+                    sp--;
+                    return box(stack[sp], refs[sp], code[pc + 1]);
+                }
+                case COLLECT, DROP -> {
+                    sp--;
+                    String text = format(box(stack[sp], refs[sp], code[pc + 1]));
+                    refs[sp] = null;
+                    // drop ispisuje bez prelaska u novi red
+                    if (op == COLLECT) out.println(text);
+                    else out.print(text);
+                    pc += 2;
+                }
+                case MAKE_ARRAY -> {
+                    int n = code[pc + 1];
+                    int type = code[pc + 2];
+                    Object arr = RuntimeArrays.create(type, n);
+                    sp -= n;
+                    for (int i = 0; i < n; i++) {
+                        if (isRef(type)) RuntimeArrays.setRef(arr, i, refs[sp + i], pc);
+                        else RuntimeArrays.set(arr, type, i, stack[sp + i], pc);
+                        refs[sp + i] = null;
+                    }
+                    push(0, arr);
+                    pc += 3;
+                }
+                case NEW_ARRAY -> {
+                    int n = code[pc + 1];
+                    sp -= n;
+                    long[] dims = Arrays.copyOfRange(stack, sp, sp + n);
+                    push(0, RuntimeArrays.create(code[pc + 2], dims, offHeap, pc));
+                    pc += 3;
+                }
+                case LOAD_ARRAY -> {
+                    // niz je ispod indeksa; vise indeksa daje jedan pomeraj u FlatArray
+                    int n = code[pc + 1];
+                    int type = code[pc + 2];
+                    sp -= n;
+                    Object arr = refs[sp - 1];
+                    long idx = stack[sp + n - 1];
+                    if (n > 1) {
+                        FlatArray flat = RuntimeArrays.flat(arr, pc);
+                        idx = flat.offset(stack, sp, pc);
+                        arr = flat.data;
+                    }
+                    if (isRef(type)) {
+                        refs[sp - 1] = RuntimeArrays.getRef(arr, idx, pc);
+                    } else {
+                        stack[sp - 1] = RuntimeArrays.get(arr, type, idx, pc);
+                        refs[sp - 1] = null;
+                    }
+                    pc += 3;
+                }
+                case STORE_ARRAY -> {
+                    int n = code[pc + 1];
+                    int type = code[pc + 2];
+                    sp -= n + 2;
+                    Object arr = refs[sp];
+                    long idx = stack[sp + n];
+                    if (n > 1) {
+                        FlatArray flat = RuntimeArrays.flat(arr, pc);
+                        idx = flat.offset(stack, sp + 1, pc);
+                        arr = flat.data;
+                    }
+                    int v = sp + n + 1;
+                    if (isRef(type)) RuntimeArrays.setRef(arr, idx, refs[v], pc);
+                    else RuntimeArrays.set(arr, type, idx, stack[v], pc);
+                    refs[sp] = null;
+                    refs[v] = null;
+                    pc += 3;
+                }
+                case LOAD_ARRAY_UNCHECKED -> {
+                    int n = code[pc + 1];
+                    int type = code[pc + 2];
+                    sp -= n;
+                    Object arr = refs[sp - 1];
+                    long idx = stack[sp + n - 1];
+                    if (n > 1) {
+                        FlatArray flat = (FlatArray) arr;
+                        idx = flat.offsetUnchecked(stack, sp);
+                        arr = flat.data;
+                    }
+                    if (isRef(type)) {
+                        refs[sp - 1] = RuntimeArrays.getRefUnchecked(arr, idx);
+                    } else {
+                        stack[sp - 1] = RuntimeArrays.getUnchecked(arr, type, idx);
+                        refs[sp - 1] = null;
+                    }
+                    pc += 3;
+                }
+                case STORE_ARRAY_UNCHECKED -> {
+                    int n = code[pc + 1];
+                    int type = code[pc + 2];
+                    sp -= n + 2;
+                    Object arr = refs[sp];
+                    long idx = stack[sp + n];
+                    if (n > 1) {
+                        FlatArray flat = (FlatArray) arr;
+                        idx = flat.offsetUnchecked(stack, sp + 1);
+                        arr = flat.data;
+                    }
+                    int v = sp + n + 1;
+                    if (isRef(type)) RuntimeArrays.setRefUnchecked(arr, idx, refs[v]);
+                    else RuntimeArrays.setUnchecked(arr, type, idx, stack[v]);
+                    refs[sp] = null;
+                    refs[v] = null;
+                    pc += 3;
+                }
+                case CAST -> {
+                    int from = code[pc + 1];
+                    int to = code[pc + 2];
+                    if (to == TYPE_STRING) {
+                        refs[sp - 1] = format(box(stack[sp - 1], refs[sp - 1], from));
+                    } else {
+                        stack[sp - 1] = cast(stack[sp - 1], from, to, pc);
+                    }
+                    pc += 3;
+                }
+                case INC_LOCAL -> {
+                    int slot = base + code[pc + 1];
+                    locals[slot] = (int) locals[slot] + code[pc + 2];
+                    pc += 3;
+                }
+                case JLT_LOCAL_LOCAL, JLE_LOCAL_LOCAL, JGT_LOCAL_LOCAL, JGE_LOCAL_LOCAL, JEQ_LOCAL_LOCAL, JNE_LOCAL_LOCAL -> {
+                    long a = locals[base + code[pc + 1]];
+                    long b = locals[base + code[pc + 2]];
+                    boolean jump = switch (op) {
+                        case JLT_LOCAL_LOCAL -> a < b;
+                        case JLE_LOCAL_LOCAL -> a <= b;
+                        case JGT_LOCAL_LOCAL -> a > b;
+                        case JGE_LOCAL_LOCAL -> a >= b;
+                        case JEQ_LOCAL_LOCAL -> a == b;
+                        default -> a != b;
+                    };
+                    pc = jump ? code[pc + 3] : pc + 4;
+                }
+                case LOAD_ARRAY_LOCAL -> {
+                    int type = code[pc + 3];
+                    Object arr = localRefs[base + code[pc + 1]];
+                    long idx = locals[base + code[pc + 2]];
+                    if (isRef(type)) push(0, RuntimeArrays.getRef(arr, idx, pc));
+                    else push(RuntimeArrays.get(arr, type, idx, pc), null);
+                    pc += 4;
+                }
+                case LOAD_ARRAY_LOCAL_UNCHECKED -> {
+                    int type = code[pc + 3];
+                    Object arr = localRefs[base + code[pc + 1]];
+                    long idx = locals[base + code[pc + 2]];
+                    if (isRef(type)) push(0, RuntimeArrays.getRefUnchecked(arr, idx));
+                    else push(RuntimeArrays.getUnchecked(arr, type, idx), null);
+                    pc += 4;
+                }
+                case VECTOR_LOOP -> {
+                    // lo i hi su na steku; ako kernel odradi ceo opseg, skace se iza petlje,
+                    // inace se izvrsava obicna petlja koja sledi
+                    sp -= 2;
+                    if (kernels == null) kernels = KernelRunner.create();
+                    ArrayKernel kernel = (ArrayKernel) constantRefs[code[pc + 2]];
+                    pc = kernels.run(kernel, locals, localRefs, base, stack[sp], stack[sp + 1]) ? code[pc + 1] : pc + 3;
+                }
+                case PARALLEL_LOOP -> {
+                    ParallelLoop loop = (ParallelLoop) constantRefs[code[pc + 2]];
+                    pc = pool != null && runParallel(loop, pc) ? code[pc + 1] : pc + 3;
+                }
+                case END_PARALLEL -> {
+                    if (pc == stopPc) return null;
+                    pc++;
+                }
+                default -> throw new RuntimeError("Invalid opcode: " + op, pc);
+            }
+        }
+    }
+
+    public long getExecutedCount() {
+        return executed;
+    }
+
+    // veliki primitivni nizovi van heap-a za sledece run(); null iskljucuje
+    public void setOffHeap(OffHeap offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    // ukljucuje brojanje parova za sledece run(); rezultat je u getPairCounts()
+    public void profilePairs() {
+        pairCounts = new long[COUNT * COUNT];
+    }
+
+    public long[] getPairCounts() {
+        return pairCounts;
+    }
+
+    // pamti rezultate funkcije za sledece run(); funkcija mora biti cista (optimizer.PurityAnalysis)
+    // i sa primitivnim parametrima i rezultatom
+    public void memoize(String function, int arity) {
+        Integer entry = functions.get(function);
+        if (entry == null) throw new IllegalArgumentException("Unknown function: " + function);
+        if (memo == null) {
+            memo = new MemoTable[code.length];
+            frameMemo = new MemoTable[returnPcs.length];
+            memoKeys = new long[64];
+        }
+        memo[entry] = new MemoTable(arity);
+    }
+
+    // jedna linija po funkciji koja se pamti, redom iz koda
+    public List<String> memoReport() {
+        List<String> lines = new ArrayList<>();
+        if (memo == null) return lines;
+        functions.forEach((name, entry) -> {
+            MemoTable t = memo[entry];
+            if (t != null) lines.add(String.format("%s: %d hits, %d misses, %d evictions",
+                    name, t.hits, t.misses, t.evictions));
+        });
+        return lines;
+    }
+
+    // petlje iz LoopParallelizer-a idu u delovima na pool za sledece run(); null iskljucuje
+    public void parallelize(ForkJoinPool pool, int minTrips) {
+        this.pool = pool;
+        this.minTrips = minTrips;
+    }
+
+    // jedna linija, ili nijedna ako paralelne petlje nisu ukljucene
+    public List<String> parallelReport() {
+        if (pool == null) return List.of();
+        return List.of(String.format("%d loops in %d chunks on %d threads, %d run serially",
+                parallelRuns, chunkCount, pool.getParallelism(), serialRuns));
+    }
+
+    // jedna linija, ili nijedna ako program nije izvrsio vector_loop
+    public List<String> kernelReport() {
+        return kernels == null ? List.of() : List.of(kernels.report());
+    }
+
+    /* ================= PARALELNE PETLJE ================= */
+
+    // opseg [lo, end) se deli na delove redom; greska iz najranijeg dela je ona koju bi
+    // prijavila obicna petlja, jer ona staje na prvoj gresci, a program se tu zavrsava
+    private boolean runParallel(ParallelLoop loop, int pc) {
+        long lo = locals[base + loop.counter];
+        long end = locals[base + loop.limit] + (loop.inclusive ? 1 : 0);
+        if (end - lo < Math.max(minTrips, 2) || !distinct(loop)) {
+            serialRuns++;
+            return false;
+        }
+        int parts = (int) Math.min(end - lo, pool.getParallelism() * CHUNKS_PER_THREAD);
+        List<Callable<VirtualMachine>> chunks = new ArrayList<>(parts);
+        for (int k = 0; k < parts; k++) {
+            long from = lo + (end - lo) * k / parts;
+            long to = lo + (end - lo) * (k + 1) / parts;
+            chunks.add(() -> chunk(loop, pc, from, to));
+        }
+
+        RuntimeError first = null;
+        for (Future<VirtualMachine> f : pool.invokeAll(chunks)) {
+            VirtualMachine worker;
+            try {
+                worker = f.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof Error err) throw err;
+                throw new RuntimeError("Parallel loop failed: " + cause, pc);
+            }
+            executed += worker.executed;
+            if (first == null) first = worker.failure;
+        }
+        if (first != null) throw first;
+        parallelRuns++;
+        chunkCount += parts;
+        return true;
+    }
+
+    // iteracije [from, to) u radniku sa kopijom tekuceg okvira
+    private VirtualMachine chunk(ParallelLoop loop, int pc, long from, long to) {
+        VirtualMachine worker = new VirtualMachine(this);
+        int n = Math.max(loop.frameSize, 256);
+        worker.locals = Arrays.copyOfRange(locals, base, base + n);
+        worker.localRefs = Arrays.copyOfRange(localRefs, base, base + n);
+        worker.localsTop = loop.frameSize;
+        worker.locals[loop.counter] = from;
+        worker.locals[loop.limit] = loop.inclusive ? to - 1 : to;
+        worker.stopPc = code[pc + 1];
+        try {
+            worker.execute(pc + 3);
+        } catch (RuntimeError e) {
+            worker.failure = e;
+        }
+        return worker;
+    }
+
+    // niz u koji telo pise ne sme biti isti objekat kao neki drugi niz iz tela
+    private boolean distinct(ParallelLoop loop) {
+        for (int k = 0; k < loop.written.length; k++) {
+            Object w = array(loop.written[k]);
+            if (w == null) return false;
+            for (int j = 0; j < loop.written.length; j++) {
+                if (j != k && array(loop.written[j]) == w) return false;
+            }
+            for (int r : loop.read) {
+                if (array(r) == w) return false;
+            }
+        }
+        return true;
+    }
+
+    private Object array(int ref) {
+        return ref >= 0 ? localRefs[base + ref] : globalRefs[~ref];
+    }
+
+    /* ================= STEK I PROMENLJIVE ================= */
+
+    private void push(long v, Object ref) {
+        if (sp == stack.length) {
+            if (sp == MAX_STACK) throw new RuntimeError("Operand stack overflow", -1);
+            stack = Arrays.copyOf(stack, stack.length * 2);
+            refs = Arrays.copyOf(refs, refs.length * 2);
+        }
+        stack[sp] = v;
+        refs[sp] = ref;
+        sp++;
+    }
+
+    private void allocateFrame(int frameSize, int pc) {
+        int top = localsTop + frameSize;
+        if (top > locals.length) {
+            if (top > MAX_LOCALS) throw new RuntimeError("Call stack overflow", pc);
+            int n = Math.max(locals.length * 2, top);
+            locals = Arrays.copyOf(locals, n);
+            localRefs = Arrays.copyOf(localRefs, n);
+        }
+        localsTop = top;
+    }
+
+    /* ================= KONVERZIJE ================= */
+
+    private static long cast(long v, int from, int to, int pc) {
+        if (from == to) return v;
+        double d = Double.longBitsToDouble(v);
+        return switch (to) {
+            case TYPE_INT -> from == TYPE_DOUBLE ? (int) d : (int) v;
+            case TYPE_LONG -> from == TYPE_DOUBLE ? (long) d : v;
+            case TYPE_DOUBLE -> Double.doubleToRawLongBits(v);
+            case TYPE_CHAR -> from == TYPE_DOUBLE ? (char) (int) d : (char) v;
+            case TYPE_BOOL -> v;
+            default -> throw new RuntimeError("Unknown cast type: " + to, pc);
+        };
+    }
+
+    static boolean isRef(int type) {
+        return type == TYPE_STRING || type == TYPE_ARRAY;
+    }
+
+    // neupakovana vrednost tipa type kao objekat (za ispis i rezultat programa)
+    static Object box(long v, Object ref, int type) {
+        return switch (type) {
+            case TYPE_LONG -> v;
+            case TYPE_DOUBLE -> Double.longBitsToDouble(v);
+            case TYPE_CHAR -> (char) v;
+            case TYPE_BOOL -> v != 0;
+            case TYPE_STRING, TYPE_ARRAY -> ref;
+            default -> (int) v;
+        };
+    }
+
+    static long encode(Object c) {
+        if (c instanceof Double d) return Double.doubleToRawLongBits(d);
+        if (c instanceof Character ch) return ch;
+        if (c instanceof Boolean b) return b ? 1 : 0;
+        return ((Number) c).longValue();
+    }
+
+    static String format(Object v) {
+        if (v instanceof Boolean b) return b ? "powered" : "unpowered";
+        if (v instanceof FlatArray || v instanceof OffHeapArray) return v.toString();
+        if (v != null && v.getClass().isArray()) {
+            StringBuilder sb = new StringBuilder("[");
+            int n = java.lang.reflect.Array.getLength(v);
+            for (int i = 0; i < n; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(format(java.lang.reflect.Array.get(v, i)));
+            }
+            return sb.append("]").toString();
+        }
+        return String.valueOf(v);
+    }
+}